@@ -0,0 +1,81 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.blizzard;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.local.SeasonGenerator;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/*
+    Ladder payload deserialization. Payloads are serialized SeasonGenerator fixtures, the ObjectMapper is
+    configured the same way Spring Boot configures it for the Blizzard API client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlizzardLadderBenchmark
+{
+
+    @Param({"LOTV_1V1", "LOTV_4V4"})
+    private QueueType queueType;
+
+    @Param({"100"})
+    private int teamCount;
+
+    private ObjectMapper objectMapper;
+    private byte[] ladder;
+    private byte[] profileLadder;
+
+    @Setup
+    public void setup()
+    throws IOException
+    {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ladder = objectMapper.writeValueAsBytes(SeasonGenerator.generateBlizzardLadder
+        (
+            BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED, teamCount
+        ));
+        profileLadder = objectMapper.writeValueAsBytes(SeasonGenerator.generateBlizzardProfileLadder
+        (
+            BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED, teamCount
+        ));
+        //fail fast if fixtures can't be read back
+        if(readLadder().getTeams().length != teamCount || readProfileLadder().getLadderTeams().length != teamCount)
+            throw new IllegalStateException("Invalid fixture");
+    }
+
+    @Benchmark
+    public BlizzardLadder readLadder()
+    throws IOException
+    {
+        return objectMapper.readValue(ladder, BlizzardLadder.class);
+    }
+
+    @Benchmark
+    public BlizzardProfileLadder readProfileLadder()
+    throws IOException
+    {
+        return objectMapper.readValue(profileLadder, BlizzardProfileLadder.class);
+    }
+
+}
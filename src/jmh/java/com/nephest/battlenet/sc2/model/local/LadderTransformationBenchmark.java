@@ -0,0 +1,101 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local;
+
+import com.nephest.battlenet.sc2.Application;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.BaseLeagueTier;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardLadder;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeam;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeamMember;
+import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/*
+    Blizzard to local model conversions of a single ladder. The DAO is used for legacy id calculation only,
+    the DB is not touched.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LadderTransformationBenchmark
+{
+
+    @Param({"LOTV_1V1", "LOTV_4V4"})
+    private QueueType queueType;
+
+    @Param({"100"})
+    private int teamCount;
+
+    private TeamDAO teamDAO;
+    private BlizzardLadder ladder;
+    private Season season;
+    private League league;
+    private LeagueTier tier;
+    private Division division;
+
+    @Setup
+    public void setup()
+    {
+        teamDAO = new TeamDAO
+        (
+            new NamedParameterJdbcTemplate(new JdbcTemplate()),
+            new Application().sc2StatsConversionService()
+        );
+        ladder = SeasonGenerator.generateBlizzardLadder
+        (
+            BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED, teamCount
+        );
+        season = new Season
+        (
+            1, SeasonGenerator.DEFAULT_SEASON_ID, Region.EU,
+            SeasonGenerator.DEFAULT_SEASON_YEAR, SeasonGenerator.DEFAULT_SEASON_NUMBER,
+            SeasonGenerator.DEFAULT_SEASON_START, SeasonGenerator.DEFAULT_SEASON_END
+        );
+        league = new League(1, season.getId(), BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED);
+        tier = new LeagueTier(1, league.getId(), BaseLeagueTier.LeagueTierType.FIRST, 0, 1);
+        division = new Division(1, tier.getId(), 1L);
+    }
+
+    @Benchmark
+    public void team(Blackhole blackhole)
+    {
+        for(BlizzardTeam bTeam : ladder.getTeams())
+            blackhole.consume(Team.of(season, league, tier, division, bTeam, teamDAO));
+    }
+
+    @Benchmark
+    public void accountAndCharacter(Blackhole blackhole)
+    {
+        for(BlizzardTeam bTeam : ladder.getTeams())
+        {
+            for(BlizzardTeamMember bMember : bTeam.getMembers())
+            {
+                Account account = Account.of(bMember.getAccount(), season.getRegion());
+                blackhole.consume(PlayerCharacter.of(account, season.getRegion(), bMember.getCharacter()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.dao;
+
+import com.nephest.battlenet.sc2.Application;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.BaseLeagueTier;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardLadder;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeam;
+import com.nephest.battlenet.sc2.model.local.Division;
+import com.nephest.battlenet.sc2.model.local.League;
+import com.nephest.battlenet.sc2.model.local.LeagueTier;
+import com.nephest.battlenet.sc2.model.local.Season;
+import com.nephest.battlenet.sc2.model.local.SeasonGenerator;
+import com.nephest.battlenet.sc2.model.local.Team;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+/*
+    CPU work done before ladder teams reach the DB: bean validation and merge parameter building.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LadderPersistenceBenchmark
+{
+
+    @Param({"LOTV_1V1", "LOTV_4V4"})
+    private QueueType queueType;
+
+    @Param({"100"})
+    private int teamCount;
+
+    private LocalValidatorFactoryBean validator;
+    private Predicate<BlizzardTeam> validationPredicate;
+    private TeamDAO teamDAO;
+    private BlizzardLadder ladder;
+    private Team[] teams;
+
+    @Setup
+    public void setup()
+    {
+        validator = new LocalValidatorFactoryBean();
+        //fixtures are valid, messages are never interpolated, so the EL implementation is not required
+        validator.setMessageInterpolator(new ParameterMessageInterpolator());
+        validator.afterPropertiesSet();
+        validationPredicate = DAOUtils.beanValidationPredicate(validator);
+        teamDAO = new TeamDAO
+        (
+            new NamedParameterJdbcTemplate(new JdbcTemplate()),
+            new Application().sc2StatsConversionService()
+        );
+        ladder = SeasonGenerator.generateBlizzardLadder
+        (
+            BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED, teamCount
+        );
+        Season season = new Season
+        (
+            1, SeasonGenerator.DEFAULT_SEASON_ID, Region.EU,
+            SeasonGenerator.DEFAULT_SEASON_YEAR, SeasonGenerator.DEFAULT_SEASON_NUMBER,
+            SeasonGenerator.DEFAULT_SEASON_START, SeasonGenerator.DEFAULT_SEASON_END
+        );
+        League league = new League(1, season.getId(), BaseLeague.LeagueType.DIAMOND, queueType, TeamType.ARRANGED);
+        LeagueTier tier = new LeagueTier(1, league.getId(), BaseLeagueTier.LeagueTierType.FIRST, 0, 1);
+        Division division = new Division(1, tier.getId(), 1L);
+        teams = Arrays.stream(ladder.getTeams())
+            .map(bTeam->Team.of(season, league, tier, division, bTeam, teamDAO))
+            .toArray(Team[]::new);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        validator.close();
+    }
+
+    @Benchmark
+    public void validation(Blackhole blackhole)
+    {
+        for(BlizzardTeam bTeam : ladder.getTeams()) blackhole.consume(validationPredicate.test(bTeam));
+    }
+
+    @Benchmark
+    public MapSqlParameterSource teamMergeParameters()
+    {
+        return teamDAO.createMergeParameters(teams);
+    }
+
+}
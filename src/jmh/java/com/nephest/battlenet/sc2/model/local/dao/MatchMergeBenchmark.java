@@ -0,0 +1,180 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.dao;
+
+import com.nephest.battlenet.sc2.Application;
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.local.Match;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/*
+    Executes the match merge statement against the IT database from application-private.properties, the schema is
+    dropped and recreated like in ITs. Batch sizes change on every invocation, like they do in the update cycle,
+    so the VALUES statement has a different text every time, while the array statement is reused by the driver.
+    Matches exist, so the update path is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchMergeBenchmark
+{
+
+    //the original statement, kept as a baseline
+    private static final String VALUES_MERGE_QUERY =
+        "WITH "
+        + "vals AS (VALUES :matchUids), "
+        + "updated AS "
+        + "("
+            + "UPDATE match "
+            + "SET updated = NOW() "
+            + "FROM vals v (date, type, map_id, region)"
+            + "WHERE match.date = v.date "
+            + "AND match.type = v.type "
+            + "AND match.map_id = v.map_id "
+            + "AND match.region = v.region "
+            + "RETURNING " + MatchDAO.STD_SELECT
+        + "), "
+        + "missing AS "
+        + "("
+            + "SELECT v.date, v.type, v.map_id, v.region "
+            + "FROM vals v (date, type, map_id, region) "
+            + "LEFT JOIN updated ON v.date = updated.\"match.date\"  "
+            + "AND v.type = updated.\"match.type\" "
+            + "AND v.map_id = updated.\"match.map_id\" "
+            + "AND v.region = updated.\"match.region\" "
+            + "WHERE updated.\"match.id\" IS NULL "
+        + "), "
+        + "inserted AS "
+        + "("
+            + "INSERT INTO match (date, type, map_id, region) "
+            + "SELECT * FROM missing "
+            + "ON CONFLICT(date, type, map_id, region) DO UPDATE "
+            + "SET updated = NOW() "
+            + "RETURNING " + MatchDAO.STD_SELECT
+        + ") "
+        + "SELECT * FROM updated "
+        + "UNION "
+        + "SELECT * FROM inserted";
+
+    @Param({"200"})
+    private int maxBatchSize;
+
+    private SingleConnectionDataSource dataSource;
+    private NamedParameterJdbcTemplate template;
+    private ConversionService conversionService;
+    private MatchDAO matchDAO;
+    private Match[] matches;
+    private int batchSize;
+
+    @Setup
+    public void setup()
+    throws IOException, SQLException
+    {
+        Properties properties = new Properties();
+        try(InputStream in = new ClassPathResource("application-private.properties").getInputStream())
+        {
+            properties.load(in);
+        }
+        dataSource = new SingleConnectionDataSource
+        (
+            properties.getProperty("spring.datasource.url"),
+            properties.getProperty("spring.datasource.username"),
+            properties.getProperty("spring.datasource.password"),
+            true
+        );
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-postgres.sql"));
+        }
+        template = new NamedParameterJdbcTemplate(new JdbcTemplate(dataSource));
+        conversionService = new Application().sc2StatsConversionService();
+        matchDAO = new MatchDAO(template, conversionService);
+        int mapId = template.getJdbcTemplate().queryForObject
+        (
+            "INSERT INTO map(name) VALUES('map') RETURNING id", Integer.class
+        );
+        OffsetDateTime date = OffsetDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        matches = new Match[maxBatchSize];
+        for(int i = 0; i < maxBatchSize; i++)
+            matches[i] = new Match(null, date.plusSeconds(i), BaseMatch.MatchType._1V1, mapId, Region.EU);
+        matchDAO.merge(matches);
+    }
+
+    @TearDown
+    public void tearDown()
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+        }
+        dataSource.destroy();
+    }
+
+    private Match[] nextBatch()
+    {
+        batchSize = batchSize % maxBatchSize + 1;
+        return Arrays.copyOf(matches, batchSize);
+    }
+
+    @Benchmark
+    public Match[] arrayMerge()
+    {
+        return matchDAO.merge(nextBatch());
+    }
+
+    @Benchmark
+    public List<Match> valuesMerge()
+    {
+        List<Object[]> matchUids = Arrays.stream(nextBatch())
+            .map(match->new Object[]{
+                match.getDate(),
+                conversionService.convert(match.getType(), Integer.class),
+                match.getMapId(),
+                conversionService.convert(match.getRegion(), Integer.class)
+            })
+            .collect(Collectors.toList());
+        return template.query
+        (
+            VALUES_MERGE_QUERY,
+            new MapSqlParameterSource("matchUids", matchUids),
+            MatchDAO.getStdRowMapper()
+        );
+    }
+
+}
@@ -0,0 +1,69 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.inner;
+
+import com.nephest.battlenet.sc2.model.Race;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardPlayerCharacter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+    Compares the TeamLegacyIdCodec with the original StringBuilder/BigInteger implementation. Run with
+    -prof gc to see the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TeamLegacyIdBenchmark
+{
+
+    @Param({"1", "2", "4"})
+    private int memberCount;
+
+    private BlizzardPlayerCharacter[] characters;
+    private Race[] races;
+
+    @Setup
+    public void setup()
+    {
+        characters = new BlizzardPlayerCharacter[memberCount];
+        for(int i = 0; i < memberCount; i++)
+            characters[i] = new BlizzardPlayerCharacter(987654321L - i * 1000L, 1 + i % 2, "name#" + i);
+        races = memberCount == 1 ? new Race[]{Race.ZERG} : Race.EMPTY_RACE_ARRAY;
+    }
+
+    @Benchmark
+    public BigInteger string()
+    {
+        BlizzardPlayerCharacter[] chars = characters.clone();
+        StringBuilder sb = new StringBuilder();
+        Arrays.sort(chars, TeamLegacyIdCodec.CHARACTER_COMPARATOR);
+        Arrays.sort(races);
+        for(BlizzardPlayerCharacter c : chars) sb.append(c.getRealm()).append(c.getId());
+        for(Race r : races) sb.append(r.getId());
+        return new BigInteger(sb.toString());
+    }
+
+    @Benchmark
+    public BigInteger codec()
+    {
+        return TeamLegacyIdCodec.encode(characters, races);
+    }
+
+}
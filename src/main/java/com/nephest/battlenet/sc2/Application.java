@@ -16,19 +16,23 @@ import com.nephest.battlenet.sc2.config.convert.IntegerToRegionConverter;
 import com.nephest.battlenet.sc2.config.convert.IntegerToSC2PulseAuthority;
 import com.nephest.battlenet.sc2.config.convert.IntegerToSocialMediaConverter;
 import com.nephest.battlenet.sc2.config.convert.IntegerToTeamTypeConverter;
-import com.nephest.battlenet.sc2.config.filter.AverageSessionCacheFilter;
 import com.nephest.battlenet.sc2.config.filter.MaintenanceFilter;
+import com.nephest.battlenet.sc2.config.filter.UpdateCacheFilter;
 import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import com.nephest.battlenet.sc2.web.service.UpdateService;
 import com.nephest.battlenet.sc2.web.service.WebServiceUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.boot.web.client.RestTemplateCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
@@ -61,16 +65,25 @@ extends SpringBootServletInitializer
         ? Application.class.getPackage().getImplementationVersion()
         : "unknown";
     /*
-        Don't change the DB thread count. The DB code doesn't handle concurrent transactions, so deadlocks can happen.
-        There is no need to have more than 1 thread here because most of the CPU work is done on the DB side, so
-        there is no need to properly handle concurrency because it will waste CPU resources without any performance
-        boost whatsoever. Concurrency/CPU intensive work is done by web threads.
+        DB writes are partitioned by region. Regions don't share ladder rows, so partitions can run concurrently
+        without constant lock contention. Some rows(accounts, maps) are still shared, deadlocked tasks are retried
+        by the executor. Keyless tasks get one more, dedicated, partition.
      */
-    public static final int DB_THREADS = 1;
+    public static final int DB_THREADS = Region.values().length;
+    public static final int DB_DEADLOCK_MAX_ATTEMPTS = 3;
+    public static final String DB_THREAD_POOL_NAME = "p-db-";
     public static final int CORE_WEB_THREADS = Region.values().length;
     public static final int BACKGROUND_WEB_THREADS = 10;
     public static final int WEB_THREAD_TTL_SECONDS = 60;
     public static final String WEB_THREAD_POOL_NAME = "p-web-";
+    /*
+        Read threads are used to run independent queries of a single web request concurrently. The pool is
+        smaller than the DB connection pool, so the update cycle always has some connections. The request
+        thread runs the query itself when the queue is full.
+     */
+    public static final int READ_THREADS = 6;
+    public static final int READ_QUEUE_SIZE = 200;
+    public static final String READ_THREAD_POOL_NAME = "p-read-";
 
     public static void main(String[] args)
     {
@@ -126,9 +139,15 @@ extends SpringBootServletInitializer
     }
 
     @Bean
-    public ExecutorService dbExecutorService()
+    public PartitionedExecutorService dbExecutorService(MeterRegistry meterRegistry)
     {
-        return Executors.newFixedThreadPool(DB_THREADS);
+        return new PartitionedExecutorService
+        (
+            DB_THREAD_POOL_NAME,
+            DB_THREADS,
+            DB_DEADLOCK_MAX_ATTEMPTS,
+            meterRegistry
+        );
     }
 
     @Bean
@@ -145,13 +164,37 @@ extends SpringBootServletInitializer
     }
 
     @Bean
-    public FilterRegistrationBean<AverageSessionCacheFilter> sessionWebCacheFilter(){
-        FilterRegistrationBean<AverageSessionCacheFilter> registrationBean = new FilterRegistrationBean<>();
-
-        registrationBean.setFilter(new AverageSessionCacheFilter());
-        registrationBean.addUrlPatterns("/api/ladder/stats/*");
+    public ExecutorService readExecutorService()
+    {
+        return new ThreadPoolExecutor
+        (
+            READ_THREADS,
+            READ_THREADS,
+            0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(READ_QUEUE_SIZE),
+            new CustomizableThreadFactory(READ_THREAD_POOL_NAME),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
 
-        return registrationBean;
+    @Bean
+    public FilterRegistrationBean<UpdateCacheFilter> updateCacheFilter(UpdateService updateService)
+    {
+        FilterRegistrationBean<UpdateCacheFilter> reg = new FilterRegistrationBean<>();
+        reg.setFilter(new UpdateCacheFilter
+        (
+            updateService,
+            "/api/ladder/**",
+            "/api/season/**",
+            "/api/character/*/teams",
+            "/api/character/*/stats",
+            "/api/character/*/matches/**",
+            "/api/character/*/summary/**"
+        ));
+        reg.addUrlPatterns("/api/ladder/*", "/api/season/*", "/api/character/*");
+        //public data, answer revalidation requests before security and remember-me logins
+        reg.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return reg;
     }
 
     @Bean @Profile("maintenance")
@@ -9,6 +9,7 @@ import com.nephest.battlenet.sc2.model.Region;
 import com.nephest.battlenet.sc2.model.local.InstantVar;
 import com.nephest.battlenet.sc2.model.local.TimerVar;
 import com.nephest.battlenet.sc2.model.local.dao.EvidenceDAO;
+import com.nephest.battlenet.sc2.model.local.dao.LeagueStatsDAO;
 import com.nephest.battlenet.sc2.model.local.dao.MapStatsDAO;
 import com.nephest.battlenet.sc2.model.local.dao.MatchParticipantDAO;
 import com.nephest.battlenet.sc2.model.local.dao.PersistentLoginDAO;
@@ -17,21 +18,26 @@ import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
 import com.nephest.battlenet.sc2.model.local.dao.SeasonStateDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamStateDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import com.nephest.battlenet.sc2.model.local.inner.PlayerCharacterSummaryDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchIndex;
 import com.nephest.battlenet.sc2.model.util.PostgreSQLUtils;
 import com.nephest.battlenet.sc2.util.MiscUtil;
 import com.nephest.battlenet.sc2.web.service.BlizzardPrivacyService;
 import com.nephest.battlenet.sc2.web.service.BlizzardSC2API;
 import com.nephest.battlenet.sc2.web.service.ClanService;
 import com.nephest.battlenet.sc2.web.service.DiscordService;
+import com.nephest.battlenet.sc2.web.service.ExportService;
 import com.nephest.battlenet.sc2.web.service.MatchService;
 import com.nephest.battlenet.sc2.web.service.PlayerCharacterReportService;
 import com.nephest.battlenet.sc2.web.service.ProPlayerService;
+import com.nephest.battlenet.sc2.web.service.SearchService;
 import com.nephest.battlenet.sc2.web.service.StatsService;
 import com.nephest.battlenet.sc2.web.service.StatusService;
 import com.nephest.battlenet.sc2.web.service.TwitchService;
 import com.nephest.battlenet.sc2.web.service.UpdateContext;
 import com.nephest.battlenet.sc2.web.service.UpdateService;
 import com.nephest.battlenet.sc2.web.service.VarService;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -70,11 +76,16 @@ public class Cron
     public static final Duration MAP_STATS_SKIP_NEW_SEASON_FRAME = Duration.ofDays(8);
     public static final Duration HEAVY_STATS_UPDATE_FRAME = Duration.ofDays(1);
     public static final Duration DISCORD_UPDATE_FRAME = Duration.ofDays(1);
+    public static final Duration EXPORT_FRAME = Duration.ofHours(1);
+    public static final String UPDATE_CYCLE_METRIC_NAME = "update.cycle";
+    public static final String UPDATE_PHASE_METRIC_NAME = "update.phase";
+    public static final String ALL_REGIONS_TAG_VALUE = "ALL";
 
     private TimerVar calculateHeavyStatsTask;
     private TimerVar maintenanceFrequentTask;
     private TimerVar maintenanceInfrequentTask;
     private TimerVar updateDiscordTask;
+    private TimerVar exportTask;
     private InstantVar matchInstant;
     private InstantVar mapStatsInstant;
     private UpdateContext matchUpdateContext;
@@ -113,15 +124,30 @@ public class Cron
     @Autowired
     private QueueStatsDAO queueStatsDAO;
 
+    @Autowired
+    private LeagueStatsDAO leagueStatsDAO;
+
     @Autowired
     private MapStatsDAO mapStatsDAO;
 
+    @Autowired
+    private LadderSearchIndex ladderSearchIndex;
+
+    @Autowired
+    private SearchService searchService;
+
     @Autowired
     private PlayerCharacterReportService characterReportService;
 
     @Autowired
     private EvidenceDAO evidenceDAO;
 
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private PlayerCharacterSummaryDAO playerCharacterSummaryDAO;
+
     @Autowired
     private VarDAO varDAO;
 
@@ -146,7 +172,11 @@ public class Cron
     @Autowired
     private BlizzardPrivacyService blizzardPrivacyService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private final AtomicBoolean updatingLadders = new AtomicBoolean(false);
+    private final AtomicBoolean exporting = new AtomicBoolean(false);
 
     @PostConstruct
     public void init()
@@ -185,6 +215,15 @@ public class Cron
                 DISCORD_UPDATE_FRAME,
                 ()->webExecutorService.submit(discordService::update)
             );
+            //export is independent of the update cycle, it must not delay or break it
+            exportTask = new TimerVar
+            (
+                varDAO,
+                "export.daily.timestamp",
+                true,
+                EXPORT_FRAME,
+                ()->webExecutorService.submit(this::exportDaily)
+            );
             matchInstant = new InstantVar(varDAO, "match.updated");
             mapStatsInstant = new InstantVar(varDAO, "ladder.stats.map.timestamp");
             if(matchInstant.getValue() != null) matchUpdateContext = new UpdateContext(
@@ -215,7 +254,9 @@ public class Cron
     @Scheduled(cron="0 0 5 * * *")
     public void updateCharacterReports()
     {
+        OffsetDateTime start = OffsetDateTime.now();
         characterReportService.update(REPORT_UPDATE_FROM);
+        statsService.addCheaterReportRankPartitions(start);
     }
 
     @Scheduled(cron="0 0 0/1 * * *")
@@ -234,6 +275,7 @@ public class Cron
     public void updateBackgroundServices()
     {
         updateDiscordTask.runIfAvailable();
+        exportTask.runIfAvailable();
     }
 
     private void nonStopUpdate()
@@ -250,17 +292,19 @@ public class Cron
             Instant lastMatchInstant = matchInstant.getValue();
 
             statusService.update();
-            doUpdateSeasons();
-            //There is a long pause here due to stats calculations in the DB, a good place to do a GC run, make a hint.
-            System.gc();
-            calculateHeavyStatsTask.runIfAvailable();
-            clanService.update();
-            blizzardPrivacyService.update();
-            updateService.updated(begin);
-            if(!Objects.equals(lastMatchInstant, matchInstant.getValue())) matchUpdateContext =
-                updateService.getUpdateContext(null);
-            updateMapStats();
-            commenceMaintenance();
+            meterRegistry.timer(UPDATE_CYCLE_METRIC_NAME).record(()->{
+                doUpdateSeasons();
+                //There is a long pause here due to stats calculations in the DB, a good place to do a GC run, make a hint.
+                System.gc();
+                calculateHeavyStatsTask.runIfAvailable();
+                recordPhase("clan", clanService::update);
+                recordPhase("privacy", blizzardPrivacyService::update);
+                updateService.updated(begin);
+                if(!Objects.equals(lastMatchInstant, matchInstant.getValue())) matchUpdateContext =
+                    updateService.getUpdateContext(null);
+                recordPhase("stats.map", this::updateMapStats);
+                commenceMaintenance();
+            });
             LOG.info("Update cycle completed. Duration: {} seconds", (System.currentTimeMillis() - begin.toEpochMilli()) / 1000);
         }
         catch(RuntimeException ex) {
@@ -268,7 +312,49 @@ public class Cron
         }
     }
 
+    private void recordPhase(String phase, Region region, Runnable runnable)
+    {
+        meterRegistry.timer
+        (
+            UPDATE_PHASE_METRIC_NAME,
+            "phase", phase,
+            "region", region != null ? region.name() : ALL_REGIONS_TAG_VALUE
+        ).record(runnable);
+    }
+
+    private void recordPhase(String phase, Runnable runnable)
+    {
+        recordPhase(phase, null, runnable);
+    }
+
     private void calculateHeavyStats()
+    {
+        recordPhase("stats.heavy", this::doCalculateHeavyStats);
+    }
+
+    /*
+        Missing files are exported by the next run, so failed or overlapping runs are logged/skipped instead of
+        being retried right away.
+     */
+    private void exportDaily()
+    {
+        if(!exporting.compareAndSet(false, true)) return;
+
+        try
+        {
+            exportService.exportDaily();
+        }
+        catch(RuntimeException ex)
+        {
+            LOG.error(ex.getMessage(), ex);
+        }
+        finally
+        {
+            exporting.set(false);
+        }
+    }
+
+    private void doCalculateHeavyStats()
     {
         Instant defaultInstant = calculateHeavyStatsTask.getValue() != null
             ? calculateHeavyStatsTask.getValue()
@@ -276,7 +362,11 @@ public class Cron
         OffsetDateTime defaultOdt = OffsetDateTime.ofInstant(defaultInstant, ZoneId.systemDefault());
         proPlayerService.update();
         for(Integer season : seasonDAO.getLastInAllRegions())
+        {
             queueStatsDAO.mergeCalculateForSeason(season);
+            //the update cycle recalculates only changed partitions, reconcile the full season
+            leagueStatsDAO.mergeCalculateForSeason(season);
+        }
         teamStateDAO.archive(defaultOdt);
         teamStateDAO.cleanArchive(defaultOdt);
         teamStateDAO.removeExpired();
@@ -317,14 +407,14 @@ public class Cron
             try
             {
                 Instant begin = Instant.now();
-                statsService.updateCurrent
+                recordPhase("ladder", region, ()->statsService.updateCurrent
                 (
                     new Region[]{region},
                     QueueType.getTypes(StatsService.VERSION).toArray(QueueType[]::new),
                     BaseLeague.LeagueType.values(),
                     false,
                     updateService.getUpdateContext(region)
-                );
+                ));
                 updateService.updated(region, begin);
             }
             catch (RuntimeException ex)
@@ -343,16 +433,23 @@ public class Cron
         for(Region region : Region.values()) tasks.add(webExecutorService.submit(()->doUpdateSeasons(region)));
 
         MiscUtil.awaitAndThrowException(tasks, true, true);
-        statsService.afterCurrentSeasonUpdate(updateService.getUpdateContext(null), false);
+        recordPhase
+        (
+            "ladder.after",
+            ()->statsService.afterCurrentSeasonUpdate(updateService.getUpdateContext(null), false)
+        );
+        recordPhase("ladder.index", ()->ladderSearchIndex.update(seasonDAO.getLastInAllRegions()));
+        recordPhase("search.index", searchService::updateIndex);
         try
         {
             if (shouldUpdateMatches())
             {
                 UpdateContext muc = matchUpdateContext == null ? updateService.getUpdateContext(null) : matchUpdateContext;
                 for(Region region : Region.values())
-                    tasks.add(webExecutorService.submit(()->matchService.update(muc, region)));
+                    tasks.add(webExecutorService.submit(()->
+                        recordPhase("match", region, ()->matchService.update(muc, region))));
                 MiscUtil.awaitAndThrowException(tasks, true, true);
-                matchService.updateMeta(muc);
+                recordPhase("match.meta", ()->matchService.updateMeta(muc));
                 matchInstant.setValueAndSave(Instant.now());
                 twitchService.update();
             }
@@ -388,7 +485,8 @@ public class Cron
 
     private void commenceFrequentMaintenance()
     {
-        postgreSQLUtils.reindex("ix_match_updated");
+        postgreSQLUtils.reindex("ix_match_updated_id");
+        playerCharacterSummaryDAO.removeExpired();
     }
 
     private void commenceInfrequentMaintenance()
@@ -396,9 +494,9 @@ public class Cron
         postgreSQLUtils.reindex
         (
             "ix_team_state_team_id_archived",
-            "ix_team_state_timestamp",
+            "ix_team_state_timestamp_team_id",
             "ix_account_updated",
-            "ix_player_character_updated"
+            "ix_player_character_updated_id"
         );
         persistentLoginDAO.removeExpired();
     }
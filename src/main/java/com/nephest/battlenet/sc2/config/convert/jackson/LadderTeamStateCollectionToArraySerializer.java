@@ -3,6 +3,7 @@
 
 package com.nephest.battlenet.sc2.config.convert.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
 import java.util.Map;
 
@@ -10,54 +11,56 @@ public class LadderTeamStateCollectionToArraySerializer
 extends SimpleCollectionToFieldArraySerializer<LadderTeamState>
 {
 
+    public static final Map<String, ThrowingBiConsumer<JsonGenerator, LadderTeamState>> MAPPERS = Map.ofEntries(
+        Map.entry("teamId", (g, s)->g.writeNumber(s.getTeamState().getTeamId())),
+        Map.entry("dateTime", (g, s)->g.writeString(s.getTeamState().getDateTime().toString())),
+        Map.entry("wins", (g, s)->{
+            if(s.getTeamState().getWins() == null) {g.writeNull();}
+            else{g.writeNumber(s.getTeamState().getWins());}
+        }),
+        Map.entry("games", (g, s)->g.writeNumber(s.getTeamState().getGames())),
+        Map.entry("rating", (g, s)->g.writeNumber(s.getTeamState().getRating())),
+        Map.entry("leagueType", (g, s)->g.writeNumber(s.getLeague().getType().getId())),
+        Map.entry("queueType", (g, s)->g.writeNumber(s.getLeague().getQueueType().getId())),
+        Map.entry("teamType", (g, s)->g.writeNumber(s.getLeague().getTeamType().getId())),
+        Map.entry("tier", (g, s)->{
+            if(s.getTier() == null) {g.writeNull();}
+            else {g.writeNumber(s.getTier().getId());}
+        }),
+        Map.entry("globalRank", (g, s)->{
+            if(s.getTeamState().getGlobalRank() == null) {g.writeNull();}
+            else {g.writeNumber(s.getTeamState().getGlobalRank());}
+        }),
+        Map.entry("globalTeamCount", (g, s)->{
+            if(s.getPopulationState().getGlobalTeamCount() == null) {g.writeNull();}
+            else {g.writeNumber(s.getPopulationState().getGlobalTeamCount());}
+        }),
+        Map.entry("regionRank", (g, s)->{
+            if(s.getTeamState().getRegionRank() == null) {g.writeNull();}
+            else {g.writeNumber(s.getTeamState().getRegionRank());}
+        }),
+        Map.entry("regionTeamCount", (g, s)->{
+            if(s.getPopulationState().getRegionTeamCount() == null) {g.writeNull();}
+            else {g.writeNumber(s.getPopulationState().getRegionTeamCount());}
+        }),
+        Map.entry("leagueRank", (g, s)->{
+            if(s.getTeamState().getLeagueRank() == null) {g.writeNull();}
+            else {g.writeNumber(s.getTeamState().getLeagueRank());}
+        }),
+        Map.entry("leagueTeamCount", (g, s)->{
+            if(s.getPopulationState().getLeagueTeamCount() == null) {g.writeNull();}
+            else {g.writeNumber(s.getPopulationState().getLeagueTeamCount());}
+        }),
+        Map.entry("race", (g, s)->{
+            if(s.getRace() == null) {g.writeNull();}
+            else {g.writeString(s.getRace().toString());}
+        }),
+        Map.entry("season", (g, s)->g.writeNumber(s.getSeason()))
+    );
+
     public LadderTeamStateCollectionToArraySerializer()
     {
-        super(Map.ofEntries(
-            Map.entry("teamId", (g, s)->g.writeNumber(s.getTeamState().getTeamId())),
-            Map.entry("dateTime", (g, s)->g.writeString(s.getTeamState().getDateTime().toString())),
-            Map.entry("wins", (g, s)->{
-                if(s.getTeamState().getWins() == null) {g.writeNull();}
-                else{g.writeNumber(s.getTeamState().getWins());}
-            }),
-            Map.entry("games", (g, s)->g.writeNumber(s.getTeamState().getGames())),
-            Map.entry("rating", (g, s)->g.writeNumber(s.getTeamState().getRating())),
-            Map.entry("leagueType", (g, s)->g.writeNumber(s.getLeague().getType().getId())),
-            Map.entry("queueType", (g, s)->g.writeNumber(s.getLeague().getQueueType().getId())),
-            Map.entry("teamType", (g, s)->g.writeNumber(s.getLeague().getTeamType().getId())),
-            Map.entry("tier", (g, s)->{
-                if(s.getTier() == null) {g.writeNull();}
-                else {g.writeNumber(s.getTier().getId());}
-            }),
-            Map.entry("globalRank", (g, s)->{
-                if(s.getTeamState().getGlobalRank() == null) {g.writeNull();}
-                else {g.writeNumber(s.getTeamState().getGlobalRank());}
-            }),
-            Map.entry("globalTeamCount", (g, s)->{
-                if(s.getPopulationState().getGlobalTeamCount() == null) {g.writeNull();}
-                else {g.writeNumber(s.getPopulationState().getGlobalTeamCount());}
-            }),
-            Map.entry("regionRank", (g, s)->{
-                if(s.getTeamState().getRegionRank() == null) {g.writeNull();}
-                else {g.writeNumber(s.getTeamState().getRegionRank());}
-            }),
-            Map.entry("regionTeamCount", (g, s)->{
-                if(s.getPopulationState().getRegionTeamCount() == null) {g.writeNull();}
-                else {g.writeNumber(s.getPopulationState().getRegionTeamCount());}
-            }),
-            Map.entry("leagueRank", (g, s)->{
-                if(s.getTeamState().getLeagueRank() == null) {g.writeNull();}
-                else {g.writeNumber(s.getTeamState().getLeagueRank());}
-            }),
-            Map.entry("leagueTeamCount", (g, s)->{
-                if(s.getPopulationState().getLeagueTeamCount() == null) {g.writeNull();}
-                else {g.writeNumber(s.getPopulationState().getLeagueTeamCount());}
-            }),
-            Map.entry("race", (g, s)->{
-                if(s.getRace() == null) {g.writeNull();}
-                else {g.writeString(s.getRace().toString());}
-            }),
-            Map.entry("season", (g, s)->g.writeNumber(s.getSeason()))
-        ));
+        super(MAPPERS);
     }
 
 }
@@ -0,0 +1,38 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.config.convert.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * The same as {@link LadderTeamStateCollectionToArraySerializer}, but sequential fields are delta encoded.
+ * dateTime is written as epoch milliseconds.
+ */
+public class LadderTeamStateCollectionToDeltaArraySerializer
+extends SimpleCollectionToFieldArraySerializer<LadderTeamState>
+{
+
+    public static final Map<String, ToLongFunction<LadderTeamState>> DELTA_MAPPERS = Map.of(
+        "teamId", s->s.getTeamState().getTeamId(),
+        "dateTime", s->s.getTeamState().getDateTime().toInstant().toEpochMilli(),
+        "games", s->s.getTeamState().getGames(),
+        "rating", s->s.getTeamState().getRating(),
+        "season", LadderTeamState::getSeason
+    );
+
+    public static final Map<String, ThrowingBiConsumer<JsonGenerator, LadderTeamState>> MAPPERS =
+        LadderTeamStateCollectionToArraySerializer.MAPPERS.entrySet().stream()
+            .filter(e->!DELTA_MAPPERS.containsKey(e.getKey()))
+            .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+
+    public LadderTeamStateCollectionToDeltaArraySerializer()
+    {
+        super(MAPPERS, DELTA_MAPPERS);
+    }
+
+}
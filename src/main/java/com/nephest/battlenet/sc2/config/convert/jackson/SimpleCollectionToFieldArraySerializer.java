@@ -10,17 +10,33 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.ToLongFunction;
 
 public class SimpleCollectionToFieldArraySerializer<E>
 extends StdSerializer<Collection<? extends E>>
 {
 
     private final Map<String, ThrowingBiConsumer<JsonGenerator, E>> mappers;
+    private final Map<String, ToLongFunction<E>> deltaMappers;
 
     public SimpleCollectionToFieldArraySerializer(Map<String, ThrowingBiConsumer<JsonGenerator, E>> mappers)
+    {
+        this(mappers, Map.of());
+    }
+
+    /**
+     * @param deltaMappers fields that are written as deltas of the previous element, the first element is
+     *                     written as is. Sequential values(ids, timestamps, counters) become short numbers this way.
+     */
+    public SimpleCollectionToFieldArraySerializer
+    (
+        Map<String, ThrowingBiConsumer<JsonGenerator, E>> mappers,
+        Map<String, ToLongFunction<E>> deltaMappers
+    )
     {
         super((Class<Collection<? extends E>>) null);
         this.mappers = mappers;
+        this.deltaMappers = deltaMappers;
     }
 
     protected SimpleCollectionToFieldArraySerializer
@@ -28,6 +44,7 @@ extends StdSerializer<Collection<? extends E>>
     {
         super(t);
         this.mappers = mappers;
+        this.deltaMappers = Map.of();
     }
 
     @Override
@@ -38,6 +55,8 @@ extends StdSerializer<Collection<? extends E>>
         jsonGenerator.writeStartObject();
         for(Map.Entry<String, ThrowingBiConsumer<JsonGenerator, E>> e : mappers.entrySet())
             writeArray(jsonGenerator, e.getKey(), collection, e.getValue());
+        for(Map.Entry<String, ToLongFunction<E>> e : deltaMappers.entrySet())
+            writeDeltaArray(jsonGenerator, e.getKey(), collection, e.getValue());
         jsonGenerator.writeEndObject();
     }
 
@@ -55,4 +74,24 @@ extends StdSerializer<Collection<? extends E>>
         jsonGenerator.writeEndArray();
     }
 
+    private static <E> void writeDeltaArray
+    (
+        JsonGenerator jsonGenerator,
+        String name,
+        Collection<? extends E> collection,
+        ToLongFunction<E> mapper
+    )
+    throws IOException
+    {
+        jsonGenerator.writeArrayFieldStart(name);
+        long prev = 0;
+        for(E e : collection)
+        {
+            long val = mapper.applyAsLong(e);
+            jsonGenerator.writeNumber(val - prev);
+            prev = val;
+        }
+        jsonGenerator.writeEndArray();
+    }
+
 }
@@ -0,0 +1,101 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.config.filter;
+
+import com.nephest.battlenet.sc2.web.service.UpdateService;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * <p>
+ * Conditional GET support for endpoints whose data is changed by the ladder update cycle only. Weak ETags are
+ * derived from the last internal update of {@link UpdateService} and the request URI with query, so
+ * revalidation requests are answered with 304 without reaching controllers or the DB. The filter is
+ * registered before Spring Security, so cached endpoints must be public; remember-me logins are not
+ * performed for requests answered by this filter.
+ * </p>
+ * <p>
+ * The cache lifetime is the time left until the next expected update, calculated from the last update
+ * duration. Data that is changed right after an update cycle(map stats, season state) is revalidated after
+ * the next cycle.
+ * </p>
+ */
+public class UpdateCacheFilter
+implements Filter
+{
+
+    private final UpdateService updateService;
+    private final List<String> patterns;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * @param patterns ant path patterns of cached endpoints, relative to the context path
+     */
+    public UpdateCacheFilter(UpdateService updateService, String... patterns)
+    {
+        this.updateService = updateService;
+        this.patterns = List.of(patterns);
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+    throws IOException, ServletException
+    {
+        HttpServletRequest hreq = (HttpServletRequest) req;
+        HttpServletResponse hresp = (HttpServletResponse) resp;
+        Instant lastUpdate = updateService.getLastInternalUpdate();
+        if(lastUpdate == null || !isCached(hreq))
+        {
+            chain.doFilter(req, resp);
+            return;
+        }
+
+        hresp.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(getMaxAge(lastUpdate)).getHeaderValue());
+        ServletWebRequest webRequest = new ServletWebRequest(hreq, hresp);
+        if(webRequest.checkNotModified(createETag(hreq, lastUpdate), lastUpdate.toEpochMilli())) return;
+
+        chain.doFilter(req, resp);
+    }
+
+    private boolean isCached(HttpServletRequest req)
+    {
+        if(!req.getMethod().equals("GET") && !req.getMethod().equals("HEAD")) return false;
+
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        for(String pattern : patterns) if(pathMatcher.match(pattern, path)) return true;
+        return false;
+    }
+
+    private Duration getMaxAge(Instant lastUpdate)
+    {
+        Duration left = updateService.calculateUpdateDuration(null)
+            .minus(Duration.between(lastUpdate, Instant.now()));
+        return left.isNegative() ? Duration.ZERO : left;
+    }
+
+    public static String createETag(HttpServletRequest req, Instant lastUpdate)
+    {
+        String version = lastUpdate.toEpochMilli()
+            + req.getRequestURI()
+            + (req.getQueryString() == null ? "" : "?" + req.getQueryString());
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+}
@@ -3,10 +3,13 @@
 
 package com.nephest.battlenet.sc2.config.security;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Base64;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -20,6 +23,10 @@ import reactor.util.function.Tuples;
 /*
     This class synchronizes concurrent auto logins and reuses the authentication object for subsequent calls,
     which prevents remember me token invalidation when serving multiple API calls concurrently.
+    Logins are synchronized by striped locks of remember me series, so logins of different users are not blocked
+    by each other, while concurrent logins of the same user are still coalesced. Cached authentications are read
+    without locking. Expired authentications are evicted by auto logins, at most once per cache TTL, so eviction
+    doesn't depend on schedulers or profiles.
  */
 
 public class ConcurrentPersistentTokenBasedRememberMeService
@@ -27,12 +34,12 @@ implements RememberMeServices, LogoutHandler
 {
 
     public static final int AUTH_CACHE_TTL_SECONDS = 60;
+    public static final int LOCK_STRIPE_COUNT = 64;
 
-    private final Object AUTH_CACHE_LOCK = new Object();
+    private final Object[] locks = new Object[LOCK_STRIPE_COUNT];
 
-    private final Map<String, Tuple2<Authentication, Instant>> AUTH_CACHE = new HashMap<>();
-
-    private boolean autoClean = true;
+    private final Map<String, Tuple2<Authentication, Instant>> authCache = new ConcurrentHashMap<>();
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
 
     private final PersistentTokenBasedRememberMeServices persistentTokenBasedRememberMeServices;
 
@@ -40,30 +47,64 @@ implements RememberMeServices, LogoutHandler
     (PersistentTokenBasedRememberMeServices persistentTokenBasedRememberMeServices)
     {
         this.persistentTokenBasedRememberMeServices = persistentTokenBasedRememberMeServices;
+        for(int i = 0; i < locks.length; i++) locks[i] = new Object();
     }
 
     @Override
     public Authentication autoLogin
     (javax.servlet.http.HttpServletRequest request, javax.servlet.http.HttpServletResponse response)
     {
-        synchronized (AUTH_CACHE_LOCK)
+        removeExpiredIfNeeded(System.currentTimeMillis());
+        String cookie = request.getCookies() == null ? null : Arrays.stream(request.getCookies())
+            .filter(c->c.getName().equals(SecurityConfig.REMEMBER_ME_COOKIE_NAME))
+            .map(Cookie::getValue)
+            .findFirst()
+            .orElse(null);
+        if(cookie == null) return newAuth(request, response, null);
+
+        Authentication cached = getCachedAuthentication(cookie);
+        if(cached != null) return cached;
+
+        synchronized (getLock(cookie))
         {
-            String cookie = request.getCookies() == null ? null : Arrays.stream(request.getCookies())
-                .filter(c->c.getName().equals(SecurityConfig.REMEMBER_ME_COOKIE_NAME))
-                .map(Cookie::getValue)
-                .findFirst()
-                .orElse(null);
-            if(cookie == null) return newAuth(request, response, null);
-
-            if(isAutoClean()) removeExpired();
-            Tuple2<Authentication, Instant> authentication = AUTH_CACHE.get(cookie);
-            if (authentication != null && authentication.getT2().isAfter(Instant.now().minusSeconds(AUTH_CACHE_TTL_SECONDS)))
-                return authentication.getT1();
+            //a concurrent login of the same series may have completed while waiting for the lock
+            cached = getCachedAuthentication(cookie);
+            if(cached != null) return cached;
 
             return newAuth(request, response, cookie);
         }
     }
 
+    private Authentication getCachedAuthentication(String cookie)
+    {
+        Tuple2<Authentication, Instant> authentication = authCache.get(cookie);
+        return authentication != null && authentication.getT2().isAfter(Instant.now().minusSeconds(AUTH_CACHE_TTL_SECONDS))
+            ? authentication.getT1()
+            : null;
+    }
+
+    /*
+        Token rotation keeps the series, so all cookies of the same login share a lock.
+     */
+    private Object getLock(String cookie)
+    {
+        return locks[Math.floorMod(getSeries(cookie).hashCode(), locks.length)];
+    }
+
+    static String getSeries(String cookie)
+    {
+        try
+        {
+            String decoded = new String(Base64.getDecoder().decode(cookie), StandardCharsets.UTF_8);
+            int ix = decoded.indexOf(':');
+            return ix < 0 ? cookie : decoded.substring(0, ix);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return cookie;
+        }
+    }
+
     @Override
     public void loginFail(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
     {
@@ -95,7 +136,7 @@ implements RememberMeServices, LogoutHandler
         Authentication newAuth = persistentTokenBasedRememberMeServices.autoLogin(request, cookieResponse);
         if(newAuth == null) return null;
 
-        if(oldCookie != null) AUTH_CACHE.put(oldCookie, Tuples.of(newAuth, Instant.now()));
+        if(oldCookie != null) authCache.put(oldCookie, Tuples.of(newAuth, Instant.now()));
         cacheAuthentication(cookieResponse, newAuth);
         return newAuth;
     }
@@ -107,35 +148,39 @@ implements RememberMeServices, LogoutHandler
             .map(Cookie::getValue)
             .findFirst()
             .orElseThrow();
-        AUTH_CACHE.put(newCookie, Tuples.of(authentication, Instant.now()));
+        authCache.put(newCookie, Tuples.of(authentication, Instant.now()));
     }
 
-    public boolean isAutoClean()
+    public String getKey()
     {
-        return autoClean;
+        return persistentTokenBasedRememberMeServices.getKey();
     }
 
-    public void setAutoClean(boolean autoClean)
+    public int getCacheSize()
     {
-        this.autoClean = autoClean;
+        return authCache.size();
     }
 
-    public String getKey()
+    public void removeExpired()
     {
-        return persistentTokenBasedRememberMeServices.getKey();
+        Instant to = Instant.now().minusSeconds(AUTH_CACHE_TTL_SECONDS);
+        authCache.values().removeIf(v->v.getT2().isBefore(to));
     }
 
-    public void removeExpired()
+    /**
+     * Removes expired authentications if the previous eviction happened at least {@link #AUTH_CACHE_TTL_SECONDS}
+     * ago. Only one of the concurrent callers evicts.
+     *
+     * @param now current epoch millis
+     * @return true if expired authentications were removed by this call
+     */
+    boolean removeExpiredIfNeeded(long now)
     {
-        synchronized (AUTH_CACHE_LOCK)
-        {
-            Instant to = Instant.now().minusSeconds(AUTH_CACHE_TTL_SECONDS);
-            String[] expired = AUTH_CACHE.entrySet().stream()
-                .filter(e->e.getValue().getT2().isBefore(to))
-                .map(Map.Entry::getKey)
-                .toArray(String[]::new);
-            for(String key : expired) AUTH_CACHE.remove(key);
-        }
+        long last = lastEviction.get();
+        if(now - last < AUTH_CACHE_TTL_SECONDS * 1000L || !lastEviction.compareAndSet(last, now)) return false;
+
+        removeExpired();
+        return true;
     }
 
 }
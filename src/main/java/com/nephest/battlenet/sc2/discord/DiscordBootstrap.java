@@ -42,11 +42,14 @@ import discord4j.rest.RestClient;
 import discord4j.rest.http.client.ClientException;
 import discord4j.rest.service.ApplicationService;
 import discord4j.rest.util.Color;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -75,6 +78,9 @@ public class DiscordBootstrap
     public static final String THUMBNAIL = "https://www.nephest.com/sc2/static/icon/misc/favicon-32.png";
     public static final String UNEXPECTED_ERROR_MESSAGE =
         "Unexpected error occurred. Please report this bug, links are in the bot profile";
+    public static final String BUSY_MESSAGE = "The bot is busy at the moment. Please try again later";
+    public static final String TIMEOUT_MESSAGE = "The request took too long to complete. Please try again later";
+    public static final Duration AUTO_COMPLETE_TIMEOUT = Duration.ofSeconds(2);
     public static final Color DEFAULT_COLOR = Color.of(0, 123, 255);
     public static final Map<Region, String> REGION_EMOJIS = Map.of
     (
@@ -123,6 +129,7 @@ public class DiscordBootstrap
         List<UserCommand> userInteractionHandlers,
         List<AutoComplete> autoCompleteHandlers,
         GuildEmojiStore guildEmojiStore,
+        DiscordCommandExecutor executor,
         String token,
         Long guild
     )
@@ -132,9 +139,9 @@ public class DiscordBootstrap
             .login()
             .block();
 
-        registerCommands(handlers, ChatInputInteractionEvent.class, ApplicationCommand.Type.CHAT_INPUT, client, guild, true);
-        registerCommands(userInteractionHandlers, UserInteractionEvent.class, ApplicationCommand.Type.USER, client, guild, false);
-        registerAutoCompleteHandlers(autoCompleteHandlers, client);
+        registerCommands(handlers, ChatInputInteractionEvent.class, ApplicationCommand.Type.CHAT_INPUT, client, executor, guild, true);
+        registerCommands(userInteractionHandlers, UserInteractionEvent.class, ApplicationCommand.Type.USER, client, executor, guild, false);
+        registerAutoCompleteHandlers(autoCompleteHandlers, client, executor);
         client.on(ReconnectEvent.class, (e)->updatePresence(client));
         updatePresence(client).subscribe();
         client.on(EmojisUpdateEvent.class, guildEmojiStore::removeGuildEmojis).subscribe();
@@ -147,14 +154,25 @@ public class DiscordBootstrap
     }
 
     private static void registerAutoCompleteHandlers
-    (Collection<? extends AutoComplete> handlers, GatewayDiscordClient client)
+    (Collection<? extends AutoComplete> handlers, GatewayDiscordClient client, DiscordCommandExecutor executor)
     {
         Map<String, AutoComplete> handlerMap = handlers.stream()
             .collect(Collectors.toMap(NamedCommand::getCommandName, Function.identity()));
         client.on
         (
             ChatInputAutoCompleteEvent.class,
-            e->e.respondWithSuggestions(handlerMap.get(e.getCommandName()).autoComplete(e))
+            e->executor.execute
+                (
+                    e.getCommandName() + "-autocomplete",
+                    AUTO_COMPLETE_TIMEOUT,
+                    ()->Mono.fromCallable(()->handlerMap.get(e.getCommandName()).autoComplete(e))
+                )
+                .onErrorResume(t->
+                {
+                    LOG.warn(t.getMessage(), t);
+                    return Mono.just(List.of());
+                })
+                .flatMap(e::respondWithSuggestions)
         ).subscribe();
     }
 
@@ -164,6 +182,7 @@ public class DiscordBootstrap
         Class<T> clazz,
         discord4j.core.object.command.ApplicationCommand.Type type,
         GatewayDiscordClient client,
+        DiscordCommandExecutor executor,
         Long guild,
         boolean metaOptions
     )
@@ -175,13 +194,13 @@ public class DiscordBootstrap
 
         Map<String, DiscordApplicationCommand<T>> handlerMap = handlers.stream()
             .collect(Collectors.toMap(DiscordApplicationCommand::getCommandName, Function.identity()));
-        client.on(clazz, evt->handle(handlerMap, evt)).subscribe();
+        client.on(clazz, evt->handle(handlerMap, executor, evt)).subscribe();
     }
 
 
 
     private static <T extends ApplicationCommandInteractionEvent> Mono<Message> handle
-    (Map<String, DiscordApplicationCommand<T>> handlerMap, T evt)
+    (Map<String, DiscordApplicationCommand<T>> handlerMap, DiscordCommandExecutor executor, T evt)
     {
         DiscordApplicationCommand<T> handler = handlerMap.get(evt.getCommandName());
         boolean ephemeral = getEphemeral(evt, handler);
@@ -196,9 +215,20 @@ public class DiscordBootstrap
         }
         return evt.deferReply()
             .withEphemeral(ephemeral)
-            .then(Mono.defer(()->handler.handle(evt)))
+            .then(executor.execute(evt.getCommandName(), ()->handler.handle(evt)))
             .onErrorResume((t)->true, (t)->
             {
+                if(t instanceof RejectedExecutionException)
+                {
+                    LOG.warn(t.getMessage());
+                    return evt.createFollowup(BUSY_MESSAGE);
+                }
+                if(t instanceof TimeoutException)
+                {
+                    LOG.warn("Command timed out: {}", evt.getCommandName());
+                    return evt.createFollowup(TIMEOUT_MESSAGE);
+                }
+
                 LOG.error(t.getMessage(), t);
                 /*
                     A client exception could happen because of the following reasons:
@@ -0,0 +1,185 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.discord;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * <p>
+ * Moves blocking command work(DB queries, mostly) off the discord gateway event loop. Commands are executed by
+ * a dedicated bounded scheduler, so a slow command doesn't delay unrelated interactions.
+ * </p>
+ * <p>
+ * Every command has its own concurrency limit, excess requests are rejected with
+ * {@link RejectedExecutionException} rather than queued, so a single heavy command can't occupy all threads.
+ * Commands that take longer than the timeout fail with {@link TimeoutException}. A timed out command keeps its
+ * permit until its blocking work is actually finished, the thread is still busy, so it still counts towards the
+ * limit.
+ * </p>
+ */
+@Component
+@Discord
+public class DiscordCommandExecutor
+{
+
+    public static final int THREADS = 10;
+    public static final int QUEUE_SIZE = 100;
+    public static final int COMMAND_CONCURRENCY_MAX = 5;
+    public static final Duration TIMEOUT = Duration.ofSeconds(60);
+    public static final String THREAD_NAME = "discord-cmd";
+    public static final String QUEUE_METRIC_NAME = "discord.command.queue";
+    public static final String ACTIVE_METRIC_NAME = "discord.command.active";
+    public static final String REJECTED_METRIC_NAME = "discord.command.rejected";
+    public static final String TIMEOUT_METRIC_NAME = "discord.command.timeout";
+
+    private static final class CommandState
+    {
+
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final Counter rejected;
+        private final Counter timeouts;
+
+        private CommandState(String command, int concurrency, MeterRegistry meterRegistry)
+        {
+            this.permits = new Semaphore(concurrency);
+            Gauge.builder(QUEUE_METRIC_NAME, queued, AtomicInteger::get)
+                .tag("command", command)
+                .register(meterRegistry);
+            Gauge.builder(ACTIVE_METRIC_NAME, active, AtomicInteger::get)
+                .tag("command", command)
+                .register(meterRegistry);
+            this.rejected = Counter.builder(REJECTED_METRIC_NAME)
+                .tag("command", command)
+                .register(meterRegistry);
+            this.timeouts = Counter.builder(TIMEOUT_METRIC_NAME)
+                .tag("command", command)
+                .register(meterRegistry);
+        }
+
+    }
+
+    private final Map<String, CommandState> states = new ConcurrentHashMap<>();
+    private final Scheduler scheduler;
+    private final int commandConcurrency;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public DiscordCommandExecutor(MeterRegistry meterRegistry)
+    {
+        this(THREADS, QUEUE_SIZE, COMMAND_CONCURRENCY_MAX, TIMEOUT, meterRegistry);
+    }
+
+    public DiscordCommandExecutor
+    (
+        int threads,
+        int queueSize,
+        int commandConcurrency,
+        Duration timeout,
+        MeterRegistry meterRegistry
+    )
+    {
+        this.scheduler = Schedulers.newBoundedElastic(threads, queueSize, THREAD_NAME);
+        this.commandConcurrency = commandConcurrency;
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    public void destroy()
+    {
+        scheduler.dispose();
+    }
+
+    public <T> Mono<T> execute(String command, Supplier<Mono<T>> task)
+    {
+        return execute(command, timeout, task);
+    }
+
+    /**
+     * Assembles and subscribes to the task on the command scheduler. Blocking code must be executed inside the
+     * supplier, not before it.
+     *
+     * @param command command name, used as a concurrency and metric key
+     * @param timeout max execution time, including the time spent in the queue
+     * @param task task supplier
+     * @return mono that executes the task on the command scheduler
+     * @param <T> result type
+     */
+    public <T> Mono<T> execute(String command, Duration timeout, Supplier<Mono<T>> task)
+    {
+        CommandState state = states
+            .computeIfAbsent(command, c->new CommandState(c, commandConcurrency, meterRegistry));
+        return Mono.defer(()->
+        {
+            if(!state.permits.tryAcquire())
+            {
+                state.rejected.increment();
+                return Mono.error(new RejectedExecutionException("Too many concurrent commands: " + command));
+            }
+
+            state.queued.incrementAndGet();
+            AtomicBoolean started = new AtomicBoolean();
+            //the task is finished when both the supplier has returned and the task mono is terminated or cancelled
+            AtomicInteger pending = new AtomicInteger(2);
+            Runnable finish = ()->
+            {
+                if(pending.decrementAndGet() == 0)
+                {
+                    state.active.decrementAndGet();
+                    state.permits.release();
+                }
+            };
+            return Mono.defer(()->
+                {
+                    //cancelled while queued
+                    if(!started.compareAndSet(false, true)) return Mono.<T>empty();
+
+                    state.queued.decrementAndGet();
+                    state.active.incrementAndGet();
+                    try
+                    {
+                        return task.get();
+                    }
+                    finally
+                    {
+                        finish.run();
+                    }
+                })
+                .doFinally(s->finish.run())
+                .subscribeOn(scheduler)
+                .timeout(timeout)
+                .doOnError(TimeoutException.class, t->state.timeouts.increment())
+                .doFinally(s->
+                {
+                    //a started task releases the permit when it's finished
+                    if(started.compareAndSet(false, true))
+                    {
+                        state.queued.decrementAndGet();
+                        state.permits.release();
+                    }
+                });
+        });
+    }
+
+}
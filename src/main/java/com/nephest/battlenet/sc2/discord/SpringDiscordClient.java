@@ -28,12 +28,13 @@ public class SpringDiscordClient
         List<UserCommand> userInteractionHandlers,
         List<AutoComplete> autoCompleteHandlers,
         GuildEmojiStore guildEmojiStore,
+        DiscordCommandExecutor executor,
         @Value("${discord.token:}") String token,
         @Value("${discord.guild:}") Long guild
     )
     {
         this.client = DiscordBootstrap
-            .load(handlers, userInteractionHandlers, autoCompleteHandlers, guildEmojiStore, token, guild);
+            .load(handlers, userInteractionHandlers, autoCompleteHandlers, guildEmojiStore, executor, token, guild);
     }
 
     @PreDestroy
@@ -15,7 +15,6 @@ import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderCharacterDAO;
 import com.nephest.battlenet.sc2.util.MiscUtil;
 import discord4j.core.event.domain.interaction.ApplicationCommandInteractionEvent;
 import discord4j.core.object.entity.Message;
-import java.time.OffsetDateTime;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -93,7 +92,7 @@ public class Summary1v1Command
             .find
                 (
                     characters.keySet().toArray(Long[]::new),
-                    OffsetDateTime.now().minusDays(depth),
+                    Math.toIntExact(depth),
                     race == null ? Race.EMPTY_RACE_ARRAY : new Race[]{race}
                 ).stream()
             .sorted(DEFAULT_COMPARATOR)
@@ -0,0 +1,70 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * Ladder discovery scan state of a region season. Ladder ids below {@link #getNext() next} were probed:
+ * found ladders are saved in the DB, the rest of the ids are empty, except the {@link #getPending() pending}
+ * ids that failed with unexpected errors and must be probed again. Ids starting from {@code next} are not
+ * probed yet.
+ * </p>
+ */
+public class LadderDiscoveryFrontier
+{
+
+    private final int season;
+    private final long next;
+    private final SortedSet<Long> pending;
+
+    public LadderDiscoveryFrontier(int season, long next, Collection<Long> pending)
+    {
+        this.season = season;
+        this.next = next;
+        this.pending = Collections.unmodifiableSortedSet(new TreeSet<>(pending));
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof LadderDiscoveryFrontier)) return false;
+        LadderDiscoveryFrontier that = (LadderDiscoveryFrontier) o;
+        return season == that.season && next == that.next && pending.equals(that.pending);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(season, next, pending);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LadderDiscoveryFrontier{" + "season=" + season + ", next=" + next + ", pending=" + pending + '}';
+    }
+
+    public int getSeason()
+    {
+        return season;
+    }
+
+    public long getNext()
+    {
+        return next;
+    }
+
+    public SortedSet<Long> getPending()
+    {
+        return pending;
+    }
+
+}
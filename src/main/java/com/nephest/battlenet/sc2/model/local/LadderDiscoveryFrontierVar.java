@@ -0,0 +1,61 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local;
+
+import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Serialized as {@code season:next:pendingId1,pendingId2}
+ */
+public class LadderDiscoveryFrontierVar
+extends Var<LadderDiscoveryFrontier>
+{
+
+    public static final String DELIMITER = ":";
+    public static final String PENDING_DELIMITER = ",";
+
+    public LadderDiscoveryFrontierVar(VarDAO varDAO, String key, boolean load)
+    {
+        super
+        (
+            varDAO,
+            key,
+            LadderDiscoveryFrontierVar::serialize,
+            LadderDiscoveryFrontierVar::deserialize,
+            load
+        );
+    }
+
+    public LadderDiscoveryFrontierVar(VarDAO varDAO, String key)
+    {
+        this(varDAO, key, true);
+    }
+
+    public static String serialize(LadderDiscoveryFrontier frontier)
+    {
+        if(frontier == null) return null;
+
+        return frontier.getSeason() + DELIMITER + frontier.getNext() + DELIMITER
+            + frontier.getPending().stream().map(String::valueOf).collect(Collectors.joining(PENDING_DELIMITER));
+    }
+
+    public static LadderDiscoveryFrontier deserialize(String str)
+    {
+        if(str == null || str.isEmpty()) return null;
+
+        String[] split = str.split(DELIMITER, -1);
+        return new LadderDiscoveryFrontier
+        (
+            Integer.parseInt(split[0]),
+            Long.parseLong(split[1]),
+            split[2].isEmpty()
+                ? List.of()
+                : Arrays.stream(split[2].split(PENDING_DELIMITER)).map(Long::valueOf).collect(Collectors.toList())
+        );
+    }
+
+}
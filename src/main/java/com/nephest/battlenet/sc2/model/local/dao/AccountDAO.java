@@ -11,8 +11,12 @@ import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
 import com.nephest.battlenet.sc2.model.util.PostgreSQLUtils;
 import com.nephest.battlenet.sc2.web.service.BlizzardPrivacyService;
 import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.convert.ConversionService;
@@ -23,6 +27,7 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import reactor.util.function.Tuple2;
 
 @Repository
 public class AccountDAO
@@ -94,6 +99,59 @@ public class AccountDAO
         + "UNION "
         + "SELECT id FROM inserted";
 
+    private static final String MERGE_WITH_CHARACTERS_QUERY =
+        "WITH "
+        + "vals AS (VALUES :accounts), "
+        + "existing AS "
+        + "("
+            + "SELECT " + STD_SELECT
+            + "FROM vals v(partition, battle_tag, region, realm, battlenet_id) "
+            + "INNER JOIN account USING(partition, battle_tag)"
+        + "), "
+        + "missing AS "
+        + "("
+            + "SELECT v.partition, v.battle_tag, v.region, v.realm, v.battlenet_id "
+            + "FROM vals v(partition, battle_tag, region, realm, battlenet_id) "
+            + "LEFT JOIN existing ON v.partition = existing.\"account.partition\" "
+                + "AND v.battle_tag = existing.\"account.battle_tag\" "
+            + "WHERE existing.\"account.id\" IS NULL"
+        + "), "
+        + "selected_by_character AS "
+        + "("
+            + "SELECT DISTINCT ON(player_character.account_id) "
+            + "player_character.account_id, missing.partition, missing.battle_tag "
+            + "FROM missing "
+            + "INNER JOIN player_character USING(region, realm, battlenet_id) "
+            + "ORDER BY player_character.account_id, missing.battle_tag"
+        + "), "
+        + "updated AS "
+        + "("
+            + "UPDATE account "
+            + "SET battle_tag = selected_by_character.battle_tag "
+            + "FROM selected_by_character "
+            + "WHERE account.id = selected_by_character.account_id "
+            + "AND account.partition = selected_by_character.partition "
+            + "RETURNING " + STD_SELECT
+        + "), "
+        + "inserted AS "
+        + "("
+            + "INSERT INTO account "
+            + "(partition, battle_tag) "
+            + "SELECT missing.partition, missing.battle_tag "
+            + "FROM missing "
+            + "LEFT JOIN updated ON missing.partition = updated.\"account.partition\" "
+                + "AND missing.battle_tag = updated.\"account.battle_tag\" "
+            + "WHERE updated.\"account.id\" IS NULL "
+            + "ON CONFLICT(partition, battle_tag) DO UPDATE SET "
+            + "partition=excluded.partition "
+            + "RETURNING " + STD_SELECT
+        + ") "
+        + "SELECT * FROM existing "
+        + "UNION "
+        + "SELECT * FROM updated "
+        + "UNION "
+        + "SELECT * FROM inserted";
+
     private static final String ANONYMIZE_EXPIRED_ACCOUNTS =
         "UPDATE account "
         + "SET battle_tag = '" + BasePlayerCharacter.DEFAULT_FAKE_NAME + "#' "
@@ -145,6 +203,26 @@ public class AccountDAO
         + "ORDER BY MAX(rating_max) DESC "
         + "LIMIT :limit";
 
+    private static final String FIND_BATTLE_TAG_WEIGHTS_BY_SEASON =
+        "SELECT account.battle_tag, MAX(team.rating) "
+        + "FROM team "
+        + "INNER JOIN team_member ON team.id = team_member.team_id "
+        + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
+        + "INNER JOIN account ON player_character.account_id = account.id "
+        + "WHERE team.season = :season "
+        + "GROUP BY account.battle_tag";
+
+    private static final String FIND_BATTLE_TAG_WEIGHTS_BY_SEASON_AND_TEAM_STATE_TIMESTAMP =
+        "SELECT account.battle_tag, MAX(team.rating) "
+        + "FROM team_state "
+        + "INNER JOIN team ON team_state.team_id = team.id "
+        + "INNER JOIN team_member ON team.id = team_member.team_id "
+        + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
+        + "INNER JOIN account ON player_character.account_id = account.id "
+        + "WHERE team_state.timestamp >= :from "
+        + "AND team.season = :season "
+        + "GROUP BY account.battle_tag";
+
     private final NamedParameterJdbcTemplate template;
     private final ConversionService conversionService;
 
@@ -214,6 +292,43 @@ public class AccountDAO
     }
 
 
+    /**
+     * <p>
+     *     Batch version of {@link #merge(Account, PlayerCharacter)}. Accounts are deduplicated and sorted by
+     *     their natural id to ensure the consistent lock order for concurrent transactions. Only the first
+     *     character of a duplicated account is used to find its previous BattleTag. Ids of all original accounts
+     *     are updated.
+     * </p>
+     * @param accounts accounts and their characters
+     * @return original accounts
+     */
+    public Account[] merge(List<Tuple2<Account, PlayerCharacter>> accounts)
+    {
+        if(accounts.isEmpty()) return new Account[0];
+
+        List<Object[]> data = accounts.stream()
+            .sorted(Comparator.comparing(Tuple2::getT1, Account.NATURAL_ID_COMPARATOR))
+            .collect(Collectors.toMap(Tuple2::getT1, Tuple2::getT2, (l, r)->l, LinkedHashMap::new))
+            .entrySet().stream()
+            .map(e->new Object[]{
+                conversionService.convert(e.getKey().getPartition(), Integer.class),
+                e.getKey().getBattleTag(),
+                conversionService.convert(e.getValue().getRegion(), Integer.class),
+                e.getValue().getRealm(),
+                e.getValue().getBattlenetId()
+            })
+            .collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("accounts", data);
+        List<Account> mergedAccounts = template.query(MERGE_WITH_CHARACTERS_QUERY, params, STD_ROW_MAPPER);
+
+        return DAOUtils.updateOriginals
+        (
+            accounts.stream().map(Tuple2::getT1).toArray(Account[]::new),
+            mergedAccounts,
+            (o, m)->o.setId(m.getId())
+        );
+    }
+
     public int removeEmptyAccounts()
     {
         return template.update(REMOVE_EMPTY_ACCOUNTS, new MapSqlParameterSource());
@@ -265,6 +380,39 @@ public class AccountDAO
         return template.queryForList(FIND_BATTLE_TAGS_BY_BATTLE_TAG_LIKE, params, String.class);
     }
 
+    /**
+     * Finds BattleTags of accounts that played in the provided season.
+     *
+     * @param season season
+     * @return BattleTags mapped to their max team rating in the season
+     */
+    public Map<String, Integer> findBattleTagWeights(int season)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource("season", season);
+        return template.query(FIND_BATTLE_TAG_WEIGHTS_BY_SEASON, params, DAOUtils.STRING_INT_MAP_EXTRACTOR);
+    }
+
+    /**
+     * Finds BattleTags of accounts whose teams of the provided season changed after the provided timestamp.
+     * Team changes are tracked by team snapshots.
+     *
+     * @param season season
+     * @param from min team snapshot timestamp, inclusive
+     * @return BattleTags mapped to their max team rating in the season
+     */
+    public Map<String, Integer> findBattleTagWeights(int season, OffsetDateTime from)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("season", season)
+            .addValue("from", from);
+        return template.query
+        (
+            FIND_BATTLE_TAG_WEIGHTS_BY_SEASON_AND_TEAM_STATE_TIMESTAMP,
+            params,
+            DAOUtils.STRING_INT_MAP_EXTRACTOR
+        );
+    }
+
     private MapSqlParameterSource createParameterSource(Account account)
     {
         return new MapSqlParameterSource()
@@ -13,8 +13,8 @@ import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.convert.ConversionService;
@@ -59,7 +59,7 @@ public class ClanDAO
 
     private static final String MERGE_QUERY =
         "WITH "
-        + "vals AS (VALUES :clans), "
+        + "vals AS (SELECT * FROM unnest(:tags::text[], :regions::smallint[], :names::text[])), "
         + "existing AS "
         + "("
             + "SELECT " + STD_SELECT_SHORT_NULL
@@ -185,6 +185,12 @@ public class ClanDAO
         + "ORDER BY active_members DESC NULLS LAST "
         + "LIMIT :limit";
 
+    private static final String FIND_TAG_WEIGHTS =
+        "SELECT tag, MAX(active_members) "
+        + "FROM clan "
+        + "WHERE active_members IS NOT NULL "
+        + "GROUP BY tag";
+
     private static final String UPDATE_STATS = "WITH "
         + "character_filter AS (SELECT id FROM player_character WHERE clan_id IN (:clans)), "
         + "all_unwrap AS "
@@ -366,16 +372,20 @@ public class ClanDAO
     {
         if(clans.length == 0) return new Clan[0];
 
-        List<Object[]> clanData = Arrays.stream(clans)
-            .distinct()
-            .map(clan->new Object[]{
-                clan.getTag(),
-                conversionService.convert(clan.getRegion(), Integer.class),
-                clan.getName()
-            })
-            .collect(Collectors.toList());
+        Clan[] distinctClans = Arrays.stream(clans).distinct().toArray(Clan[]::new);
+        String[] tags = new String[distinctClans.length];
+        Integer[] regions = new Integer[distinctClans.length];
+        String[] names = new String[distinctClans.length];
+        for(int i = 0; i < distinctClans.length; i++)
+        {
+            tags[i] = distinctClans[i].getTag();
+            regions[i] = conversionService.convert(distinctClans[i].getRegion(), Integer.class);
+            names[i] = distinctClans[i].getName();
+        }
         MapSqlParameterSource params = new MapSqlParameterSource()
-            .addValue("clans", clanData);
+            .addValue("tags", tags)
+            .addValue("regions", regions)
+            .addValue("names", names);
 
         List<Clan> mergedClans = template.query(MERGE_QUERY, params, STD_ROW_MAPPER);
 
@@ -489,6 +499,14 @@ public class ClanDAO
         return template.queryForList(FIND_TAGS_BY_TAG_LIKE, params, String.class);
     }
 
+    /**
+     * @return tags of active clans mapped to their max active member count
+     */
+    public Map<String, Integer> findTagWeights()
+    {
+        return template.query(FIND_TAG_WEIGHTS, DAOUtils.STRING_INT_MAP_EXTRACTOR);
+    }
+
     public int updateStats(List<Integer> clans)
     {
         OffsetDateTime from = OffsetDateTime.now().minusDays(CLAN_STATS_DEPTH_DAYS);
@@ -17,6 +17,7 @@ import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -74,6 +75,17 @@ public final class DAOUtils
         return rs.getObject(1, OffsetDateTime.class);
     };
 
+    /**
+     * Maps the first column to the second column, rows must be unique by the first column.
+     */
+    public static final ResultSetExtractor<Map<String, Integer>> STRING_INT_MAP_EXTRACTOR =
+    (rs)->
+    {
+        Map<String, Integer> result = new HashMap<>();
+        while(rs.next()) result.put(rs.getString(1), rs.getInt(2));
+        return result;
+    };
+
     public static final RowMapper<Long> LONG_MAPPER =
     (rs, ix)->
     {
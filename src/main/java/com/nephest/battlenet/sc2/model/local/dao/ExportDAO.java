@@ -0,0 +1,208 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Exports table rows as CSV. Rows are read in pages by keyset cursors, so the export never holds a long running
+ * cursor or a large result set in memory, and the cost of a page doesn't depend on its offset.
+ */
+@Repository
+public class ExportDAO
+{
+
+    public static final int PAGE_SIZE = 10000;
+
+    public enum Table
+    {
+
+        PLAYER_CHARACTER
+        (
+            "player_character",
+            "id, account_id, battlenet_id, region, realm, name, clan_id, updated",
+            "updated", "id"
+        ),
+        MATCH
+        (
+            "match",
+            "id, date, type, map_id, region, updated, duration, vod, sub_only_vod, "
+                + "rating_min, rating_max, race, race_vod",
+            "updated", "id"
+        ),
+        TEAM_STATE
+        (
+            "team_state",
+            "team_id, timestamp, division_id, population_state_id, wins, games, rating, "
+                + "global_rank, region_rank, league_rank, archived, secondary",
+            "timestamp", "team_id"
+        ),
+        //teams have no timestamp, a team is changed when it has a new state
+        TEAM
+        (
+            "team",
+            "id, legacy_id, division_id, population_state_id, season, region, league_type, queue_type, "
+                + "team_type, tier_type, rating, points, wins, losses, ties, global_rank, region_rank, league_rank",
+            null, "id"
+        );
+
+        private final String name;
+        private final String columns;
+        private final String timeColumn;
+        private final String keyColumn;
+        private final String query;
+
+        Table(String name, String columns, String timeColumn, String keyColumn)
+        {
+            this.name = name;
+            this.columns = columns;
+            this.timeColumn = timeColumn;
+            this.keyColumn = keyColumn;
+            this.query = timeColumn != null
+                ? "SELECT " + columns + " FROM " + name + " "
+                    + "WHERE \"" + timeColumn + "\" < :to "
+                    + "AND (\"" + timeColumn + "\", " + keyColumn + ") > (:lastTime, :lastKey) "
+                    + "ORDER BY \"" + timeColumn + "\", " + keyColumn + " "
+                    + "LIMIT :limit"
+                : "SELECT " + columns + " FROM " + name + " "
+                    + "WHERE " + keyColumn + " > :lastKey "
+                    + "AND EXISTS"
+                    + "("
+                        + "SELECT 1 FROM team_state "
+                        + "WHERE team_state.team_id = team.id "
+                        + "AND team_state.timestamp >= :lastTime "
+                        + "AND team_state.timestamp < :to"
+                    + ") "
+                    + "ORDER BY " + keyColumn + " "
+                    + "LIMIT :limit";
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getColumns()
+        {
+            return columns;
+        }
+
+    }
+
+    private static final class ExportCursor
+    {
+
+        private OffsetDateTime lastTime;
+        private long lastKey = Long.MIN_VALUE;
+        private int pageCount;
+
+    }
+
+    private final NamedParameterJdbcTemplate template;
+
+    @Autowired
+    public ExportDAO(@Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template)
+    {
+        this.template = template;
+    }
+
+    public int export(Table table, OffsetDateTime from, OffsetDateTime to, Writer writer)
+    {
+        return export(table, from, to, writer, PAGE_SIZE);
+    }
+
+    /**
+     * Writes a CSV header and the rows that were changed in the [from, to) range.
+     *
+     * @param table target table
+     * @param from inclusive lower bound
+     * @param to exclusive upper bound
+     * @param writer target writer, it's not flushed or closed
+     * @param pageSize rows per query
+     * @return number of exported rows
+     */
+    public int export(Table table, OffsetDateTime from, OffsetDateTime to, Writer writer, int pageSize)
+    {
+        try
+        {
+            writer.write(table.getColumns().replace(" ", ""));
+            writer.write('\n');
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        ExportCursor cursor = new ExportCursor();
+        cursor.lastTime = from;
+        int count = 0;
+        while(true)
+        {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("to", to)
+                .addValue("lastTime", cursor.lastTime)
+                .addValue("lastKey", cursor.lastKey)
+                .addValue("limit", pageSize);
+            cursor.pageCount = 0;
+            template.query(table.query, params, rs->{
+                writeRow(rs, writer);
+                if(table.timeColumn != null) cursor.lastTime = rs.getObject(table.timeColumn, OffsetDateTime.class);
+                cursor.lastKey = rs.getLong(table.keyColumn);
+                cursor.pageCount++;
+            });
+            count += cursor.pageCount;
+            if(cursor.pageCount < pageSize) return count;
+        }
+    }
+
+    private static void writeRow(ResultSet rs, Writer writer)
+    throws SQLException
+    {
+        ResultSetMetaData meta = rs.getMetaData();
+        try
+        {
+            for(int i = 1; i <= meta.getColumnCount(); i++)
+            {
+                if(i > 1) writer.write(',');
+                Object val = meta.getColumnTypeName(i).equals("timestamptz")
+                    ? rs.getObject(i, OffsetDateTime.class)
+                    : rs.getObject(i);
+                if(val != null) writeValue(val.toString(), writer);
+            }
+            writer.write('\n');
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeValue(String val, Writer writer)
+    throws IOException
+    {
+        boolean quote = val.indexOf(',') >= 0 || val.indexOf('"') >= 0 || val.indexOf('\n') >= 0
+            || val.indexOf('\r') >= 0;
+        if(!quote)
+        {
+            writer.write(val);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(val.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+}
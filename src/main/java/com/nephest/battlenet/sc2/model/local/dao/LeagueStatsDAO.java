@@ -3,17 +3,23 @@
 
 package com.nephest.battlenet.sc2.model.local.dao;
 
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
 import com.nephest.battlenet.sc2.model.local.LeagueStats;
+import java.util.Collection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.util.function.Tuple3;
 
 @Transactional(propagation = Propagation.NOT_SUPPORTED)
 @Repository
@@ -30,7 +36,7 @@ public class LeagueStatsDAO
         + "league_stats.zerg_games_played AS \"league_stats.zerg_games_played\", "
         + "league_stats.random_games_played AS \"league_stats.random_games_played\" ";
 
-    private static final String CALCULATE_SEASON_STATS_QUERY =
+    private static final String CALCULATE_STATS_QUERY_TEMPLATE =
         "INSERT INTO league_stats "
         + "(league_id, team_count, terran_games_played, protoss_games_played, zerg_games_played, random_games_played) "
 
@@ -50,10 +56,11 @@ public class LeagueStatsDAO
 
         + "WHERE "
         + "team.season=:seasonId "
+        + "%1$s"
         + "GROUP BY team.region, team.league_type, team.queue_type, team.team_type";
 
-    private static final String CALCULATE_SEASON_STATS_MERGE_QUERY = CALCULATE_SEASON_STATS_QUERY
-        + " "
+    private static final String MERGE_CLAUSE =
+        " "
         + "ON CONFLICT(league_id) DO UPDATE SET "
         + "team_count=excluded.team_count, "
         + "terran_games_played=excluded.terran_games_played, "
@@ -61,6 +68,18 @@ public class LeagueStatsDAO
         + "zerg_games_played=excluded.zerg_games_played, "
         + "random_games_played=excluded.random_games_played";
 
+    private static final String CALCULATE_SEASON_STATS_QUERY = String.format(CALCULATE_STATS_QUERY_TEMPLATE, "");
+    private static final String CALCULATE_SEASON_STATS_MERGE_QUERY = CALCULATE_SEASON_STATS_QUERY + MERGE_CLAUSE;
+    private static final String CALCULATE_PARTITION_STATS_MERGE_QUERY = String.format
+    (
+        CALCULATE_STATS_QUERY_TEMPLATE,
+        "AND team.queue_type = ANY(:queueTypes::smallint[]) "
+        + "AND (team.region, team.queue_type, team.team_type) IN "
+        + "("
+            + "SELECT * FROM unnest(:regions::smallint[], :queueTypes::smallint[], :teamTypes::smallint[])"
+        + ") "
+    ) + MERGE_CLAUSE;
+
     public static final RowMapper<LeagueStats> STD_ROW_MAPPER = (rs, num) -> new LeagueStats
     (
         rs.getInt("league_stats.league_id"),
@@ -74,14 +93,17 @@ public class LeagueStatsDAO
 
 
     private final NamedParameterJdbcTemplate template;
+    private final ConversionService conversionService;
 
     @Autowired
     public LeagueStatsDAO
     (
-        @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template
+        @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template,
+        @Qualifier("sc2StatsConversionService") ConversionService conversionService
     )
     {
         this.template = template;
+        this.conversionService = conversionService;
     }
 
     public void calculateForSeason(int season)
@@ -100,6 +122,39 @@ public class LeagueStatsDAO
         LOG.debug("Calculated (merged) league stats for {} season", season);
     }
 
+    /**
+     * Recalculates stats of the leagues that belong to the (region, queue type, team type) partitions. All
+     * league types of a partition are recalculated because teams can move between leagues. Use it to recalculate
+     * only the partitions that have changed teams, and use {@link #mergeCalculateForSeason(int)} periodically to
+     * reconcile the stats.
+     *
+     * @param season season id
+     * @param partitions (region, queue type, team type) partitions
+     */
+    public void mergeCalculateForSeason(int season, Collection<Tuple3<Region, QueueType, TeamType>> partitions)
+    {
+        if(partitions.isEmpty()) return;
+
+        Integer[] regions = new Integer[partitions.size()];
+        Integer[] queueTypes = new Integer[partitions.size()];
+        Integer[] teamTypes = new Integer[partitions.size()];
+        int i = 0;
+        for(Tuple3<Region, QueueType, TeamType> partition : partitions)
+        {
+            regions[i] = conversionService.convert(partition.getT1(), Integer.class);
+            queueTypes[i] = conversionService.convert(partition.getT2(), Integer.class);
+            teamTypes[i] = conversionService.convert(partition.getT3(), Integer.class);
+            i++;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("seasonId", season)
+            .addValue("regions", regions)
+            .addValue("queueTypes", queueTypes)
+            .addValue("teamTypes", teamTypes);
+        template.update(CALCULATE_PARTITION_STATS_MERGE_QUERY, params);
+        LOG.debug("Calculated (merged) league stats for {} season, {} partitions", season, partitions.size());
+    }
+
 }
 
 
@@ -7,6 +7,7 @@ import com.nephest.battlenet.sc2.model.BaseMatch;
 import com.nephest.battlenet.sc2.model.Region;
 import com.nephest.battlenet.sc2.model.local.Match;
 import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -50,7 +51,11 @@ extends StandardDAO
         + "match.duration AS \"match.duration\" ";
     private static final String MERGE_QUERY =
         "WITH "
-        + "vals AS (VALUES :matchUids), "
+        + "vals AS "
+        + "("
+            //offset date times have no driver-side array encoding, so they are bound as ISO-8601 text
+            + "SELECT * FROM unnest(:dates::timestamptz[], :types::smallint[], :mapIds::integer[], :regions::smallint[])"
+        + "), "
         + "updated AS "
         + "("
             + "UPDATE match "
@@ -156,6 +161,14 @@ extends StandardDAO
             + "%1$s"
         + ") ";
 
+    /*
+        Races are encoded as bitmasks, race id n is bit n - 1. The last digit of team legacy id is the race id
+        for 1v1 teams.
+     */
+    private static final String RACE_MASK_SELECT =
+        "bit_or((1 << (substring(team.legacy_id::text from char_length(team.legacy_id::text))::integer - 1)))"
+        + "::smallint";
+
     private static final String UPDATE_TWITCH_VOD_STATS =
         "WITH pro_match_filter AS "
         + "( "
@@ -169,10 +182,7 @@ extends StandardDAO
         + "( "
             + "SELECT "
             + "match_participant.match_id AS id, "
-            + "MIN(substring(team.legacy_id::text from char_length(team.legacy_id::text))::smallint)::text "
-            + "|| "
-            + "MAX(substring(team.legacy_id::text from char_length(team.legacy_id::text))::smallint)::text "
-            + "AS race, "
+            + RACE_MASK_SELECT + " AS race, "
             + "MAX(team_state.rating) AS rating_max, "
             + "MIN(team_state.rating) AS rating_min, "
             + "bool_and(twitch_user.sub_only_vod) AS sub_only_vod "
@@ -189,7 +199,7 @@ extends StandardDAO
         + "pov_filter AS " 
         + "( "
             + "SELECT match_participant.match_id AS id, "
-            + "string_agg(substring(team.legacy_id::text from char_length(team.legacy_id::text)), '') AS race_vod "
+            + RACE_MASK_SELECT + " AS race_vod "
             + "FROM match_filter "
             + "INNER JOIN match_participant ON match_filter.id = match_participant.match_id "
             + "INNER JOIN team ON match_participant.team_id = team.id "
@@ -268,23 +278,33 @@ extends StandardDAO
     {
         if(matches.length == 0) return new Match[0];
 
-        List<Object[]> matchUids = Arrays.stream(matches)
-            .distinct()
-            .map(match->new Object[]{
-                match.getDate(),
-                conversionService.convert(match.getType(), Integer.class),
-                match.getMapId(),
-                conversionService.convert(match.getRegion(), Integer.class)
-            })
-            .collect(Collectors.toList());
-        MapSqlParameterSource params = new MapSqlParameterSource()
-            .addValue("matchUids", matchUids);
-
-        List<Match> mergedMatches = getTemplate().query(MERGE_QUERY, params, getStdRowMapper());
+        List<Match> mergedMatches = getTemplate()
+            .query(MERGE_QUERY, createMergeParameters(matches), getStdRowMapper());
 
         return DAOUtils.updateOriginals(matches, mergedMatches, (o, m)->o.setId(m.getId()));
     }
 
+    MapSqlParameterSource createMergeParameters(Match... matches)
+    {
+        Match[] distinctMatches = Arrays.stream(matches).distinct().toArray(Match[]::new);
+        String[] dates = new String[distinctMatches.length];
+        Integer[] types = new Integer[distinctMatches.length];
+        Integer[] mapIds = new Integer[distinctMatches.length];
+        Integer[] regions = new Integer[distinctMatches.length];
+        for(int i = 0; i < distinctMatches.length; i++)
+        {
+            dates[i] = distinctMatches[i].getDate().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            types[i] = conversionService.convert(distinctMatches[i].getType(), Integer.class);
+            mapIds[i] = distinctMatches[i].getMapId();
+            regions[i] = conversionService.convert(distinctMatches[i].getRegion(), Integer.class);
+        }
+        return new MapSqlParameterSource()
+            .addValue("dates", dates)
+            .addValue("types", types)
+            .addValue("mapIds", mapIds)
+            .addValue("regions", regions);
+    }
+
     @Transactional
     public int updateDuration(OffsetDateTime from, List<BaseMatch.MatchType> types)
     {
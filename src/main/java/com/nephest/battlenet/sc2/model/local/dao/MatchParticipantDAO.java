@@ -14,7 +14,6 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.convert.ConversionService;
@@ -41,7 +40,10 @@ public class MatchParticipantDAO
         + "match_participant.rating_change AS \"match_participant.rating_change\" ";
     private static final String MERGE_QUERY =
         "WITH "
-        + "vals AS (VALUES :participants), "
+        + "vals AS "
+        + "("
+            + "SELECT * FROM unnest(:matchIds::bigint[], :playerCharacterIds::bigint[], :decisions::smallint[])"
+        + "), "
         + "updated AS "
         + "("
             + "UPDATE match_participant "
@@ -324,16 +326,22 @@ public class MatchParticipantDAO
     {
         if(participants.length == 0) return;
 
-        List<Object[]> participantsData = Arrays.stream(participants)
+        MatchParticipant[] distinctParticipants = Arrays.stream(participants)
             .distinct()
-            .map(participant->new Object[]{
-                participant.getMatchId(),
-                participant.getPlayerCharacterId(),
-                conversionService.convert(participant.getDecision(), Integer.class)
-            })
-            .collect(Collectors.toList());
+            .toArray(MatchParticipant[]::new);
+        Long[] matchIds = new Long[distinctParticipants.length];
+        Long[] playerCharacterIds = new Long[distinctParticipants.length];
+        Integer[] decisions = new Integer[distinctParticipants.length];
+        for(int i = 0; i < distinctParticipants.length; i++)
+        {
+            matchIds[i] = distinctParticipants[i].getMatchId();
+            playerCharacterIds[i] = distinctParticipants[i].getPlayerCharacterId();
+            decisions[i] = conversionService.convert(distinctParticipants[i].getDecision(), Integer.class);
+        }
         MapSqlParameterSource params = new MapSqlParameterSource()
-            .addValue("participants", participantsData);
+            .addValue("matchIds", matchIds)
+            .addValue("playerCharacterIds", playerCharacterIds)
+            .addValue("decisions", decisions);
 
         template.query(MERGE_QUERY, params, DAOUtils.INT_EXTRACTOR);
     }
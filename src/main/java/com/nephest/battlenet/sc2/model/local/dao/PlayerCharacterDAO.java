@@ -15,10 +15,15 @@ import com.nephest.battlenet.sc2.model.util.SimpleBookmarkedResultSetExtractor;
 import com.nephest.battlenet.sc2.web.service.BlizzardPrivacyService;
 import java.sql.Types;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -26,13 +31,16 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
 
 @Repository
 public class PlayerCharacterDAO
@@ -50,44 +58,13 @@ public class PlayerCharacterDAO
         + "(account_id, region, battlenet_id, realm, name, clan_id) "
         + "VALUES (:accountId, :region, :battlenetId, :realm, :name, :clanId)";
 
-    private static final String MERGE_QUERY =
-        "WITH "
-        + "vals AS (VALUES(:accountId, :region, :battlenetId, :realm, :name, :clanId)), "
-        + "selected AS "
-        + "("
-            + "SELECT id, region, realm, battlenet_id, player_character.account_id "
-            + "FROM player_character "
-            + "INNER JOIN vals v(account_id, region, battlenet_id, realm, name, clan_id) "
-                + "USING (region, realm, battlenet_id)"
-        + "), "
-        + "updated AS "
-        + "("
-            + "UPDATE player_character "
-            + "SET account_id=v.account_id, "
-            + "name=v.name, "
-            + "clan_id=v.clan_id "
-            + "FROM selected "
-            + "INNER JOIN vals v(account_id, region, battlenet_id, realm, name, clan_id) "
-                + "USING (region, realm, battlenet_id) "
-            + "WHERE player_character.id = selected.id "
-            + "AND "
-            + "("
-                + "player_character.account_id != v.account_id "
-                + "OR player_character.name != v.name "
-                + "OR player_character.clan_id IS DISTINCT FROM v.clan_id "
-            + ") "
-            + "RETURNING player_character.id, player_character.account_id "
-        + "), "
-        + "rebound AS "
-        + "("
-            + "SELECT updated.id, "
-            + "updated.account_id AS new_account_id, "
-            + "selected.account_id AS old_account_id "
-            + "FROM updated "
-            + "INNER JOIN selected USING(id) "
-            + "WHERE updated.account_id != selected.account_id"
-        + "), "
-        + "rebound_pro_players AS "
+    /*
+        Moves account bound entities from old accounts to new accounts. Requires a "rebound" CTE with
+        new_account_id and old_account_id columns, new account ids must be unique, otherwise unique constraints
+        of the linked entities can be violated.
+     */
+    private static final String REBIND_ACCOUNTS_CTES =
+        "rebound_pro_players AS "
         + "("
             + "UPDATE pro_player_account "
             + "SET account_id = rebound.new_account_id "
@@ -184,22 +161,101 @@ public class PlayerCharacterDAO
                 + "FROM account_discord_user adu "
                 + "WHERE adu.account_id = rebound.new_account_id "
             + ")"
+        + ")";
+
+    private static final String MERGE_TEMPLATE =
+        "WITH "
+        + "vals AS (%1$s), "
+        + "selected AS "
+        + "("
+            + "SELECT id, region, realm, battlenet_id, player_character.account_id "
+            + "FROM player_character "
+            + "INNER JOIN vals v(account_id, region, battlenet_id, realm, name, clan_id) "
+                + "USING (region, realm, battlenet_id)"
+        + "), "
+        + "updated AS "
+        + "("
+            + "UPDATE player_character "
+            + "SET account_id=v.account_id, "
+            + "name=v.name, "
+            + "clan_id=v.clan_id "
+            + "FROM selected "
+            + "INNER JOIN vals v(account_id, region, battlenet_id, realm, name, clan_id) "
+                + "USING (region, realm, battlenet_id) "
+            + "WHERE player_character.id = selected.id "
+            + "AND "
+            + "("
+                + "player_character.account_id != v.account_id "
+                + "OR player_character.name != v.name "
+                + "OR player_character.clan_id IS DISTINCT FROM v.clan_id "
+            + ") "
+            + "RETURNING player_character.id, player_character.account_id "
+        + "), "
+        + "moved AS "
+        + "("
+            + "SELECT updated.id, "
+            + "updated.account_id AS new_account_id, "
+            + "selected.account_id AS old_account_id "
+            + "FROM updated "
+            + "INNER JOIN selected USING(id) "
+            + "WHERE updated.account_id != selected.account_id"
+        + "), "
+        /*
+            Only one old account per new account is rebound in a single statement. The remaining accounts are
+            returned and rebound by the caller.
+         */
+        + "rebound AS "
+        + "("
+            + "SELECT DISTINCT ON(new_account_id) * "
+            + "FROM moved "
+            + "ORDER BY new_account_id, old_account_id"
+        + "), "
+        + "not_rebound AS "
+        + "("
+            + "SELECT DISTINCT moved.new_account_id, moved.old_account_id "
+            + "FROM moved "
+            + "LEFT JOIN rebound ON moved.old_account_id = rebound.old_account_id "
+                + "AND moved.new_account_id = rebound.new_account_id "
+            + "WHERE rebound.id IS NULL"
         + "), "
+        + REBIND_ACCOUNTS_CTES + ", "
         + "inserted AS "
         + "("
             + "INSERT INTO player_character "
             + "(account_id, region, battlenet_id, realm, name, clan_id) "
-            + "SELECT * FROM vals "
-            + "WHERE NOT EXISTS(SELECT 1 FROM selected) "
+            + "SELECT v.* FROM vals v(account_id, region, battlenet_id, realm, name, clan_id) "
+            + "LEFT JOIN selected USING(region, realm, battlenet_id) "
+            + "WHERE selected.id IS NULL "
             + "ON CONFLICT(region, realm, battlenet_id) DO UPDATE SET "
             + "account_id=excluded.account_id, "
             + "name=excluded.name, "
             + "clan_id=excluded.clan_id "
-            + "RETURNING id"
+            + "RETURNING id, region, realm, battlenet_id"
         + ") "
-        + "SELECT id FROM selected "
+        + "SELECT id, region, realm, battlenet_id, "
+        + "NULL::bigint AS new_account_id, NULL::bigint AS old_account_id "
+        + "FROM selected "
         + "UNION "
-        + "SELECT id FROM inserted";
+        + "SELECT id, region, realm, battlenet_id, NULL, NULL FROM inserted "
+        + "UNION ALL "
+        + "SELECT NULL, NULL, NULL, NULL, new_account_id, old_account_id FROM not_rebound";
+
+    private static final String MERGE_QUERY = String.format
+    (
+        MERGE_TEMPLATE,
+        "VALUES(:accountId, :region, :battlenetId, :realm, :name, :clanId)"
+    );
+
+    private static final String MERGE_BATCH_QUERY = String.format(MERGE_TEMPLATE, "VALUES :characters");
+
+    private static final String REBIND_ACCOUNTS =
+        "WITH "
+        + "rebound AS "
+        + "("
+            + "SELECT * FROM (VALUES :accounts) v(new_account_id, old_account_id)"
+        + "), "
+        + REBIND_ACCOUNTS_CTES + " "
+        + "SELECT COUNT(*) FROM rebound";
 
     private static final String UPDATE_CHARACTERS =
         "WITH "
@@ -311,6 +367,30 @@ public class PlayerCharacterDAO
         + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
         + "WHERE player_character.region IN (:regions)";
 
+    private static final String FIND_RECENTLY_ACTIVE_CHARACTER_GAMES =
+        "WITH team_filter AS "
+        + "( "
+            + "SELECT DISTINCT team_id "
+            + "FROM team_state "
+            + "WHERE \"timestamp\" >= :point "
+        + "), "
+        + "character_filter AS "
+        + "( "
+            + "SELECT DISTINCT team_member.player_character_id, team.season "
+            + "FROM team_filter "
+            + "INNER JOIN team ON team_filter.team_id = team.id "
+            + "INNER JOIN team_member ON team.id = team_member.team_id "
+            + "WHERE team.region IN (:regions) "
+        + ") "
+        + "SELECT "
+        + STD_SELECT + ", "
+        + "SUM(team.wins + team.losses + team.ties) AS games "
+        + "FROM character_filter "
+        + "INNER JOIN player_character ON character_filter.player_character_id = player_character.id "
+        + "INNER JOIN team_member ON character_filter.player_character_id = team_member.player_character_id "
+        + "INNER JOIN team ON team_member.team_id = team.id AND team.season = character_filter.season "
+        + "GROUP BY player_character.id";
+
     private static final String FIND_TOP_RECENTLY_ACTIVE_CHARACTERS =
         "WITH team_filter AS "
         + "( "
@@ -368,6 +448,24 @@ public class PlayerCharacterDAO
         + "ORDER BY MAX(rating_max) DESC "
         + "LIMIT :limit";
 
+    private static final String FIND_NAME_WEIGHTS_BY_SEASON =
+        "SELECT substring(player_character.name from '^.*(?=(#))') AS sub_name, MAX(team.rating) "
+        + "FROM team "
+        + "INNER JOIN team_member ON team.id = team_member.team_id "
+        + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
+        + "WHERE team.season = :season "
+        + "GROUP BY sub_name";
+
+    private static final String FIND_NAME_WEIGHTS_BY_SEASON_AND_TEAM_STATE_TIMESTAMP =
+        "SELECT substring(player_character.name from '^.*(?=(#))') AS sub_name, MAX(team.rating) "
+        + "FROM team_state "
+        + "INNER JOIN team ON team_state.team_id = team.id "
+        + "INNER JOIN team_member ON team.id = team_member.team_id "
+        + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
+        + "WHERE team_state.timestamp >= :from "
+        + "AND team.season = :season "
+        + "GROUP BY sub_name";
+
     private static final String FIND_BY_IDS =
         "SELECT " + STD_SELECT
         + "FROM player_character "
@@ -377,6 +475,7 @@ public class PlayerCharacterDAO
         "SELECT COUNT(*) FROM player_character WHERE updated <= :updatedMax";
 
     private static RowMapper<PlayerCharacter> STD_ROW_MAPPER;
+    private static RowMapper<PlayerCharacter> NATURAL_ID_ROW_MAPPER;
     private static ResultSetExtractor<PlayerCharacter> STD_EXTRACTOR;
     private static ResultSetExtractor<BookmarkedResult<List<PlayerCharacter>>> BOOKMARKED_STD_ROW_EXTRACTOR;
 
@@ -410,6 +509,16 @@ public class PlayerCharacterDAO
 
         if(STD_EXTRACTOR == null) STD_EXTRACTOR = DAOUtils.getResultSetExtractor(STD_ROW_MAPPER);
 
+        if(NATURAL_ID_ROW_MAPPER == null) NATURAL_ID_ROW_MAPPER = (rs, i)-> new PlayerCharacter
+        (
+            rs.getLong("id"),
+            null,
+            conversionService.convert(rs.getInt("region"), Region.class),
+            rs.getLong("battlenet_id"),
+            rs.getInt("realm"),
+            null
+        );
+
         if(BOOKMARKED_STD_ROW_EXTRACTOR == null) BOOKMARKED_STD_ROW_EXTRACTOR
             = new SimpleBookmarkedResultSetExtractor<>(STD_ROW_MAPPER, "team.rating", "team.id");
     }
@@ -440,6 +549,88 @@ public class PlayerCharacterDAO
         return character;
     }
 
+    /**
+     * <p>
+     *     Batch version of {@link #merge(PlayerCharacter)}. Characters are deduplicated and sorted by their
+     *     natural id to ensure the consistent lock order for concurrent transactions. Ids of all original
+     *     characters are updated.
+     * </p>
+     * @param characters characters to merge
+     * @return original characters
+     */
+    public PlayerCharacter[] merge(PlayerCharacter... characters)
+    {
+        if(characters.length == 0) return new PlayerCharacter[0];
+
+        List<Object[]> data = Arrays.stream(characters)
+            .distinct()
+            .sorted(PlayerCharacter.NATURAL_ID_COMPARATOR)
+            .map(c->new Object[]{
+                c.getAccountId(),
+                conversionService.convert(c.getRegion(), Integer.class),
+                c.getBattlenetId(),
+                c.getRealm(),
+                c.getName(),
+                new SqlParameterValue(Types.INTEGER, c.getClanId())
+            })
+            .collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("characters", data);
+        List<PlayerCharacter> mergedCharacters = new ArrayList<>();
+        List<Tuple2<Long, Long>> notRebound = new ArrayList<>();
+        template.query(MERGE_BATCH_QUERY, params, rs->
+        {
+            if(DAOUtils.getLong(rs, "id") == null)
+            {
+                notRebound.add(Tuples.of(rs.getLong("new_account_id"), rs.getLong("old_account_id")));
+            }
+            else
+            {
+                mergedCharacters.add(NATURAL_ID_ROW_MAPPER.mapRow(rs, 0));
+            }
+        });
+        rebindAccounts(notRebound);
+
+        return DAOUtils.updateOriginals(characters, mergedCharacters, (o, m)->o.setId(m.getId()));
+    }
+
+    /**
+     * Rebinds old accounts to new accounts. Several old accounts can be rebound to the same new account, so
+     * accounts are rebound in rounds, one old account per new account in each round.
+     *
+     * @param accounts (new account id, old account id) tuples
+     */
+    private void rebindAccounts(List<Tuple2<Long, Long>> accounts)
+    {
+        List<Tuple2<Long, Long>> pending = accounts.stream()
+            .distinct()
+            .sorted(Comparator.comparing(Tuple2<Long, Long>::getT1).thenComparing(Tuple2::getT2))
+            .collect(Collectors.toList());
+        while(!pending.isEmpty())
+        {
+            Set<Long> newAccounts = new HashSet<>();
+            List<Object[]> round = new ArrayList<>();
+            List<Tuple2<Long, Long>> next = new ArrayList<>();
+            for(Tuple2<Long, Long> account : pending)
+            {
+                if(newAccounts.add(account.getT1()))
+                {
+                    round.add(new Object[]{account.getT1(), account.getT2()});
+                }
+                else
+                {
+                    next.add(account);
+                }
+            }
+            template.queryForObject
+            (
+                REBIND_ACCOUNTS,
+                new MapSqlParameterSource().addValue("accounts", round),
+                Integer.class
+            );
+            pending = next;
+        }
+    }
+
     /*
         updateCharacters and updateAccountsAndCharacters methods are primarily used to update historical BattleTags,
         names, and timestamps. This ensures full compliance with the Blizzard ToS.
@@ -544,6 +735,36 @@ public class PlayerCharacterDAO
         return template.query(FIND_RECENTLY_ACTIVE_CHARACTERS, params, getStdRowMapper());
     }
 
+    /**
+     * Finds recently active characters and their games count. The games count is the sum of games of all
+     * character's teams in the seasons the character was active in.
+     *
+     * @param from active since
+     * @param regions character regions
+     * @return characters and their games count
+     */
+    public List<Tuple2<PlayerCharacter, Integer>> findRecentlyActiveCharacterGames
+    (
+        OffsetDateTime from,
+        Region... regions
+    )
+    {
+        if(regions.length == 0) return List.of();
+
+        List<Integer> regionInts = Arrays.stream(regions)
+            .map(r->conversionService.convert(r, Integer.class))
+            .collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("regions", regionInts)
+            .addValue("point", from);
+        return template.query
+        (
+            FIND_RECENTLY_ACTIVE_CHARACTER_GAMES,
+            params,
+            (rs, i)->Tuples.of(getStdRowMapper().mapRow(rs, i), rs.getInt("games"))
+        );
+    }
+
     public List<PlayerCharacter> findTopRecentlyActiveCharacters(
         OffsetDateTime from,
         QueueType queueType,
@@ -609,4 +830,37 @@ public class PlayerCharacterDAO
         return template.queryForList(FIND_NAMES_WITHOUT_DISCRIMINATOR_BY_NAME_LIKE, params, String.class);
     }
 
+    /**
+     * Finds names without discriminator of characters that played in the provided season.
+     *
+     * @param season season
+     * @return names mapped to their max team rating in the season
+     */
+    public Map<String, Integer> findNameWeights(int season)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource("season", season);
+        return template.query(FIND_NAME_WEIGHTS_BY_SEASON, params, DAOUtils.STRING_INT_MAP_EXTRACTOR);
+    }
+
+    /**
+     * Finds names without discriminator of characters whose teams of the provided season changed after the
+     * provided timestamp. Team changes are tracked by team snapshots.
+     *
+     * @param season season
+     * @param from min team snapshot timestamp, inclusive
+     * @return names mapped to their max team rating in the season
+     */
+    public Map<String, Integer> findNameWeights(int season, OffsetDateTime from)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("season", season)
+            .addValue("from", from);
+        return template.query
+        (
+            FIND_NAME_WEIGHTS_BY_SEASON_AND_TEAM_STATE_TIMESTAMP,
+            params,
+            DAOUtils.STRING_INT_MAP_EXTRACTOR
+        );
+    }
+
 }
@@ -3,10 +3,14 @@
 
 package com.nephest.battlenet.sc2.model.local.dao;
 
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.TeamType;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacterReport;
 import com.nephest.battlenet.sc2.model.local.PopulationState;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.convert.ConversionService;
@@ -14,6 +18,7 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
+import reactor.util.function.Tuple2;
 
 @Repository
 public class PopulationStateDAO
@@ -31,7 +36,7 @@ public class PopulationStateDAO
         + "population_state.region_team_count AS \"population_state.region_team_count\", "
         + "population_state.league_team_count AS \"population_state.league_team_count\" ";
 
-    private static final String TAKE_SNAPSHOT =
+    private static final String TAKE_SNAPSHOT_TEMPLATE =
         "WITH "
         + "cheaters_league AS "
         + "( "
@@ -41,7 +46,7 @@ public class PopulationStateDAO
                 "COUNT(DISTINCT(team.id)) as count, season AS battlenet_id, region, queue_type, team_type, "
                 + "league_type AS type"
             )
-            + " "
+            + " %1$s"
             + "GROUP BY season, region, queue_type, team_type, team.league_type "
         + "), "
         + "cheaters_region AS "
@@ -51,7 +56,7 @@ public class PopulationStateDAO
                 TeamDAO.FIND_CHEATER_TEAMS_BY_SEASONS_TEMPLATE,
                 "COUNT(DISTINCT(team.id)) as count, season AS battlenet_id, region, queue_type, team_type"
             )
-            + " "
+            + " %1$s"
             + "GROUP BY season, region, queue_type, team_type"
         + "), "
         + "cheaters_global AS "
@@ -70,6 +75,7 @@ public class PopulationStateDAO
             + "INNER JOIN season ON league.season_id = season.id "
             + "LEFT JOIN cheaters_league USING(battlenet_id, region, queue_type, team_type, type) "
             + "WHERE season.battlenet_id IN(:seasons) "
+            + "%1$s"
             + "GROUP BY season.battlenet_id, season.region, queue_type, team_type, league.id "
         + "), "
         + "region_team_count AS "
@@ -82,6 +88,7 @@ public class PopulationStateDAO
             + "INNER JOIN season ON league.season_id = season.id "
             + "LEFT JOIN cheaters_region USING(battlenet_id, region ,queue_type, team_type) "
             + "WHERE season.battlenet_id IN(:seasons) "
+            + "%1$s"
             + "GROUP BY season.battlenet_id, season.region, queue_type, team_type "
         + "), "
         + "global_team_count AS "
@@ -109,6 +116,12 @@ public class PopulationStateDAO
             + "ON league_team_count.season = global_team_count.season "
             + "AND league_team_count.queue_type = global_team_count.queue_type "
             + "AND league_team_count.team_type = global_team_count.team_type";
+    private static final String TAKE_SNAPSHOT = String.format(TAKE_SNAPSHOT_TEMPLATE, "");
+    private static final String TAKE_PARTITIONS_SNAPSHOT = String.format
+    (
+        TAKE_SNAPSHOT_TEMPLATE,
+        "AND (queue_type, team_type) IN(:partitions) "
+    );
 
     private static final String FIND_BY_IDS = "SELECT " + STD_SELECT
         + "FROM population_state "
@@ -167,6 +180,37 @@ public class PopulationStateDAO
         return template.update(TAKE_SNAPSHOT, params);
     }
 
+    /**
+     * <p>
+     *     Creates population snapshot of the target rank partitions only. Use it with
+     *     {@link TeamDAO#updateRanks(int, Set)}, teams of other partitions keep their previous snapshots.
+     * </p>
+     * @param season target season
+     * @param partitions (queue type, team type) partitions to take snapshots of
+     * @return number of created snapshots
+     */
+    public int takeSnapshot(int season, Set<Tuple2<QueueType, TeamType>> partitions)
+    {
+        if(partitions.isEmpty()) return 0;
+
+        List<Object[]> partitionParams = partitions.stream()
+            .map(p->new Object[]{
+                conversionService.convert(p.getT1(), Integer.class),
+                conversionService.convert(p.getT2(), Integer.class)
+            })
+            .collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("seasons", season)
+            .addValue("partitions", partitionParams)
+            .addValue
+            (
+                "cheaterReportType",
+                conversionService.convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class)
+            );
+
+        return template.update(TAKE_PARTITIONS_SNAPSHOT, params);
+    }
+
     public List<PopulationState> findByIds(Collection<Integer> ids)
     {
         MapSqlParameterSource params = new MapSqlParameterSource()
@@ -20,17 +20,20 @@ import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacterReport;
 import com.nephest.battlenet.sc2.model.local.Team;
 import com.nephest.battlenet.sc2.model.local.TeamMember;
+import com.nephest.battlenet.sc2.model.local.inner.TeamLegacyIdCodec;
 import com.nephest.battlenet.sc2.web.service.StatsService;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.OffsetDateTime;
 import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +49,8 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 @Repository
 public class TeamDAO
@@ -100,7 +105,17 @@ public class TeamDAO
 
     private static final String MERGE_BY_FAVORITE_RACE_QUERY =
         "WITH "
-        + "vals AS(VALUES :teams), "
+        + "vals AS"
+        + "("
+            + "SELECT * FROM unnest"
+            + "("
+                + ":legacyIds::numeric[], :divisionIds::integer[], "
+                + ":seasons::smallint[], :regions::smallint[], :leagueTypes::smallint[], "
+                + ":queueTypes::smallint[], :teamTypes::smallint[], "
+                + ":ratings::smallint[], :points::smallint[], "
+                + ":wins::smallint[], :losses::smallint[], :ties::smallint[], :tierTypes::smallint[]"
+            + ")"
+        + "), "
         + "existing AS "
         + "("
             + "SELECT team.queue_type, "
@@ -195,6 +210,15 @@ public class TeamDAO
     private static final String FIND_CHEATER_TEAM_IDS_BY_SEASON_QUERY =
         String.format(FIND_CHEATER_TEAMS_BY_SEASONS_TEMPLATE, "DISTINCT(team_id)");
 
+    private static final String FIND_CHEATER_REPORT_RANK_PARTITIONS_QUERY =
+        "SELECT DISTINCT team.queue_type, team.team_type "
+        + "FROM player_character_report "
+        + "INNER JOIN team_member ON player_character_report.player_character_id = team_member.player_character_id "
+        + "INNER JOIN team ON team_member.team_id = team.id "
+        + "WHERE player_character_report.type = :cheaterReportType "
+        + "AND player_character_report.status_change_timestamp >= :from "
+        + "AND team.season = :season";
+
     public static final String LAST_POPULATION_SNAPSHOT =
         "last_population_snapshot AS"
         + "("
@@ -217,7 +241,7 @@ public class TeamDAO
         + "ORDER BY league_id DESC, id DESC"
         + ") ";
 
-    private static final String CALCULATE_RANK_QUERY =
+    private static final String CALCULATE_RANK_TEMPLATE =
         "WITH "
         + LAST_POPULATION_SNAPSHOT + ", "
         + "cheaters AS "
@@ -232,6 +256,7 @@ public class TeamDAO
             + "RANK() OVER(PARTITION BY queue_type, team_type, region, league_type ORDER BY rating DESC) as league_rank "
             + "FROM team "
             + "WHERE season = :season "
+            + "%1$s"
             + "AND id NOT IN(SELECT team_id FROM cheaters)"
         + "), "
         + "cheater_update AS "
@@ -253,6 +278,12 @@ public class TeamDAO
         + "INNER JOIN league_tier ON division.league_tier_id = league_tier.id "
         + "LEFT JOIN last_population_snapshot_filter USING(league_id) "
         + "WHERE team.id = ranks.id";
+    private static final String CALCULATE_RANK_QUERY = String.format(CALCULATE_RANK_TEMPLATE, "");
+    private static final String CALCULATE_RANK_PARTITIONS_QUERY = String.format
+    (
+        CALCULATE_RANK_TEMPLATE,
+        "AND (queue_type, team_type) IN(:partitions) "
+    );
 
     private static final Map<Race, String> FIND_1V1_TEAM_BY_FAVOURITE_RACE_QUERIES = new EnumMap<>(Race.class);
 
@@ -288,14 +319,7 @@ public class TeamDAO
 
     public BigInteger legacyIdOf(BlizzardPlayerCharacter[] characters, Race... races)
     {
-        StringBuilder sb = new StringBuilder();
-        Arrays.sort(characters, Comparator
-                .comparingInt(BlizzardPlayerCharacter::getRealm)
-                .thenComparingLong(BlizzardPlayerCharacter::getId));
-        Arrays.sort(races);
-        for(BlizzardPlayerCharacter c : characters) sb.append(c.getRealm()).append(c.getId());
-        for(Race r : races) sb.append(conversionService.convert(r, Integer.class));
-        return new BigInteger(sb.toString());
+        return TeamLegacyIdCodec.encode(characters, races);
     }
 
     public BigInteger legacyIdOf(BaseLeague league, BlizzardTeam bTeam)
@@ -402,35 +426,75 @@ public class TeamDAO
         return team;
     }
 
+    /**
+     * <p>
+     * Merges teams by their natural id(queue, region, legacy id, season). Team data is bound as one array per
+     * column and expanded via {@code unnest}, so the statement text doesn't depend on the number of teams and
+     * can be cached and prepared by the driver and the DB.
+     * </p>
+     *
+     * @param teams teams to merge
+     * @return teams that were inserted or updated. Ids are set.
+     */
     public Team[] merge(Team... teams)
     {
         if(teams.length == 0) return new Team[0];
 
-        List<Object[]> data = Arrays.stream(teams)
-            .map(t->new Object[]{
-                t.getLegacyId(),
-                t.getDivisionId(),
-                t.getSeason(),
-                conversionService.convert(t.getRegion(), Integer.class),
-                conversionService.convert(t.getLeagueType(), Integer.class),
-                conversionService.convert(t.getQueueType(), Integer.class),
-                conversionService.convert(t.getTeamType(), Integer.class),
-                t.getRating(),
-                t.getPoints(),
-                t.getWins(),
-                t.getLosses(),
-                t.getTies(),
-                conversionService.convert(t.getTierType(), Integer.class),
-            })
-            .collect(Collectors.toList());
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("teams", data);
-        List<Team> mergedTeams = template.query(MERGE_BY_FAVORITE_RACE_QUERY, params, STD_ROW_MAPPER);
+        List<Team> mergedTeams = template.query(MERGE_BY_FAVORITE_RACE_QUERY, createMergeParameters(teams), STD_ROW_MAPPER);
 
         return Arrays.stream(DAOUtils.updateOriginals(teams, mergedTeams, (o, m)->o.setId(m.getId()), o->o.setId(null)))
             .filter(t->t.getId() != null)
             .toArray(Team[]::new);
     }
 
+    MapSqlParameterSource createMergeParameters(Team... teams)
+    {
+        String[] legacyIds = new String[teams.length];
+        Integer[] divisionIds = new Integer[teams.length];
+        Integer[] seasons = new Integer[teams.length];
+        Integer[] regions = new Integer[teams.length];
+        Integer[] leagueTypes = new Integer[teams.length];
+        Integer[] queueTypes = new Integer[teams.length];
+        Integer[] teamTypes = new Integer[teams.length];
+        Long[] ratings = new Long[teams.length];
+        Integer[] points = new Integer[teams.length];
+        Integer[] wins = new Integer[teams.length];
+        Integer[] losses = new Integer[teams.length];
+        Integer[] ties = new Integer[teams.length];
+        Integer[] tierTypes = new Integer[teams.length];
+        for(int i = 0; i < teams.length; i++)
+        {
+            Team t = teams[i];
+            legacyIds[i] = t.getLegacyId().toString();
+            divisionIds[i] = t.getDivisionId();
+            seasons[i] = t.getSeason();
+            regions[i] = conversionService.convert(t.getRegion(), Integer.class);
+            leagueTypes[i] = conversionService.convert(t.getLeagueType(), Integer.class);
+            queueTypes[i] = conversionService.convert(t.getQueueType(), Integer.class);
+            teamTypes[i] = conversionService.convert(t.getTeamType(), Integer.class);
+            ratings[i] = t.getRating();
+            points[i] = t.getPoints();
+            wins[i] = t.getWins();
+            losses[i] = t.getLosses();
+            ties[i] = t.getTies();
+            tierTypes[i] = conversionService.convert(t.getTierType(), Integer.class);
+        }
+        return new MapSqlParameterSource()
+            .addValue("legacyIds", legacyIds)
+            .addValue("divisionIds", divisionIds)
+            .addValue("seasons", seasons)
+            .addValue("regions", regions)
+            .addValue("leagueTypes", leagueTypes)
+            .addValue("queueTypes", queueTypes)
+            .addValue("teamTypes", teamTypes)
+            .addValue("ratings", ratings)
+            .addValue("points", points)
+            .addValue("wins", wins)
+            .addValue("losses", losses)
+            .addValue("ties", ties)
+            .addValue("tierTypes", tierTypes);
+    }
+
     public Optional<Team> findById(long id)
     {
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", id);
@@ -461,6 +525,42 @@ public class TeamDAO
         LOG.debug("Calculated team ranks for {} season", season);
     }
 
+    /**
+     * <p>
+     *     Updates ranks and population state id of the target rank partitions only. Ranks are independent
+     *     between (queue type, team type) partitions, so unchanged partitions can be skipped. Global rank
+     *     spans all regions, so a partition can't be narrowed down to a single region.
+     * </p>
+     * <p>
+     *     Same contract as {@link #updateRanks(int)}.
+     * </p>
+     * @param season target season
+     * @param partitions (queue type, team type) partitions to update
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void updateRanks(int season, Set<Tuple2<QueueType, TeamType>> partitions)
+    {
+        if(partitions.isEmpty()) return;
+
+        List<Object[]> partitionParams = partitions.stream()
+            .map(p->new Object[]{
+                conversionService.convert(p.getT1(), Integer.class),
+                conversionService.convert(p.getT2(), Integer.class)
+            })
+            .collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("season", season)
+            .addValue("seasons", season)
+            .addValue("partitions", partitionParams)
+            .addValue
+            (
+                "cheaterReportType",
+                conversionService.convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class)
+            );
+        template.update(CALCULATE_RANK_PARTITIONS_QUERY, params);
+        LOG.debug("Calculated team ranks for {} season, {} partitions", season, partitions.size());
+    }
+
     public Optional<Map.Entry<Team, List<TeamMember>>> find1v1TeamByFavoriteRace
     (
         int season,
@@ -487,6 +587,36 @@ public class TeamDAO
         return template.query(FIND_CHEATER_TEAM_IDS_BY_SEASON_QUERY, params, DAOUtils.LONG_MAPPER);
     }
 
+    /**
+     * Finds (queue type, team type) rank partitions of teams whose members had their cheater report status
+     * changed since {@code from}.
+     *
+     * @param season target season
+     * @param from min report status change timestamp, inclusive
+     * @return rank partitions
+     */
+    public Set<Tuple2<QueueType, TeamType>> findCheaterReportRankPartitions(int season, OffsetDateTime from)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("season", season)
+            .addValue("from", from)
+            .addValue
+            (
+                "cheaterReportType",
+                conversionService.convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class)
+            );
+        return new HashSet<>(template.query
+        (
+            FIND_CHEATER_REPORT_RANK_PARTITIONS_QUERY,
+            params,
+            (rs, i)->Tuples.of
+            (
+                conversionService.convert(rs.getInt("queue_type"), QueueType.class),
+                conversionService.convert(rs.getInt("team_type"), TeamType.class)
+            )
+        ));
+    }
+
     private MapSqlParameterSource createParameterSource(Team team)
     {
         return new MapSqlParameterSource()
@@ -4,6 +4,7 @@
 package com.nephest.battlenet.sc2.model.local.inner;
 
 import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.QueueType;
 import com.nephest.battlenet.sc2.model.Race;
 import com.nephest.battlenet.sc2.model.local.dao.DAOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,14 +16,39 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Types;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+/**
+ * <p>
+ * Summaries are calculated by the {@code get_player_character_summary} function, which scans the whole team
+ * history of characters. Summaries of {@link #MATERIALIZED_DEPTHS common depths} are materialized in the
+ * {@code player_character_summary_1v1} table. A character is materialized on the first request, and its
+ * summaries are refreshed when new team snapshots are taken for {@link #REQUEST_TTL} after the request, so
+ * repeated requests are simple lookups. Summaries that were not refreshed for {@link #MATERIALIZED_TTL} are
+ * ignored and recalculated on request to account for the moving history window, and are eventually removed by
+ * {@link #removeExpired()}.
+ * </p>
+ * <p>
+ * Summaries are only upserted in a deterministic order, so concurrent requests and refreshes don't deadlock.
+ * Races that dropped out of the history window are not deleted, they are filtered out because they were not
+ * updated by the last materialization.
+ * </p>
+ */
 @Repository
 public class PlayerCharacterSummaryDAO
 {
 
+    public static final Set<Integer> MATERIALIZED_DEPTHS = Set.of(30, 120);
+    public static final Duration MATERIALIZED_TTL = Duration.ofDays(1);
+    public static final Duration REQUEST_TTL = Duration.ofDays(7);
+    public static final int REFRESH_BATCH_SIZE = 200;
+
     public static final String STD_SELECT =
         "player_character_summary.player_character_id AS \"player_character_summary.player_character_id\", "
         + "player_character_summary.race AS \"player_character_summary.race\", "
@@ -35,6 +61,90 @@ public class PlayerCharacterSummaryDAO
 
     private static final String FIND_PLAYER_CHARACTER_SUMMARY_BY_IDS_AND_TIMESTAMP =
         "SELECT " + STD_SELECT + "FROM get_player_character_summary(:ids, :from, :races::smallint[]) player_character_summary";
+
+    private static final String FIND_MATERIALIZED_QUERY =
+        "SELECT " + STD_SELECT
+        + "FROM player_character_summary_1v1 player_character_summary "
+        + "WHERE player_character_id IN(:ids) "
+        + "AND depth_days = :depth "
+        + "AND race IN(:races) "
+        + "AND updated >= :updated "
+        + "AND updated = "
+        + "("
+            + "SELECT MAX(updated) "
+            + "FROM player_character_summary_1v1 latest "
+            + "WHERE latest.player_character_id = player_character_summary.player_character_id "
+            + "AND latest.depth_days = :depth"
+        + ") "
+        + "ORDER BY player_character_id, race";
+
+    private static final String FIND_FRESH_MATERIALIZED_IDS_QUERY =
+        "SELECT DISTINCT(player_character_id) "
+        + "FROM player_character_summary_1v1 "
+        + "WHERE player_character_id IN(:ids) "
+        + "AND depth_days = :depth "
+        + "AND updated >= :updated";
+
+    private static final String FIND_MATERIALIZED_IDS_BY_TEAM_IDS_QUERY =
+        "SELECT DISTINCT(team_member.player_character_id) "
+        + "FROM team "
+        + "INNER JOIN team_member ON team.id = team_member.team_id "
+        + "INNER JOIN player_character_summary_1v1 "
+            + "ON team_member.player_character_id = player_character_summary_1v1.player_character_id "
+        + "WHERE team.id IN(:teamIds) "
+        + "AND team.queue_type = :queueType "
+        + "AND player_character_summary_1v1.requested >= :requested "
+        + "ORDER BY team_member.player_character_id";
+
+    private static final String MATERIALIZE_TEMPLATE =
+        "INSERT INTO player_character_summary_1v1 "
+        + "("
+            + "player_character_id, depth_days, race, games, rating_avg, rating_max, rating_last, "
+            + "league_type_last, global_rank_last, updated, requested"
+        + ") "
+        + "SELECT player_character_id, :depth, race, games, rating_avg, rating_max, rating_last, "
+        + "league_type_last, global_rank_last, NOW(), %1$s "
+        + "FROM get_player_character_summary(:idArray, NOW() - INTERVAL '1 day' * :depth, :races::smallint[]) summary "
+        + "ORDER BY player_character_id, race "
+        + "ON CONFLICT(player_character_id, depth_days, race) DO UPDATE SET "
+        + "games = excluded.games, "
+        + "rating_avg = excluded.rating_avg, "
+        + "rating_max = excluded.rating_max, "
+        + "rating_last = excluded.rating_last, "
+        + "league_type_last = excluded.league_type_last, "
+        + "global_rank_last = excluded.global_rank_last, "
+        + "updated = excluded.updated, "
+        + "requested = excluded.requested";
+
+    private static final String MATERIALIZE_REQUESTED_QUERY = String.format(MATERIALIZE_TEMPLATE, "NOW()");
+
+    //refresh doesn't prolong the request
+    private static final String MATERIALIZE_REFRESHED_QUERY = String.format
+    (
+        MATERIALIZE_TEMPLATE,
+        "COALESCE"
+        + "("
+            + "("
+                + "SELECT MAX(requested) "
+                + "FROM player_character_summary_1v1 character_summary "
+                + "WHERE character_summary.player_character_id = summary.player_character_id"
+            + "), "
+            + ":requested"
+        + ")"
+    );
+
+    private static final String REMOVE_EXPIRED_QUERY =
+        "DELETE FROM player_character_summary_1v1 "
+        + "WHERE (player_character_id, depth_days, race) IN"
+        + "("
+            + "SELECT player_character_id, depth_days, race "
+            + "FROM player_character_summary_1v1 "
+            + "WHERE updated < :updated "
+            + "ORDER BY player_character_id, depth_days, race "
+            //summaries that are being materialized right now are not expired
+            + "FOR UPDATE SKIP LOCKED"
+        + ")";
+
     private final Integer[] DEFAULT_RACES;
 
     private final NamedParameterJdbcTemplate template;
@@ -81,14 +191,105 @@ public class PlayerCharacterSummaryDAO
     {
         MapSqlParameterSource params = new MapSqlParameterSource()
             .addValue("ids", ids, Types.ARRAY)
-            .addValue("from", from);
-        Integer[] raceInts = races.length == 0
+            .addValue("from", from)
+            .addValue("races", toRaceIds(races), Types.ARRAY);
+        return template.query(FIND_PLAYER_CHARACTER_SUMMARY_BY_IDS_AND_TIMESTAMP, params, STD_ROW_MAPPER);
+    }
+
+    /**
+     * Finds summaries of the last {@code depth} days. Uses materialized summaries if depth is one of
+     * {@link #MATERIALIZED_DEPTHS}, materializes missing and outdated characters. Materialized summaries are
+     * upserted, this method never deletes anything.
+     *
+     * @param ids character ids
+     * @param depth depth in days
+     * @param races race filter, all races are used if empty
+     * @return summaries
+     */
+    public List<PlayerCharacterSummary> find(Long[] ids, int depth, Race... races)
+    {
+        if(!MATERIALIZED_DEPTHS.contains(depth)) return find(ids, OffsetDateTime.now().minusDays(depth), races);
+        if(ids.length == 0) return List.of();
+
+        List<Long> idList = Arrays.stream(ids).distinct().sorted().collect(Collectors.toList());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("ids", idList)
+            .addValue("depth", depth)
+            .addValue("updated", OffsetDateTime.now().minus(MATERIALIZED_TTL));
+        Set<Long> freshIds = new HashSet<>(template
+            .queryForList(FIND_FRESH_MATERIALIZED_IDS_QUERY, params, Long.class));
+        List<Long> outdatedIds = idList.stream()
+            .filter(id->!freshIds.contains(id))
+            .collect(Collectors.toList());
+        materialize(outdatedIds, depth, MATERIALIZE_REQUESTED_QUERY);
+
+        params.addValue("races", Arrays.asList(toRaceIds(races)));
+        return template.query(FIND_MATERIALIZED_QUERY, params, STD_ROW_MAPPER);
+    }
+
+    /**
+     * Recalculates materialized summaries of characters that are members of the teams. Characters that were not
+     * requested during the last {@link #REQUEST_TTL} are ignored. Call it after new team snapshots are taken.
+     * Teams are refreshed in batches of {@link #REFRESH_BATCH_SIZE}.
+     *
+     * @param teamIds team ids
+     * @return number of refreshed characters
+     */
+    public int refresh(List<Long> teamIds)
+    {
+        int count = 0;
+        for(int i = 0; i < teamIds.size();)
+        {
+            int to = Math.min(i + REFRESH_BATCH_SIZE, teamIds.size());
+            count += refreshBatch(teamIds.subList(i, to));
+            i = to;
+        }
+        return count;
+    }
+
+    private int refreshBatch(List<Long> teamIds)
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("teamIds", teamIds)
+            .addValue("queueType", conversionService.convert(QueueType.LOTV_1V1, Integer.class))
+            .addValue("requested", OffsetDateTime.now().minus(REQUEST_TTL));
+        List<Long> ids = template.queryForList(FIND_MATERIALIZED_IDS_BY_TEAM_IDS_QUERY, params, Long.class);
+        for(int depth : MATERIALIZED_DEPTHS) materialize(ids, depth, MATERIALIZE_REFRESHED_QUERY);
+        return ids.size();
+    }
+
+    private void materialize(List<Long> ids, int depth, String query)
+    {
+        if(ids.isEmpty()) return;
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("idArray", ids.toArray(Long[]::new), Types.ARRAY)
+            .addValue("depth", depth)
+            .addValue("races", DEFAULT_RACES, Types.ARRAY)
+            .addValue("requested", OffsetDateTime.now().minus(REQUEST_TTL));
+        template.update(query, params);
+    }
+
+    /**
+     * Removes summaries that were not refreshed during the last {@link #MATERIALIZED_TTL}. Such summaries
+     * are ignored by {@link #find(Long[], int, Race...)} anyway.
+     *
+     * @return number of removed rows
+     */
+    public int removeExpired()
+    {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("updated", OffsetDateTime.now().minus(MATERIALIZED_TTL));
+        return template.update(REMOVE_EXPIRED_QUERY, params);
+    }
+
+    private Integer[] toRaceIds(Race... races)
+    {
+        return races.length == 0
             ? DEFAULT_RACES
             : Arrays.stream(races)
                 .map(r->conversionService.convert(r, Integer.class))
                 .toArray(Integer[]::new);
-        params.addValue("races", raceInts, Types.ARRAY);
-        return template.query(FIND_PLAYER_CHARACTER_SUMMARY_BY_IDS_AND_TIMESTAMP, params, STD_ROW_MAPPER);
     }
 
 }
@@ -0,0 +1,94 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.inner;
+
+import com.nephest.battlenet.sc2.model.Race;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardPlayerCharacter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * Encodes team legacy ids. A legacy id is a decimal concatenation of sorted member realms and ids followed
+ * by sorted race ids, e.g. realm 1, id 123, Terran is encoded as {@code 11231}. This value is used by
+ * {@link TeamLegacyUid} and in public URLs, so the format must not be changed.
+ * </p>
+ * <p>
+ * Digits are accumulated in a primitive {@code long} and switch to {@link BigInteger} arithmetic only when
+ * the value doesn't fit, which is the case for big teams only. Input arrays are never modified.
+ * </p>
+ */
+public final class TeamLegacyIdCodec
+{
+
+    public static final Comparator<BlizzardPlayerCharacter> CHARACTER_COMPARATOR = Comparator
+        .comparingInt(BlizzardPlayerCharacter::getRealm)
+        .thenComparingLong(BlizzardPlayerCharacter::getId);
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private long value;
+    private BigInteger bigValue;
+
+    private TeamLegacyIdCodec(){}
+
+    public static BigInteger encode(BlizzardPlayerCharacter[] characters, Race... races)
+    {
+        BlizzardPlayerCharacter[] sortedCharacters = characters;
+        if(characters.length > 1)
+        {
+            sortedCharacters = characters.clone();
+            Arrays.sort(sortedCharacters, CHARACTER_COMPARATOR);
+        }
+        Race[] sortedRaces = races;
+        if(races.length > 1)
+        {
+            sortedRaces = races.clone();
+            Arrays.sort(sortedRaces);
+        }
+
+        TeamLegacyIdCodec codec = new TeamLegacyIdCodec();
+        for(BlizzardPlayerCharacter c : sortedCharacters) codec.append(c.getRealm()).append(c.getId());
+        for(Race r : sortedRaces) codec.append(r.getId());
+        return codec.toBigInteger();
+    }
+
+    private TeamLegacyIdCodec append(long number)
+    {
+        if(number < 0) throw new IllegalArgumentException("Negative numbers are not supported: " + number);
+
+        int digits = digits(number);
+        if(bigValue == null && digits < POWERS_OF_TEN.length)
+        {
+            long multiplier = POWERS_OF_TEN[digits];
+            if(value <= (Long.MAX_VALUE - number) / multiplier)
+            {
+                value = value * multiplier + number;
+                return this;
+            }
+        }
+
+        if(bigValue == null) bigValue = BigInteger.valueOf(value);
+        bigValue = bigValue.multiply(BigInteger.TEN.pow(digits)).add(BigInteger.valueOf(number));
+        return this;
+    }
+
+    private BigInteger toBigInteger()
+    {
+        return bigValue == null ? BigInteger.valueOf(value) : bigValue;
+    }
+
+    private static int digits(long number)
+    {
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) if(number < POWERS_OF_TEN[i]) return i;
+        return POWERS_OF_TEN.length;
+    }
+
+}
@@ -0,0 +1,43 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.ladder.common;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.nephest.battlenet.sc2.config.convert.jackson.LadderTeamStateCollectionToDeltaArraySerializer;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeam;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+
+/**
+ * {@link CommonTeamHistory} with delta encoded states, see
+ * {@link LadderTeamStateCollectionToDeltaArraySerializer}
+ */
+public class DeltaCommonTeamHistory
+{
+
+    @NotNull
+    private final List<LadderTeam> teams;
+
+    @NotNull
+    @JsonSerialize(using = LadderTeamStateCollectionToDeltaArraySerializer.class)
+    private final List<LadderTeamState> states;
+
+    public DeltaCommonTeamHistory(CommonTeamHistory history)
+    {
+        this.teams = history.getTeams();
+        this.states = history.getStates();
+    }
+
+    public List<LadderTeam> getTeams()
+    {
+        return teams;
+    }
+
+    public List<LadderTeamState> getStates()
+    {
+        return states;
+    }
+
+}
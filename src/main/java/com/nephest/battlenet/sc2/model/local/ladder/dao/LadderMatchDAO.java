@@ -29,7 +29,7 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -133,8 +133,9 @@ public class LadderMatchDAO
             + "AND (:maxDuration::integer IS NULL OR duration <= :maxDuration) "
             + "AND (:minRating::integer IS NULL OR rating_min >= :minRating) "
             + "AND (:maxRating::integer IS NULL OR rating_max <= :maxRating) "
-            + "AND (:raceVod::text IS NULL OR race_vod LIKE :raceVod) "
-            + "AND (:race::text IS NULL OR race LIKE :race) "
+            + "AND (:raceVod::smallint IS NULL OR race_vod & :raceVod <> 0) "
+            + "AND (:matchup::smallint IS NULL OR race = :matchup) "
+            + "AND (:raceAny::smallint IS NULL OR race & :raceAny <> 0) "
             + "AND (:includeSubOnly = true OR sub_only_vod = false) "
             + "ORDER BY date DESC, type DESC, map_id DESC "
             + "LIMIT :limit "
@@ -142,6 +143,13 @@ public class LadderMatchDAO
             "<", "DESC"
         );
 
+    private static final String FIND_MATCHES_BY_IDS =
+        String.format
+        (
+            "WITH match_filter AS (SELECT id FROM match WHERE id IN (:matchIds)) " + FIND_MATCHES_TEMPLATE,
+            "<", "DESC"
+        );
+
     private static final String VERSUS_FILTER_TEMPLATE =
         "WITH "
         + "vs_match_filter AS "
@@ -266,6 +274,7 @@ public class LadderMatchDAO
 
     private final NamedParameterJdbcTemplate template;
     private final ConversionService conversionService;
+    private final LadderVodIndex ladderVodIndex;
 
     private int resultsPerPage = 10;
 
@@ -273,11 +282,13 @@ public class LadderMatchDAO
     public LadderMatchDAO
     (
         @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template,
-        @Qualifier("sc2StatsConversionService") ConversionService conversionService
+        @Qualifier("sc2StatsConversionService") ConversionService conversionService,
+        LadderVodIndex ladderVodIndex
     )
     {
         this.template = template;
         this.conversionService = conversionService;
+        this.ladderVodIndex = ladderVodIndex;
         initMappers();
         initMisc();
     }
@@ -419,20 +430,29 @@ public class LadderMatchDAO
         if(Math.abs(pageDiff) != 1) throw new IllegalArgumentException("Invalid page diff");
         long finalPage = page + pageDiff;
 
-        String raceStr = Stream.of(race, versusRace)
-            .filter(Objects::nonNull)
-            .mapToInt(r->conversionService.convert(r, Integer.class))
-            .sorted()
-            .mapToObj(String::valueOf)
-            .collect(Collectors.joining(""));
-        raceStr = raceStr.isEmpty() ? null : "%" + raceStr + "%";
-        String raceVodStr = race == null
-            ? null
-            : "%" + conversionService.convert(race, Integer.class) + "%";
+        Optional<List<Long>> ids = ladderVodIndex.find
+        (
+            race, versusRace,
+            minRating, maxRating,
+            minDuration, maxDuration,
+            includeSubOnly,
+            mapId,
+            dateAnchor, typeAnchor, mapAnchor,
+            getResultsPerPage()
+        );
+        if(ids.isPresent())
+            return new PagedSearchResult<>(null, (long) getResultsPerPage(), finalPage, findMatches(ids.get()));
+
+        //races are encoded as bitmasks
+        boolean fullMatchup = race != null && versusRace != null;
         MapSqlParameterSource params = new MapSqlParameterSource()
-            .addValue("matchType", conversionService.convert(BaseMatch.MatchType._1V1, Integer.class))
-            .addValue("raceVod", raceVodStr)
-            .addValue("race", raceStr)
+            .addValue("raceVod", race == null ? null : LadderVodIndex.getRaceMask(conversionService, race))
+            .addValue("matchup", fullMatchup
+                ? LadderVodIndex.getRaceMask(conversionService, race, versusRace)
+                : null)
+            .addValue("raceAny", fullMatchup || (race == null && versusRace == null)
+                ? null
+                : LadderVodIndex.getRaceMask(conversionService, race, versusRace))
             .addValue("minRating", minRating)
             .addValue("maxRating", maxRating)
             .addValue("minDuration", minDuration)
@@ -449,6 +469,21 @@ public class LadderMatchDAO
         return new PagedSearchResult<>(null, (long) getResultsPerPage(), finalPage, matches);
     }
 
+    /**
+     * @param ids match ids sorted by (date, type, map_id) DESC
+     * @return matches in the same order
+     */
+    private List<LadderMatch> findMatches(List<Long> ids)
+    {
+        if(ids.isEmpty()) return new ArrayList<>();
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("matchIds", ids)
+            .addValue("cheaterReportType", conversionService
+                .convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class));
+        return template.query(FIND_MATCHES_BY_IDS, params, MATCHES_EXTRACTOR);
+    }
+
     private MapSqlParameterSource addMatchCursorParams
     (
         OffsetDateTime dateAnchor,
@@ -28,7 +28,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -132,6 +136,13 @@ public class LadderSearchDAO
     private static final String FIND_TEAM_MEMBERS_ANCHOR_REVERSED_QUERY =
         String.format(FIND_TEAM_MEMBERS_ANCHOR_FORMAT, "ASC", ">");
 
+    private static final String FIND_TEAM_MEMBERS_BY_IDS_QUERY =
+        "SELECT "
+        + FIND_TEAM_MEMBERS_BASE
+        + LADDER_SEARCH_TEAM_FROM
+        + "WHERE team.id IN (:teamIds) "
+        + "ORDER BY team.rating DESC, team.id DESC";
+
     private static final String FIND_CARACTER_TEAM_MEMBERS_QUERY =
         "WITH team_filtered AS "
         + "( "
@@ -197,6 +208,7 @@ public class LadderSearchDAO
     private NamedParameterJdbcTemplate template;
     private ConversionService conversionService;
     private SeasonDAO seasonDAO;
+    private LadderSearchIndex ladderSearchIndex;
 
     private static RowMapper<LadderTeamMember> LADDER_TEAM_MEMBER_MAPPER;
     private static RowMapper<LadderTeam> LADDER_TEAM_MAPPER;
@@ -215,12 +227,14 @@ public class LadderSearchDAO
     (
         @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template,
         @Qualifier("sc2StatsConversionService") ConversionService conversionService,
-        @Autowired SeasonDAO seasonDAO
+        @Autowired SeasonDAO seasonDAO,
+        @Autowired LadderSearchIndex ladderSearchIndex
     )
     {
         this.template = template;
         this.conversionService = conversionService;
         this.seasonDAO = seasonDAO;
+        this.ladderSearchIndex = ladderSearchIndex;
         initMappers(conversionService);
     }
 
@@ -364,6 +378,22 @@ public class LadderSearchDAO
     {
         boolean forward = pageDiff > -1;
         long finalPage = page + pageDiff;
+        Optional<List<Long>> indexedIds = ladderSearchIndex.findAnchored
+        (
+            season,
+            regions,
+            leagueTypes,
+            queueType,
+            teamType,
+            ratingAnchor,
+            idAnchor,
+            (Math.abs(pageDiff) - 1L) * getResultsPerPage(),
+            getResultsPerPage(),
+            forward
+        );
+        if(indexedIds.isPresent())
+            return new PagedSearchResult<>(null, (long) getResultsPerPage(), finalPage, findTeams(indexedIds.get()));
+
         long membersPerTeam = queueType.getTeamFormat().getMemberCount(teamType);
         long offset = (Math.abs(pageDiff) - 1) * getResultsPerPage() * membersPerTeam;
         long limit = getResultsPerPage() * membersPerTeam;
@@ -384,6 +414,26 @@ public class LadderSearchDAO
         return new PagedSearchResult<>(null, (long) getResultsPerPage(), finalPage, teams);
     }
 
+    /**
+     * @param ids team ids
+     * @return teams in the order of the provided ids
+     */
+    private List<LadderTeam> findTeams(List<Long> ids)
+    {
+        if(ids.isEmpty()) return new ArrayList<>();
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("teamIds", ids)
+            .addValue("cheaterReportType", conversionService
+                .convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class));
+        List<LadderTeam> teams = template.query(FIND_TEAM_MEMBERS_BY_IDS_QUERY, params, LADDER_TEAMS_EXTRACTOR);
+        //ratings could be changed by the running update, keep the indexed order so pages don't overlap
+        Map<Long, Integer> order = new HashMap<>(ids.size());
+        for(int i = 0; i < ids.size(); i++) order.put(ids.get(i), i);
+        teams.sort(Comparator.comparing(t->order.get(t.getId())));
+        return teams;
+    }
+
     @Cacheable
     (
         cacheNames="search-seasons"
@@ -0,0 +1,355 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.ladder.dao;
+
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * <p>
+ * Immutable in-memory snapshot of the ladder order of indexed seasons. Every (queue, team type) partition is
+ * split into (region, league) segments that hold team ids sorted by (rating, id) DESC, so an anchored page is
+ * found by binary searching the anchor in the selected segments and merging them, without scanning the
+ * filtered out teams or the offset pages in the DB.
+ * </p>
+ * <p>
+ * The snapshot is rebuilt after each ladder update cycle, so it lags behind the ladder while the cycle saves new
+ * ratings. Pages are consistent with the snapshot rather than with the current ratings: an anchor that is
+ * indexed is located by its indexed rating, because the fresh rating a client got from the previous page can
+ * point to a different position in the stale order and skip or repeat teams. Only ids are indexed, team data is
+ * loaded by the callers.
+ * </p>
+ */
+@Repository
+public class LadderSearchIndex
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(LadderSearchIndex.class);
+
+    private static final String FIND_TEAMS_QUERY =
+        "SELECT id, rating, region, league_type, queue_type, team_type "
+        + "FROM team "
+        + "WHERE season = :season "
+        + "ORDER BY queue_type DESC, team_type DESC, rating DESC, id DESC";
+
+    private static final int LEAGUE_COUNT = BaseLeague.LeagueType.values().length;
+    private static final int SEGMENT_COUNT = Region.values().length * LEAGUE_COUNT;
+
+    private final NamedParameterJdbcTemplate template;
+    private final ConversionService conversionService;
+
+    private volatile Map<Integer, Map<Tuple2<QueueType, TeamType>, Partition>> index = Map.of();
+
+    @Autowired
+    public LadderSearchIndex
+    (
+        @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template,
+        @Qualifier("sc2StatsConversionService") ConversionService conversionService
+    )
+    {
+        this.template = template;
+        this.conversionService = conversionService;
+    }
+
+    private static int getSegmentIndex(Region region, BaseLeague.LeagueType league)
+    {
+        return region.ordinal() * LEAGUE_COUNT + league.ordinal();
+    }
+
+    /**
+     * Replaces the current snapshot with a new snapshot of the provided seasons. Seasons that are not provided
+     * are removed from the index.
+     *
+     * @param seasons seasons to index
+     */
+    public void update(Collection<Integer> seasons)
+    {
+        Map<Integer, Map<Tuple2<QueueType, TeamType>, Partition>> newIndex = new HashMap<>();
+        for(Integer season : seasons) newIndex.put(season, load(season));
+        index = Collections.unmodifiableMap(newIndex);
+    }
+
+    private Map<Tuple2<QueueType, TeamType>, Partition> load(int season)
+    {
+        Map<Tuple2<QueueType, TeamType>, PartitionBuilder> builders = new HashMap<>();
+        template.query(FIND_TEAMS_QUERY, new MapSqlParameterSource("season", season), rs->{
+            QueueType queueType = conversionService.convert(rs.getInt("queue_type"), QueueType.class);
+            TeamType teamType = conversionService.convert(rs.getInt("team_type"), TeamType.class);
+            builders.computeIfAbsent(Tuples.of(queueType, teamType), k->new PartitionBuilder()).add
+            (
+                conversionService.convert(rs.getInt("region"), Region.class),
+                conversionService.convert(rs.getInt("league_type"), BaseLeague.LeagueType.class),
+                rs.getShort("rating"),
+                rs.getLong("id")
+            );
+        });
+        Map<Tuple2<QueueType, TeamType>, Partition> partitions = new HashMap<>(builders.size());
+        builders.forEach((k, v)->partitions.put(k, v.build()));
+        LOG.debug("Indexed {} ladder partitions of season {}", partitions.size(), season);
+        return Collections.unmodifiableMap(partitions);
+    }
+
+    public boolean isIndexed(int season)
+    {
+        return index.containsKey(season);
+    }
+
+    /**
+     * Finds a page of teams that follow the anchor. Order and anchor semantics are the same as in
+     * {@link LadderSearchDAO#findAnchored(int, Set, Set, QueueType, TeamType, long, long, long, int)}.
+     *
+     * @param offset number of teams to skip after the anchor
+     * @param limit max number of teams to return
+     * @param forward true to find teams that are lower than the anchor, false to find teams that are higher
+     * @return team ids sorted by (rating, id) DESC, empty optional if the season is not indexed
+     */
+    public Optional<List<Long>> findAnchored
+    (
+        int season,
+        Set<Region> regions,
+        Set<BaseLeague.LeagueType> leagueTypes,
+        QueueType queueType,
+        TeamType teamType,
+        long ratingAnchor,
+        long idAnchor,
+        long offset,
+        int limit,
+        boolean forward
+    )
+    {
+        Map<Tuple2<QueueType, TeamType>, Partition> partitions = index.get(season);
+        if(partitions == null) return Optional.empty();
+
+        Partition partition = partitions.get(Tuples.of(queueType, teamType));
+        if(partition == null) return Optional.of(List.of());
+
+        return Optional.of(partition.find(regions, leagueTypes, ratingAnchor, idAnchor, offset, limit, forward));
+    }
+
+    static final class Partition
+    {
+
+        private final Segment[] segments;
+        //all ids sorted by id and their indexed ratings, used to find the indexed position of an anchor
+        private final long[] sortedIds;
+        private final short[] sortedIdRatings;
+
+        private Partition(Segment[] segments)
+        {
+            this.segments = segments;
+            int size = 0;
+            for(Segment segment : segments) if(segment != null) size += segment.size();
+            sortedIds = new long[size];
+            int i = 0;
+            for(Segment segment : segments)
+            {
+                if(segment == null) continue;
+                System.arraycopy(segment.ids, 0, sortedIds, i, segment.size());
+                i += segment.size();
+            }
+            Arrays.sort(sortedIds);
+            sortedIdRatings = new short[size];
+            for(Segment segment : segments)
+            {
+                if(segment == null) continue;
+                for(int j = 0; j < segment.size(); j++)
+                    sortedIdRatings[Arrays.binarySearch(sortedIds, segment.ids[j])] = segment.ratings[j];
+            }
+        }
+
+        /**
+         * @return indexed rating of the team, or the provided rating if the team is not indexed
+         */
+        long getIndexedRating(long id, long rating)
+        {
+            int ix = Arrays.binarySearch(sortedIds, id);
+            return ix < 0 ? rating : sortedIdRatings[ix];
+        }
+
+        List<Long> find
+        (
+            Set<Region> regions,
+            Set<BaseLeague.LeagueType> leagueTypes,
+            long ratingAnchor,
+            long idAnchor,
+            long offset,
+            int limit,
+            boolean forward
+        )
+        {
+            List<Segment> selected = new ArrayList<>(regions.size() * leagueTypes.size());
+            for(Region region : regions)
+                for(BaseLeague.LeagueType league : leagueTypes)
+                {
+                    Segment segment = segments[getSegmentIndex(region, league)];
+                    if(segment != null) selected.add(segment);
+                }
+
+            ratingAnchor = getIndexedRating(idAnchor, ratingAnchor);
+            int[] cursors = new int[selected.size()];
+            int step = forward ? 1 : -1;
+            for(int i = 0; i < cursors.length; i++)
+                cursors[i] = forward
+                    ? selected.get(i).seek(ratingAnchor, idAnchor, true)
+                    : selected.get(i).seek(ratingAnchor, idAnchor, false) - 1;
+
+            List<Long> ids = new ArrayList<>(limit);
+            long skipped = 0;
+            while(ids.size() < limit)
+            {
+                //k-way merge, the number of segments is small, so a linear scan is faster than a heap
+                int next = -1;
+                for(int i = 0; i < cursors.length; i++)
+                {
+                    Segment segment = selected.get(i);
+                    if(cursors[i] < 0 || cursors[i] >= segment.size()) continue;
+                    if(next == -1) {next = i; continue;}
+
+                    int cmp = segment.compare(cursors[i], selected.get(next), cursors[next]);
+                    if(forward ? cmp > 0 : cmp < 0) next = i;
+                }
+                if(next == -1) break;
+
+                if(skipped < offset)
+                {
+                    skipped++;
+                }
+                else
+                {
+                    ids.add(selected.get(next).ids[cursors[next]]);
+                }
+                cursors[next] += step;
+            }
+            if(!forward) Collections.reverse(ids);
+            return ids;
+        }
+
+    }
+
+    private static final class Segment
+    {
+
+        private final short[] ratings;
+        private final long[] ids;
+
+        private Segment(short[] ratings, long[] ids)
+        {
+            this.ratings = ratings;
+            this.ids = ids;
+        }
+
+        int size()
+        {
+            return ids.length;
+        }
+
+        private static int compare(long rating1, long id1, long rating2, long id2)
+        {
+            int cmp = Long.compare(rating1, rating2);
+            return cmp != 0 ? cmp : Long.compare(id1, id2);
+        }
+
+        int compare(int ix, Segment other, int otherIx)
+        {
+            return compare(ratings[ix], ids[ix], other.ratings[otherIx], other.ids[otherIx]);
+        }
+
+        /**
+         * @param strict true to find the first team that is lower than the anchor, false to find the first team
+         * that is lower than or equal to the anchor
+         * @return index of the first matching team, or size if there are no such teams
+         */
+        int seek(long ratingAnchor, long idAnchor, boolean strict)
+        {
+            int low = 0;
+            int high = ids.length;
+            while(low < high)
+            {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(ratings[mid], ids[mid], ratingAnchor, idAnchor);
+                if(strict ? cmp < 0 : cmp <= 0)
+                {
+                    high = mid;
+                }
+                else
+                {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+    }
+
+    /**
+     * Builds a partition, teams must be added in (rating, id) DESC order.
+     */
+    static final class PartitionBuilder
+    {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final short[][] ratings = new short[SEGMENT_COUNT][];
+        private final long[][] ids = new long[SEGMENT_COUNT][];
+        private final int[] sizes = new int[SEGMENT_COUNT];
+
+        PartitionBuilder add(Region region, BaseLeague.LeagueType league, short rating, long id)
+        {
+            int segment = getSegmentIndex(region, league);
+            int size = sizes[segment];
+            if(ids[segment] == null)
+            {
+                ratings[segment] = new short[INITIAL_CAPACITY];
+                ids[segment] = new long[INITIAL_CAPACITY];
+            }
+            else if(size == ids[segment].length)
+            {
+                ratings[segment] = Arrays.copyOf(ratings[segment], size * 2);
+                ids[segment] = Arrays.copyOf(ids[segment], size * 2);
+            }
+            ratings[segment][size] = rating;
+            ids[segment][size] = id;
+            sizes[segment]++;
+            return this;
+        }
+
+        Partition build()
+        {
+            Segment[] segments = new Segment[SEGMENT_COUNT];
+            for(int i = 0; i < SEGMENT_COUNT; i++)
+            {
+                if(sizes[i] == 0) continue;
+                segments[i] = new Segment
+                (
+                    Arrays.copyOf(ratings[i], sizes[i]),
+                    Arrays.copyOf(ids[i], sizes[i])
+                );
+            }
+            return new Partition(segments);
+        }
+
+    }
+
+}
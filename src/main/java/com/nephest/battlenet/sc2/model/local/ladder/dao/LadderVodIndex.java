@@ -0,0 +1,377 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.ladder.dao;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.Race;
+import com.nephest.battlenet.sc2.model.local.dao.DAOUtils;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * <p>
+ * Immutable in-memory snapshot of twitch VOD matches. Matches are stored in columns sorted by
+ * (date, type, map_id) DESC, so an anchored page is found by binary searching the anchor and scanning the
+ * following matches until the page is filled. All VOD filters are applied in memory.
+ * </p>
+ * <p>
+ * The snapshot is rebuilt after each twitch update, VOD stats don't change between updates. Only ids are
+ * indexed, match data is loaded by the callers.
+ * </p>
+ */
+@Repository
+public class LadderVodIndex
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(LadderVodIndex.class);
+
+    private static final String FIND_VODS_QUERY =
+        "SELECT id, date, type, map_id, duration, rating_min, rating_max, race, race_vod, sub_only_vod "
+        + "FROM match "
+        + "WHERE vod = true "
+        + "ORDER BY date DESC, type DESC, map_id DESC, id DESC";
+
+    static final int NULL = Integer.MIN_VALUE;
+
+    private final NamedParameterJdbcTemplate template;
+    private final ConversionService conversionService;
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public LadderVodIndex
+    (
+        @Qualifier("sc2StatsNamedTemplate") NamedParameterJdbcTemplate template,
+        @Qualifier("sc2StatsConversionService") ConversionService conversionService
+    )
+    {
+        this.template = template;
+        this.conversionService = conversionService;
+    }
+
+    static long toMicros(OffsetDateTime dateTime)
+    {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, dateTime.toInstant());
+    }
+
+    private static int getInt(Integer val)
+    {
+        return val == null ? NULL : val;
+    }
+
+    /**
+     * @return race bitmask, race id n is bit n - 1. This is the encoding of the match race columns.
+     */
+    public static int getRaceMask(ConversionService conversionService, Race... races)
+    {
+        int mask = 0;
+        for(Race race : races)
+            if(race != null) mask |= 1 << (conversionService.convert(race, Integer.class) - 1);
+        return mask;
+    }
+
+    /**
+     * Replaces the current snapshot with a new snapshot of all VOD matches.
+     */
+    public void update()
+    {
+        Builder builder = new Builder();
+        template.query(FIND_VODS_QUERY, rs->{
+            builder.add
+            (
+                rs.getLong("id"),
+                toMicros(rs.getObject("date", OffsetDateTime.class)),
+                rs.getInt("type"),
+                rs.getInt("map_id"),
+                getInt(DAOUtils.getInteger(rs, "duration")),
+                getInt(DAOUtils.getInteger(rs, "rating_min")),
+                getInt(DAOUtils.getInteger(rs, "rating_max")),
+                rs.getInt("race"),
+                rs.getInt("race_vod"),
+                //null is treated as sub only to match the SQL filter
+                !Boolean.FALSE.equals(rs.getObject("sub_only_vod", Boolean.class))
+            );
+        });
+        snapshot = builder.build();
+        LOG.debug("Indexed {} VODs", snapshot.ids.length);
+    }
+
+    public boolean isIndexed()
+    {
+        return snapshot != null;
+    }
+
+    /**
+     * Finds a page of VOD matches that follow the anchor. Filters are the same as in
+     * {@link LadderMatchDAO#findTwitchVods}.
+     *
+     * @return match ids sorted by (date, type, map_id) DESC, empty optional if VODs are not indexed
+     */
+    public Optional<List<Long>> find
+    (
+        Race race, Race versusRace,
+        Integer minRating, Integer maxRating,
+        Integer minDuration, Integer maxDuration,
+        boolean includeSubOnly,
+        Integer mapId,
+        OffsetDateTime dateAnchor,
+        BaseMatch.MatchType typeAnchor,
+        int mapAnchor,
+        int limit
+    )
+    {
+        Snapshot current = snapshot;
+        if(current == null) return Optional.empty();
+
+        Filter filter = new Filter
+        (
+            getRaceMask(conversionService, race),
+            race != null && versusRace != null ? getRaceMask(conversionService, race, versusRace) : 0,
+            race == null || versusRace == null ? getRaceMask(conversionService, race, versusRace) : 0,
+            getInt(minRating), getInt(maxRating),
+            getInt(minDuration), getInt(maxDuration),
+            includeSubOnly,
+            getInt(mapId)
+        );
+        return Optional.of(current.find
+        (
+            filter,
+            toMicros(dateAnchor), conversionService.convert(typeAnchor, Integer.class), mapAnchor,
+            limit
+        ));
+    }
+
+    /**
+     * Unused filters are 0 for masks and {@link #NULL} for values.
+     */
+    static final class Filter
+    {
+
+        private final int raceVod;
+        private final int matchup;
+        private final int raceAny;
+        private final int minRating;
+        private final int maxRating;
+        private final int minDuration;
+        private final int maxDuration;
+        private final boolean includeSubOnly;
+        private final int mapId;
+
+        Filter
+        (
+            int raceVod,
+            int matchup,
+            int raceAny,
+            int minRating,
+            int maxRating,
+            int minDuration,
+            int maxDuration,
+            boolean includeSubOnly,
+            int mapId
+        )
+        {
+            this.raceVod = raceVod;
+            this.matchup = matchup;
+            this.raceAny = raceAny;
+            this.minRating = minRating;
+            this.maxRating = maxRating;
+            this.minDuration = minDuration;
+            this.maxDuration = maxDuration;
+            this.includeSubOnly = includeSubOnly;
+            this.mapId = mapId;
+        }
+
+    }
+
+    static final class Snapshot
+    {
+
+        private final long[] ids;
+        private final long[] dates;
+        private final int[] types;
+        private final int[] maps;
+        private final int[] durations;
+        private final int[] ratingsMin;
+        private final int[] ratingsMax;
+        private final byte[] races;
+        private final byte[] racesVod;
+        private final boolean[] subOnly;
+
+        private Snapshot
+        (
+            long[] ids,
+            long[] dates,
+            int[] types,
+            int[] maps,
+            int[] durations,
+            int[] ratingsMin,
+            int[] ratingsMax,
+            byte[] races,
+            byte[] racesVod,
+            boolean[] subOnly
+        )
+        {
+            this.ids = ids;
+            this.dates = dates;
+            this.types = types;
+            this.maps = maps;
+            this.durations = durations;
+            this.ratingsMin = ratingsMin;
+            this.ratingsMax = ratingsMax;
+            this.races = races;
+            this.racesVod = racesVod;
+            this.subOnly = subOnly;
+        }
+
+        /**
+         * @return index of the first match that is lower than the anchor
+         */
+        private int seek(long dateAnchor, int typeAnchor, int mapAnchor)
+        {
+            int from = 0;
+            int to = ids.length;
+            while(from < to)
+            {
+                int mid = (from + to) >>> 1;
+                if(compare(mid, dateAnchor, typeAnchor, mapAnchor) >= 0)
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+
+        private int compare(int ix, long date, int type, int map)
+        {
+            if(dates[ix] != date) return Long.compare(dates[ix], date);
+            if(types[ix] != type) return Integer.compare(types[ix], type);
+            return Integer.compare(maps[ix], map);
+        }
+
+        private boolean test(int ix, Filter filter)
+        {
+            return (filter.raceVod == 0 || (racesVod[ix] & filter.raceVod) != 0)
+                && (filter.matchup == 0 || races[ix] == filter.matchup)
+                && (filter.raceAny == 0 || (races[ix] & filter.raceAny) != 0)
+                && (filter.mapId == NULL || maps[ix] == filter.mapId)
+                && (filter.includeSubOnly || !subOnly[ix])
+                && isInRange(ratingsMin[ix], filter.minRating, NULL)
+                && isInRange(ratingsMax[ix], NULL, filter.maxRating)
+                && isInRange(durations[ix], filter.minDuration, filter.maxDuration);
+        }
+
+        //null values never match an active filter, the same as in SQL
+        private static boolean isInRange(int val, int min, int max)
+        {
+            if(min != NULL && (val == NULL || val < min)) return false;
+            return max == NULL || (val != NULL && val <= max);
+        }
+
+        List<Long> find(Filter filter, long dateAnchor, int typeAnchor, int mapAnchor, int limit)
+        {
+            List<Long> result = new ArrayList<>(limit);
+            for(int i = seek(dateAnchor, typeAnchor, mapAnchor); i < ids.length && result.size() < limit; i++)
+                if(test(i, filter)) result.add(ids[i]);
+            return result;
+        }
+
+    }
+
+    static final class Builder
+    {
+
+        private long[] ids = new long[64];
+        private long[] dates = new long[64];
+        private int[] types = new int[64];
+        private int[] maps = new int[64];
+        private int[] durations = new int[64];
+        private int[] ratingsMin = new int[64];
+        private int[] ratingsMax = new int[64];
+        private byte[] races = new byte[64];
+        private byte[] racesVod = new byte[64];
+        private boolean[] subOnly = new boolean[64];
+        private int size;
+
+        /**
+         * Matches must be added in (date, type, map_id) DESC order.
+         */
+        void add
+        (
+            long id,
+            long date,
+            int type,
+            int map,
+            int duration,
+            int ratingMin,
+            int ratingMax,
+            int race,
+            int raceVod,
+            boolean subOnlyVod
+        )
+        {
+            if(size == ids.length) grow();
+            ids[size] = id;
+            dates[size] = date;
+            types[size] = type;
+            maps[size] = map;
+            durations[size] = duration;
+            ratingsMin[size] = ratingMin;
+            ratingsMax[size] = ratingMax;
+            races[size] = (byte) race;
+            racesVod[size] = (byte) raceVod;
+            subOnly[size] = subOnlyVod;
+            size++;
+        }
+
+        private void grow()
+        {
+            int length = ids.length * 2;
+            ids = Arrays.copyOf(ids, length);
+            dates = Arrays.copyOf(dates, length);
+            types = Arrays.copyOf(types, length);
+            maps = Arrays.copyOf(maps, length);
+            durations = Arrays.copyOf(durations, length);
+            ratingsMin = Arrays.copyOf(ratingsMin, length);
+            ratingsMax = Arrays.copyOf(ratingsMax, length);
+            races = Arrays.copyOf(races, length);
+            racesVod = Arrays.copyOf(racesVod, length);
+            subOnly = Arrays.copyOf(subOnly, length);
+        }
+
+        Snapshot build()
+        {
+            return new Snapshot
+            (
+                Arrays.copyOf(ids, size),
+                Arrays.copyOf(dates, size),
+                Arrays.copyOf(types, size),
+                Arrays.copyOf(maps, size),
+                Arrays.copyOf(durations, size),
+                Arrays.copyOf(ratingsMin, size),
+                Arrays.copyOf(ratingsMax, size),
+                Arrays.copyOf(races, size),
+                Arrays.copyOf(racesVod, size),
+                Arrays.copyOf(subOnly, size)
+            );
+        }
+
+    }
+
+}
@@ -6,6 +6,8 @@ package com.nephest.battlenet.sc2.util;
 import java.time.Duration;
 import java.time.temporal.ChronoField;
 import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -87,4 +89,19 @@ public final class MiscUtil
             n<10000000?n<1000000?6:7:n<100000000?8: n<1000000000?9:10;
     }
 
+    /**
+     * Removes and returns all current elements of a concurrent collection. Elements that are added
+     * concurrently are either returned or left in the collection, but they are never lost, unlike with
+     * the read-then-clear approach.
+     *
+     * @param collection concurrent collection
+     * @return drained elements
+     */
+    public static <T> List<T> drain(Collection<T> collection)
+    {
+        List<T> drained = new ArrayList<>(collection);
+        collection.removeAll(drained);
+        return drained;
+    }
+
 }
@@ -0,0 +1,180 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * <p>
+ * Executes tasks on a fixed set of single threaded partitions. Tasks are routed by a key, tasks with equal keys
+ * are executed sequentially in submission order, tasks with different keys may be executed concurrently. Callers
+ * should pick keys that don't share DB rows(region, for example) to avoid lock contention between partitions.
+ * </p>
+ * <p>
+ * Deadlocks are still possible when unrelated tasks touch shared rows(accounts, maps, etc.), so tasks that fail
+ * with {@link PessimisticLockingFailureException} are retried. Tasks must be atomic(single transaction or
+ * single statement) to be safely retried.
+ * </p>
+ */
+public class PartitionedExecutorService
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedExecutorService.class);
+
+    public static final String QUEUE_METRIC_NAME = "executor.partition.queue";
+    public static final String WAIT_METRIC_NAME = "executor.partition.wait";
+    public static final String EXECUTION_METRIC_NAME = "executor.partition.execution";
+    public static final String RETRY_METRIC_NAME = "executor.partition.retry";
+    public static final Duration MIN_RETRY_BACKOFF = Duration.ofMillis(100);
+    public static final Duration MAX_RETRY_BACKOFF = Duration.ofMillis(1000);
+    public static final String KEYLESS_PARTITION_TAG = "keyless";
+
+    private final String name;
+    private final ThreadPoolExecutor[] partitions;
+    private final Timer[] waitTimers;
+    private final Timer[] executionTimers;
+    private final Counter[] retryCounters;
+    private final RetryTemplate retryTemplate;
+
+    public PartitionedExecutorService(String name, int partitionCount, int maxAttempts, MeterRegistry meterRegistry)
+    {
+        if(partitionCount < 1) throw new IllegalArgumentException("At least one partition is required");
+
+        this.name = name;
+        //the last partition is reserved for keyless tasks
+        int totalCount = partitionCount + 1;
+        this.partitions = new ThreadPoolExecutor[totalCount];
+        this.waitTimers = new Timer[totalCount];
+        this.executionTimers = new Timer[totalCount];
+        this.retryCounters = new Counter[totalCount];
+        for(int i = 0; i < totalCount; i++)
+        {
+            String partition = i == partitionCount ? KEYLESS_PARTITION_TAG : String.valueOf(i);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor
+            (
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory(name + i + "-")
+            );
+            partitions[i] = executor;
+            Gauge.builder(QUEUE_METRIC_NAME, executor, e->e.getQueue().size())
+                .tag("name", name)
+                .tag("partition", partition)
+                .register(meterRegistry);
+            waitTimers[i] = Timer.builder(WAIT_METRIC_NAME)
+                .tag("name", name)
+                .tag("partition", partition)
+                .register(meterRegistry);
+            executionTimers[i] = Timer.builder(EXECUTION_METRIC_NAME)
+                .tag("name", name)
+                .tag("partition", partition)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+            retryCounters[i] = Counter.builder(RETRY_METRIC_NAME)
+                .tag("name", name)
+                .tag("partition", partition)
+                .register(meterRegistry);
+        }
+        this.retryTemplate = RetryTemplate.builder()
+            .maxAttempts(maxAttempts)
+            .uniformRandomBackoff(MIN_RETRY_BACKOFF.toMillis(), MAX_RETRY_BACKOFF.toMillis())
+            .retryOn(PessimisticLockingFailureException.class)
+            .traversingCauses()
+            .build();
+    }
+
+    /**
+     * @return number of keyed partitions, the keyless partition is not included
+     */
+    public int getPartitionCount()
+    {
+        return partitions.length - 1;
+    }
+
+    /**
+     * Enum keys are routed by ordinal, so an enum with no more constants than there are partitions gets a
+     * dedicated partition for every constant. Other keys are routed by hash code. Null key is routed to a
+     * dedicated keyless partition, so keyless tasks don't queue behind keyed tasks.
+     *
+     * @param key routing key
+     * @return partition index
+     */
+    public int getPartition(Object key)
+    {
+        if(key == null) return getPartitionCount();
+
+        int hash = key instanceof Enum ? ((Enum<?>) key).ordinal() : key.hashCode();
+        return Math.floorMod(hash, getPartitionCount());
+    }
+
+    public int getQueueSize(int partition)
+    {
+        return partitions[partition].getQueue().size();
+    }
+
+    public <T> CompletableFuture<T> submit(Object key, Callable<T> task)
+    {
+        int partition = getPartition(key);
+        long submitted = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        partitions[partition].execute(()->
+        {
+            try
+            {
+                result.complete(execute(partition, submitted, task));
+            }
+            catch (Throwable t)
+            {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> submit(Object key, Runnable task)
+    {
+        return submit(key, ()->{task.run(); return null;});
+    }
+
+    private <T> T execute(int partition, long submitted, Callable<T> task)
+    throws Exception
+    {
+        waitTimers[partition].record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+        //retries are included, this is the latency observed by the caller
+        return executionTimers[partition].recordCallable(()->retryTemplate.<T, Exception>execute(ctx->
+        {
+            if(ctx.getRetryCount() > 0)
+            {
+                retryCounters[partition].increment();
+                LOG.warn
+                (
+                    "Retrying {}{} task, attempt {}: {}",
+                    name, partition, ctx.getRetryCount() + 1, ctx.getLastThrowable().getMessage()
+                );
+            }
+            return task.call();
+        }));
+    }
+
+    public void shutdown()
+    {
+        for(ThreadPoolExecutor partition : partitions) partition.shutdown();
+    }
+
+}
@@ -0,0 +1,171 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+/**
+ * <p>
+ * Concurrent de-duplicating set of primitive longs. Values are stored in open addressing hash tables, so adding
+ * a value doesn't allocate anything unless a table must grow. The set is split into independently locked
+ * stripes to reduce contention between writers.
+ * </p>
+ * <p>
+ * The set is intended to be used as an accumulator: writers {@link #add(long) add} values, then a consumer
+ * {@link #drain() drains} them in bulk. Draining resets the stripes to their initial capacity, so a burst of
+ * values(season start, for example) doesn't keep the memory allocated forever.
+ * </p>
+ */
+public class StripedLongSet
+{
+
+    public static final int DEFAULT_STRIPE_COUNT = 16;
+    public static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private static final long EMPTY = 0L;
+
+    private static final class Stripe
+    {
+
+        private long[] table = new long[INITIAL_STRIPE_CAPACITY];
+        private int size;
+        private boolean containsEmpty;
+
+        private synchronized boolean add(long value, long hash)
+        {
+            if(value == EMPTY)
+            {
+                if(containsEmpty) return false;
+                containsEmpty = true;
+                return true;
+            }
+
+            if(!insert(table, value, hash)) return false;
+            //load factor 0.5
+            if(++size * 2 > table.length) rehash();
+            return true;
+        }
+
+        private void rehash()
+        {
+            long[] newTable = new long[table.length * 2];
+            for(long value : table) if(value != EMPTY) insert(newTable, value, mix(value));
+            table = newTable;
+        }
+
+        private synchronized int size()
+        {
+            return size + (containsEmpty ? 1 : 0);
+        }
+
+        private synchronized long[] drain()
+        {
+            long[] values = new long[size()];
+            int ix = 0;
+            if(containsEmpty) values[ix++] = EMPTY;
+            for(long value : table) if(value != EMPTY) values[ix++] = value;
+            table = new long[INITIAL_STRIPE_CAPACITY];
+            size = 0;
+            containsEmpty = false;
+            return values;
+        }
+
+        private static boolean insert(long[] table, long value, long hash)
+        {
+            int mask = table.length - 1;
+            for(int i = (int) hash & mask; ; i = (i + 1) & mask)
+            {
+                if(table[i] == EMPTY)
+                {
+                    table[i] = value;
+                    return true;
+                }
+                if(table[i] == value) return false;
+            }
+        }
+
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    public StripedLongSet(int stripeCount)
+    {
+        if(stripeCount < 1 || Integer.bitCount(stripeCount) != 1)
+            throw new IllegalArgumentException("Stripe count must be a positive power of two");
+
+        stripes = new Stripe[stripeCount];
+        for(int i = 0; i < stripeCount; i++) stripes[i] = new Stripe();
+        //high bits pick a stripe, low bits pick a slot, so the values of a stripe are spread across its table
+        stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    public StripedLongSet()
+    {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    //murmur3 finalizer, sequential ids must be spread across stripes and slots
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * @param value value to add
+     * @return true if the value was added, false if the set already contained it
+     */
+    public boolean add(long value)
+    {
+        long hash = mix(value);
+        int stripe = stripes.length == 1 ? 0 : (int) (hash >>> stripeShift);
+        return stripes[stripe].add(value, hash);
+    }
+
+    /**
+     * @return approximate number of values, concurrent writes are not accounted for
+     */
+    public int size()
+    {
+        int size = 0;
+        for(Stripe stripe : stripes) size += stripe.size();
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all values from the set and returns them in no particular order. Stripes are drained one by one,
+     * values that are added concurrently are either returned or left in the set for the next drain, they are
+     * never lost.
+     *
+     * @return removed values
+     */
+    public long[] drain()
+    {
+        long[][] parts = new long[stripes.length][];
+        int total = 0;
+        for(int i = 0; i < stripes.length; i++)
+        {
+            parts[i] = stripes[i].drain();
+            total += parts[i].length;
+        }
+
+        long[] result = new long[total];
+        int offset = 0;
+        for(long[] part : parts)
+        {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,253 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * <p>
+ * Immutable case-insensitive term index for search suggestions. Terms are sorted, so prefix matches are found by
+ * binary search. Trigram postings are used to find infix matches and typo-tolerant matches. Suggestions are
+ * ranked by match type first(prefix, infix, typo), and by term weight second.
+ * </p>
+ * <p>
+ * Terms that differ only in case are merged, the term with the highest weight is suggested.
+ * </p>
+ */
+public final class TermIndex
+{
+
+    public static final int MIN_INFIX_LENGTH = 3;
+    public static final int MIN_TYPO_LENGTH = 4;
+    public static final int MIN_TWO_TYPOS_LENGTH = 8;
+
+    private static final String PADDING = "\0\0";
+    private static final TermIndex EMPTY = new TermIndex(new String[0], new String[0], new int[0], Map.of());
+
+    private final String[] terms;
+    private final String[] keys;
+    private final int[] weights;
+    private final Map<Long, int[]> trigrams;
+
+    private TermIndex(String[] terms, String[] keys, int[] weights, Map<Long, int[]> trigrams)
+    {
+        this.terms = terms;
+        this.keys = keys;
+        this.weights = weights;
+        this.trigrams = trigrams;
+    }
+
+    public static TermIndex empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * @param weights term weights, terms with higher weights are suggested first
+     * @return new index
+     */
+    public static TermIndex of(Map<String, Integer> weights)
+    {
+        Map<String, Map.Entry<String, Integer>> byKey = new HashMap<>(weights.size());
+        for(Map.Entry<String, Integer> entry : weights.entrySet())
+            byKey.merge(toKey(entry.getKey()), entry, (l, r)->r.getValue() > l.getValue() ? r : l);
+        String[] keys = byKey.keySet().toArray(String[]::new);
+        Arrays.sort(keys);
+
+        String[] terms = new String[keys.length];
+        int[] termWeights = new int[keys.length];
+        Map<Long, int[]> counts = new HashMap<>();
+        for(int i = 0; i < keys.length; i++)
+        {
+            Map.Entry<String, Integer> entry = byKey.get(keys[i]);
+            terms[i] = entry.getKey();
+            termWeights[i] = entry.getValue();
+            for(long trigram : getTrigrams(keys[i], true)) counts.computeIfAbsent(trigram, t->new int[1])[0]++;
+        }
+
+        //postings are filled in term order, so they are sorted
+        Map<Long, int[]> trigrams = new HashMap<>(counts.size());
+        Map<Long, int[]> sizes = new HashMap<>(counts.size());
+        counts.forEach((t, c)->{
+            trigrams.put(t, new int[c[0]]);
+            sizes.put(t, new int[1]);
+        });
+        for(int i = 0; i < keys.length; i++)
+            for(long trigram : getTrigrams(keys[i], true)) trigrams.get(trigram)[sizes.get(trigram)[0]++] = i;
+        return new TermIndex(terms, keys, termWeights, trigrams);
+    }
+
+    private static String toKey(String term)
+    {
+        return term.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param key term key
+     * @param padded true to add trigrams of the padded term start, they are used to find short terms with typos
+     * @return distinct trigrams
+     */
+    private static long[] getTrigrams(String key, boolean padded)
+    {
+        String str = padded ? PADDING + key : key;
+        if(str.length() < 3) return new long[0];
+
+        long[] trigrams = new long[str.length() - 2];
+        for(int i = 0; i < trigrams.length; i++)
+            trigrams[i] = ((long) str.charAt(i) << 32) | ((long) str.charAt(i + 1) << 16) | str.charAt(i + 2);
+        return LongStream.of(trigrams).distinct().toArray();
+    }
+
+    public int size()
+    {
+        return keys.length;
+    }
+
+    public List<String> suggest(String query, int limit)
+    {
+        if(limit < 1 || keys.length == 0 || query.isEmpty()) return List.of();
+
+        String key = toKey(query);
+        Set<Integer> found = new LinkedHashSet<>(limit);
+        int from = findFirst(key);
+        int to = from;
+        while(to < keys.length && keys[to].startsWith(key)) to++;
+        found.addAll(topByWeight(from, to, i->true, limit));
+
+        if(found.size() < limit && key.length() >= MIN_INFIX_LENGTH)
+            found.addAll(topByWeight(findInfix(key), i->!found.contains(i), limit - found.size()));
+        if(found.size() < limit && key.length() >= MIN_TYPO_LENGTH)
+            found.addAll(findTypos(key, i->!found.contains(i), limit - found.size()));
+
+        return found.stream()
+            .map(i->terms[i])
+            .collect(Collectors.toList());
+    }
+
+    private int findFirst(String key)
+    {
+        int ix = Arrays.binarySearch(keys, key);
+        return ix < 0 ? -ix - 1 : ix;
+    }
+
+    private Comparator<Integer> byWeight()
+    {
+        return Comparator.comparingInt((Integer i)->weights[i]).reversed()
+            .thenComparing(i->keys[i]);
+    }
+
+    private List<Integer> topByWeight(int from, int to, IntPredicate filter, int limit)
+    {
+        int[] ids = new int[to - from];
+        for(int i = from; i < to; i++) ids[i - from] = i;
+        return topByWeight(ids, filter, limit);
+    }
+
+    private List<Integer> topByWeight(int[] ids, IntPredicate filter, int limit)
+    {
+        //min heap of the best terms
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, byWeight().reversed());
+        for(int id : ids)
+        {
+            if(!filter.test(id)) continue;
+            top.add(id);
+            if(top.size() > limit) top.poll();
+        }
+        List<Integer> result = new ArrayList<>(top);
+        result.sort(byWeight());
+        return result;
+    }
+
+    private int[] findInfix(String key)
+    {
+        long[] queryTrigrams = getTrigrams(key, false);
+        int[] shortest = null;
+        for(long trigram : queryTrigrams)
+        {
+            int[] postings = trigrams.get(trigram);
+            if(postings == null) return new int[0];
+            if(shortest == null || postings.length < shortest.length) shortest = postings;
+        }
+        return Arrays.stream(shortest)
+            .filter(i->keys[i].contains(key))
+            .toArray();
+    }
+
+    private List<Integer> findTypos(String key, IntPredicate filter, int limit)
+    {
+        int maxDistance = key.length() >= MIN_TWO_TYPOS_LENGTH ? 2 : 1;
+        long[] queryTrigrams = getTrigrams(key, true);
+        //every typo changes up to 3 trigrams
+        int minHits = Math.max(1, queryTrigrams.length - maxDistance * 3);
+        Map<Integer, Integer> hits = new HashMap<>();
+        for(long trigram : queryTrigrams)
+        {
+            int[] postings = trigrams.get(trigram);
+            if(postings == null) continue;
+            for(int i : postings) hits.merge(i, 1, Integer::sum);
+        }
+
+        Map<Integer, Integer> distances = new HashMap<>();
+        for(Map.Entry<Integer, Integer> entry : hits.entrySet())
+        {
+            if(entry.getValue() < minHits || !filter.test(entry.getKey())) continue;
+            int distance = getPrefixDistance(key, keys[entry.getKey()], maxDistance);
+            if(distance <= maxDistance) distances.put(entry.getKey(), distance);
+        }
+        return distances.keySet().stream()
+            .sorted(Comparator.comparing((Integer i)->distances.get(i)).thenComparing(byWeight()))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return min edit distance between the query and term prefixes of similar length, or maxDistance + 1 if the
+     * distance is greater than maxDistance
+     */
+    static int getPrefixDistance(String query, String term, int maxDistance)
+    {
+        int min = maxDistance + 1;
+        int fromLength = Math.max(0, query.length() - maxDistance);
+        int toLength = Math.min(term.length(), query.length() + maxDistance);
+        for(int length = fromLength; length <= toLength; length++)
+            min = Math.min(min, getDistance(query, term, length));
+        return min;
+    }
+
+    /**
+     * Optimal string alignment distance between the query and the term prefix of the provided length.
+     */
+    private static int getDistance(String query, String term, int termLength)
+    {
+        int[][] d = new int[query.length() + 1][termLength + 1];
+        for(int i = 0; i <= query.length(); i++) d[i][0] = i;
+        for(int j = 0; j <= termLength; j++) d[0][j] = j;
+        for(int i = 1; i <= query.length(); i++)
+        {
+            for(int j = 1; j <= termLength; j++)
+            {
+                int cost = query.charAt(i - 1) == term.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if(i > 1 && j > 1
+                    && query.charAt(i - 1) == term.charAt(j - 2)
+                    && query.charAt(i - 2) == term.charAt(j - 1))
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+            }
+        }
+        return d[query.length()][termLength];
+    }
+
+}
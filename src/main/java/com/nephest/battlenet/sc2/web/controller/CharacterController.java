@@ -5,7 +5,6 @@ package com.nephest.battlenet.sc2.web.controller;
 
 import com.nephest.battlenet.sc2.model.BaseMatch;
 import com.nephest.battlenet.sc2.model.Race;
-import com.nephest.battlenet.sc2.model.discord.dao.DiscordUserDAO;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacterStats;
 import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
@@ -19,11 +18,8 @@ import com.nephest.battlenet.sc2.model.local.ladder.PagedSearchResult;
 import com.nephest.battlenet.sc2.model.local.ladder.common.CommonCharacter;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderCharacterDAO;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderMatchDAO;
-import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderPlayerCharacterStatsDAO;
-import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderProPlayerDAO;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchDAO;
-import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderTeamStateDAO;
-import com.nephest.battlenet.sc2.web.service.PlayerCharacterReportService;
+import com.nephest.battlenet.sc2.web.service.CommonCharacterService;
 import com.nephest.battlenet.sc2.web.service.SearchService;
 import io.swagger.v3.oas.annotations.Hidden;
 import java.time.OffsetDateTime;
@@ -61,29 +57,17 @@ public class CharacterController
     @Autowired
     private PlayerCharacterStatsDAO playerCharacterStatsDAO;
 
-    @Autowired
-    private LadderPlayerCharacterStatsDAO ladderPlayerCharacterStatsDAO;
-
     @Autowired
     private PlayerCharacterSummaryDAO playerCharacterSummaryDAO;
 
-    @Autowired
-    private LadderProPlayerDAO ladderProPlayerDAO;
-
     @Autowired
     private LadderMatchDAO ladderMatchDAO;
 
     @Autowired
-    private LadderTeamStateDAO ladderTeamStateDAO;
-
-    @Autowired
-    private DiscordUserDAO discordUserDAO;
-
-    @Autowired
-    private PlayerCharacterReportService reportService;
+    private SearchService searchService;
 
     @Autowired
-    private SearchService searchService;
+    private CommonCharacterService commonCharacterService;
 
     @Hidden
     @GetMapping("/search/{term}")
@@ -129,30 +113,7 @@ public class CharacterController
     )
     {
         if(types == null) types = new BaseMatch.MatchType[0];
-        List<LadderDistinctCharacter> linkedCharacters =
-            ladderCharacterDAO.findLinkedDistinctCharactersByCharacterId(id);
-        LadderDistinctCharacter currentCharacter = linkedCharacters.isEmpty()
-            ? null
-            : linkedCharacters.stream()
-                .filter(c->c.getMembers().getCharacter().getId() == id)
-                .findAny()
-                .orElseThrow();
-        return new CommonCharacter
-        (
-            ladderSearch.findCharacterTeams(id),
-            linkedCharacters,
-            ladderPlayerCharacterStatsDAO.findGlobalList(id),
-            ladderProPlayerDAO.getProPlayerByCharacterId(id),
-            currentCharacter != null
-                ? discordUserDAO
-                    .findByAccountId(currentCharacter.getMembers().getAccount().getId(), true)
-                    .orElse(null)
-                : null,
-            ladderMatchDAO.findMatchesByCharacterId(
-                id, OffsetDateTime.now(), BaseMatch.MatchType._1V1, 0, 0, 1, types).getResult(),
-            ladderTeamStateDAO.find(id),
-            reportService.findReportsByCharacterId(id)
-        );
+        return commonCharacterService.find(id, null, types);
     }
 
     @GetMapping("/{id}/common")
@@ -164,31 +125,7 @@ public class CharacterController
     )
     {
         if(types == null) types = new BaseMatch.MatchType[0];
-        OffsetDateTime from = depth == null ? null : OffsetDateTime.now().minusDays(depth);
-        List<LadderDistinctCharacter> linkedCharacters =
-            ladderCharacterDAO.findLinkedDistinctCharactersByCharacterId(id);
-        LadderDistinctCharacter currentCharacter = linkedCharacters.isEmpty()
-            ? null
-            : linkedCharacters.stream()
-                .filter(c->c.getMembers().getCharacter().getId() == id)
-                .findAny()
-                .orElseThrow();
-        return new CommonCharacter
-        (
-            ladderSearch.findCharacterTeams(id),
-            linkedCharacters,
-            ladderPlayerCharacterStatsDAO.findGlobalList(id),
-            ladderProPlayerDAO.getProPlayerByCharacterId(id),
-            currentCharacter != null
-                ? discordUserDAO
-                    .findByAccountId(currentCharacter.getMembers().getAccount().getId(), true)
-                    .orElse(null)
-                : null,
-            ladderMatchDAO.findMatchesByCharacterId(
-                id, OffsetDateTime.now(), BaseMatch.MatchType._1V1, 0, 0, 1, types).getResult(),
-            ladderTeamStateDAO.find(id, from),
-            reportService.findReportsByCharacterId(id)
-        );
+        return commonCharacterService.find(id, depth, types);
     }
 
     @GetMapping
@@ -258,7 +195,7 @@ public class CharacterController
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Depth is too big, max: " + SUMMARY_DEPTH_MAX);
         if(races == null) races = Race.EMPTY_RACE_ARRAY;
 
-        return playerCharacterSummaryDAO.find(ids, OffsetDateTime.now().minusDays(depth), races);
+        return playerCharacterSummaryDAO.find(ids, depth, races);
     }
 
 }
@@ -3,18 +3,24 @@
 
 package com.nephest.battlenet.sc2.web.controller;
 
+import com.nephest.battlenet.sc2.web.service.ExportService;
 import io.swagger.v3.oas.annotations.Hidden;
 import java.io.File;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
@@ -27,6 +33,9 @@ public class DownloadsController
     @Value("${com.nephest.battlenet.sc2.db-dump-file:#{''}}")
     private String dbDumpPath;
 
+    @Autowired
+    private ExportService exportService;
+
     @GetMapping("/db-dump")
     public ResponseEntity<Resource> downloadDatabaseDump()
     {
@@ -35,11 +44,34 @@ public class DownloadsController
         if(!file.exists()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
 
         HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename="
-            + URLEncoder.encode(file.getName(), StandardCharsets.UTF_8));
         headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
         headers.add("Pragma", "no-cache");
         headers.add("Expires", "0");
+        return createFileResponse(file, headers);
+    }
+
+    @GetMapping("/export")
+    public List<String> getExportFileNames()
+    {
+        return exportService.getFileNames();
+    }
+
+    @GetMapping("/export/{fileName}")
+    public ResponseEntity<Resource> downloadExport(@PathVariable("fileName") String fileName)
+    {
+        File file = exportService.find(fileName)
+            .orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"))
+            .toFile();
+        //exported files are never changed
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePublic());
+        return createFileResponse(file, headers);
+    }
+
+    private static ResponseEntity<Resource> createFileResponse(File file, HttpHeaders headers)
+    {
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename="
+            + URLEncoder.encode(file.getName(), StandardCharsets.UTF_8));
 
         return ResponseEntity.ok()
             .headers(headers)
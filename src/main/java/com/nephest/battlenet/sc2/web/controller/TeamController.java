@@ -8,6 +8,7 @@ import com.nephest.battlenet.sc2.model.local.inner.TeamLegacyUid;
 import com.nephest.battlenet.sc2.model.local.ladder.LadderTeam;
 import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
 import com.nephest.battlenet.sc2.model.local.ladder.common.CommonTeamHistory;
+import com.nephest.battlenet.sc2.model.local.ladder.common.DeltaCommonTeamHistory;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchDAO;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderTeamStateDAO;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,15 +47,27 @@ public class TeamController
     @Autowired @Qualifier("mvcConversionService")
     private ConversionService mvcConversionService;
 
+    /*
+        Delta encoding shrinks long histories considerably, timestamps, ids, games and ratings become short
+        numbers. See LadderTeamStateCollectionToDeltaArraySerializer.
+     */
     @GetMapping("/history/common")
-    public Map<String, CommonTeamHistory> getCommonHistory
-    (@RequestParam("legacyUid") Set<TeamLegacyUid> ids)
+    public Map<String, ?> getCommonHistory
+    (
+        @RequestParam("legacyUid") Set<TeamLegacyUid> ids,
+        @RequestParam(name = "delta", required = false) boolean delta
+    )
     {
         if(ids == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "legacyUid parameter not found");
 
         List<LadderTeamState> states = ladderTeamStateDAO.find(ids);
         List<LadderTeam> teams = ladderSearchDAO.findLegacyTeams(ids, true);
-        return groupCommonHistory(ids, states, teams);
+        Map<String, CommonTeamHistory> history = groupCommonHistory(ids, states, teams);
+        if(!delta) return history;
+
+        Map<String, DeltaCommonTeamHistory> deltaHistory = new HashMap<>(history.size());
+        history.forEach((id, h)->deltaHistory.put(id, new DeltaCommonTeamHistory(h)));
+        return deltaHistory;
     }
 
     private Map<String, CommonTeamHistory> groupCommonHistory
@@ -71,7 +71,7 @@ public class VersusController
     )
     {
         checkVersusSize(clans1, teams1, clans2, teams2);
-        return ladderMatchDAO.getVersusSummary
+        return versusService.getVersusSummary
         (
             clans1, teams1,
             clans2, teams2,
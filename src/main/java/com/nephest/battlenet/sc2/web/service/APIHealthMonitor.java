@@ -20,6 +20,8 @@ public class APIHealthMonitor
     private final LongVar requestsVar;
     private final LongVar errorsVar;
     private double errorRate;
+    private long lastRequests = 0;
+    private long lastErrors = 0;
 
     public APIHealthMonitor(VarDAO varDAO, String prefix)
     {
@@ -81,6 +83,32 @@ public class APIHealthMonitor
         return errorRate;
     }
 
+    /**
+     * Calculates the error rate since the previous invocation. Use it to detect short error spikes,
+     * {@link #getErrorRate()} is updated only once per frame.
+     *
+     * @param minRequests min number of requests required to calculate the rate
+     * @return error rate percentage, 0 if there were less than {@code minRequests} requests
+     */
+    public synchronized double getRecentErrorRate(long minRequests)
+    {
+        long curRequests = requests.get();
+        long curErrors = errors.get();
+        //counters were reset by the update
+        if(curRequests < lastRequests || curErrors < lastErrors)
+        {
+            lastRequests = 0;
+            lastErrors = 0;
+        }
+        long requestCount = curRequests - lastRequests;
+        long errorCount = curErrors - lastErrors;
+        if(requestCount < minRequests) return 0;
+
+        lastRequests = curRequests;
+        lastErrors = curErrors;
+        return (errorCount / (double) requestCount) * 100;
+    }
+
     public double getHealth()
     {
         return 100 - getErrorRate();
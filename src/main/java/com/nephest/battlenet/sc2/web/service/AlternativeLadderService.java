@@ -21,6 +21,8 @@ import com.nephest.battlenet.sc2.model.local.Clan;
 import com.nephest.battlenet.sc2.model.local.CollectionVar;
 import com.nephest.battlenet.sc2.model.local.Division;
 import com.nephest.battlenet.sc2.model.local.InstantVar;
+import com.nephest.battlenet.sc2.model.local.LadderDiscoveryFrontier;
+import com.nephest.battlenet.sc2.model.local.LadderDiscoveryFrontierVar;
 import com.nephest.battlenet.sc2.model.local.League;
 import com.nephest.battlenet.sc2.model.local.LeagueTier;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
@@ -36,16 +38,17 @@ import com.nephest.battlenet.sc2.model.local.dao.LeagueTierDAO;
 import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamMemberDAO;
-import com.nephest.battlenet.sc2.model.local.dao.TeamStateDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import com.nephest.battlenet.sc2.model.local.inner.AlternativeTeamData;
 import com.nephest.battlenet.sc2.util.MiscUtil;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import com.nephest.battlenet.sc2.util.StripedLongSet;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,12 +56,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +76,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuple3;
+import reactor.util.function.Tuple4;
 import reactor.util.function.Tuples;
 
 @Service
@@ -90,6 +93,7 @@ public class AlternativeLadderService
 
     public static final int LADDER_BATCH_SIZE = StatsService.LADDER_BATCH_SIZE;
     public static final Duration DISCOVERY_TIME_FRAME = Duration.ofMinutes(50);
+    public static final int DISCOVERY_PARALLEL_CHUNKS = 4;
     public static final Duration ADDITIONAL_WEB_SCAN_TIME_FRAME = DISCOVERY_TIME_FRAME.dividedBy(2);
     public static final double WEB_API_ERROR_RATE_THRESHOLD = 50;
     public static final double WEB_API_FORCE_REGION_ERROR_RATE_THRESHOLD = 25;
@@ -104,10 +108,14 @@ public class AlternativeLadderService
 
     private final Map<Region, InstantVar> discoveryInstants = new HashMap<>();
     private final Map<Region, InstantVar> additionalWebScanInstants = new EnumMap<>(Region.class);
+    private final Map<Region, LadderDiscoveryFrontierVar> discoveryFrontiers = new EnumMap<>(Region.class);
     private CollectionVar<Set<Region>, Region> profileLadderWebRegions;
     private CollectionVar<Set<Region>, Region> discoveryWebRegions;
 
-    private final ConcurrentLinkedQueue<Long> pendingTeams = new ConcurrentLinkedQueue<>();
+    private final StripedLongSet pendingTeams = new StripedLongSet();
+    private final Set<Tuple3<Integer, QueueType, TeamType>> pendingRankPartitions = ConcurrentHashMap.newKeySet();
+    private final Set<Tuple4<Integer, Region, QueueType, TeamType>> pendingStatsPartitions =
+        ConcurrentHashMap.newKeySet();
 
     @Autowired @Lazy
     private AlternativeLadderService alternativeLadderService;
@@ -117,16 +125,16 @@ public class AlternativeLadderService
     private final LeagueTierDAO leagueTierDao;
     private final DivisionDAO divisionDao;
     private final TeamDAO teamDao;
-    private final TeamStateDAO teamStateDAO;
     private final AccountDAO accountDAO;
     private final PlayerCharacterDAO playerCharacterDao;
     private final ClanDAO clanDAO;
     private final TeamMemberDAO teamMemberDao;
     private final BlizzardDAO blizzardDAO;
     private final VarDAO varDAO;
+    private final CommonCharacterService commonCharacterService;
     private final SC2WebServiceUtil sc2WebServiceUtil;
     private final ConversionService conversionService;
-    private final ExecutorService dbExecutorService;
+    private final PartitionedExecutorService dbExecutorService;
     private final Predicate<BlizzardProfileTeam> teamValidationPredicate;
 
     @Value("${com.nephest.battlenet.sc2.ladder.alternative.web.auto:#{'false'}}")
@@ -140,17 +148,17 @@ public class AlternativeLadderService
         LeagueTierDAO leagueTierDao,
         DivisionDAO divisionDao,
         TeamDAO teamDao,
-        TeamStateDAO teamStateDAO,
         AccountDAO accountDAO,
         PlayerCharacterDAO playerCharacterDao,
         ClanDAO clanDAO,
         TeamMemberDAO teamMemberDao,
         BlizzardDAO blizzardDAO,
         VarDAO varDAO,
+        CommonCharacterService commonCharacterService,
         SC2WebServiceUtil sc2WebServiceUtil,
         @Qualifier("sc2StatsConversionService") ConversionService conversionService,
         Validator validator,
-        @Qualifier("dbExecutorService") ExecutorService dbExecutorService
+        @Qualifier("dbExecutorService") PartitionedExecutorService dbExecutorService
     )
     {
         this.api = api;
@@ -158,13 +166,13 @@ public class AlternativeLadderService
         this.leagueTierDao = leagueTierDao;
         this.divisionDao = divisionDao;
         this.teamDao = teamDao;
-        this.teamStateDAO = teamStateDAO;
         this.accountDAO = accountDAO;
         this.playerCharacterDao = playerCharacterDao;
         this.clanDAO = clanDAO;
         this.teamMemberDao = teamMemberDao;
         this.blizzardDAO = blizzardDAO;
         this.varDAO = varDAO;
+        this.commonCharacterService = commonCharacterService;
         this.sc2WebServiceUtil = sc2WebServiceUtil;
         this.conversionService = conversionService;
         this.teamValidationPredicate = DAOUtils.beanValidationPredicate(validator);
@@ -187,6 +195,7 @@ public class AlternativeLadderService
             {
                 discoveryInstants.put(region, new InstantVar(varDAO, region.getId() + ".ladder.alternative.discovered"));
                 additionalWebScanInstants.put(region, new InstantVar(varDAO, region.getId() + ".ladder.alternative.web.additional"));
+                discoveryFrontiers.put(region, new LadderDiscoveryFrontierVar(varDAO, region.getId() + ".ladder.alternative.discovery.frontier"));
             }
         }
         catch(RuntimeException ex) {
@@ -314,10 +323,23 @@ public class AlternativeLadderService
         }
     }
 
+    /**
+     * Updates known ladders of the season, then discovers new ladders from the region frontier.
+     */
     public void discoverSeason(Season season, boolean web)
     {
         long lastDivision = divisionDao.findLastDivision(season.getBattlenetId() - 1, season.getRegion())
             .orElse(BlizzardSC2API.LAST_LADDER_IDS.get(season.getRegion())) + 1;
+        Set<QueueType> queueTypes = QueueType.getTypes(StatsService.VERSION);
+        List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> knownIds = blizzardDAO.findLegacyLadderIds
+        (
+            season.getBattlenetId(),
+            new Region[]{season.getRegion()},
+            queueTypes.toArray(QueueType[]::new),
+            BaseLeague.LeagueType.values(),
+            BlizzardSC2API.PROFILE_LADDER_RETRY_COUNT
+        );
+        updateLadders(season, queueTypes, knownIds, web);
         discoverSeason(season, lastDivision, web);
     }
 
@@ -332,16 +354,109 @@ public class AlternativeLadderService
         discoverSeason(season, lastDivision, false);
     }
 
-    private void discoverSeason(Season season, long lastDivision, boolean web)
+    private void discoverSeason(Season season, long start, boolean web)
     {
         LOG.info("Discovering {} ladders", season);
 
-        List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> profileIds = getProfileLadderIds(season, lastDivision);
-        LOG.info("{} {} ladders found", profileIds.size(), season);
-        updateLadders(season, QueueType.getTypes(StatsService.VERSION), profileIds, web);
+        int found = discoverLadders(season, start, web);
+        LOG.info("{} {} ladders found", found, season);
         discoveryInstants.get(season.getRegion()).setValueAndSave(Instant.now());
     }
 
+    public LadderDiscoveryFrontier getDiscoveryFrontier(Region region)
+    {
+        return discoveryFrontiers.get(region).getValue();
+    }
+
+    /**
+     * <p>
+     * Probes ladder ids starting from the region frontier, or from the start id if there is no frontier for
+     * the season. Ids are probed in waves of {@link #DISCOVERY_PARALLEL_CHUNKS} disjoint chunks, chunks of a
+     * wave are probed in parallel under the region rate limiter. Discovery stops at the first sparse chunk, new
+     * ladders are created there, so it becomes the new frontier.
+     * </p>
+     * <p>
+     * Found ladders are saved before the frontier is moved, so the scan is resumed from the frontier after a
+     * restart without losing ladders. Ids that failed with unexpected errors are kept as pending and are
+     * probed again by the next discovery.
+     * </p>
+     *
+     * @return number of found ladders
+     */
+    private int discoverLadders(Season season, long start, boolean web)
+    {
+        Region region = season.getRegion();
+        boolean webDiscovery = isDiscoveryWebRegion(region);
+        if(webDiscovery) LOG.warn("Using web API for ladder discovery for {}", season);
+        int errorThreshold = webDiscovery ? ALTERNATIVE_LADDER_WEB_ERROR_THRESHOLD : ALTERNATIVE_LADDER_ERROR_THRESHOLD;
+        int batchSize = webDiscovery ? LEGACY_LADDER_WEB_BATCH_SIZE : LEGACY_LADDER_BATCH_SIZE;
+        Set<QueueType> queueTypes = QueueType.getTypes(StatsService.VERSION);
+
+        LadderDiscoveryFrontier frontier = discoveryFrontiers.get(region).getValue();
+        boolean resume = frontier != null && frontier.getSeason() == season.getBattlenetId();
+        long next = resume ? Math.max(frontier.getNext(), start) : start;
+        Set<Long> failed = ConcurrentHashMap.newKeySet();
+        int found = 0;
+        if(resume && !frontier.getPending().isEmpty())
+        {
+            List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> pendingIds = api
+                .getProfileLadderIds(region, frontier.getPending(), webDiscovery, failed)
+                .collectList()
+                .block();
+            found += pendingIds.size();
+            saveDiscoveredLadders(season, queueTypes, pendingIds, web, failed);
+        }
+
+        while(true)
+        {
+            long waveStart = next;
+            long waveEnd = waveStart + (long) batchSize * DISCOVERY_PARALLEL_CHUNKS;
+            List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> ids = api.getProfileLadderIds
+            (
+                region,
+                LongStream.range(waveStart, waveEnd).boxed().collect(Collectors.toList()),
+                webDiscovery,
+                failed
+            )
+                .doOnNext(id->LOG.debug("Ladder discovered: {} {}", id.getT1(), id.getT3()))
+                .collectList()
+                .block();
+            checkSeason(season);
+            saveDiscoveredLadders(season, queueTypes, ids, web, failed);
+            found += ids.size();
+
+            int[] chunkCounts = new int[DISCOVERY_PARALLEL_CHUNKS];
+            for(Tuple3<Region, BlizzardPlayerCharacter[], Long> id : ids)
+                chunkCounts[(int) ((id.getT3() - waveStart) / batchSize)]++;
+            int sparseChunk = -1;
+            for(int i = 0; i < chunkCounts.length; i++)
+            {
+                if(batchSize - chunkCounts[i] > errorThreshold)
+                {
+                    sparseChunk = i;
+                    break;
+                }
+            }
+            next = sparseChunk == -1 ? waveEnd : waveStart + (long) sparseChunk * batchSize;
+            long frontierNext = next;
+            discoveryFrontiers.get(region).setValueAndSave(new LadderDiscoveryFrontier
+            (
+                season.getBattlenetId(),
+                next,
+                failed.stream().filter(id->id < frontierNext).collect(Collectors.toList())
+            ));
+            if(sparseChunk != -1) break;
+        }
+        return found;
+    }
+
+    private void checkSeason(Season season)
+    {
+        Season seasonAfterScan = Season.of(sc2WebServiceUtil.getCurrentOrLastOrExistingSeason(season.getRegion()), season.getRegion());
+        if(!Objects.equals(season.getBattlenetId(), seasonAfterScan.getBattlenetId()))
+            throw new IllegalStateException("Season changed when ladder discovery was in progress");
+    }
+
     private void updateLadders
     (
         Season season,
@@ -350,47 +465,39 @@ public class AlternativeLadderService
         boolean web
     )
     {
+        if(ladders.isEmpty()) return;
+
         if(web) LOG.warn("Using web API for {}", season);
         List<Future<?>> dbTasks = new ArrayList<>();
         (web ? api.getProfileLadders(ladders, queueTypes, true) : api.getProfileLadders(ladders, queueTypes))
             .buffer(LADDER_BATCH_SIZE)
             .toStream()
-            .forEach((r)->dbTasks.add(dbExecutorService.submit(()->alternativeLadderService.saveProfileLadders(season, r))));
+            .forEach((r)->dbTasks.add(dbExecutorService.submit(season.getRegion(), ()->alternativeLadderService.saveProfileLadders(season, r))));
         MiscUtil.awaitAndLogExceptions(dbTasks, true);
     }
 
-    private List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> getProfileLadderIds
-    (Season season, long lastDivision)
+    /*
+        The frontier is moved after this method, so discovered ladders must not be lost: ladders that failed to
+        load are added to the failed ids and retried as pending, save errors are rethrown.
+     */
+    private void saveDiscoveredLadders
+    (
+        Season season,
+        Set<QueueType> queueTypes,
+        List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> ladders,
+        boolean web,
+        Collection<Long> failedIds
+    )
     {
-        boolean webDiscovery = isDiscoveryWebRegion(season.getRegion());
-        if(webDiscovery) LOG.warn("Using web API for ladder discovery for {}", season);
-        int errorThreshold = webDiscovery ? ALTERNATIVE_LADDER_WEB_ERROR_THRESHOLD : ALTERNATIVE_LADDER_ERROR_THRESHOLD;
-        int batchSize = webDiscovery ? LEGACY_LADDER_WEB_BATCH_SIZE : LEGACY_LADDER_BATCH_SIZE;
-        List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> profileLadderIds = new ArrayList<>();
-        AtomicInteger discovered = new AtomicInteger(1);
-        while(discovered.get() > 0)
-        {
-            discovered.set(0);
-            api.getProfileLadderIds
-            (
-                season.getRegion(),
-                lastDivision,
-                lastDivision + batchSize,
-                webDiscovery
-            )
-                .toStream()
-                .forEach((id)->{
-                    profileLadderIds.add(id);
-                    discovered.getAndIncrement();
-                    LOG.debug("Ladder discovered: {} {}", id.getT1(), id.getT3());
-                });
-            if(batchSize - discovered.get() > errorThreshold) break;
-            lastDivision+=batchSize;
-        }
-        Season seasonAfterScan = Season.of(sc2WebServiceUtil.getCurrentOrLastOrExistingSeason(season.getRegion()), season.getRegion());
-        if(!Objects.equals(season.getBattlenetId(), seasonAfterScan.getBattlenetId()))
-            throw new IllegalStateException("Season changed when ladder discovery was in progress");
-        return profileLadderIds;
+        if(ladders.isEmpty()) return;
+
+        if(web) LOG.warn("Using web API for {}", season);
+        List<Future<?>> dbTasks = new ArrayList<>();
+        api.getProfileLadders(ladders, queueTypes, web, failedIds)
+            .buffer(LADDER_BATCH_SIZE)
+            .toStream()
+            .forEach((r)->dbTasks.add(dbExecutorService.submit(season.getRegion(), ()->alternativeLadderService.saveProfileLadders(season, r))));
+        MiscUtil.awaitAndThrowException(dbTasks, true, true);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -431,7 +538,19 @@ public class AlternativeLadderService
                 )
             )
             .collect(Collectors.toList());
-        teamDao.merge(validTeams.stream().map(Tuple2::getT1).toArray(Team[]::new));
+        int savedTeams = teamDao.merge(validTeams.stream().map(Tuple2::getT1).toArray(Team[]::new)).length;
+        //ranks and stats of unchanged ladders stay the same
+        if(savedTeams > 0)
+        {
+            pendingRankPartitions.add(Tuples.of(season.getBattlenetId(), baseLeague.getQueueType(), baseLeague.getTeamType()));
+            pendingStatsPartitions.add(Tuples.of
+            (
+                season.getBattlenetId(),
+                season.getRegion(),
+                baseLeague.getQueueType(),
+                baseLeague.getTeamType()
+            ));
+        }
         validTeams.stream()
             .filter(t->t.getT1().getId() != null)
             .forEach(t->extractTeamData(season, t.getT1(), t.getT2(), newTeams, characters, clans, existingCharacterClans, members));
@@ -440,6 +559,9 @@ public class AlternativeLadderService
         saveNewCharacterData(newTeams, members);
         savePlayerCharacters(characters);
         teamMemberDao.merge(members.toArray(TeamMember[]::new));
+        commonCharacterService.invalidate(members.stream()
+            .map(TeamMember::getCharacterId)
+            .collect(Collectors.toList()));
         LOG.debug("Ladder saved: {} {} {}", id.getT1(), id.getT3(), ladder.getLeague());
     }
 
@@ -537,24 +659,24 @@ public class AlternativeLadderService
         }
     }
 
-    //this ensures the consistent order for concurrent entities(accounts and players)
+    //DAOs sort entities by natural ids, this ensures the consistent order for concurrent entities(accounts and players)
     private void saveNewCharacterData
     (List<AlternativeTeamData> newTeams, Set<TeamMember> teamMembers)
     {
         if(newTeams.size() == 0) return;
 
-        newTeams.sort(Comparator.comparing(AlternativeTeamData::getAccount, Account.NATURAL_ID_COMPARATOR));
-        for(AlternativeTeamData curMembers : newTeams)
-            accountDAO.merge(curMembers.getAccount(), curMembers.getCharacter());
+        accountDAO.merge(newTeams.stream()
+            .map(t->Tuples.of(t.getAccount(), t.getCharacter()))
+            .collect(Collectors.toList()));
+        for(AlternativeTeamData curNewTeam : newTeams)
+            curNewTeam.getCharacter().setAccountId(curNewTeam.getAccount().getId());
 
-        newTeams.sort(Comparator.comparing(AlternativeTeamData::getCharacter, PlayerCharacter.NATURAL_ID_COMPARATOR));
+        playerCharacterDao.merge(newTeams.stream()
+            .map(AlternativeTeamData::getCharacter)
+            .toArray(PlayerCharacter[]::new));
         for(AlternativeTeamData curNewTeam : newTeams)
         {
-            Account account = curNewTeam.getAccount();
-
-            curNewTeam.getCharacter().setAccountId(account.getId());
-            PlayerCharacter character = playerCharacterDao.merge(curNewTeam.getCharacter());
-
+            PlayerCharacter character = curNewTeam.getCharacter();
             Team team = curNewTeam.getTeam();
             TeamMember teamMember = new TeamMember(team.getId(), character.getId(), null, null, null, null);
             if(curNewTeam.getRace() != null)
@@ -563,12 +685,12 @@ public class AlternativeLadderService
         }
     }
 
-    //this ensures the consistent order for concurrent entities
+    //DAO sorts entities by natural ids, this ensures the consistent order for concurrent entities
     private void savePlayerCharacters(Set<PlayerCharacter> characters)
     {
         if(characters.isEmpty()) return;
 
-        characters.stream().sorted(PlayerCharacter.NATURAL_ID_COMPARATOR).forEach(playerCharacterDao::merge);
+        playerCharacterDao.merge(characters.toArray(PlayerCharacter[]::new));
     }
 
     public Division getOrCreateDivision
@@ -612,15 +734,36 @@ public class AlternativeLadderService
             && (teamFormat != TeamFormat._1V1 || team.getTeamMembers()[0].getFavoriteRace() != null);
         }
 
-    public void afterCurrentSeasonUpdate(Set<Integer> pendingSeasons)
+    /**
+     * Removes and returns ids of teams that have changed since the last call.
+     *
+     * @return changed team ids
+     */
+    public long[] drainPendingTeams()
     {
-        LOG.info
-        (
-            "Created {} team snapshots",
-            //team ids can be duplicated when the update is too slow
-            teamStateDAO.takeSnapshot(new ArrayList<>(new HashSet<>(pendingTeams)))
-        );
-        pendingTeams.clear();
+        return pendingTeams.drain();
+    }
+
+    /**
+     * Removes and returns (season, queue type, team type) rank partitions that have changed since the last
+     * call.
+     *
+     * @return changed rank partitions
+     */
+    public List<Tuple3<Integer, QueueType, TeamType>> drainPendingRankPartitions()
+    {
+        return MiscUtil.drain(pendingRankPartitions);
+    }
+
+    /**
+     * Removes and returns (season, region, queue type, team type) league stats partitions that have changed
+     * since the last call.
+     *
+     * @return changed league stats partitions
+     */
+    public List<Tuple4<Integer, Region, QueueType, TeamType>> drainPendingStatsPartitions()
+    {
+        return MiscUtil.drain(pendingStatsPartitions);
     }
 
 }
@@ -29,6 +29,7 @@ import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
 import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import com.nephest.battlenet.sc2.util.MiscUtil;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
@@ -41,6 +42,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -81,7 +83,7 @@ public class BlizzardPrivacyService
     private final SeasonDAO seasonDAO;
     private final AccountDAO accountDAO;
     private final PlayerCharacterDAO playerCharacterDAO;
-    private final ExecutorService dbExecutorService;
+    private final PartitionedExecutorService dbExecutorService;
     private final ExecutorService webExecutorService;
     private final SC2WebServiceUtil sc2WebServiceUtil;
     private final Predicate<BlizzardTeamMember> teamMemberPredicate;
@@ -106,7 +108,7 @@ public class BlizzardPrivacyService
         VarDAO varDAO,
         AccountDAO accountDAO,
         PlayerCharacterDAO playerCharacterDAO,
-        @Qualifier("dbExecutorService") ExecutorService dbExecutorService,
+        @Qualifier("dbExecutorService") PartitionedExecutorService dbExecutorService,
         @Qualifier("webExecutorService") ExecutorService webExecutorService,
         Validator validator,
         SC2WebServiceUtil sc2WebServiceUtil
@@ -274,7 +276,7 @@ public class BlizzardPrivacyService
             .flatMap(l->Flux.fromStream(extractPrivateInfo(l)))
             .buffer(ACCOUNT_AND_CHARACTER_BATCH_SIZE)
             .toStream()
-            .forEach(l->dbTasks.add(dbExecutorService.submit(()->
+            .forEach(l->dbTasks.add(dbExecutorService.submit(region, ()->
                 LOG.debug("Updated {} accounts and characters", playerCharacterDAO.updateAccountsAndCharacters(l)))));
         MiscUtil.awaitAndLogExceptions(dbTasks, true);
     }
@@ -307,7 +309,7 @@ public class BlizzardPrivacyService
             .flatMap(l->Flux.fromStream(extractAlternativePrivateInfo(l)))
             .buffer(ACCOUNT_AND_CHARACTER_BATCH_SIZE)
             .toStream()
-            .forEach(l->dbTasks.add(dbExecutorService.submit(()->
+            .forEach(l->dbTasks.add(dbExecutorService.submit(region, ()->
                 LOG.debug("Updated {} characters", playerCharacterDAO.updateCharacters(l.toArray(PlayerCharacter[]::new))))));
         MiscUtil.awaitAndLogExceptions(dbTasks, true);
     }
@@ -382,11 +384,14 @@ public class BlizzardPrivacyService
             .map(this::extractCharacter)
             .buffer(ACCOUNT_AND_CHARACTER_BATCH_SIZE)
             .toStream()
-            .map(l->l.toArray(PlayerCharacter[]::new))
-            .forEach(l->{
-                dbTasks.add(dbExecutorService.submit(()->
-                    LOG.info("Updated {} characters that are about to expire", playerCharacterDAO.updateCharacters(l))));
-            });
+            .forEach(l->l.stream()
+                .collect(Collectors.groupingBy(PlayerCharacter::getRegion))
+                .forEach((region, characters)->dbTasks.add(dbExecutorService.submit(region, ()->
+                    LOG.info
+                    (
+                        "Updated {} characters that are about to expire",
+                        playerCharacterDAO.updateCharacters(characters.toArray(PlayerCharacter[]::new))
+                    )))));
         lastUpdatedCharacterInstant.setValueAndSave(Instant.now());
         lastUpdatedCharacterId.setValueAndSave(batch.get(batch.size() - 1).getId());
     }
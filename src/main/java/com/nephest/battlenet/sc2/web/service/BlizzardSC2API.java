@@ -40,22 +40,26 @@ import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import com.nephest.battlenet.sc2.util.LogUtil;
 import com.nephest.battlenet.sc2.util.MiscUtil;
 import com.nephest.battlenet.sc2.web.util.ReactorRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.LongStream;
 import javax.annotation.PostConstruct;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction;
 import org.springframework.stereotype.Service;
@@ -83,6 +87,20 @@ extends BaseAPI
     public static final double REQUEST_RATE_MARGIN = 0.1;
     public static final Duration REQUEST_SLOT_REFRESH_TIME =
         Duration.ofMillis((long) (1000 * (1.0 + REQUEST_RATE_MARGIN)));
+    /*
+        Slots are refreshed in small portions to spread the requests evenly. Unused slots are carried over, but
+        the burst is kept small to not exceed the per second cap.
+     */
+    public static final int REQUEST_SLOT_REFRESH_PARTS = 10;
+    public static final Duration REQUEST_SLOT_REFRESH_PART_TIME =
+        REQUEST_SLOT_REFRESH_TIME.dividedBy(REQUEST_SLOT_REFRESH_PARTS);
+    public static final double REQUEST_BURST_CAP = REQUESTS_PER_SECOND_CAP * REQUEST_RATE_MARGIN;
+    public static final double REQUEST_BURST_CAP_WEB = Math.max(1, REQUESTS_PER_SECOND_CAP_WEB * REQUEST_RATE_MARGIN);
+    public static final double RATE_LIMIT_ERROR_RATE_THRESHOLD = 40.0;
+    public static final int RATE_LIMIT_ERROR_RATE_MIN_REQUESTS = 10;
+    public static final Duration LADDER_FINGERPRINT_TTL = Duration.ofDays(1);
+    public static final String API_REQUEST_METRIC_NAME = "api.request";
+    public static final String LADDER_UNCHANGED_METRIC_NAME = "api.ladder.unchanged";
     public static final int DELAY = 1000;
     public static final int FIRST_SEASON = 28;
     public static final int PROFILE_LADDER_RETRY_COUNT = 3;
@@ -111,8 +129,10 @@ extends BaseAPI
     private final Map<Region, WebClient> clients = new EnumMap<>(Region.class);
     private final Map<Region, ReactorRateLimiter> rateLimiters = new HashMap<>();
     private final Map<Region, APIHealthMonitor> healthMonitors = new EnumMap<>(Region.class);
-    private final ReactorRateLimiter webRateLimiter = new ReactorRateLimiter();
+    private final ReactorRateLimiter webRateLimiter = new ReactorRateLimiter(REQUEST_BURST_CAP_WEB);
     private final Map<Region, APIHealthMonitor> webHealthMonitors = new EnumMap<>(Region.class);
+    private final LadderFingerprintCache ladderFingerprints = new LadderFingerprintCache();
+    private final Map<Region, Counter> unchangedLadderCounters = new EnumMap<>(Region.class);
     private final VarDAO varDAO;
 
     @Value("${com.nephest.battlenet.sc2.api.force.region.auto:#{'false'}}")
@@ -120,18 +140,28 @@ extends BaseAPI
 
     @Autowired
     public BlizzardSC2API
-    (ObjectMapper objectMapper, OAuth2AuthorizedClientManager auth2AuthorizedClientManager, VarDAO varDAO)
+    (
+        ObjectMapper objectMapper,
+        OAuth2AuthorizedClientManager auth2AuthorizedClientManager,
+        VarDAO varDAO,
+        MeterRegistry meterRegistry
+    )
     {
-        initWebClient(objectMapper, auth2AuthorizedClientManager);
+        initWebClient(objectMapper, auth2AuthorizedClientManager, meterRegistry);
         this.objectMapper = objectMapper;
         this.varDAO = varDAO;
         init();
-        for(Region r : Region.values()) rateLimiters.put(r, new ReactorRateLimiter());
-        Flux.interval(Duration.ofSeconds(0), REQUEST_SLOT_REFRESH_TIME).doOnNext(i->refreshReactorSlots()).subscribe();
         initErrorRates(varDAO);
+        initRateLimiters(meterRegistry);
+        for(Region r : Region.values()) unchangedLadderCounters
+            .put(r, meterRegistry.counter(LADDER_UNCHANGED_METRIC_NAME, "region", r.name()));
+        Flux.interval(Duration.ofSeconds(0), REQUEST_SLOT_REFRESH_PART_TIME)
+            .doOnNext(i->refreshReactorSlots()).subscribe();
+        Flux.interval(REQUEST_SLOT_REFRESH_TIME).doOnNext(i->checkRecentErrorRates()).subscribe();
         Flux.interval(MiscUtil.untilNextHour(LocalDateTime.now()), ERROR_RATE_FRAME).doOnNext(i->{
             calculateErrorRates();
             if(autoForceRegion) autoForceRegion();
+            LOG.debug("Evicted {} ladder fingerprints", ladderFingerprints.evict(LADDER_FINGERPRINT_TTL));
         }).subscribe();
         Flux.interval(HEALTH_SAVE_FRAME).doOnNext(i->saveHealth()).subscribe();
     }
@@ -155,6 +185,17 @@ extends BaseAPI
         }
     }
 
+    private void initRateLimiters(MeterRegistry meterRegistry)
+    {
+        for(Region r : Region.values())
+        {
+            ReactorRateLimiter limiter = new ReactorRateLimiter(REQUEST_BURST_CAP);
+            limiter.registerMetrics(meterRegistry, Tags.of("api", "blizzard", "region", r.name()));
+            rateLimiters.put(r, limiter);
+        }
+        webRateLimiter.registerMetrics(meterRegistry, Tags.of("api", "blizzard-web"));
+    }
+
     private void init()
     {
         initForceRegion();
@@ -293,7 +334,12 @@ extends BaseAPI
         return clients.get(region);
     }
 
-    private void initWebClient(ObjectMapper objectMapper, OAuth2AuthorizedClientManager auth2AuthorizedClientManager)
+    private void initWebClient
+    (
+        ObjectMapper objectMapper,
+        OAuth2AuthorizedClientManager auth2AuthorizedClientManager,
+        MeterRegistry meterRegistry
+    )
     {
         for(Region region : Region.values())
         {
@@ -302,7 +348,13 @@ extends BaseAPI
             oauth2Client.setDefaultClientRegistrationId("sc2-sys-" + region.name().toLowerCase());
             //some endpoints return invalid content type headers, ignore the headers and handle all types
             clients.put(region, WebServiceUtil.getWebClientBuilder(objectMapper, 600 * 1024, ALL)
-                .apply(oauth2Client.oauth2Configuration()).build());
+                .apply(oauth2Client.oauth2Configuration())
+                //added after the oauth2 filter to measure the API latency without token requests
+                .filter(WebServiceUtil.getMetricsFilter(
+                    meterRegistry,
+                    API_REQUEST_METRIC_NAME,
+                    Tags.of("api", "blizzard", "region", region.name())))
+                .build());
         }
     }
 
@@ -351,8 +403,26 @@ extends BaseAPI
 
     private void refreshReactorSlots()
     {
-        rateLimiters.values().forEach(l->l.refreshSlots(REQUESTS_PER_SECOND_CAP));
-        webRateLimiter.refreshSlots(REQUESTS_PER_SECOND_CAP_WEB);
+        //request counters are reset every hour, requests are queued until then when the hourly cap is reached
+        rateLimiters.forEach((region, limiter)->{
+            if(getRequestCapProgress(region) < 1)
+                limiter.refreshSlots(REQUESTS_PER_SECOND_CAP / (double) REQUEST_SLOT_REFRESH_PARTS);
+        });
+        webRateLimiter.refreshSlots(REQUESTS_PER_SECOND_CAP_WEB / (double) REQUEST_SLOT_REFRESH_PARTS);
+    }
+
+    //slow down on error spikes, the API is probably overloaded
+    private void checkRecentErrorRates()
+    {
+        for(Region region : Region.values())
+        {
+            if(healthMonitors.get(region).getRecentErrorRate(RATE_LIMIT_ERROR_RATE_MIN_REQUESTS)
+                > RATE_LIMIT_ERROR_RATE_THRESHOLD)
+                    rateLimiters.get(region).slowDown();
+        }
+        if(webHealthMonitors.values().stream()
+            .anyMatch(m->m.getRecentErrorRate(RATE_LIMIT_ERROR_RATE_MIN_REQUESTS) > RATE_LIMIT_ERROR_RATE_THRESHOLD))
+                webRateLimiter.slowDown();
     }
 
     private void calculateErrorRates()
@@ -522,6 +592,13 @@ extends BaseAPI
             .doOnError(t->healthMonitors.get(region).addError());
     }
 
+    /**
+     * <p>
+     * Incremental version of {@link #getLadder(Region, Long)}. Returns teams that were played after the
+     * {@code startingFromEpochSeconds} timestamp. Sends conditional requests, ladders that haven't changed since
+     * the previous request are skipped(empty mono is returned).
+     * </p>
+     */
     public Mono<BlizzardLadder> getFilteredLadder
     (
         Region region,
@@ -533,9 +610,24 @@ extends BaseAPI
             .get()
             .uri(regionUri != null ? regionUri : (region.getBaseUrl() + "data/sc2/ladder/{0}"), id)
             .accept(APPLICATION_JSON)
+            .headers(h->ladderFingerprints.addConditionalHeaders(region, id, h))
             .retrieve()
-            .bodyToMono(String.class)
-            .map(s->extractNewTeams(s, startingFromEpochSeconds))
+            .toEntity(String.class)
+            .flatMap(e->
+            {
+                if(e.getStatusCode() == HttpStatus.NOT_MODIFIED || e.getBody() == null)
+                {
+                    ladderFingerprints.touch(region, id);
+                    unchangedLadderCounters.get(region).increment();
+                    return Mono.empty();
+                }
+                if(!ladderFingerprints.update(region, id, e.getHeaders(), e.getBody()))
+                {
+                    unchangedLadderCounters.get(region).increment();
+                    return Mono.empty();
+                }
+                return Mono.just(extractNewTeams(e.getBody(), startingFromEpochSeconds));
+            })
             .retryWhen(rateLimiters.get(region).retryWhen(getRetry(region, WebServiceUtil.RETRY, false)))
             .delaySubscription(rateLimiters.get(region).requestSlot())
             .doOnRequest(s->healthMonitors.get(region).addRequest())
@@ -664,9 +756,9 @@ extends BaseAPI
     }
 
     public Flux<Tuple3<Region, BlizzardPlayerCharacter[], Long>> getProfileLadderIds
-    (Region region, long from, long toExcluded, boolean web)
+    (Region region, Iterable<? extends Long> ids, boolean web)
     {
-        return Flux.fromStream(LongStream.range(from, toExcluded).boxed())
+        return Flux.fromIterable(ids)
             .flatMap(l->WebServiceUtil.getOnErrorLogAndSkipLogLevelMono(
                 getProfileLadderId(region, l, web),
                 (t)->ExceptionUtils.getRootCause(t) instanceof WebClientResponseException.NotFound
@@ -674,12 +766,20 @@ extends BaseAPI
                     : LogUtil.LogLevel.WARNING));
     }
 
+    /**
+     * @param failedIds ids that failed with errors other than "not found" are added to this collection, it must
+     * be thread-safe
+     */
     public Flux<Tuple3<Region, BlizzardPlayerCharacter[], Long>> getProfileLadderIds
-    (Region region, Iterable<? extends Long> ids, boolean web)
+    (Region region, Iterable<? extends Long> ids, boolean web, Collection<Long> failedIds)
     {
         return Flux.fromIterable(ids)
-            .flatMap(l->WebServiceUtil.getOnErrorLogAndSkipLogLevelMono(
+            .flatMap(l->WebServiceUtil.getOnErrorLogAndSkipMono(
                 getProfileLadderId(region, l, web),
+                (t)->{
+                    if(!(ExceptionUtils.getRootCause(t) instanceof WebClientResponseException.NotFound))
+                        failedIds.add(l);
+                },
                 (t)->ExceptionUtils.getRootCause(t) instanceof WebClientResponseException.NotFound
                     ? LogUtil.LogLevel.DEBUG
                     : LogUtil.LogLevel.WARNING));
@@ -798,6 +898,36 @@ extends BaseAPI
                 .zipWith(Mono.just(id)));
     }
 
+    /**
+     * @param failedIds ids of ladders that failed with errors other than "invalid game mode" are added to this
+     * collection, it must be thread-safe
+     */
+    public Flux<Tuple2<BlizzardProfileLadder, Tuple3<Region, BlizzardPlayerCharacter[], Long>>> getProfileLadders
+    (
+        Iterable<? extends Tuple3<Region, BlizzardPlayerCharacter[], Long>> ids,
+        Set<QueueType> queueTypes,
+        boolean web,
+        Collection<Long> failedIds
+    )
+    {
+        return Flux.fromIterable(ids)
+            .flatMap(id->WebServiceUtil
+                .getOnErrorLogAndSkipMono(
+                    getProfileLadder(id, queueTypes, web),
+                    (t)->{
+                        if(!isInvalidGameMode(t)) failedIds.add(id.getT3());
+                    },
+                    (t)->isInvalidGameMode(t)
+                        ? LogUtil.LogLevel.DEBUG
+                        : LogUtil.LogLevel.WARNING)
+                .zipWith(Mono.just(id)));
+    }
+
+    private static boolean isInvalidGameMode(Throwable t)
+    {
+        return t.getMessage() != null && t.getMessage().startsWith("Invalid game mode");
+    }
+
     public Flux<Tuple2<BlizzardProfileLadder, Tuple3<Region, BlizzardPlayerCharacter[], Long>>> getProfileLadders
     (Iterable<? extends Tuple3<Region, BlizzardPlayerCharacter[], Long>> ids, Set<QueueType> queueTypes)
     {
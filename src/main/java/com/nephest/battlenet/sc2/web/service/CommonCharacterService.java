@@ -0,0 +1,329 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.discord.DiscordIdentity;
+import com.nephest.battlenet.sc2.model.discord.dao.DiscordUserDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderDistinctCharacter;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderMatch;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderPlayerCharacterReport;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderPlayerCharacterStats;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderProPlayer;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeam;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
+import com.nephest.battlenet.sc2.model.local.ladder.common.CommonCharacter;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderCharacterDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderMatchDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderPlayerCharacterStatsDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderProPlayerDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderTeamStateDAO;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * <p>
+ * Assembles {@link CommonCharacter character profiles}. Profile parts are independent, so they are loaded
+ * concurrently by the read executor, and the response time is close to the slowest query rather than to the sum
+ * of all queries.
+ * </p>
+ * <p>
+ * Ladder parts(teams, linked characters, stats, matches, and history) are cached per character, MMR history
+ * depth, and match types. Cached entries are invalidated when the ladder update that touched character's teams is
+ * committed, and expire after {@link #CACHE_TTL} to pick up the stats and matches that are updated later in the
+ * update cycle. The cache is bounded by {@link #CACHE_WEIGHT_MAX} cached rows rather than by the number of
+ * characters, because a character can have many profiles of different size.
+ * Pro player, discord, and report data are cheap and can be changed by users, so they are always loaded.
+ * </p>
+ */
+@Service
+public class CommonCharacterService
+{
+
+    public static final Duration CACHE_TTL = Duration.ofMinutes(3);
+    public static final int CACHE_WEIGHT_MAX = 250_000;
+
+    private static final class ProfileKey
+    {
+
+        private final Integer depth;
+        private final Set<BaseMatch.MatchType> types;
+
+        private ProfileKey(Integer depth, BaseMatch.MatchType[] types)
+        {
+            this.depth = depth;
+            this.types = types.length == 0
+                ? EnumSet.noneOf(BaseMatch.MatchType.class)
+                : EnumSet.copyOf(Arrays.asList(types));
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof ProfileKey)) return false;
+            ProfileKey that = (ProfileKey) o;
+            return Objects.equals(depth, that.depth) && types.equals(that.types);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(depth, types);
+        }
+
+    }
+
+    private static final class LadderProfile
+    {
+
+        private final List<LadderTeam> teams;
+        private final List<LadderDistinctCharacter> linkedCharacters;
+        private final List<LadderPlayerCharacterStats> stats;
+        private final List<LadderMatch> matches;
+        private final List<LadderTeamState> history;
+        private final long created = System.currentTimeMillis();
+        private final int weight;
+
+        private LadderProfile
+        (
+            List<LadderTeam> teams,
+            List<LadderDistinctCharacter> linkedCharacters,
+            List<LadderPlayerCharacterStats> stats,
+            List<LadderMatch> matches,
+            List<LadderTeamState> history
+        )
+        {
+            this.teams = teams;
+            this.linkedCharacters = linkedCharacters;
+            this.stats = stats;
+            this.matches = matches;
+            this.history = history;
+            this.weight = 1 + teams.size() + linkedCharacters.size() + stats.size() + matches.size()
+                + history.size();
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - created > CACHE_TTL.toMillis();
+        }
+
+    }
+
+    /*
+        Profiles are grouped by character id, so a character can be invalidated in constant time. A load puts the
+        result into the group it saw before loading. If the group was invalidated in the meantime, the result is
+        put into a detached group and discarded, so stale data is never cached.
+        The weight is incremented on each load and is not decremented on removal, so it's an upper bound that is
+        recalculated by purge().
+     */
+    private final Map<Long, Map<ProfileKey, LadderProfile>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LadderSearchDAO ladderSearchDAO;
+    private final LadderCharacterDAO ladderCharacterDAO;
+    private final LadderPlayerCharacterStatsDAO ladderPlayerCharacterStatsDAO;
+    private final LadderProPlayerDAO ladderProPlayerDAO;
+    private final LadderMatchDAO ladderMatchDAO;
+    private final LadderTeamStateDAO ladderTeamStateDAO;
+    private final DiscordUserDAO discordUserDAO;
+    private final PlayerCharacterReportService reportService;
+    private final ExecutorService readExecutorService;
+
+    @Autowired
+    public CommonCharacterService
+    (
+        LadderSearchDAO ladderSearchDAO,
+        LadderCharacterDAO ladderCharacterDAO,
+        LadderPlayerCharacterStatsDAO ladderPlayerCharacterStatsDAO,
+        LadderProPlayerDAO ladderProPlayerDAO,
+        LadderMatchDAO ladderMatchDAO,
+        LadderTeamStateDAO ladderTeamStateDAO,
+        DiscordUserDAO discordUserDAO,
+        PlayerCharacterReportService reportService,
+        @Qualifier("readExecutorService") ExecutorService readExecutorService
+    )
+    {
+        this.ladderSearchDAO = ladderSearchDAO;
+        this.ladderCharacterDAO = ladderCharacterDAO;
+        this.ladderPlayerCharacterStatsDAO = ladderPlayerCharacterStatsDAO;
+        this.ladderProPlayerDAO = ladderProPlayerDAO;
+        this.ladderMatchDAO = ladderMatchDAO;
+        this.ladderTeamStateDAO = ladderTeamStateDAO;
+        this.discordUserDAO = discordUserDAO;
+        this.reportService = reportService;
+        this.readExecutorService = readExecutorService;
+    }
+
+    public CommonCharacter find(long id, Integer depth, BaseMatch.MatchType... types)
+    {
+        CompletableFuture<LadderProPlayer> proPlayer =
+            supplyAsync(()->ladderProPlayerDAO.getProPlayerByCharacterId(id));
+        CompletableFuture<List<LadderPlayerCharacterReport>> reports =
+            supplyAsync(()->reportService.findReportsByCharacterId(id));
+        LadderProfile ladderProfile = findLadderProfile(id, depth, types);
+        LadderDistinctCharacter currentCharacter = ladderProfile.linkedCharacters.isEmpty()
+            ? null
+            : ladderProfile.linkedCharacters.stream()
+                .filter(c->c.getMembers().getCharacter().getId() == id)
+                .findAny()
+                .orElseThrow();
+        DiscordIdentity discordUser = currentCharacter != null
+            ? discordUserDAO
+                .findByAccountId(currentCharacter.getMembers().getAccount().getId(), true)
+                .orElse(null)
+            : null;
+        return new CommonCharacter
+        (
+            ladderProfile.teams,
+            ladderProfile.linkedCharacters,
+            ladderProfile.stats,
+            join(proPlayer),
+            discordUser,
+            ladderProfile.matches,
+            ladderProfile.history,
+            join(reports)
+        );
+    }
+
+    private LadderProfile findLadderProfile(long id, Integer depth, BaseMatch.MatchType[] types)
+    {
+        ProfileKey key = new ProfileKey(depth, types);
+        Map<ProfileKey, LadderProfile> profiles = cache.get(id);
+        if(profiles != null)
+        {
+            LadderProfile profile = profiles.get(key);
+            if(profile != null && !profile.isExpired(System.currentTimeMillis())) return profile;
+        }
+        else
+        {
+            profiles = cache.computeIfAbsent(id, i->new ConcurrentHashMap<>());
+        }
+
+        LadderProfile profile = loadLadderProfile(id, depth, types);
+        profiles.put(key, profile);
+        if(weight.addAndGet(profile.weight) > CACHE_WEIGHT_MAX) purge();
+        return profile;
+    }
+
+    private LadderProfile loadLadderProfile(long id, Integer depth, BaseMatch.MatchType[] types)
+    {
+        OffsetDateTime from = depth == null ? null : OffsetDateTime.now().minusDays(depth);
+        CompletableFuture<List<LadderTeam>> teams = supplyAsync(()->ladderSearchDAO.findCharacterTeams(id));
+        CompletableFuture<List<LadderDistinctCharacter>> linkedCharacters =
+            supplyAsync(()->ladderCharacterDAO.findLinkedDistinctCharactersByCharacterId(id));
+        CompletableFuture<List<LadderPlayerCharacterStats>> stats =
+            supplyAsync(()->ladderPlayerCharacterStatsDAO.findGlobalList(id));
+        CompletableFuture<List<LadderMatch>> matches = supplyAsync(()->ladderMatchDAO.findMatchesByCharacterId(
+            id, OffsetDateTime.now(), BaseMatch.MatchType._1V1, 0, 0, 1, types).getResult());
+        CompletableFuture<List<LadderTeamState>> history = supplyAsync(()->ladderTeamStateDAO.find(id, from));
+        return new LadderProfile
+        (
+            join(teams),
+            join(linkedCharacters),
+            join(stats),
+            join(matches),
+            join(history)
+        );
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier)
+    {
+        return CompletableFuture.supplyAsync(supplier, readExecutorService);
+    }
+
+    private static <T> T join(CompletableFuture<T> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException ex)
+        {
+            if(ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            if(ex.getCause() instanceof Error) throw (Error) ex.getCause();
+            throw ex;
+        }
+    }
+
+    private synchronized void purge()
+    {
+        if(weight.get() <= CACHE_WEIGHT_MAX) return;
+
+        long now = System.currentTimeMillis();
+        long actualWeight = 0;
+        for(Map<ProfileKey, LadderProfile> profiles : cache.values())
+        {
+            profiles.values().removeIf(p->p.isExpired(now));
+            for(LadderProfile profile : profiles.values()) actualWeight += profile.weight;
+        }
+        cache.values().removeIf(Map::isEmpty);
+        if(actualWeight > CACHE_WEIGHT_MAX)
+        {
+            cache.clear();
+            actualWeight = 0;
+        }
+        weight.set(actualWeight);
+    }
+
+    /**
+     * Removes cached profiles of characters. Call it after character's teams are updated. Profiles are removed
+     * after the current transaction is committed, otherwise concurrent loads could cache the uncommitted state.
+     * They are removed immediately if there is no transaction.
+     *
+     * @param characterIds character ids
+     */
+    public void invalidate(Collection<Long> characterIds)
+    {
+        if(!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            doInvalidate(characterIds);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                doInvalidate(characterIds);
+            }
+        });
+    }
+
+    private void doInvalidate(Collection<Long> characterIds)
+    {
+        for(Long id : characterIds) cache.remove(id);
+    }
+
+    protected int getCacheSize()
+    {
+        return cache.size();
+    }
+
+    protected long getCacheWeight()
+    {
+        return weight.get();
+    }
+
+}
@@ -9,9 +9,9 @@ import com.nephest.battlenet.sc2.model.discord.dao.DiscordUserDAO;
 import com.nephest.battlenet.sc2.model.local.AccountDiscordUser;
 import com.nephest.battlenet.sc2.model.local.dao.AccountDiscordUserDAO;
 import com.nephest.battlenet.sc2.util.MiscUtil;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +33,7 @@ public class DiscordService
     private final DiscordUserDAO discordUserDAO;
     private final AccountDiscordUserDAO accountDiscordUserDAO;
     private final DiscordAPI discordAPI;
-    private final ExecutorService dbExecutorService;
+    private final PartitionedExecutorService dbExecutorService;
 
     @Autowired
     public DiscordService
@@ -41,7 +41,7 @@ public class DiscordService
         DiscordUserDAO discordUserDAO,
         AccountDiscordUserDAO accountDiscordUserDAO,
         DiscordAPI discordAPI,
-        @Qualifier("dbExecutorService") ExecutorService dbExecutorService
+        @Qualifier("dbExecutorService") PartitionedExecutorService dbExecutorService
     )
     {
         this.discordUserDAO = discordUserDAO;
@@ -105,7 +105,8 @@ public class DiscordService
             discordAPI.getUsers(toUpdate)
                 .buffer(USER_UPDATE_BATCH_SIZE)
                 .toStream()
-                .forEach(batch->tasks.add(dbExecutorService.submit(()->updateUsers(batch))));
+                //discord users are not bound to regions, use a single partition
+                .forEach(batch->tasks.add(dbExecutorService.submit(null, ()->updateUsers(batch))));
             MiscUtil.awaitAndThrowException(tasks, true, true);
 
             count += toUpdate.size();
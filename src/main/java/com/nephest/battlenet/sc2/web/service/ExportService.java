@@ -0,0 +1,205 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import com.nephest.battlenet.sc2.model.local.dao.ExportDAO;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * <p>
+ * Exports daily deltas of the public tables as gzipped CSV files, one file per table per UTC day. A delta
+ * contains the rows that were inserted or updated during the day, so consumers can download the full DB dump once
+ * and then upsert daily deltas. Deleted rows are not tracked and are never exported, consumers that need to
+ * drop them must reload the full DB dump.
+ * </p>
+ * <p>
+ * Missing files of the last {@link #BACKFILL_DAYS} days are exported, files that are older than
+ * {@link #RETENTION_DAYS} days are removed. Export is disabled when the export dir is not set.
+ * </p>
+ * <p>
+ * A day is exported only when {@link #EXPORT_DELAY} has passed since its end. Rows are stamped when a transaction
+ * starts, but become visible only when it commits, so long ladder and match transactions that started before
+ * midnight would be missed if the day was exported right after midnight.
+ * </p>
+ */
+@Service
+public class ExportService
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExportService.class);
+
+    public static final int BACKFILL_DAYS = 3;
+    public static final int RETENTION_DAYS = 30;
+    public static final Duration EXPORT_DELAY = Duration.ofHours(2);
+    public static final String FILE_EXTENSION = ".csv.gz";
+    public static final Pattern FILE_NAME_PATTERN =
+        Pattern.compile("^[a-z_]+-\\d{4}-\\d{2}-\\d{2}" + Pattern.quote(FILE_EXTENSION) + "$");
+
+    private final ExportDAO exportDAO;
+    private final Path exportDir;
+
+    @Autowired
+    public ExportService
+    (
+        ExportDAO exportDAO,
+        @Value("${com.nephest.battlenet.sc2.export.dir:#{''}}") String exportDir
+    )
+    {
+        this.exportDAO = exportDAO;
+        this.exportDir = exportDir.isEmpty() ? null : Path.of(exportDir);
+    }
+
+    public boolean isEnabled()
+    {
+        return exportDir != null;
+    }
+
+    public static String getFileName(ExportDAO.Table table, LocalDate day)
+    {
+        return table.getName() + "-" + day + FILE_EXTENSION;
+    }
+
+    public void exportDaily()
+    {
+        exportDaily(OffsetDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Exports days that ended at least {@link #EXPORT_DELAY} ago.
+     *
+     * @param now current time
+     */
+    public void exportDaily(OffsetDateTime now)
+    {
+        exportDaily(now.withOffsetSameInstant(ZoneOffset.UTC).minus(EXPORT_DELAY).toLocalDate());
+    }
+
+    /**
+     * Exports days that precede the current day, the current day is exported when it's over.
+     *
+     * @param today current UTC day
+     */
+    public void exportDaily(LocalDate today)
+    {
+        if(!isEnabled()) return;
+
+        try
+        {
+            Files.createDirectories(exportDir);
+            for(int i = BACKFILL_DAYS; i > 0; i--)
+            {
+                LocalDate day = today.minusDays(i);
+                for(ExportDAO.Table table : ExportDAO.Table.values())
+                {
+                    Path file = exportDir.resolve(getFileName(table, day));
+                    if(!Files.exists(file)) export(table, day, file);
+                }
+            }
+            removeExpired(today.minusDays(RETENTION_DAYS));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void export(ExportDAO.Table table, LocalDate day, Path file)
+    throws IOException
+    {
+        OffsetDateTime from = day.atStartOfDay().atOffset(ZoneOffset.UTC);
+        //write to a temp file first, so a partially written file is never served or skipped by the next export
+        Path tmp = Files.createTempFile(exportDir, table.getName(), ".tmp");
+        try
+        {
+            int count;
+            try
+            (
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8))
+            )
+            {
+                count = exportDAO.export(table, from, from.plusDays(1), writer);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            LOG.info("Exported {} {} rows: {}", count, table.getName(), file);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void removeExpired(LocalDate before)
+    throws IOException
+    {
+        List<Path> expired;
+        try(Stream<Path> files = Files.list(exportDir))
+        {
+            expired = files
+                .filter(f->FILE_NAME_PATTERN.matcher(f.getFileName().toString()).matches())
+                .filter(f->getDay(f.getFileName().toString()).isBefore(before))
+                .collect(Collectors.toList());
+        }
+        for(Path file : expired) Files.delete(file);
+    }
+
+    private static LocalDate getDay(String fileName)
+    {
+        String name = fileName.substring(0, fileName.length() - FILE_EXTENSION.length());
+        return LocalDate.parse(name.substring(name.length() - 10));
+    }
+
+    /**
+     * @return sorted names of exported files
+     */
+    public List<String> getFileNames()
+    {
+        if(!isEnabled() || !Files.isDirectory(exportDir)) return List.of();
+
+        try(Stream<Path> files = Files.list(exportDir))
+        {
+            return files
+                .map(f->f.getFileName().toString())
+                .filter(f->FILE_NAME_PATTERN.matcher(f).matches())
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Optional<Path> find(String fileName)
+    {
+        if(!isEnabled() || !FILE_NAME_PATTERN.matcher(fileName).matches()) return Optional.empty();
+
+        Path file = exportDir.resolve(fileName);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+}
@@ -0,0 +1,133 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import com.nephest.battlenet.sc2.model.Region;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+
+/**
+ * <p>
+ * Remembers the last seen version of every ladder. Validators(ETag/Last-Modified) are used for conditional
+ * requests, the body digest is used to detect unchanged ladders when the API doesn't support conditional requests.
+ * </p>
+ * <p>
+ * Fingerprints are kept in memory only, an application restart results in a full ladder scan, which is
+ * expected anyway.
+ * </p>
+ */
+public class LadderFingerprintCache
+{
+
+    private static final class Fingerprint
+    {
+
+        private final String eTag;
+        private final String lastModified;
+        private final byte[] digest;
+        private volatile long lastSeen;
+
+        private Fingerprint(String eTag, String lastModified, byte[] digest)
+        {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.lastSeen = System.currentTimeMillis();
+        }
+
+    }
+
+    private final Map<Region, Map<Long, Fingerprint>> fingerprints = new EnumMap<>(Region.class);
+
+    public LadderFingerprintCache()
+    {
+        for(Region region : Region.values()) fingerprints.put(region, new ConcurrentHashMap<>());
+    }
+
+    public void addConditionalHeaders(Region region, long ladderId, HttpHeaders headers)
+    {
+        Fingerprint fingerprint = fingerprints.get(region).get(ladderId);
+        if(fingerprint == null) return;
+
+        if(fingerprint.eTag != null) headers.setIfNoneMatch(fingerprint.eTag);
+        if(fingerprint.lastModified != null) headers.set(HttpHeaders.IF_MODIFIED_SINCE, fingerprint.lastModified);
+    }
+
+    /**
+     * Marks the ladder as seen without changing its fingerprint. Use it when the API confirms that the
+     * ladder is not modified.
+     *
+     * @param region ladder region
+     * @param ladderId ladder id
+     */
+    public void touch(Region region, long ladderId)
+    {
+        Fingerprint fingerprint = fingerprints.get(region).get(ladderId);
+        if(fingerprint != null) fingerprint.lastSeen = System.currentTimeMillis();
+    }
+
+    /**
+     * Saves the new ladder fingerprint.
+     *
+     * @param region ladder region
+     * @param ladderId ladder id
+     * @param headers response headers
+     * @param body response body
+     * @return true if the ladder has changed since the last update or if it's a new ladder, false otherwise
+     */
+    public boolean update(Region region, long ladderId, HttpHeaders headers, String body)
+    {
+        Fingerprint fingerprint = new Fingerprint
+        (
+            headers.getETag(),
+            headers.getFirst(HttpHeaders.LAST_MODIFIED),
+            digest(body)
+        );
+        Fingerprint previous = fingerprints.get(region).put(ladderId, fingerprint);
+        return previous == null || !Arrays.equals(previous.digest, fingerprint.digest);
+    }
+
+    public void remove(Region region, long ladderId)
+    {
+        fingerprints.get(region).remove(ladderId);
+    }
+
+    public int size(Region region)
+    {
+        return fingerprints.get(region).size();
+    }
+
+    /**
+     * Removes ladders that haven't been seen for the {@code ttl} duration. Old seasons and removed ladders
+     * are evicted this way.
+     *
+     * @param ttl time to live
+     * @return removed fingerprint count
+     */
+    public int evict(Duration ttl)
+    {
+        long min = System.currentTimeMillis() - ttl.toMillis();
+        int removed = 0;
+        for(Map<Long, Fingerprint> regionFingerprints : fingerprints.values())
+        {
+            int size = regionFingerprints.size();
+            regionFingerprints.values().removeIf(f->f.lastSeen < min);
+            removed += size - regionFingerprints.size();
+        }
+        return removed;
+    }
+
+    //128-bit digest, collisions of changed ladders are practically impossible
+    private static byte[] digest(String body)
+    {
+        return DigestUtils.md5Digest(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -22,6 +22,7 @@ import com.nephest.battlenet.sc2.model.local.dao.SC2MapDAO;
 import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import com.nephest.battlenet.sc2.util.MiscUtil;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -29,11 +30,15 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -72,9 +77,11 @@ public class MatchService
     private final SeasonDAO seasonDAO;
     private final SC2MapDAO mapDAO;
     private final AlternativeLadderService alternativeLadderService;
-    private final ExecutorService dbExecutorService;
+    private final VersusSummaryCache versusSummaryCache;
+    private final PartitionedExecutorService dbExecutorService;
     private final Predicate<BlizzardMatch> validationPredicate;
     private final ConcurrentLinkedQueue<Set<PlayerCharacterNaturalId>> failedCharacters = new ConcurrentLinkedQueue<>();
+    private final Map<Region, Map<Long, Integer>> characterGames = new ConcurrentHashMap<>();
     private CollectionVar<Set<Region>, Region> webRegions;
 
     @Autowired @Lazy
@@ -91,7 +98,8 @@ public class MatchService
         SC2MapDAO mapDAO,
         VarDAO varDAO,
         AlternativeLadderService alternativeLadderService,
-        @Qualifier("dbExecutorService") ExecutorService dbExecutorService,
+        VersusSummaryCache versusSummaryCache,
+        @Qualifier("dbExecutorService") PartitionedExecutorService dbExecutorService,
         Validator validator
     )
     {
@@ -102,6 +110,7 @@ public class MatchService
         this.seasonDAO = seasonDAO;
         this.mapDAO = mapDAO;
         this.alternativeLadderService = alternativeLadderService;
+        this.versusSummaryCache = versusSummaryCache;
         this.dbExecutorService = dbExecutorService;
         initVars(varDAO);
         validationPredicate = DAOUtils.beanValidationPredicate(validator);
@@ -161,21 +170,91 @@ public class MatchService
         int r1 = saveFailedMatches();
         LOG.debug("Saved {} previously failed matches", r1);
         //clear here to avoid unbound retries of the same characters
-        boolean web = isWeb(regions);
-        List<PlayerCharacter> characters = web
-            ? playerCharacterDAO.findTopRecentlyActiveCharacters
-                (
-                    OffsetDateTime.ofInstant(lastUpdated, ZoneId.systemDefault()),
-                    WEB_QUEUE_TYPE,
-                    WEB_TEAM_TYPE,
-                    List.of(regions),
-                    WEB_CHARACTER_COUNT
-                )
-            : playerCharacterDAO
-                .findRecentlyActiveCharacters(OffsetDateTime.ofInstant(lastUpdated, ZoneId.systemDefault()), regions);
-        if(web) LOG.warn("Using web API for {} matches, top {} players of {} {}",
+        OffsetDateTime from = OffsetDateTime.ofInstant(lastUpdated, ZoneId.systemDefault());
+        if(isWeb(regions))
+        {
+            List<PlayerCharacter> characters = playerCharacterDAO.findTopRecentlyActiveCharacters
+            (
+                from,
+                WEB_QUEUE_TYPE,
+                WEB_TEAM_TYPE,
+                List.of(regions),
+                WEB_CHARACTER_COUNT
+            );
+            LOG.warn("Using web API for {} matches, top {} players of {} {}",
                 regions, characters.size(), WEB_QUEUE_TYPE, WEB_TEAM_TYPE);
-        return r1 + saveMatches(characters, true, web);
+            return r1 + saveMatches(characters, true, true, new HashSet<>());
+        }
+
+        List<Tuple2<PlayerCharacter, Integer>> games = playerCharacterDAO
+            .findRecentlyActiveCharacterGames(from, regions);
+        Map<Long, Integer> lastGames = getCharacterGames(regions);
+        List<PlayerCharacter> characters = findChangedCharacters(games, lastGames);
+        LOG.debug("{} of {} active characters played new games in {}", characters.size(), games.size(), regions);
+        Set<PlayerCharacterNaturalId> errors = new HashSet<>();
+        int count = saveMatches(characters, true, false, errors);
+        updateCharacterGames(regions, games, lastGames, errors);
+        return r1 + count;
+    }
+
+    /**
+     * @param games active characters and their current games count
+     * @param lastGames games count of characters at their last match fetch
+     * @return characters that played new games since their last match fetch, ordered by new games count
+     */
+    static List<PlayerCharacter> findChangedCharacters
+    (
+        List<Tuple2<PlayerCharacter, Integer>> games,
+        Map<Long, Integer> lastGames
+    )
+    {
+        return games.stream()
+            .map(t->Tuples.of(t.getT1(), getGamesDelta(t.getT2(), lastGames.get(t.getT1().getId()))))
+            .filter(t->t.getT2() > 0)
+            .sorted(Comparator.comparing((Tuple2<PlayerCharacter, Integer> t)->t.getT2()).reversed())
+            .map(Tuple2::getT1)
+            .collect(Collectors.toList());
+    }
+
+    /*
+        Unknown characters are always fetched. The games count decreases when a new season starts, all games
+        of the new season are new in this case.
+     */
+    private static int getGamesDelta(int games, Integer lastGames)
+    {
+        if(lastGames == null || games < lastGames) return Math.max(games, 1);
+        return games - lastGames;
+    }
+
+    private Map<Long, Integer> getCharacterGames(Region... regions)
+    {
+        Map<Long, Integer> games = new HashMap<>();
+        for(Region region : regions) games.putAll(characterGames.getOrDefault(region, Map.of()));
+        return games;
+    }
+
+    /*
+        Only active characters are kept to bound the memory usage. Characters that become active again are
+        unknown, so they are fetched.
+     */
+    private void updateCharacterGames
+    (
+        Region[] regions,
+        List<Tuple2<PlayerCharacter, Integer>> games,
+        Map<Long, Integer> lastGames,
+        Set<PlayerCharacterNaturalId> errors
+    )
+    {
+        Map<Region, Map<Long, Integer>> newGames = new EnumMap<>(Region.class);
+        for(Region region : regions) newGames.put(region, new HashMap<>());
+        for(Tuple2<PlayerCharacter, Integer> game : games)
+        {
+            Integer count = errors.contains(game.getT1())
+                ? lastGames.get(game.getT1().getId())
+                : game.getT2();
+            if(count != null) newGames.get(game.getT1().getRegion()).put(game.getT1().getId(), count);
+        }
+        characterGames.putAll(newGames);
     }
 
     private int saveFailedMatches()
@@ -191,25 +270,39 @@ public class MatchService
             else
             {
                 LOG.debug("Retrying {} previously failed matches", chars.size());
-                i += saveMatches(chars, false, false);
+                i += saveMatches(chars, false, false, new HashSet<>());
             }
         }
         return i;
     }
 
-    private int saveMatches(Iterable<? extends PlayerCharacterNaturalId> characters, boolean saveFailedCharacters, boolean web)
+    private int saveMatches
+    (
+        Iterable<? extends PlayerCharacterNaturalId> characters,
+        boolean saveFailedCharacters,
+        boolean web,
+        Set<PlayerCharacterNaturalId> errors
+    )
     {
         List<Future<?>> dbTasks = new ArrayList<>();
         AtomicInteger count = new AtomicInteger(0);
-        Set<PlayerCharacterNaturalId> errors = new HashSet<>();
+        Set<Integer> clans = new HashSet<>();
         api.getMatches(characters, errors, web)
             .flatMap(m->Flux.fromArray(m.getT1().getMatches())
                 .zipWith(Flux.fromStream(Stream.iterate(m.getT2(), i->m.getT2()))))
             .buffer(BATCH_SIZE)
             .doOnNext(b->count.getAndAdd(b.size()))
             .toStream()
-            .forEach(m->dbTasks.add(dbExecutorService.submit(()->matchService.saveMatches(m))));
+            .peek(m->m.stream()
+                .map(Tuple2::getT2)
+                .filter(c->c instanceof PlayerCharacter && ((PlayerCharacter) c).getClanId() != null)
+                .forEach(c->clans.add(((PlayerCharacter) c).getClanId())))
+            .forEach(m->m.stream()
+                .collect(Collectors.groupingBy(t->t.getT2().getRegion()))
+                .forEach((region, matches)->
+                    dbTasks.add(dbExecutorService.submit(region, ()->matchService.saveMatches(matches)))));
         MiscUtil.awaitAndLogExceptions(dbTasks, true);
+        versusSummaryCache.invalidateClans(clans);
         if(saveFailedCharacters) failedCharacters.add(errors);
         return count.get();
     }
@@ -292,6 +385,8 @@ public class MatchService
     public void updateMeta(UpdateContext updateContext)
     {
         identify(updateContext);
+        //versus teams are matched by identified match participants
+        versusSummaryCache.invalidateTeams();
         calculateRatingDifference(updateContext);
         calculateDuration(updateContext);
     }
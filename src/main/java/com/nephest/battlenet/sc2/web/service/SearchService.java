@@ -7,8 +7,21 @@ import com.nephest.battlenet.sc2.model.local.Account;
 import com.nephest.battlenet.sc2.model.local.dao.AccountDAO;
 import com.nephest.battlenet.sc2.model.local.dao.ClanDAO;
 import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
+import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
+import com.nephest.battlenet.sc2.util.TermIndex;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,16 +29,28 @@ import org.springframework.stereotype.Service;
 public class SearchService
 {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SearchService.class);
+
     public static final int MIN_CHARACTER_NAME_LENGTH = 4;
     public static final int MIN_CLAN_TAG_LENGTH = 2;
     public static final String CLAN_START_DELIMITER = "[";
     public static final String CLAN_END_DELIMITER = "]";
     public static final String CLAN_SEARCH_FORMAT = CLAN_START_DELIMITER + "%1$s" + CLAN_END_DELIMITER;
     public static final String BATTLE_TAG_MARKER = "#";
+    public static final Duration INDEX_FULL_UPDATE_PERIOD = Duration.ofDays(1);
+    //rows that were committed with an earlier timestamp while the previous update was running
+    public static final Duration INDEX_UPDATE_OVERLAP = Duration.ofMinutes(5);
 
     private final PlayerCharacterDAO playerCharacterDAO;
     private final AccountDAO accountDAO;
     private final ClanDAO clanDAO;
+    private final SeasonDAO seasonDAO;
+
+    private final Map<SearchType, Map<String, Integer>> indexWeights = new EnumMap<>(SearchType.class);
+    private volatile Map<SearchType, TermIndex> indexes = Map.of();
+    private Integer indexSeason;
+    private OffsetDateTime indexUpdated;
+    private OffsetDateTime indexFullyUpdated;
 
     public enum SearchType
     {
@@ -49,16 +74,125 @@ public class SearchService
     }
 
     @Autowired
-    public SearchService(PlayerCharacterDAO playerCharacterDAO, AccountDAO accountDAO, ClanDAO clanDAO)
+    public SearchService
+    (
+        PlayerCharacterDAO playerCharacterDAO,
+        AccountDAO accountDAO,
+        ClanDAO clanDAO,
+        SeasonDAO seasonDAO
+    )
     {
         this.playerCharacterDAO = playerCharacterDAO;
         this.accountDAO = accountDAO;
         this.clanDAO = clanDAO;
+        this.seasonDAO = seasonDAO;
+    }
+
+    /**
+     * <p>
+     * Updates in-memory suggestion indexes. Names and BattleTags of players that played in the current season
+     * are indexed, they are ranked by their max rating in the current season. Clan tags are ranked by active
+     * member count.
+     * </p>
+     * <p>
+     * Only names and BattleTags of teams that changed since the previous update are loaded, team changes are
+     * tracked by team snapshots. The indexes are fully reloaded when a new season starts, and every
+     * {@link #INDEX_FULL_UPDATE_PERIOD} to drop stale names.
+     * </p>
+     */
+    public synchronized void updateIndex()
+    {
+        int season = seasonDAO.getMaxBattlenetId();
+        OffsetDateTime start = OffsetDateTime.now();
+        boolean full = indexSeason == null
+            || indexSeason != season
+            || indexFullyUpdated.isBefore(start.minus(INDEX_FULL_UPDATE_PERIOD));
+        if(full) indexWeights.clear();
+        OffsetDateTime from = full ? null : indexUpdated.minus(INDEX_UPDATE_OVERLAP);
+
+        Map<SearchType, TermIndex> newIndexes = new EnumMap<>(SearchType.class);
+        newIndexes.putAll(indexes);
+        updateIndex
+        (
+            newIndexes,
+            SearchType.GENERAL,
+            full ? playerCharacterDAO.findNameWeights(season) : playerCharacterDAO.findNameWeights(season, from),
+            full
+        );
+        updateIndex
+        (
+            newIndexes,
+            SearchType.BATTLE_TAG,
+            full ? accountDAO.findBattleTagWeights(season) : accountDAO.findBattleTagWeights(season, from),
+            full
+        );
+        updateIndex(newIndexes, SearchType.CLAN, clanDAO.findTagWeights(), true);
+        indexes = Collections.unmodifiableMap(newIndexes);
+
+        indexSeason = season;
+        indexUpdated = start;
+        if(full) indexFullyUpdated = start;
+        LOG.debug("Updated search indexes of season {}, full: {}", season, full);
+    }
+
+    private void updateIndex
+    (
+        Map<SearchType, TermIndex> indexes,
+        SearchType type,
+        Map<String, Integer> weights,
+        boolean replace
+    )
+    {
+        if(replace)
+        {
+            indexWeights.put(type, new HashMap<>(weights));
+        }
+        else
+        {
+            if(weights.isEmpty()) return;
+            Map<String, Integer> allWeights = indexWeights.computeIfAbsent(type, t->new HashMap<>());
+            weights.forEach((term, weight)->allWeights.merge(term, weight, Math::max));
+        }
+        indexes.put(type, TermIndex.of(indexWeights.get(type)));
     }
 
+    public boolean isIndexed()
+    {
+        return !indexes.isEmpty();
+    }
+
+    /**
+     * Suggests search terms. In-memory indexes are used when they are available. Indexes contain only
+     * players of the current season, so prefix SQL search is used when there are no indexes or they have
+     * less than {@code limit} suggestions.
+     *
+     * @param term search term
+     * @param limit max number of suggestions
+     * @return suggested search terms
+     */
     public List<String> suggest(String term, int limit)
     {
-        switch(SearchType.of(term))
+        SearchType type = SearchType.of(term);
+        TermIndex index = indexes.get(type);
+        if(index == null) return suggestSql(type, term, limit);
+
+        List<String> suggestions = type == SearchType.CLAN
+            ? clanTagsToSearchTerms(index.suggest(extractClanTag(term), limit))
+            : index.suggest(term, limit);
+        if(suggestions.size() >= limit) return suggestions;
+
+        Set<String> allSuggestions = new LinkedHashSet<>(suggestions);
+        for(String suggestion : suggestSql(type, term, limit))
+        {
+            if(allSuggestions.size() >= limit) break;
+            allSuggestions.add(suggestion);
+        }
+        return new ArrayList<>(allSuggestions);
+    }
+
+    private List<String> suggestSql(SearchType type, String term, int limit)
+    {
+        switch(type)
         {
             case BATTLE_TAG:
                 return accountDAO.findBattleTags(term, limit);
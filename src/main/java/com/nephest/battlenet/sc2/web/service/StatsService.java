@@ -44,7 +44,12 @@ import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamMemberDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamStateDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import com.nephest.battlenet.sc2.model.local.inner.PlayerCharacterSummaryDAO;
 import com.nephest.battlenet.sc2.util.MiscUtil;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import com.nephest.battlenet.sc2.util.StripedLongSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
@@ -61,12 +66,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
@@ -100,6 +104,12 @@ public class StatsService
     public static final int STALE_LADDER_DEPTH = 12;
     public static final int DEFAULT_PLAYER_CHARACTER_STATS_HOURS_DEPTH = 2;
     public static final int LADDER_BATCH_SIZE = 100;
+    public static final int LADDER_BATCHES_IN_FLIGHT = 2;
+    public static final String LADDER_FETCH_METRIC_NAME = "ladder.update.fetch";
+    public static final String LADDER_BATCH_METRIC_NAME = "ladder.update.batch";
+    public static final String LADDER_PERSIST_METRIC_NAME = "ladder.update.persist";
+    public static final String LADDER_TEAM_METRIC_NAME = "ladder.update.team";
+    public static final String LADDER_MEMBER_METRIC_NAME = "ladder.update.member";
     public static final Duration FORCED_LADDER_SCAN_FRAME = Duration.ofHours(2);
     public static final int PARTIAL_ALTERNATIVE_UPDATE_REGION_THRESHOLD = 3;
     public static final int PARTIAL_ALTERNATIVE_UPDATES_PER_CYCLE = 2;
@@ -120,13 +130,40 @@ public class StatsService
     @Value("${com.nephest.battlenet.sc2.ladder.forceUpdate:#{'false'}}")
     private boolean forceUpdate;
 
-    private final Map<Region, Integer> partialAlternativeUpdates = new EnumMap<>(Region.class);
+    @Value("${com.nephest.battlenet.sc2.ladder.batch.inFlight:#{'" + LADDER_BATCHES_IN_FLIGHT + "'}}")
+    private int ladderBatchesInFlight = LADDER_BATCHES_IN_FLIGHT;
 
-    private final Set<Integer> pendingStatsUpdates = new HashSet<>();
+    private final Map<Region, AtomicInteger> partialAlternativeUpdates = new EnumMap<>(Region.class);
+
+    private final Set<Integer> pendingStatsUpdates = ConcurrentHashMap.newKeySet();
     private final Map<Region, Set<Long>> failedLadders = new EnumMap<>(Region.class);
     private final Map<Region, InstantVar> forcedUpdateInstants = new EnumMap<>(Region.class);
     private final Map<Region, InstantVar> forcedAlternativeUpdateInstants = new EnumMap<>(Region.class);
-    private final ConcurrentLinkedQueue<Long> pendingTeams = new ConcurrentLinkedQueue<>();
+    private final StripedLongSet pendingTeams = new StripedLongSet();
+    private final Set<Tuple3<Integer, QueueType, TeamType>> pendingRankPartitions = ConcurrentHashMap.newKeySet();
+    private final Set<Tuple4<Integer, Region, QueueType, TeamType>> pendingStatsPartitions =
+        ConcurrentHashMap.newKeySet();
+    private final Map<Region, Counter> fetchedLadderCounters = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> ladderBatchCounters = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> persistedLadderCounters = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> savedTeamCounters = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> savedMemberCounters = new EnumMap<>(Region.class);
+
+    /*
+        Ladder batches are retried on lock failures, so their side effects are collected here and recorded only
+        when a batch is committed.
+     */
+    static final class SavedLadders
+    {
+
+        private final Set<Tuple3<Integer, QueueType, TeamType>> rankPartitions = new HashSet<>();
+        private final Set<Tuple4<Integer, Region, QueueType, TeamType>> statsPartitions = new HashSet<>();
+        private final List<Long> teams = new ArrayList<>();
+        private final List<Long> forcedLadders = new ArrayList<>();
+        private int teamCount;
+        private int memberCount;
+
+    }
 
     private AlternativeLadderService alternativeLadderService;
     private BlizzardSC2API api;
@@ -144,10 +181,12 @@ public class StatsService
     private LeagueStatsDAO leagueStatsDao;
     private PlayerCharacterStatsDAO playerCharacterStatsDAO;
     private PopulationStateDAO populationStateDAO;
+    private PlayerCharacterSummaryDAO playerCharacterSummaryDAO;
     private VarDAO varDAO;
+    private CommonCharacterService commonCharacterService;
     private SC2WebServiceUtil sc2WebServiceUtil;
     private ConversionService conversionService;
-    private ExecutorService dbExecutorService;
+    private PartitionedExecutorService dbExecutorService;
     private Predicate<BlizzardTeam> teamValidationPredicate;
 
     public StatsService(){}
@@ -171,11 +210,14 @@ public class StatsService
         LeagueStatsDAO leagueStatsDao,
         PlayerCharacterStatsDAO playerCharacterStatsDAO,
         PopulationStateDAO populationStateDAO,
+        PlayerCharacterSummaryDAO playerCharacterSummaryDAO,
         VarDAO varDAO,
+        CommonCharacterService commonCharacterService,
         SC2WebServiceUtil sc2WebServiceUtil,
         @Qualifier("sc2StatsConversionService") ConversionService conversionService,
         Validator validator,
-        @Qualifier("dbExecutorService") ExecutorService dbExecutorService
+        @Qualifier("dbExecutorService") PartitionedExecutorService dbExecutorService,
+        MeterRegistry meterRegistry
     )
     {
         this.alternativeLadderService = alternativeLadderService;
@@ -194,7 +236,9 @@ public class StatsService
         this.leagueStatsDao = leagueStatsDao;
         this.playerCharacterStatsDAO = playerCharacterStatsDAO;
         this.populationStateDAO = populationStateDAO;
+        this.playerCharacterSummaryDAO = playerCharacterSummaryDAO;
         this.varDAO = varDAO;
+        this.commonCharacterService = commonCharacterService;
         this.sc2WebServiceUtil = sc2WebServiceUtil;
         this.conversionService = conversionService;
         this.dbExecutorService = dbExecutorService;
@@ -202,7 +246,12 @@ public class StatsService
         for(Region r : Region.values())
         {
             failedLadders.put(r, ConcurrentHashMap.newKeySet());
-            partialAlternativeUpdates.put(r, 0);
+            partialAlternativeUpdates.put(r, new AtomicInteger());
+            fetchedLadderCounters.put(r, meterRegistry.counter(LADDER_FETCH_METRIC_NAME, "region", r.name()));
+            ladderBatchCounters.put(r, meterRegistry.counter(LADDER_BATCH_METRIC_NAME, "region", r.name()));
+            persistedLadderCounters.put(r, meterRegistry.counter(LADDER_PERSIST_METRIC_NAME, "region", r.name()));
+            savedTeamCounters.put(r, meterRegistry.counter(LADDER_TEAM_METRIC_NAME, "region", r.name()));
+            savedMemberCounters.put(r, meterRegistry.counter(LADDER_MEMBER_METRIC_NAME, "region", r.name()));
         }
     }
 
@@ -307,7 +356,8 @@ public class StatsService
         Season season = seasonDao.merge(Season.of(api.getSeason(region, seasonId).block(), region));
         api.getLadders(region, ids)
             .toStream(BlizzardSC2API.REQUESTS_PER_SECOND_CAP * 2)
-            .forEach(l->statsService.saveLadder(season, l.getT1(), l.getT2(), alternativeLadderService));
+            .map(l->statsService.saveLadder(season, l.getT1(), l.getT2(), alternativeLadderService))
+            .forEach(saved->record(season, saved));
 
     }
 
@@ -316,15 +366,27 @@ public class StatsService
         //isolation = Isolation.READ_COMMITTED,
         propagation = Propagation.REQUIRES_NEW
     )
-    public void saveLadder(Season season, BlizzardLadder bLadder, long id,AlternativeLadderService alternativeLadderService)
+    public SavedLadders saveLadder(Season season, BlizzardLadder bLadder, long id,AlternativeLadderService alternativeLadderService)
     {
+        SavedLadders saved = new SavedLadders();
         BlizzardLadderLeagueKey lKey = bLadder.getLeague().getLeagueKey();
-        if(!lKey.getSeasonId().equals(season.getBattlenetId())) return;
+        if(!lKey.getSeasonId().equals(season.getBattlenetId())) return saved;
 
         League league = new League(null, null, lKey.getLeagueId(), lKey.getQueueId(), lKey.getTeamType());
         LeagueTier tier = new LeagueTier(null, null, AlternativeLadderService.ALTERNATIVE_TIER, 0, 0);
         Division division = alternativeLadderService.getOrCreateDivision(season, lKey, id);
-        updateTeams(bLadder.getTeams(), season, league, tier, division, null);
+        updateTeams(bLadder.getTeams(), season, league, tier, division, null, saved);
+        return saved;
+    }
+
+    private void record(Season season, SavedLadders saved)
+    {
+        pendingRankPartitions.addAll(saved.rankPartitions);
+        pendingStatsPartitions.addAll(saved.statsPartitions);
+        saved.teams.forEach(pendingTeams::add);
+        failedLadders.get(season.getRegion()).removeAll(saved.forcedLadders);
+        savedTeamCounters.get(season.getRegion()).increment(saved.teamCount);
+        savedMemberCounters.get(season.getRegion()).increment(saved.memberCount);
     }
 
     private void updateSeason(int seasonId, Region[] regions, QueueType[] queues, BaseLeague.LeagueType[] leagues)
@@ -339,11 +401,31 @@ public class StatsService
     public void afterCurrentSeasonUpdate(UpdateContext updateContext, boolean allStats)
     {
         teamStateDAO.removeExpired();
-        for(int season : pendingStatsUpdates) updateSeasonStats(season, allStats);
-        takePopulationSnapshot(pendingStatsUpdates, pendingTeams);
-        pendingTeams.clear();
-        alternativeLadderService.afterCurrentSeasonUpdate(pendingStatsUpdates);
-        pendingStatsUpdates.clear();
+        Set<Integer> seasons = new HashSet<>(pendingStatsUpdates);
+        pendingStatsUpdates.removeAll(seasons);
+        Map<Integer, List<Tuple3<Region, QueueType, TeamType>>> statsPartitions = drainStatsPartitions();
+        for(int season : seasons)
+        {
+            if(allStats)
+            {
+                updateSeasonStats(season, true);
+            }
+            else
+            {
+                //only partitions that have changed teams are recalculated, heavy stats reconcile the rest daily
+                leagueStatsDao.mergeCalculateForSeason(season, statsPartitions.getOrDefault(season, List.of()));
+            }
+        }
+        List<Long> teams = LongStream.concat
+        (
+            LongStream.of(pendingTeams.drain()),
+            LongStream.of(alternativeLadderService.drainPendingTeams())
+        )
+            .distinct()
+            .boxed()
+            .collect(Collectors.toList());
+        takePopulationSnapshot(seasons, teams);
+        LOG.info("Refreshed {} character summaries", playerCharacterSummaryDAO.refresh(teams));
         playerCharacterStatsDAO.mergeCalculate
         (
             updateContext.getInternalUpdate() != null
@@ -352,6 +434,34 @@ public class StatsService
         );
     }
 
+    /**
+     * Marks rank partitions of teams whose members had their cheater report status changed since
+     * {@code from}. Their ranks and population snapshots are recalculated by the next update.
+     *
+     * @param from min report status change timestamp, inclusive
+     * @return number of marked partitions
+     */
+    public int addCheaterReportRankPartitions(OffsetDateTime from)
+    {
+        int season = seasonDao.getMaxBattlenetId();
+        Set<Tuple2<QueueType, TeamType>> partitions = teamDao.findCheaterReportRankPartitions(season, from);
+        partitions.forEach(p->pendingRankPartitions.add(Tuples.of(season, p.getT1(), p.getT2())));
+        return partitions.size();
+    }
+
+    private Map<Integer, List<Tuple3<Region, QueueType, TeamType>>> drainStatsPartitions()
+    {
+        return Stream.concat
+            (
+                MiscUtil.drain(pendingStatsPartitions).stream(),
+                alternativeLadderService.drainPendingStatsPartitions().stream()
+            )
+            .distinct()
+            .collect(Collectors.groupingBy(
+                Tuple4::getT1,
+                Collectors.mapping(p->Tuples.of(p.getT2(), p.getT3(), p.getT4()), Collectors.toList())));
+    }
+
     private void updateSeasonStats
     (int seasonId, boolean allStats)
     {
@@ -359,16 +469,27 @@ public class StatsService
         leagueStatsDao.mergeCalculateForSeason(seasonId);
     }
 
-    private void takePopulationSnapshot(Collection<Integer> seasons, Collection<Long> teams)
+    private void takePopulationSnapshot(Collection<Integer> seasons, List<Long> teams)
     {
-        populationStateDAO.takeSnapshot(seasons);
-        for(Integer seasonId : seasons) teamDao.updateRanks(seasonId);
-        LOG.info
+        Map<Integer, Set<Tuple2<QueueType, TeamType>>> rankPartitions = Stream.concat
         (
-            "Created {} team snapshots",
-            //team ids can be duplicated when the update is too slow
-            teamStateDAO.takeSnapshot(new ArrayList<>(new HashSet<>(teams)))
-        );
+            MiscUtil.drain(pendingRankPartitions).stream(),
+            alternativeLadderService.drainPendingRankPartitions().stream()
+        )
+            .collect(Collectors.groupingBy(
+                Tuple3::getT1,
+                Collectors.mapping(p->Tuples.of(p.getT2(), p.getT3()), Collectors.toSet())));
+        /*
+            Only partitions that have changed teams or cheater reports are recalculated, population snapshots and
+            ranks of other partitions stay the same
+         */
+        for(Integer seasonId : seasons)
+        {
+            Set<Tuple2<QueueType, TeamType>> seasonPartitions = rankPartitions.getOrDefault(seasonId, Set.of());
+            populationStateDAO.takeSnapshot(seasonId, seasonPartitions);
+            teamDao.updateRanks(seasonId, seasonPartitions);
+        }
+        LOG.info("Created {} team snapshots", teamStateDAO.takeSnapshot(teams));
     }
 
     private void updateSeason(Region region, int seasonId, QueueType[] queues, BaseLeague.LeagueType[] leagues)
@@ -429,7 +550,7 @@ public class StatsService
             Stream.concat(alternativeRegions.stream(), forcedAlternativeRegions.stream())
                 .distinct()
                 .count() >= PARTIAL_ALTERNATIVE_UPDATE_REGION_THRESHOLD
-            && partialAlternativeUpdates.get(region) < PARTIAL_ALTERNATIVE_UPDATES_PER_CYCLE
+            && partialAlternativeUpdates.get(region).get() < PARTIAL_ALTERNATIVE_UPDATES_PER_CYCLE
             && Arrays.asList(queues).containsAll(PARTIAL_UPDATE_QUEUE_TYPES)
             && Arrays.asList(leagues).containsAll(PARTIAL_UPDATE_LEAGUE_TYPES);
         if(partialUpdate)
@@ -448,11 +569,11 @@ public class StatsService
         );
         if(partialUpdate)
         {
-            partialAlternativeUpdates.put(region, partialAlternativeUpdates.get(region) + 1);
+            partialAlternativeUpdates.get(region).incrementAndGet();
         }
         else
         {
-            partialAlternativeUpdates.put(region, 0);
+            partialAlternativeUpdates.get(region).set(0);
         }
     }
 
@@ -478,15 +599,48 @@ public class StatsService
         updateLadders(season, ladderIds, updateContext.getExternalUpdate());
     }
 
+    /*
+        fetch -> batch -> persist. The persist stage has a limited number of in-flight batches, the upstream stages
+        are not requested for more ladders until a batch is persisted, so a slow DB throttles the API instead of
+        piling up parsed ladders in memory.
+     */
     private void updateLadders
     (Season season, List<Tuple4<BlizzardLeague, Region, BlizzardLeagueTier, BlizzardTierDivision>> ladderIds, Instant lastUpdated)
     {
-        List<Future<?>> dbTasks = new ArrayList<>();
+        Region region = season.getRegion();
         api.getLadders(ladderIds, lastUpdated != null ? lastUpdated.toEpochMilli() / 1000 : -1, failedLadders)
+            .doOnNext(l->fetchedLadderCounters.get(region).increment())
             .buffer(LADDER_BATCH_SIZE)
-            .toStream()
-            .forEach(l->dbTasks.add(dbExecutorService.submit(()->statsService.saveLadders(season, l, lastUpdated))));
-        MiscUtil.awaitAndLogExceptions(dbTasks, true);
+            .doOnNext(l->ladderBatchCounters.get(region).increment())
+            .flatMap(l->saveLaddersAsync(season, l, lastUpdated), ladderBatchesInFlight, 1)
+            .blockLast();
+    }
+
+    private Mono<Void> saveLaddersAsync
+    (
+        Season season,
+        List<Tuple2<BlizzardLadder, Tuple4<BlizzardLeague, Region, BlizzardLeagueTier, BlizzardTierDivision>>> ladders,
+        Instant lastUpdated
+    )
+    {
+        return Mono.fromFuture(()->dbExecutorService
+                .submit(season.getRegion(), ()->statsService.saveLadders(season, ladders, lastUpdated)))
+            .doOnNext(saved->
+            {
+                record(season, saved);
+                persistedLadderCounters.get(season.getRegion()).increment(ladders.size());
+            })
+            .then()
+            .onErrorResume(t->
+            {
+                LOG.error(t.getMessage(), t);
+                /*
+                    Unchanged ladders are skipped by the API, force full update of failed ladders to not lose
+                    their teams.
+                 */
+                ladders.forEach(l->failedLadders.get(l.getT2().getT2()).add(l.getT2().getT4().getLadderId()));
+                return Mono.empty();
+            });
     }
 
     @Transactional
@@ -494,29 +648,36 @@ public class StatsService
         //isolation = Isolation.READ_COMMITTED,
         propagation = Propagation.REQUIRES_NEW
     )
-    public void saveLadders
+    public SavedLadders saveLadders
     (
         Season season,
         List<Tuple2<BlizzardLadder, Tuple4<BlizzardLeague, Region, BlizzardLeagueTier, BlizzardTierDivision>>> ladders,
         Instant lastUpdated
     )
     {
+        SavedLadders saved = new SavedLadders();
         for(Tuple2<BlizzardLadder, Tuple4<BlizzardLeague, Region, BlizzardLeagueTier, BlizzardTierDivision>> l : ladders)
         {
             League league = leagueDao.merge(League.of(season, l.getT2().getT1()));
             LeagueTier tier = leagueTierDao.merge(LeagueTier.of(league, l.getT2().getT3()));
             Division division = saveDivision(season, league, tier, l.getT2().getT4());
-            //force update previously failed ladders, this will pick up all skipped teams
-            Instant lastUpdatedToUse = failedLadders.get(l.getT2().getT2()).remove(l.getT2().getT4().getLadderId())
+            /*
+                Force update previously failed ladders, this will pick up all skipped teams. Failed ladders are
+                removed when the batch is committed, so a retried batch forces them again.
+             */
+            Long ladderId = l.getT2().getT4().getLadderId();
+            Instant lastUpdatedToUse = failedLadders.get(l.getT2().getT2()).contains(ladderId)
                 ? null
                 : lastUpdated;
-            updateTeams(l.getT1().getTeams(), season, league, tier, division, lastUpdatedToUse);
+            if(lastUpdatedToUse == null) saved.forcedLadders.add(ladderId);
+            updateTeams(l.getT1().getTeams(), season, league, tier, division, lastUpdatedToUse, saved);
             LOG.debug
             (
                 "Ladder saved: {} {} {} {}",
                 season, division.getBattlenetId(), league, lastUpdatedToUse == null ? "forced" : ""
             );
         }
+        return saved;
     }
 
     public Division saveDivision
@@ -546,7 +707,8 @@ public class StatsService
         League league,
         LeagueTier tier,
         Division division,
-        Instant lastUpdateStart
+        Instant lastUpdateStart,
+        SavedLadders saved
     )
     {
         if(lastUpdateStart != null) {
@@ -566,15 +728,32 @@ public class StatsService
             .collect(Collectors.toList());
         if(validTeams.isEmpty()) return;
 
-        teamDao.merge(validTeams.stream().map(Tuple2::getT1).toArray(Team[]::new));
+        int savedTeams = teamDao.merge(validTeams.stream().map(Tuple2::getT1).toArray(Team[]::new)).length;
+        //ranks and stats of unchanged ladders stay the same
+        if(savedTeams > 0)
+        {
+            saved.rankPartitions.add(Tuples.of(season.getBattlenetId(), league.getQueueType(), league.getTeamType()));
+            saved.statsPartitions.add(Tuples.of
+            (
+                season.getBattlenetId(),
+                season.getRegion(),
+                league.getQueueType(),
+                league.getTeamType()
+            ));
+        }
         validTeams.stream()
             .filter(t->t.getT1().getId() != null)
             .forEach(t->{
                 extractTeamMembers(t.getT2().getMembers(), members, clans, season, t.getT1());
-                if(season.getBattlenetId().equals(curSeason)) pendingTeams.add(t.getT1().getId());
+                if(season.getBattlenetId().equals(curSeason)) saved.teams.add(t.getT1().getId());
             });
         saveClans(clanDAO, clans);
         saveMembersConcurrently(members);
+        commonCharacterService.invalidate(members.stream()
+            .map(m->m.getT2().getId())
+            .collect(Collectors.toList()));
+        saved.teamCount += savedTeams;
+        saved.memberCount += members.size();
     }
 
     //cross field validation
@@ -613,26 +792,25 @@ public class StatsService
         }
     }
 
-    //this ensures the consistent order for concurrent entities(accounts and players)
+    //DAOs sort entities by natural ids, this ensures the consistent order for concurrent entities(accounts and players)
     private void saveMembersConcurrently(List<Tuple3<Account, PlayerCharacter, TeamMember>> members)
     {
         if(members.size() == 0) return;
 
         Set<TeamMember> teamMembers = new HashSet<>(members.size(), 1.0F);
 
-        members.sort(Comparator.comparing(Tuple2::getT1, Account.NATURAL_ID_COMPARATOR));
+        accountDao.merge(members.stream()
+            .map(m->Tuples.of(m.getT1(), m.getT2()))
+            .collect(Collectors.toList()));
         for(Tuple3<Account, PlayerCharacter, TeamMember> curMembers : members)
-            accountDao.merge(curMembers.getT1(), curMembers.getT2());
+            curMembers.getT2().setAccountId(curMembers.getT1().getId());
 
-        members.sort(Comparator.comparing(Tuple2::getT2, PlayerCharacter.NATURAL_ID_COMPARATOR));
+        playerCharacterDao.merge(members.stream()
+            .map(Tuple2::getT2)
+            .toArray(PlayerCharacter[]::new));
         for(Tuple3<Account, PlayerCharacter, TeamMember> curMembers : members)
         {
-            Account account = curMembers.getT1();
-
-            curMembers.getT2().setAccountId(account.getId());
-            PlayerCharacter character = playerCharacterDao.merge(curMembers.getT2());
-
-            curMembers.getT3().setCharacterId(character.getId());
+            curMembers.getT3().setCharacterId(curMembers.getT2().getId());
             teamMembers.add(curMembers.getT3());
         }
 
@@ -10,6 +10,7 @@ import com.nephest.battlenet.sc2.model.local.dao.MatchDAO;
 import com.nephest.battlenet.sc2.model.local.dao.MatchParticipantDAO;
 import com.nephest.battlenet.sc2.model.local.dao.ProPlayerDAO;
 import com.nephest.battlenet.sc2.model.local.dao.SocialMediaLinkDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderVodIndex;
 import com.nephest.battlenet.sc2.model.twitch.TwitchUser;
 import com.nephest.battlenet.sc2.model.twitch.TwitchVideo;
 import com.nephest.battlenet.sc2.model.twitch.dao.TwitchUserDAO;
@@ -43,6 +44,7 @@ public class TwitchService
     private final SocialMediaLinkDAO socialMediaLinkDAO;
     private final MatchDAO matchDAO;
     private final MatchParticipantDAO matchParticipantDAO;
+    private final LadderVodIndex ladderVodIndex;
     private final TwitchClient twitchClient;
     private final ExecutorService webExecutorService;
 
@@ -55,6 +57,7 @@ public class TwitchService
         SocialMediaLinkDAO socialMediaLinkDAO,
         MatchDAO matchDAO,
         MatchParticipantDAO matchParticipantDAO,
+        LadderVodIndex ladderVodIndex,
         TwitchClient twitchClient,
         @Qualifier("webExecutorService") ExecutorService webExecutorService
     )
@@ -65,6 +68,7 @@ public class TwitchService
         this.socialMediaLinkDAO = socialMediaLinkDAO;
         this.matchDAO = matchDAO;
         this.matchParticipantDAO = matchParticipantDAO;
+        this.ladderVodIndex = ladderVodIndex;
         this.twitchClient = twitchClient;
         this.webExecutorService = webExecutorService;
     }
@@ -85,6 +89,7 @@ public class TwitchService
         OffsetDateTime from = OffsetDateTime.now().minus(LINK_VIDEO_OFFSET);
         matchParticipantDAO.linkTwitchVideo(from);
         matchDAO.updateTwitchVodStats(from);
+        ladderVodIndex.update();
         LOG.info("Updated twitch data");
     }
 
@@ -118,6 +118,20 @@ public class UpdateService
         return region == null ? globalContext : regionalContexts.get(region);
     }
 
+    /**
+     * @return the most recent internal update of all regional and global contexts, null if there were no updates
+     */
+    public Instant getLastInternalUpdate()
+    {
+        Instant last = globalContext == null ? null : globalContext.getInternalUpdate();
+        for(UpdateContext context : regionalContexts.values())
+        {
+            if(context == null || context.getInternalUpdate() == null) continue;
+            if(last == null || context.getInternalUpdate().isAfter(last)) last = context.getInternalUpdate();
+        }
+        return last;
+    }
+
     public Duration calculateUpdateDuration(Region region)
     {
         UpdateContext context = getUpdateContext(region);
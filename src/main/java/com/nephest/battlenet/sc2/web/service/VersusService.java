@@ -7,6 +7,7 @@ import com.nephest.battlenet.sc2.model.BaseMatch;
 import com.nephest.battlenet.sc2.model.local.Clan;
 import com.nephest.battlenet.sc2.model.local.dao.ClanDAO;
 import com.nephest.battlenet.sc2.model.local.inner.TeamLegacyUid;
+import com.nephest.battlenet.sc2.model.local.inner.VersusSummary;
 import com.nephest.battlenet.sc2.model.local.ladder.*;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderMatchDAO;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchDAO;
@@ -28,13 +29,21 @@ public class VersusService
     private final LadderMatchDAO ladderMatchDAO;
     private final LadderSearchDAO ladderSearchDAO;
     private final ClanDAO clanDAO;
+    private final VersusSummaryCache versusSummaryCache;
 
     @Autowired
-    public VersusService(LadderMatchDAO ladderMatchDAO, LadderSearchDAO ladderSearchDAO, ClanDAO clanDAO)
+    public VersusService
+    (
+        LadderMatchDAO ladderMatchDAO,
+        LadderSearchDAO ladderSearchDAO,
+        ClanDAO clanDAO,
+        VersusSummaryCache versusSummaryCache
+    )
     {
         this.ladderMatchDAO = ladderMatchDAO;
         this.ladderSearchDAO = ladderSearchDAO;
         this.clanDAO = clanDAO;
+        this.versusSummaryCache = versusSummaryCache;
     }
 
     @Transactional(isolation = Isolation.REPEATABLE_READ, readOnly = true)
@@ -65,11 +74,29 @@ public class VersusService
             findClans(clans1, matches.getResult()),
             findTeams(teams2, matches.getResult()),
             findClans(clans2, matches.getResult()),
-            ladderMatchDAO.getVersusSummary(clans1, teams1, clans2, teams2, types),
+            getVersusSummary(clans1, teams1, clans2, teams2, types),
             matches
         );
     }
 
+    public VersusSummary getVersusSummary
+    (
+        Integer[] clans1,
+        Set<TeamLegacyUid> teams1,
+        Integer[] clans2,
+        Set<TeamLegacyUid> teams2,
+        BaseMatch.MatchType... types
+    )
+    {
+        return versusSummaryCache.get
+        (
+            clans1, teams1,
+            clans2, teams2,
+            types,
+            ()->ladderMatchDAO.getVersusSummary(clans1, teams1, clans2, teams2, types)
+        );
+    }
+
     /*
         There is a high probability that the target teams and clans will be included in the first batch of matches.
         Try to avoid DB usage if possible, extract target entities from matches, fallback to DB search otherwise.
@@ -0,0 +1,154 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.local.inner.TeamLegacyUid;
+import com.nephest.battlenet.sc2.model.local.inner.VersusSummary;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import reactor.util.function.Tuple5;
+import reactor.util.function.Tuples;
+
+/**
+ * <p>
+ * Bounded LRU cache of versus summaries. Keys are normalized, so the order of clans, teams and match types
+ * doesn't matter.
+ * </p>
+ * <p>
+ * Entries are invalidated when new matches are saved: clan entries by clans of the characters whose matches
+ * were saved, team entries when match participants are linked to teams. Entries also expire after
+ * {@link #TTL} to pick up clan membership changes.
+ * </p>
+ */
+@Component
+public class VersusSummaryCache
+{
+
+    public static final int MAX_SIZE = 1000;
+    public static final Duration TTL = Duration.ofHours(1);
+
+    private static final class Entry
+    {
+
+        private final VersusSummary summary;
+        private final long created;
+
+        private Entry(VersusSummary summary)
+        {
+            this.summary = summary;
+            this.created = System.currentTimeMillis();
+        }
+
+    }
+
+    private final Map<Tuple5<Set<Integer>, Set<TeamLegacyUid>, Set<Integer>, Set<TeamLegacyUid>, Set<BaseMatch.MatchType>>, Entry>
+        entries = createLruMap(MAX_SIZE);
+    private long version;
+
+    private static <K, V> Map<K, V> createLruMap(int maxSize)
+    {
+        return new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static Tuple5<Set<Integer>, Set<TeamLegacyUid>, Set<Integer>, Set<TeamLegacyUid>, Set<BaseMatch.MatchType>>
+    createKey
+    (
+        Integer[] clans1,
+        Set<TeamLegacyUid> teams1,
+        Integer[] clans2,
+        Set<TeamLegacyUid> teams2,
+        BaseMatch.MatchType... types
+    )
+    {
+        return Tuples.of
+        (
+            Set.copyOf(Arrays.asList(clans1)),
+            Set.copyOf(teams1),
+            Set.copyOf(Arrays.asList(clans2)),
+            Set.copyOf(teams2),
+            //no types means all types
+            types.length == 0 ? Set.of() : EnumSet.copyOf(Arrays.asList(types))
+        );
+    }
+
+    /**
+     * Returns the cached summary or loads a new one. Summaries that were loaded while the cache was
+     * invalidated are not cached because they may miss new matches.
+     *
+     * @param loader summary loader
+     * @return summary
+     */
+    public VersusSummary get
+    (
+        Integer[] clans1,
+        Set<TeamLegacyUid> teams1,
+        Integer[] clans2,
+        Set<TeamLegacyUid> teams2,
+        BaseMatch.MatchType[] types,
+        Supplier<VersusSummary> loader
+    )
+    {
+        Tuple5<Set<Integer>, Set<TeamLegacyUid>, Set<Integer>, Set<TeamLegacyUid>, Set<BaseMatch.MatchType>> key
+            = createKey(clans1, teams1, clans2, teams2, types);
+        long loadVersion;
+        synchronized(this)
+        {
+            Entry entry = entries.get(key);
+            if(entry != null && System.currentTimeMillis() - entry.created < TTL.toMillis()) return entry.summary;
+            loadVersion = version;
+        }
+
+        VersusSummary summary = loader.get();
+        synchronized(this)
+        {
+            if(loadVersion == version) entries.put(key, new Entry(summary));
+        }
+        return summary;
+    }
+
+    /**
+     * Removes summaries of the provided clans.
+     *
+     * @param clans clan ids
+     */
+    public synchronized void invalidateClans(Collection<Integer> clans)
+    {
+        if(clans.isEmpty()) return;
+
+        version++;
+        entries.keySet().removeIf(k->!Collections.disjoint(k.getT1(), clans)
+            || !Collections.disjoint(k.getT3(), clans));
+    }
+
+    /**
+     * Removes summaries that contain teams.
+     */
+    public synchronized void invalidateTeams()
+    {
+        version++;
+        entries.keySet().removeIf(k->!k.getT2().isEmpty() || !k.getT4().isEmpty());
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+}
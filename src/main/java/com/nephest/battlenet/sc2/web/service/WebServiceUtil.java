@@ -8,12 +8,16 @@ import com.nephest.battlenet.sc2.model.Region;
 import com.nephest.battlenet.sc2.model.local.CollectionVar;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import com.nephest.battlenet.sc2.util.LogUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
 import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -26,6 +30,7 @@ import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -101,6 +106,37 @@ public class WebServiceUtil
             .compress(true);
     }
 
+    /**
+     * Records the latency of every request. Percentile histograms are published, so latency percentiles can
+     * be aggregated and alerted on.
+     *
+     * @param meterRegistry target registry
+     * @param name timer name
+     * @param tags common tags, the {@code outcome} tag(status series or {@code ERROR}) is added to them
+     * @return filter function
+     */
+    public static ExchangeFilterFunction getMetricsFilter(MeterRegistry meterRegistry, String name, Tags tags)
+    {
+        return (request, next)->
+        {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                .doOnSuccess(r->recordRequest(meterRegistry, name, tags, r.statusCode().series().name(), start))
+                .doOnError(t->recordRequest(meterRegistry, name, tags, "ERROR", start));
+        };
+    }
+
+    private static void recordRequest
+    (MeterRegistry meterRegistry, String name, Tags tags, String outcome, long start)
+    {
+        Timer.builder(name)
+            .tags(tags)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
     public static WebClient.Builder getWebClientBuilder(ObjectMapper objectMapper)
     {
         return getWebClientBuilder(objectMapper, -1);
@@ -1,21 +1,26 @@
-// Copyright (C) 2020-2021 Oleksandr Masniuk
+// Copyright (C) 2020-2022 Oleksandr Masniuk
 // SPDX-License-Identifier: AGPL-3.0-or-later
 
 package com.nephest.battlenet.sc2.web.util;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoSink;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 import reactor.util.retry.RetrySpec;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-
 /*
-    # Simple rate limiter for Reactor
+    # Token bucket rate limiter for Reactor
 
     * Decorate target monos:
         * mono.retryWhen(rateLimiter.retryWhen(retrySpec));
@@ -25,44 +30,211 @@ import java.util.concurrent.atomic.AtomicInteger;
             .interval(Duration.ofSeconds(0), Duration.ofSeconds(1))
             .doOnNext(i->rateLimiter.refreshSlots(slotCount))
             .subscribe();
+
+    Unused slots are carried over to the next refresh, up to the burst limit. Too Many Requests errors pause the
+    limiter for the Retry-After duration and halve the refresh rate. The rate is decreased at most once per
+    adjustment period, and it is restored gradually, one step per adjustment period without errors.
  */
 public class ReactorRateLimiter
 {
 
     private static final Logger LOG = LoggerFactory.getLogger(ReactorRateLimiter.class);
 
+    public static final double MIN_RATE_FACTOR = 0.1;
+    public static final double RATE_DECREASE_FACTOR = 0.5;
+    public static final double RATE_RECOVERY_STEP = 0.1;
+    public static final Duration RATE_ADJUSTMENT_PERIOD = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
     private final ConcurrentLinkedQueue<MonoSink<Void>> requests = new ConcurrentLinkedQueue<>();
+    private final double burst;
+
+    private volatile double slots = 0;
+    private volatile double rateFactor = 1.0;
+    private volatile long pausedUntil = 0;
+    private long lastDecrease = 0;
+    private long lastError = 0;
+    private long lastRecovery = 0;
 
-    private final AtomicInteger slots = new AtomicInteger(0);
+    /**
+     * Creates a limiter that doesn't carry over unused slots, every refresh starts from scratch.
+     */
+    public ReactorRateLimiter()
+    {
+        this(0);
+    }
 
-    public void refreshSlots(int count)
+    /**
+     * @param burst max number of slots that can be accumulated. Slots granted by a single refresh are never
+     *              truncated, so the effective limit is {@code max(burst, slotsPerRefresh)}.
+     */
+    public ReactorRateLimiter(double burst)
     {
-        int originalCount = count;
-        MonoSink<Void> request;
-        while(count > 0 && (request = requests.poll()) != null)
+        this.burst = burst;
+    }
+
+    public void refreshSlots(double count)
+    {
+        refreshSlots(count, System.currentTimeMillis());
+    }
+
+    void refreshSlots(double count, long now)
+    {
+        if(now < pausedUntil) return;
+
+        int granted = 0;
+        synchronized(this)
         {
-            request.success();
-            count--;
+            double refill = count * rateFactor;
+            slots += refill;
+            MonoSink<Void> request;
+            while(slots >= 1 && (request = requests.poll()) != null)
+            {
+                request.success();
+                slots--;
+                granted++;
+            }
+            slots = Math.min(slots, Math.max(burst, refill));
+            recover(now);
         }
-        slots.getAndSet(count);
-        LOG.trace("Slots granted: {}, current slots: {}, queue: {}", originalCount, count, requests.size());
+        LOG.trace("Slots granted: {}, current slots: {}, queue: {}", granted, slots, requests.size());
     }
 
     public Mono<Void> requestSlot()
     {
-        if(slots.addAndGet(-1) >= 0) return Mono.empty();
+        synchronized(this)
+        {
+            if(slots >= 1)
+            {
+                slots--;
+                return Mono.empty();
+            }
+        }
 
         return Mono.create(requests::add);
     }
 
+    private void recover(long now)
+    {
+        if(rateFactor >= 1.0
+            || now - lastError < RATE_ADJUSTMENT_PERIOD.toMillis()
+            || now - lastRecovery < RATE_ADJUSTMENT_PERIOD.toMillis()) return;
+
+        rateFactor = Math.min(1.0, rateFactor + RATE_RECOVERY_STEP);
+        lastRecovery = now;
+        LOG.debug("Rate limiter recovered, rate factor: {}", rateFactor);
+    }
+
+    /**
+     * Decreases the refresh rate. Consecutive invocations decrease the rate once per
+     * {@link #RATE_ADJUSTMENT_PERIOD}, every invocation postpones the recovery for the same period.
+     */
+    public void slowDown()
+    {
+        slowDown(System.currentTimeMillis());
+    }
+
+    synchronized void slowDown(long now)
+    {
+        lastError = now;
+        if(now - lastDecrease < RATE_ADJUSTMENT_PERIOD.toMillis()) return;
+
+        rateFactor = Math.max(MIN_RATE_FACTOR, rateFactor * RATE_DECREASE_FACTOR);
+        lastDecrease = now;
+        LOG.debug("Rate limiter slowed down, rate factor: {}", rateFactor);
+    }
+
+    /**
+     * Drops accumulated slots, decreases the refresh rate, and stops refreshing slots for the
+     * {@code retryAfter} duration.
+     *
+     * @param retryAfter pause duration
+     */
+    public synchronized void throttle(Duration retryAfter)
+    {
+        slots = 0;
+        pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + retryAfter.toMillis());
+        slowDown();
+    }
+
+    public void onError(Throwable t)
+    {
+        Throwable root = ExceptionUtils.getRootCause(t);
+        WebClientResponseException.TooManyRequests tooManyRequests =
+            t instanceof WebClientResponseException.TooManyRequests
+                ? (WebClientResponseException.TooManyRequests) t
+                : root instanceof WebClientResponseException.TooManyRequests
+                    ? (WebClientResponseException.TooManyRequests) root
+                    : null;
+        if(tooManyRequests == null) return;
+
+        Duration retryAfter = getRetryAfter(tooManyRequests.getHeaders());
+        LOG.warn("Too many requests, pausing for {}", retryAfter);
+        throttle(retryAfter);
+    }
+
+    public static Duration getRetryAfter(HttpHeaders headers)
+    {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if(retryAfter == null) return DEFAULT_RETRY_AFTER;
+
+        try
+        {
+            return Duration.ofMillis((long) (Double.parseDouble(retryAfter) * 1000));
+        }
+        //HTTP date format is not used by supported APIs
+        catch (NumberFormatException ex)
+        {
+            return DEFAULT_RETRY_AFTER;
+        }
+    }
+
+    public double getSlots()
+    {
+        return slots;
+    }
+
+    public int getQueueSize()
+    {
+        return requests.size();
+    }
+
+    public double getRateFactor()
+    {
+        return rateFactor;
+    }
+
+    public boolean isPaused()
+    {
+        return System.currentTimeMillis() < pausedUntil;
+    }
+
+    public void registerMetrics(MeterRegistry registry, Tags tags)
+    {
+        Gauge.builder("api.rate.limiter.slots", this, ReactorRateLimiter::getSlots)
+            .tags(tags)
+            .register(registry);
+        Gauge.builder("api.rate.limiter.queue", this, ReactorRateLimiter::getQueueSize)
+            .tags(tags)
+            .register(registry);
+        Gauge.builder("api.rate.limiter.rate", this, ReactorRateLimiter::getRateFactor)
+            .tags(tags)
+            .register(registry);
+    }
+
     public Retry retryWhen(RetrySpec retrySpec)
     {
-        return retrySpec.doBeforeRetryAsync(s->requestSlot());
+        return retrySpec
+            //the filter is evaluated for every error, even if the spec doesn't retry
+            .modifyErrorFilter(f->t->{onError(t); return f.test(t);})
+            .doBeforeRetryAsync(s->requestSlot());
     }
 
     public Retry retryWhen(RetryBackoffSpec retrySpec)
     {
-        return retrySpec.doBeforeRetryAsync(s->requestSlot());
+        return retrySpec
+            .modifyErrorFilter(f->t->{onError(t); return f.test(t);})
+            .doBeforeRetryAsync(s->requestSlot());
     }
 
 }
@@ -127,7 +127,7 @@ CREATE INDEX "ix_player_character_account_id" ON "player_character"("account_id"
 CREATE INDEX "ix_player_character_battlenet_id" ON "player_character"("battlenet_id");
 CREATE INDEX "ix_player_character_name" ON "player_character"(LOWER("name") text_pattern_ops);
 CREATE INDEX "ix_player_character_clan_id" ON "player_character"("clan_id") WHERE "clan_id" IS NOT NULL;
-CREATE INDEX "ix_player_character_updated" ON "player_character"("updated");
+CREATE INDEX "ix_player_character_updated_id" ON "player_character"("updated", "id");
 
 CREATE TABLE "season"
 (
@@ -318,7 +318,7 @@ CREATE TABLE "team_state"
         ON DELETE SET NULL ON UPDATE CASCADE
 );
 
-CREATE INDEX "ix_team_state_timestamp" ON "team_state"("timestamp");
+CREATE INDEX "ix_team_state_timestamp_team_id" ON "team_state"("timestamp", "team_id");
 CREATE INDEX "ix_team_state_team_id_archived" ON "team_state"("team_id", "archived") WHERE "archived" = true;
 CREATE INDEX "ix_team_state_secondary_timestamp" ON "team_state"("secondary", "timestamp") WHERE "secondary" = true;
 
@@ -598,8 +598,8 @@ CREATE TABLE "match"
     "sub_only_vod" BOOLEAN,
     "rating_min" INTEGER,
     "rating_max" INTEGER,
-    "race" TEXT,
-    "race_vod" TEXT,
+    "race" SMALLINT,
+    "race_vod" SMALLINT,
 
     PRIMARY KEY ("id"),
 
@@ -613,8 +613,9 @@ CREATE TABLE "match"
 )
 WITH (fillfactor = 90);
 
-CREATE INDEX "ix_match_updated" ON "match"("updated");
-CREATE INDEX "ix_match_vod_search" ON "match"("date", "type", "map_id", "vod", "sub_only_vod", "race_vod" text_pattern_ops, "race" text_pattern_ops, "rating_min", "duration", "rating_max")
+CREATE INDEX "ix_match_updated_id" ON "match"("updated", "id");
+CREATE INDEX "ix_match_vod_search" ON "match"("date", "type", "map_id")
+    INCLUDE("sub_only_vod", "race_vod", "race", "rating_min", "rating_max", "duration")
     WHERE "vod" = true;
 
 CREATE TABLE "match_participant"
@@ -895,6 +896,30 @@ END
 '
 LANGUAGE plpgsql;
 
+CREATE TABLE "player_character_summary_1v1"
+(
+    "player_character_id" BIGINT NOT NULL,
+    "depth_days" SMALLINT NOT NULL,
+    "race" SMALLINT NOT NULL,
+    "games" INTEGER NOT NULL,
+    "rating_avg" SMALLINT NOT NULL,
+    "rating_max" SMALLINT NOT NULL,
+    "rating_last" SMALLINT NOT NULL,
+    "league_type_last" SMALLINT,
+    "global_rank_last" INTEGER,
+    "updated" TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    "requested" TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY ("player_character_id", "depth_days", "race"),
+
+    CONSTRAINT "fk_player_character_summary_1v1_player_character_id"
+        FOREIGN KEY ("player_character_id")
+        REFERENCES "player_character"("id")
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX "ix_player_character_summary_1v1_updated" ON "player_character_summary_1v1"("updated");
+
 CREATE OR REPLACE FUNCTION get_top_percentage_league_lotv(rank INTEGER, teamCount DOUBLE PRECISION, gm BOOLEAN)
 RETURNS SMALLINT
 AS
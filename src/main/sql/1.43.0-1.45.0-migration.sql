@@ -34,3 +34,60 @@ CREATE TABLE "account_discord_user"
     CONSTRAINT "uq_account_discord_user_discord_user_id"
         UNIQUE("discord_user_id")
 );
+
+DROP INDEX "ix_match_vod_search";
+
+ALTER TABLE "match"
+    ALTER COLUMN "race" TYPE SMALLINT USING
+    (
+        CASE WHEN "race" IS NULL THEN NULL ELSE
+            CASE WHEN "race" LIKE '%1%' THEN 1 ELSE 0 END
+            | CASE WHEN "race" LIKE '%2%' THEN 2 ELSE 0 END
+            | CASE WHEN "race" LIKE '%3%' THEN 4 ELSE 0 END
+            | CASE WHEN "race" LIKE '%4%' THEN 8 ELSE 0 END
+        END
+    )::smallint,
+    ALTER COLUMN "race_vod" TYPE SMALLINT USING
+    (
+        CASE WHEN "race_vod" IS NULL THEN NULL ELSE
+            CASE WHEN "race_vod" LIKE '%1%' THEN 1 ELSE 0 END
+            | CASE WHEN "race_vod" LIKE '%2%' THEN 2 ELSE 0 END
+            | CASE WHEN "race_vod" LIKE '%3%' THEN 4 ELSE 0 END
+            | CASE WHEN "race_vod" LIKE '%4%' THEN 8 ELSE 0 END
+        END
+    )::smallint;
+
+CREATE INDEX "ix_match_vod_search" ON "match"("date", "type", "map_id")
+    INCLUDE("sub_only_vod", "race_vod", "race", "rating_min", "rating_max", "duration")
+    WHERE "vod" = true;
+
+CREATE TABLE "player_character_summary_1v1"
+(
+    "player_character_id" BIGINT NOT NULL,
+    "depth_days" SMALLINT NOT NULL,
+    "race" SMALLINT NOT NULL,
+    "games" INTEGER NOT NULL,
+    "rating_avg" SMALLINT NOT NULL,
+    "rating_max" SMALLINT NOT NULL,
+    "rating_last" SMALLINT NOT NULL,
+    "league_type_last" SMALLINT,
+    "global_rank_last" INTEGER,
+    "updated" TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    "requested" TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY ("player_character_id", "depth_days", "race"),
+
+    CONSTRAINT "fk_player_character_summary_1v1_player_character_id"
+        FOREIGN KEY ("player_character_id")
+        REFERENCES "player_character"("id")
+        ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE INDEX "ix_player_character_summary_1v1_updated" ON "player_character_summary_1v1"("updated");
+
+CREATE INDEX "ix_player_character_updated_id" ON "player_character"("updated", "id");
+DROP INDEX "ix_player_character_updated";
+CREATE INDEX "ix_match_updated_id" ON "match"("updated", "id");
+DROP INDEX "ix_match_updated";
+CREATE INDEX "ix_team_state_timestamp_team_id" ON "team_state"("timestamp", "team_id");
+DROP INDEX "ix_team_state_timestamp";
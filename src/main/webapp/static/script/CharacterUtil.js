@@ -47,6 +47,18 @@ class CharacterUtil
              }));
     }
 
+    static decodeDeltaMmrHistory(history)
+    {
+        if(!history || !history.season || history.season.length == 0) return history;
+        for(const field of CharacterUtil.MMR_HISTORY_DELTA_FIELDS)
+        {
+            const values = history[field];
+            for(let i = 1; i < values.length; i++) values[i] += values[i - 1];
+        }
+        history.dateTime = history.dateTime.map(millis=>new Date(millis).toISOString());
+        return history;
+    }
+
     static expandMmrHistory(history)
     {
         if(!history || !history.season || history.season.length == 0) return [];
@@ -1477,4 +1489,6 @@ CharacterUtil.MMR_Y_VALUE_GETTERS = new Map([
         : null
     ],
     ["default", (history)=>history.teamState.rating],
-]);
\ No newline at end of file
+]);
+
+CharacterUtil.MMR_HISTORY_DELTA_FIELDS = ["teamId", "dateTime", "games", "rating", "season"];
@@ -447,6 +447,7 @@ class TeamUtil
     {
         const reqParams = new URLSearchParams();
         for(const id of searchParams.getAll("legacyUid")) reqParams.append("legacyUid", id);
+        reqParams.append("delta", true);
         const request = `${ROOT_CONTEXT_PATH}api/team/history/common?${reqParams.toString()}`;
         return Session.beforeRequest()
             .then(n=>fetch(request))
@@ -455,7 +456,7 @@ class TeamUtil
                 const teams = [];
                 for(const history of Object.values(json)) {
                     teams.push(history.teams[history.teams.length - 1]);
-                    history.states = CharacterUtil.expandMmrHistory(history.states);
+                    history.states = CharacterUtil.expandMmrHistory(CharacterUtil.decodeDeltaMmrHistory(history.states));
                 }
                 teams.sort((a, b)=>b.rating - a.rating);
                 Model.DATA.get(VIEW.TEAM_MMR).set(VIEW_DATA.SEARCH, {result: teams});
@@ -16,10 +16,12 @@ import com.nephest.battlenet.sc2.config.convert.IntegerToRegionConverter;
 import com.nephest.battlenet.sc2.config.convert.IntegerToSC2PulseAuthority;
 import com.nephest.battlenet.sc2.config.convert.IntegerToSocialMediaConverter;
 import com.nephest.battlenet.sc2.config.convert.IntegerToTeamTypeConverter;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -81,9 +83,15 @@ public class CoreTestConfig
     }
 
     @Bean
-    public ExecutorService dbExecutorService()
+    public PartitionedExecutorService dbExecutorService(MeterRegistry meterRegistry)
     {
-        return Executors.newFixedThreadPool(Application.DB_THREADS);
+        return new PartitionedExecutorService
+        (
+            Application.DB_THREAD_POOL_NAME,
+            Application.DB_THREADS,
+            Application.DB_DEADLOCK_MAX_ATTEMPTS,
+            meterRegistry
+        );
     }
 
     @Bean
@@ -99,4 +107,18 @@ public class CoreTestConfig
         );
     }
 
+    @Bean
+    public ExecutorService readExecutorService()
+    {
+        return new ThreadPoolExecutor
+        (
+            Application.READ_THREADS,
+            Application.READ_THREADS,
+            0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Application.READ_QUEUE_SIZE),
+            new CustomizableThreadFactory(Application.READ_THREAD_POOL_NAME),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
 }
@@ -61,4 +61,36 @@ public class SimpleCollectionToFieldArraySerializerTest
         order.verifyNoMoreInteractions();
     }
 
+    @Test
+    public void testSerializeDelta()
+    throws IOException
+    {
+        SimpleCollectionToFieldArraySerializer<Long> deltaSerializer = new SimpleCollectionToFieldArraySerializer<>
+        (
+            Map.of("e1", (g, s)->g.writeNumber(s)),
+            Map.of("e2", s->s * 2)
+        );
+        deltaSerializer.serialize(List.of(100L, 105L, 103L), jsonGenerator, null);
+        InOrder order = inOrder(jsonGenerator);
+
+        order.verify(jsonGenerator).writeStartObject();
+
+        order.verify(jsonGenerator).writeArrayFieldStart("e1");
+        order.verify(jsonGenerator).writeNumber(100L);
+        order.verify(jsonGenerator).writeNumber(105L);
+        order.verify(jsonGenerator).writeNumber(103L);
+        order.verify(jsonGenerator).writeEndArray();
+
+        //the first value is written as is
+        order.verify(jsonGenerator).writeArrayFieldStart("e2");
+        order.verify(jsonGenerator).writeNumber(200L);
+        order.verify(jsonGenerator).writeNumber(10L);
+        order.verify(jsonGenerator).writeNumber(-4L);
+        order.verify(jsonGenerator).writeEndArray();
+
+        order.verify(jsonGenerator).writeEndObject();
+
+        order.verifyNoMoreInteractions();
+    }
+
 }
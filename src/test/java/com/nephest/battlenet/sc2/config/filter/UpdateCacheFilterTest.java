@@ -0,0 +1,116 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.config.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.nephest.battlenet.sc2.web.service.UpdateService;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@ExtendWith(MockitoExtension.class)
+public class UpdateCacheFilterTest
+{
+
+    @Mock
+    private UpdateService updateService;
+
+    private UpdateCacheFilter filter;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        filter = new UpdateCacheFilter(updateService, "/api/ladder/**", "/api/character/*/teams");
+    }
+
+    private static MockHttpServletRequest createRequest(String uri, String query, String eTag)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setQueryString(query);
+        if(eTag != null) request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        return request;
+    }
+
+    private MockFilterChain doFilter(MockHttpServletRequest request, MockHttpServletResponse response)
+    throws Exception
+    {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return chain;
+    }
+
+    @Test
+    public void whenNotUpdated_thenPassThrough()
+    throws Exception
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = doFilter(createRequest("/api/ladder/stats", "queue=201", null), response);
+        assertNotNull(chain.getRequest());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void whenETagMatches_thenRespondWithNotModified()
+    throws Exception
+    {
+        Instant lastUpdate = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.SECONDS);
+        when(updateService.getLastInternalUpdate()).thenReturn(lastUpdate);
+        when(updateService.calculateUpdateDuration(null)).thenReturn(Duration.ofSeconds(300));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNotNull(doFilter(createRequest("/api/ladder/stats", "queue=201", null), response).getRequest());
+        String eTag = response.getHeader(HttpHeaders.ETAG);
+        assertTrue(eTag.startsWith("W/\""));
+        assertEquals(lastUpdate.toEpochMilli(), response.getDateHeader(HttpHeaders.LAST_MODIFIED));
+        long maxAge = Long.parseLong(response.getHeader(HttpHeaders.CACHE_CONTROL).substring("max-age=".length()));
+        assertTrue(maxAge > 0 && maxAge <= 240);
+
+        //not modified, controller is not called
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        assertNull(doFilter(createRequest("/api/ladder/stats", "queue=201", eTag), notModified).getRequest());
+        assertEquals(304, notModified.getStatus());
+
+        //different params, different ETag
+        MockHttpServletResponse otherParams = new MockHttpServletResponse();
+        assertNotNull(doFilter(createRequest("/api/ladder/stats", "queue=202", eTag), otherParams).getRequest());
+        assertNotEquals(eTag, otherParams.getHeader(HttpHeaders.ETAG));
+
+        //new data
+        when(updateService.getLastInternalUpdate()).thenReturn(lastUpdate.plusSeconds(1));
+        MockHttpServletResponse updated = new MockHttpServletResponse();
+        assertNotNull(doFilter(createRequest("/api/ladder/stats", "queue=201", eTag), updated).getRequest());
+        assertEquals(200, updated.getStatus());
+        assertNotEquals(eTag, updated.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void whenPathIsNotCached_thenPassThrough()
+    throws Exception
+    {
+        when(updateService.getLastInternalUpdate()).thenReturn(Instant.now());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNotNull(doFilter(createRequest("/api/character/1/common", null, null), response).getRequest());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+
+        MockHttpServletResponse teamsResponse = new MockHttpServletResponse();
+        assertNotNull(doFilter(createRequest("/api/character/1/teams", null, null), teamsResponse).getRequest());
+        assertNotNull(teamsResponse.getHeader(HttpHeaders.ETAG));
+    }
+
+}
@@ -0,0 +1,122 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.config.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices;
+
+@ExtendWith(MockitoExtension.class)
+public class ConcurrentPersistentTokenBasedRememberMeServiceTest
+{
+
+    @Mock
+    private PersistentTokenBasedRememberMeServices delegate;
+
+    private ConcurrentPersistentTokenBasedRememberMeService service;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        service = new ConcurrentPersistentTokenBasedRememberMeService(delegate);
+    }
+
+    private static String encode(String series, String token)
+    {
+        return Base64.getEncoder().withoutPadding()
+            .encodeToString((series + ":" + token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletRequest createRequest(String cookie)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(SecurityConfig.REMEMBER_ME_COOKIE_NAME, cookie));
+        return request;
+    }
+
+    @Test
+    public void testGetSeries()
+    {
+        assertEquals("series", ConcurrentPersistentTokenBasedRememberMeService.getSeries(encode("series", "token")));
+        assertEquals("invalid*", ConcurrentPersistentTokenBasedRememberMeService.getSeries("invalid*"));
+    }
+
+    @Test
+    public void whenConcurrentLoginsOfSameSeries_thenCoalesce()
+    throws Exception
+    {
+        Authentication authentication = new TestingAuthenticationToken("user", "credentials");
+        AtomicInteger logins = new AtomicInteger();
+        when(delegate.autoLogin(any(), any())).thenAnswer(inv->{
+            logins.incrementAndGet();
+            Thread.sleep(50);
+            inv.getArgument(1, HttpServletResponse.class)
+                .addCookie(new Cookie(SecurityConfig.REMEMBER_ME_COOKIE_NAME, encode("series", "token2")));
+            return authentication;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            String cookie = encode("series", "token1");
+            List<Future<Authentication>> results = new ArrayList<>();
+            for(int i = 0; i < 4; i++) results.add(executor.submit(()->
+                service.autoLogin(createRequest(cookie), new MockHttpServletResponse())));
+            for(Future<Authentication> result : results) assertSame(authentication, result.get());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(1, logins.get());
+        //both old and rotated cookies are cached
+        assertEquals(2, service.getCacheSize());
+        assertSame(authentication, service.autoLogin
+            (createRequest(encode("series", "token2")), new MockHttpServletResponse()));
+        verify(delegate, times(1)).autoLogin(any(), any());
+
+        //fresh entries are not evicted
+        service.removeExpired();
+        assertEquals(2, service.getCacheSize());
+    }
+
+    @Test
+    public void whenEvictingIfNeeded_thenEvictOncePerTtl()
+    {
+        long now = System.currentTimeMillis();
+        long ttl = ConcurrentPersistentTokenBasedRememberMeService.AUTH_CACHE_TTL_SECONDS * 1000L;
+        assertFalse(service.removeExpiredIfNeeded(now));
+        assertTrue(service.removeExpiredIfNeeded(now + ttl));
+        assertFalse(service.removeExpiredIfNeeded(now + ttl));
+        assertFalse(service.removeExpiredIfNeeded(now + ttl * 2 - 1));
+        assertTrue(service.removeExpiredIfNeeded(now + ttl * 2));
+    }
+
+}
@@ -0,0 +1,148 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.discord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+public class DiscordCommandExecutorTest
+{
+
+    private SimpleMeterRegistry registry;
+    private DiscordCommandExecutor executor;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        registry = new SimpleMeterRegistry();
+        executor = new DiscordCommandExecutor(2, 10, 1, Duration.ofSeconds(1), registry);
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        executor.destroy();
+    }
+
+    @Test
+    public void whenExecuting_thenAssembleTaskOnCommandScheduler()
+    {
+        String caller = Thread.currentThread().getName();
+        String thread = executor.execute("cmd", ()->Mono.just(Thread.currentThread().getName())).block();
+        assertNotEquals(caller, thread);
+        assertTrue(thread.startsWith(DiscordCommandExecutor.THREAD_NAME));
+    }
+
+    @Test
+    public void whenCommandConcurrencyIsExceeded_thenRejectCommand()
+    throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Disposable running = executor.execute("cmd", ()->
+        {
+            started.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return Mono.just(1);
+        }).subscribe();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertEquals(1, registry.get(DiscordCommandExecutor.ACTIVE_METRIC_NAME).tag("command", "cmd")
+            .gauge().value());
+
+        assertThrows(RejectedExecutionException.class, ()->executor.execute("cmd", ()->Mono.just(2)).block());
+        assertEquals(1, registry.get(DiscordCommandExecutor.REJECTED_METRIC_NAME).tag("command", "cmd")
+            .counter().count());
+        //other commands have their own limits
+        assertEquals(3, executor.execute("cmd2", ()->Mono.just(3)).block());
+
+        release.countDown();
+        //the permit is released when the running command is finished
+        assertEquals(4, executor.execute("cmd", ()->Mono.just(4))
+            .retryWhen(Retry.fixedDelay(50, Duration.ofMillis(20)).filter(RejectedExecutionException.class::isInstance))
+            .block());
+        running.dispose();
+    }
+
+    @Test
+    public void whenTimeout_thenFailAndReleasePermit()
+    {
+        RuntimeException ex = assertThrows
+        (
+            RuntimeException.class,
+            ()->executor.execute("cmd", Duration.ofMillis(50), ()->Mono.never()).block()
+        );
+        assertTrue(ex.getCause() instanceof TimeoutException);
+        assertEquals(1, registry.get(DiscordCommandExecutor.TIMEOUT_METRIC_NAME).tag("command", "cmd")
+            .counter().count());
+        assertEquals(1, executor.execute("cmd", ()->Mono.just(1))
+            .retryWhen(Retry.fixedDelay(50, Duration.ofMillis(20)).filter(RejectedExecutionException.class::isInstance))
+            .block());
+    }
+
+    @Test
+    public void whenBlockingTaskTimesOut_thenReleasePermitWhenTaskIsFinished()
+    throws InterruptedException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        RuntimeException ex = assertThrows
+        (
+            RuntimeException.class,
+            ()->executor.execute("cmd", Duration.ofMillis(50), ()->
+            {
+                //emulate a blocking query that ignores interrupts
+                boolean interrupted = false;
+                while(true)
+                {
+                    try
+                    {
+                        release.await();
+                        break;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+                if(interrupted) Thread.currentThread().interrupt();
+                finished.countDown();
+                return Mono.just(1);
+            }).block()
+        );
+        assertTrue(ex.getCause() instanceof TimeoutException);
+        //the timed out task is still running, so it still holds the permit
+        assertThrows(RejectedExecutionException.class, ()->executor.execute("cmd", ()->Mono.just(2)).block());
+        assertEquals(1, registry.get(DiscordCommandExecutor.ACTIVE_METRIC_NAME).tag("command", "cmd")
+            .gauge().value());
+
+        release.countDown();
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(3, executor.execute("cmd", ()->Mono.just(3))
+            .retryWhen(Retry.fixedDelay(50, Duration.ofMillis(20)).filter(RejectedExecutionException.class::isInstance))
+            .block());
+    }
+
+}
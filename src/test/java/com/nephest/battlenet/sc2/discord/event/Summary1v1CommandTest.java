@@ -4,8 +4,8 @@
 package com.nephest.battlenet.sc2.discord.event;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,7 +21,6 @@ import com.nephest.battlenet.sc2.model.local.ladder.LadderDistinctCharacter;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderCharacterDAO;
 import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
 import discord4j.core.spec.InteractionFollowupCreateMono;
-import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -53,9 +52,6 @@ public class Summary1v1CommandTest
     @Captor
     private ArgumentCaptor<String> contentCaptor;
 
-    @Captor
-    private ArgumentCaptor<OffsetDateTime> depthCaptor;
-
     @Test
     public void test()
     {
@@ -64,9 +60,7 @@ public class Summary1v1CommandTest
         Summary1v1Command cmd = new Summary1v1Command(ladderCharacterDAO, summaryDAO, discordBootstrap);
         cmd.handle(evt, Region.EU, Race.TERRAN, 100, "emptyTerm", "term");
 
-        verify(summaryDAO).find(any(), depthCaptor.capture(), eq(Race.TERRAN));
-        //verify correct depth, 10 seconds to run the test just in case
-        assertTrue(OffsetDateTime.now().minusDays(100).toEpochSecond() - depthCaptor.getValue().toEpochSecond() < 10);
+        verify(summaryDAO).find(any(), eq(100), eq(Race.TERRAN));
 
         verify(followup).withContent(contentCaptor.capture());
         String content = contentCaptor.getValue();
@@ -119,7 +113,7 @@ public class Summary1v1CommandTest
                     i
                 )
             );
-        when(summaryDAO.find(eq(new Long[]{0L, 1L, 2L, 3L, 4L}), any(), eq(Race.TERRAN))).thenReturn(summaries);
+        when(summaryDAO.find(eq(new Long[]{0L, 1L, 2L, 3L, 4L}), anyInt(), eq(Race.TERRAN))).thenReturn(summaries);
         when(discordBootstrap.getLeagueEmojiOrName(evt, BaseLeague.LeagueType.DIAMOND)).thenReturn("diamond");
         when(discordBootstrap.getRaceEmojiOrName(evt, Race.TERRAN)).thenReturn("terran");
         when(evt.createFollowup()).thenReturn(followup);
@@ -0,0 +1,55 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class LadderDiscoveryFrontierVarTest
+{
+
+    @Mock
+    private VarDAO varDAO;
+
+    @Test
+    public void testSerialization()
+    {
+        LadderDiscoveryFrontierVar var = new LadderDiscoveryFrontierVar(varDAO, "key", false);
+        var.setValueAndSave(new LadderDiscoveryFrontier(50, 1000L, List.of(999L, 3L, 500L)));
+        verify(varDAO).merge("key", "50:1000:3,500,999");
+
+        var.setValueAndSave(new LadderDiscoveryFrontier(50, 1000L, List.of()));
+        verify(varDAO).merge("key", "50:1000:");
+    }
+
+    @Test
+    public void testDeserialization()
+    {
+        when(varDAO.find("key")).thenReturn(Optional.of("50:1000:3,500,999"));
+        LadderDiscoveryFrontierVar var = new LadderDiscoveryFrontierVar(varDAO, "key");
+        assertEquals(new LadderDiscoveryFrontier(50, 1000L, List.of(3L, 500L, 999L)), var.getValue());
+
+        when(varDAO.find("key")).thenReturn(Optional.of("50:1000:"));
+        assertEquals(new LadderDiscoveryFrontier(50, 1000L, List.of()), var.load());
+    }
+
+    @Test
+    public void testNullDeserialization()
+    {
+        when(varDAO.find("key")).thenReturn(Optional.empty());
+        assertNull(new LadderDiscoveryFrontierVar(varDAO, "key").getValue());
+    }
+
+}
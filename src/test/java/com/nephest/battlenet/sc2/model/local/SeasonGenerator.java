@@ -11,8 +11,17 @@ import com.nephest.battlenet.sc2.model.QueueType;
 import com.nephest.battlenet.sc2.model.Race;
 import com.nephest.battlenet.sc2.model.Region;
 import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardAccount;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardLadder;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardLadderLeague;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardLadderLeagueKey;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardPlayerCharacter;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardProfileLadder;
 import com.nephest.battlenet.sc2.model.blizzard.BlizzardProfileTeam;
 import com.nephest.battlenet.sc2.model.blizzard.BlizzardProfileTeamMember;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeam;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeamMember;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardTeamMemberRace;
 import com.nephest.battlenet.sc2.model.local.dao.AccountDAO;
 import com.nephest.battlenet.sc2.model.local.dao.DivisionDAO;
 import com.nephest.battlenet.sc2.model.local.dao.LeagueDAO;
@@ -266,6 +275,77 @@ public class SeasonGenerator
         }
     }
 
+    /**
+     * Generates an in-memory ladder with the same naming scheme as DB fixtures. The DB is not used.
+     */
+    public static BlizzardLadder generateBlizzardLadder
+    (League.LeagueType leagueType, QueueType queueType, TeamType teamType, int teamCount)
+    {
+        int memberCount = queueType.getTeamFormat().getMemberCount(teamType);
+        Race[] races = Race.values();
+        BlizzardTeam[] bTeams = new BlizzardTeam[teamCount];
+        for(int teamIx = 0; teamIx < teamCount; teamIx++)
+        {
+            BlizzardTeamMember[] bMembers = new BlizzardTeamMember[memberCount];
+            for(int memberIx = 0; memberIx < memberCount; memberIx++)
+            {
+                long accId = Long.parseLong(teamIx + "" + memberIx);
+                bMembers[memberIx] = new BlizzardTeamMember
+                (
+                    new BlizzardPlayerCharacter(accId, DEFAULT_REALM, "character#" + accId),
+                    new BlizzardTeamMemberRace[]{new BlizzardTeamMemberRace(races[teamIx % races.length], teamIx + 1)},
+                    new BlizzardAccount(accId, "battletag#" + accId)
+                );
+            }
+            BlizzardTeam bTeam = new BlizzardTeam();
+            bTeam.setId(BigInteger.valueOf(teamIx));
+            bTeam.setMembers(bMembers);
+            bTeam.setRating((long) teamIx);
+            bTeam.setWins(teamIx + 1);
+            bTeam.setLosses(teamIx + 2);
+            bTeam.setTies(0);
+            bTeam.setPoints(teamIx + 3);
+            bTeams[teamIx] = bTeam;
+        }
+
+        BlizzardLadderLeagueKey key = new BlizzardLadderLeagueKey();
+        key.setLeagueId(leagueType);
+        key.setSeasonId(DEFAULT_SEASON_ID);
+        key.setQueueId(queueType);
+        key.setTeamType(teamType);
+        BlizzardLadderLeague league = new BlizzardLadderLeague();
+        league.setLeagueKey(key);
+        return new BlizzardLadder(bTeams, league);
+    }
+
+    /**
+     * Generates an in-memory profile ladder with the same naming scheme as DB fixtures. The DB is not used.
+     */
+    public static BlizzardProfileLadder generateBlizzardProfileLadder
+    (League.LeagueType leagueType, QueueType queueType, TeamType teamType, int teamCount)
+    {
+        int memberCount = queueType.getTeamFormat().getMemberCount(teamType);
+        Race[] races = Race.values();
+        BlizzardProfileTeam[] bTeams = new BlizzardProfileTeam[teamCount];
+        for(int teamIx = 0; teamIx < teamCount; teamIx++)
+        {
+            BlizzardProfileTeamMember[] bMembers = new BlizzardProfileTeamMember[memberCount];
+            for(int memberIx = 0; memberIx < memberCount; memberIx++)
+            {
+                long accId = Long.parseLong(teamIx + "" + memberIx);
+                bMembers[memberIx] = new BlizzardProfileTeamMember
+                (
+                    accId, DEFAULT_REALM, "character#" + accId, races[teamIx % races.length], null
+                );
+            }
+            bTeams[teamIx] = new BlizzardProfileTeam
+            (
+                bMembers, (long) teamIx, teamIx + 1, teamIx + 2, 0, teamIx + 3
+            );
+        }
+        return new BlizzardProfileLadder(bTeams, new BaseLeague(leagueType, queueType, teamType));
+    }
+
     public Account[] generateAccounts(Partition partition, String name, int count)
     {
         Account[] accounts = new Account[count];
@@ -5,6 +5,7 @@ package com.nephest.battlenet.sc2.model.local.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import com.nephest.battlenet.sc2.config.DatabaseTestConfig;
 import com.nephest.battlenet.sc2.model.Partition;
@@ -13,6 +14,7 @@ import com.nephest.battlenet.sc2.model.local.Account;
 import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import javax.sql.DataSource;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,6 +26,8 @@ import org.springframework.jdbc.datasource.init.ScriptUtils;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 import org.springframework.test.jdbc.JdbcTestUtils;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 @SpringJUnitConfig(classes = DatabaseTestConfig.class)
 @TestPropertySource("classpath:application.properties")
@@ -98,4 +102,39 @@ public class AccountIT
         assertNotEquals(acc.getId(), mergedAcc.getId());
     }
 
+    @Test
+    public void testBatchMerge()
+    {
+        Account acc1 = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#1"));
+        Account acc2 = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#2"));
+        PlayerCharacter character1 = playerCharacterDAO
+            .merge(new PlayerCharacter(null, acc1.getId(), Region.EU, 1L, 1, "name#1"));
+        PlayerCharacter character2 = playerCharacterDAO
+            .merge(new PlayerCharacter(null, acc2.getId(), Region.EU, 2L, 1, "name#2"));
+        PlayerCharacter character3 = new PlayerCharacter(null, null, Region.EU, 3L, 1, "name#3");
+
+        List<Tuple2<Account, PlayerCharacter>> accounts = List.of
+        (
+            //existing account
+            Tuples.of(new Account(null, Partition.GLOBAL, "tag#1"), character1),
+            //existing character, btag is updated
+            Tuples.of(new Account(null, Partition.GLOBAL, "tag#22"), character2),
+            //duplicate account, ids are updated for all originals
+            Tuples.of(new Account(null, Partition.GLOBAL, "tag#22"), character2),
+            //new account
+            Tuples.of(new Account(null, Partition.GLOBAL, "tag#3"), character3)
+        );
+        accountDAO.merge(accounts);
+
+        assertEquals(acc1.getId(), accounts.get(0).getT1().getId());
+        assertEquals(acc2.getId(), accounts.get(1).getT1().getId());
+        assertEquals(acc2.getId(), accounts.get(2).getT1().getId());
+        assertNotNull(accounts.get(3).getT1().getId());
+        assertNotEquals(acc1.getId(), accounts.get(3).getT1().getId());
+        assertNotEquals(acc2.getId(), accounts.get(3).getT1().getId());
+
+        assertEquals("tag#22", accountDAO.findByIds(acc2.getId()).get(0).getBattleTag());
+        assertEquals(3, JdbcTestUtils.countRowsInTable(template, "account"));
+    }
+
 }
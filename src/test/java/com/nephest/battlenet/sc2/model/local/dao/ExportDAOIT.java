@@ -0,0 +1,129 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nephest.battlenet.sc2.config.DatabaseTestConfig;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.BaseLeagueTier;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.local.SeasonGenerator;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig(classes = DatabaseTestConfig.class)
+@TestPropertySource("classpath:application.properties")
+@TestPropertySource("classpath:application-private.properties")
+public class ExportDAOIT
+{
+
+    public static final OffsetDateTime FROM = OffsetDateTime.parse("2022-01-01T00:00:00Z");
+    public static final OffsetDateTime TO = FROM.plusDays(1);
+
+    @Autowired
+    private SeasonGenerator seasonGenerator;
+
+    @Autowired
+    private ExportDAO exportDAO;
+
+    @Autowired
+    private TeamStateDAO teamStateDAO;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @BeforeEach
+    public void beforeEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-postgres.sql"));
+        }
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU),
+            List.of(BaseLeague.LeagueType.BRONZE),
+            List.of(QueueType.LOTV_1V1),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            10
+        );
+    }
+
+    @AfterEach
+    public void afterEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+        }
+    }
+
+    @Test
+    public void whenExportingByPages_thenExportRowsOfRangeOnce()
+    {
+        //1-3 are before the range, 4-9 share the same timestamp, 10 is the range end which is exclusive
+        template.update("UPDATE player_character SET updated = ?::timestamptz - INTERVAL '1 second' "
+            + "WHERE id <= 3", FROM.toString());
+        template.update("UPDATE player_character SET updated = ?::timestamptz WHERE id BETWEEN 4 AND 9",
+            FROM.plusHours(1).toString());
+        template.update("UPDATE player_character SET updated = ?::timestamptz WHERE id = 10", TO.toString());
+        template.update("UPDATE player_character SET name = 'name,\"quoted\"' WHERE id = 5");
+
+        StringWriter writer = new StringWriter();
+        //page size that splits rows with equal timestamps
+        int count = exportDAO.export(ExportDAO.Table.PLAYER_CHARACTER, FROM, TO, writer, 4);
+        assertEquals(6, count);
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals("id,account_id,battlenet_id,region,realm,name,clan_id,updated", lines[0]);
+        assertEquals(7, lines.length);
+        assertEquals
+        (
+            List.of("4", "5", "6", "7", "8", "9"),
+            Arrays.stream(lines).skip(1).map(l->l.substring(0, l.indexOf(','))).collect(Collectors.toList())
+        );
+        //values with special chars are quoted, null values are empty
+        assertTrue(lines[2].contains(",\"name,\"\"quoted\"\"\",,"));
+    }
+
+    @Test
+    public void whenExportingTeams_thenExportTeamsThatHaveStatesInRange()
+    {
+        teamStateDAO.takeSnapshot(List.of(2L, 5L), FROM.plusHours(1));
+        teamStateDAO.takeSnapshot(List.of(3L), FROM.minusHours(1));
+
+        StringWriter writer = new StringWriter();
+        assertEquals(2, exportDAO.export(ExportDAO.Table.TEAM, FROM, TO, writer, 1));
+        assertEquals(2, exportDAO.export(ExportDAO.Table.TEAM_STATE, FROM, TO, new StringWriter(), 1));
+        List<String> ids = Arrays.stream(writer.toString().split("\n"))
+            .skip(1)
+            .map(l->l.substring(0, l.indexOf(',')))
+            .collect(Collectors.toList());
+        assertEquals(List.of("2", "5"), ids);
+    }
+
+}
@@ -5,6 +5,7 @@ package com.nephest.battlenet.sc2.model.local.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -36,9 +37,12 @@ import com.nephest.battlenet.sc2.model.local.TeamState;
 import com.nephest.battlenet.sc2.model.local.ladder.LadderMatch;
 import com.nephest.battlenet.sc2.model.local.ladder.LadderMatchParticipant;
 import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderMatchDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderVodIndex;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -99,6 +103,9 @@ public class MatchIT
     @Autowired
     private LadderMatchDAO ladderMatchDAO;
 
+    @Autowired
+    private LadderVodIndex ladderVodIndex;
+
     @Autowired
     private ClanDAO clanDAO;
 
@@ -675,6 +682,28 @@ public class MatchIT
         participants.stream().map(LadderMatchParticipant::getParticipant).forEach(p->assertEquals(match.getId(), p.getMatchId()));
     }
 
+    @Test
+    public void whenMergingDatesWithOffsets_thenBindThemExactly()
+    {
+        SC2Map map = mapDAO.merge(new SC2Map(null, "map1"))[0];
+        //fractional seconds and non-UTC offsets must survive the text array binding
+        OffsetDateTime date = OffsetDateTime.of(2022, 1, 1, 10, 0, 0, 123456000, ZoneOffset.ofHours(3));
+        OffsetDateTime sameInstant = date.withOffsetSameInstant(ZoneOffset.ofHours(-5));
+        Match match = matchDAO.merge(new Match(null, date, BaseMatch.MatchType._1V1, map.getId(), Region.EU))[0];
+        Match sameMatch = matchDAO
+            .merge(new Match(null, sameInstant, BaseMatch.MatchType._1V1, map.getId(), Region.EU))[0];
+        Match zeroSeconds = matchDAO.merge(new Match(null, date.withSecond(0).withNano(0),
+            BaseMatch.MatchType._1V1, map.getId(), Region.EU))[0];
+
+        assertEquals(match.getId(), sameMatch.getId());
+        assertNotEquals(match.getId(), zeroSeconds.getId());
+        assertEquals(2, template.queryForObject("SELECT COUNT(*) FROM match", Integer.class));
+        assertTrue(date.isEqual(template.queryForObject
+        (
+            "SELECT date FROM match WHERE id = ?", OffsetDateTime.class, match.getId()
+        )));
+    }
+
     @Test
     public void testDuration()
     {
@@ -805,4 +834,73 @@ public class MatchIT
         }
     }
 
+    @Test
+    public void testTwitchVodSearch()
+    {
+        Account acc1 = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#1"));
+        Account acc2 = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#2"));
+        PlayerCharacter char1 = playerCharacterDAO.merge(new PlayerCharacter(null, acc1.getId(), Region.EU, 1L, 1, "name#1", null));
+        PlayerCharacter char2 = playerCharacterDAO.merge(new PlayerCharacter(null, acc2.getId(), Region.EU, 2L, 2, "name#2", null));
+        SC2Map map = mapDAO.merge(new SC2Map(null, "map1v1"))[0];
+        OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Match tvz = new Match(null, now, BaseMatch.MatchType._1V1, map.getId(), Region.EU);
+        Match tvt = new Match(null, now.minusSeconds(100), BaseMatch.MatchType._1V1, map.getId(), Region.EU);
+        Match pvz = new Match(null, now.minusSeconds(200), BaseMatch.MatchType._1V1, map.getId(), Region.EU);
+        Match noVod = new Match(null, now.minusSeconds(300), BaseMatch.MatchType._1V1, map.getId(), Region.EU);
+        matchDAO.merge(tvz, tvt, pvz, noVod);
+        for(Match match : List.of(tvz, tvt, pvz, noVod)) matchParticipantDAO.merge
+        (
+            new MatchParticipant(match.getId(), char1.getId(), BaseMatch.Decision.WIN),
+            new MatchParticipant(match.getId(), char2.getId(), BaseMatch.Decision.LOSS)
+        );
+        //no twitch videos, nothing to update
+        assertEquals(0, matchDAO.updateTwitchVodStats(now.minusDays(1)));
+        //race masks: terran 1, protoss 2, zerg 4
+        String vodQuery = "UPDATE match SET vod = true, race = ?, race_vod = ?, rating_min = ?, rating_max = ?, "
+            + "duration = ?, sub_only_vod = ? WHERE id = ?";
+        template.update(vodQuery, 5, 1, 4000, 4500, 600, false, tvz.getId());
+        template.update(vodQuery, 1, 1, 3000, 3100, 300, false, tvt.getId());
+        template.update(vodQuery, 6, 4, 5000, 5200, 900, true, pvz.getId());
+
+        //sql first, then the same queries from the in-memory index
+        for(int i = 0; i < 2; i++)
+        {
+            if(i == 1) ladderVodIndex.update();
+            assertEquals(List.of(tvz.getId()), findVods(Race.TERRAN, Race.ZERG, null, null, false, now));
+            assertEquals(List.of(tvz.getId(), tvt.getId()), findVods(Race.TERRAN, null, null, null, false, now));
+            assertEquals(List.of(tvt.getId()), findVods(Race.TERRAN, Race.TERRAN, null, null, false, now));
+            assertEquals(List.of(tvz.getId()), findVods(null, Race.ZERG, null, null, false, now));
+            assertEquals(List.of(tvz.getId(), pvz.getId()), findVods(null, Race.ZERG, null, null, true, now));
+            assertEquals(List.of(pvz.getId()), findVods(Race.ZERG, Race.PROTOSS, null, null, true, now));
+            assertEquals(List.of(tvz.getId(), pvz.getId()), findVods(null, null, 3500, null, true, now));
+            assertEquals(List.of(tvz.getId(), tvt.getId()), findVods(null, null, null, 600, true, now));
+            assertEquals(List.of(tvt.getId(), pvz.getId()), findVods(null, null, null, null, true, now.minusSeconds(50)));
+        }
+        assertTrue(ladderVodIndex.isIndexed());
+    }
+
+    private List<Long> findVods
+    (
+        Race race, Race versusRace,
+        Integer minRating,
+        Integer maxDuration,
+        boolean includeSubOnly,
+        OffsetDateTime dateAnchor
+    )
+    {
+        return ladderMatchDAO.findTwitchVods
+        (
+            race, versusRace,
+            minRating, null,
+            null, maxDuration,
+            includeSubOnly,
+            null,
+            dateAnchor.plusSeconds(1), BaseMatch.MatchType._1V1, 0,
+            0, 1
+        )
+            .getResult().stream()
+            .map(m->m.getMatch().getId())
+            .collect(Collectors.toList());
+    }
+
 }
@@ -5,6 +5,7 @@ package com.nephest.battlenet.sc2.model.local.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -41,6 +42,7 @@ import java.sql.SQLException;
 import java.time.OffsetDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import javax.sql.DataSource;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,6 +53,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.init.ScriptUtils;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import reactor.util.function.Tuple2;
 import reactor.util.function.Tuple3;
 import reactor.util.function.Tuples;
 
@@ -195,6 +199,17 @@ public class PlayerCharacterDAOIT
         assertEquals(char2, search2.get(1));
         assertEquals(char3, search2.get(2));
 
+        //games of all character's teams are counted, not only games of active teams
+        List<Tuple2<PlayerCharacter, Integer>> games = playerCharacterDAO
+            .findRecentlyActiveCharacterGames(now.minusHours(1), Region.values());
+        games.sort(Comparator.comparing(t->t.getT1().getId()));
+        assertEquals(2, games.size());
+        assertEquals(char1, games.get(0).getT1());
+        assertEquals(9, games.get(0).getT2());
+        assertEquals(char2, games.get(1).getT1());
+        assertEquals(3, games.get(1).getT2());
+        assertTrue(playerCharacterDAO.findRecentlyActiveCharacterGames(now.minusHours(1), Region.US).isEmpty());
+
         List<PlayerCharacter> search3 = playerCharacterDAO
             .findTopRecentlyActiveCharacters(now.minusHours(2), QueueType.LOTV_2V2, TeamType.ARRANGED, List.of(Region.EU), 2);
         assertEquals(2, search3.size());
@@ -203,6 +218,41 @@ public class PlayerCharacterDAOIT
         assertEquals(char3, search3.get(1));
     }
 
+    @Test
+    public void testBatchMerge()
+    {
+        Account account = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#123"));
+        Account account2 = accountDAO.merge(new Account(null, Partition.GLOBAL, "tag#234"));
+        Clan clan = clanDAO.merge(new Clan(null, "clanTag1", Region.EU, "clanName1"))[0];
+        PlayerCharacter existingChar = playerCharacterDAO
+            .merge(new PlayerCharacter(null, account.getId(), Region.EU, 1L, 1, "name#123"));
+
+        PlayerCharacter[] characters = new PlayerCharacter[]
+        {
+            new PlayerCharacter(null, account2.getId(), Region.EU, 2L, 1, "name2#123", clan.getId()),
+            //existing character is updated
+            new PlayerCharacter(null, account2.getId(), Region.EU, 1L, 1, "name1#123", clan.getId()),
+            //duplicates are merged only once, but their ids are updated too
+            new PlayerCharacter(null, account2.getId(), Region.EU, 2L, 1, "name2#123", clan.getId()),
+            new PlayerCharacter(null, account.getId(), Region.US, 1L, 1, "name3#123")
+        };
+        playerCharacterDAO.merge(characters);
+
+        assertEquals(existingChar.getId(), characters[1].getId());
+        assertEquals(characters[0].getId(), characters[2].getId());
+        assertNotNull(characters[0].getId());
+        assertNotNull(characters[3].getId());
+        assertEquals(3, JdbcTestUtils.countRowsInTable(template, "player_character"));
+
+        PlayerCharacter updatedChar = playerCharacterDAO.find(Region.EU, 1, 1L).orElseThrow();
+        assertEquals(account2.getId(), updatedChar.getAccountId());
+        assertEquals("name1#123", updatedChar.getName());
+        assertEquals(clan.getId(), updatedChar.getClanId());
+        PlayerCharacter newChar = playerCharacterDAO.find(Region.US, 1, 1L).orElseThrow();
+        assertEquals(characters[3].getId(), newChar.getId());
+        assertNull(newChar.getClanId());
+    }
+
     @Test
     public void updateCharacters()
     {
@@ -423,6 +473,39 @@ public class PlayerCharacterDAOIT
         assertEquals(3L, discordUser3.getId());
     }
 
+    @Test
+    public void whenSeveralOldAccountsAreReboundToSameAccountInBatch_thenRebindAll()
+    {
+        stubCharacterChain(1, false);
+        stubCharacterChain(2, false);
+        stubCharacterChain(3, false);
+        stubCharacterChain(4, false);
+        accountRoleDAO.addRoles(1, SC2PulseAuthority.ADMIN);
+        accountRoleDAO.addRoles(2, SC2PulseAuthority.MODERATOR);
+        accountFollowingDAO.create(new AccountFollowing(1L, 4L));
+        accountFollowingDAO.create(new AccountFollowing(2L, 1L));
+
+        playerCharacterDAO.merge
+        (
+            new PlayerCharacter(null, 3L, Region.EU, 2L, 2, "name2"),
+            new PlayerCharacter(null, 3L, Region.EU, 1L, 1, "name1")
+        );
+
+        List<SC2PulseAuthority> roles = accountRoleDAO.getRoles(3);
+        assertTrue(roles.contains(SC2PulseAuthority.ADMIN));
+        assertTrue(roles.contains(SC2PulseAuthority.MODERATOR));
+        assertFalse(accountRoleDAO.getRoles(1).contains(SC2PulseAuthority.ADMIN));
+        assertFalse(accountRoleDAO.getRoles(2).contains(SC2PulseAuthority.MODERATOR));
+
+        //both followings are moved, the followed old account is rebound too
+        List<AccountFollowing> followings = accountFollowingDAO.findAccountFollowingList(3L);
+        assertEquals(2, followings.size());
+        assertTrue(followings.stream().anyMatch(f->f.getFollowingAccountId() == 3L));
+        assertTrue(followings.stream().anyMatch(f->f.getFollowingAccountId() == 4L));
+        assertTrue(accountFollowingDAO.findAccountFollowingList(1L).isEmpty());
+        assertTrue(accountFollowingDAO.findAccountFollowingList(2L).isEmpty());
+    }
+
     private Account stubCharacterChain(int num, boolean bind)
     {
         DiscordUser discordUser = discordUserDAO
@@ -504,4 +587,53 @@ public class PlayerCharacterDAOIT
         );
     }
 
+    @Test
+    public void testFindSearchIndexWeights()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU),
+            List.of(BaseLeague.LeagueType.BRONZE),
+            List.of(QueueType.LOTV_1V1),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            10
+        );
+        //team rating is equal to team index
+        assertEquals(Map.of("character", 9), playerCharacterDAO.findNameWeights(SeasonGenerator.DEFAULT_SEASON_ID));
+        Map<String, Integer> battleTags = accountDAO.findBattleTagWeights(SeasonGenerator.DEFAULT_SEASON_ID);
+        assertEquals(10, battleTags.size());
+        assertEquals(4, battleTags.get("battletag#40"));
+        assertTrue(playerCharacterDAO.findNameWeights(SeasonGenerator.DEFAULT_SEASON_ID + 1).isEmpty());
+
+        //only characters of changed teams are found
+        OffsetDateTime from = OffsetDateTime.now().plusHours(1);
+        template.update("UPDATE player_character SET name = 'renamed#1' WHERE battlenet_id = 50");
+        assertTrue(playerCharacterDAO.findNameWeights(SeasonGenerator.DEFAULT_SEASON_ID, from).isEmpty());
+        Long teamId = template.queryForObject
+        (
+            "SELECT team_member.team_id FROM team_member "
+            + "INNER JOIN player_character ON team_member.player_character_id = player_character.id "
+            + "WHERE player_character.battlenet_id = 50",
+            Long.class
+        );
+        teamStateDAO.takeSnapshot(List.of(teamId), from.plusHours(1));
+        assertEquals
+        (
+            Map.of("renamed", 5),
+            playerCharacterDAO.findNameWeights(SeasonGenerator.DEFAULT_SEASON_ID, from)
+        );
+        assertEquals
+        (
+            Map.of("battletag#50", 5),
+            accountDAO.findBattleTagWeights(SeasonGenerator.DEFAULT_SEASON_ID, from)
+        );
+        assertTrue(playerCharacterDAO.findNameWeights(SeasonGenerator.DEFAULT_SEASON_ID + 1, from).isEmpty());
+
+        clanDAO.merge(new Clan(null, "clan", Region.EU, null), new Clan(null, "clan", Region.US, null));
+        clanDAO.merge(new Clan(null, "inactive", Region.EU, null));
+        template.update("UPDATE clan SET active_members = id WHERE tag = 'clan'");
+        assertEquals(Map.of("clan", 2), clanDAO.findTagWeights());
+    }
+
 }
@@ -0,0 +1,319 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.nephest.battlenet.sc2.config.DatabaseTestConfig;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.BaseLeagueTier;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.local.PlayerCharacterReport;
+import com.nephest.battlenet.sc2.model.local.SeasonGenerator;
+import com.nephest.battlenet.sc2.model.local.Team;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.util.function.Tuples;
+
+@SpringJUnitConfig(classes = DatabaseTestConfig.class)
+@TestPropertySource("classpath:application.properties")
+@TestPropertySource("classpath:application-private.properties")
+public class TeamDAOIT
+{
+
+    @Autowired
+    private SeasonGenerator seasonGenerator;
+
+    @Autowired
+    private TeamDAO teamDAO;
+
+    @Autowired
+    private PopulationStateDAO populationStateDAO;
+
+    @Autowired
+    private LeagueStatsDAO leagueStatsDAO;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Autowired @Qualifier("sc2StatsConversionService")
+    private ConversionService conversionService;
+
+    @BeforeEach
+    public void beforeEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-postgres.sql"));
+        }
+    }
+
+    @AfterEach
+    public void afterEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+        }
+    }
+
+    @Test
+    public void testUpdateRanksOfPartitions()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU, Region.US),
+            List.of(BaseLeague.LeagueType.BRONZE, BaseLeague.LeagueType.GOLD),
+            List.of(QueueType.LOTV_1V1, QueueType.LOTV_2V2),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            2
+        );
+        leagueStatsDAO.mergeCalculateForSeason(SeasonGenerator.DEFAULT_SEASON_ID);
+        populationStateDAO.takeSnapshot(List.of(SeasonGenerator.DEFAULT_SEASON_ID));
+
+        //empty partitions are ignored
+        teamDAO.updateRanks(SeasonGenerator.DEFAULT_SEASON_ID, Set.of());
+        assertEquals(0, countRankedTeams(QueueType.LOTV_1V1));
+        assertEquals(0, countRankedTeams(QueueType.LOTV_2V2));
+
+        //only target partitions are updated
+        teamDAO.updateRanks
+        (
+            SeasonGenerator.DEFAULT_SEASON_ID,
+            Set.of(Tuples.of(QueueType.LOTV_1V1, TeamType.ARRANGED))
+        );
+        assertEquals(8, countRankedTeams(QueueType.LOTV_1V1));
+        assertEquals(0, countRankedTeams(QueueType.LOTV_2V2));
+
+        //partition ranks are the same as full ranks, global ranks span all regions
+        List<Integer> partitionRanks = findGlobalRanks(QueueType.LOTV_1V1);
+        teamDAO.updateRanks(SeasonGenerator.DEFAULT_SEASON_ID);
+        assertEquals(partitionRanks, findGlobalRanks(QueueType.LOTV_1V1));
+        assertEquals(8, countRankedTeams(QueueType.LOTV_2V2));
+    }
+
+    @Test
+    public void testPopulationSnapshotOfPartitions()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU, Region.US),
+            List.of(BaseLeague.LeagueType.BRONZE, BaseLeague.LeagueType.GOLD),
+            List.of(QueueType.LOTV_1V1, QueueType.LOTV_2V2),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            2
+        );
+        leagueStatsDAO.mergeCalculateForSeason(SeasonGenerator.DEFAULT_SEASON_ID);
+
+        assertEquals(0, populationStateDAO.takeSnapshot(SeasonGenerator.DEFAULT_SEASON_ID, Set.of()));
+        //2 regions, 2 leagues
+        assertEquals
+        (
+            4,
+            populationStateDAO.takeSnapshot
+            (
+                SeasonGenerator.DEFAULT_SEASON_ID,
+                Set.of(Tuples.of(QueueType.LOTV_1V1, TeamType.ARRANGED))
+            )
+        );
+        List<String> partitionSnapshot = findPopulationSnapshot(QueueType.LOTV_1V1);
+        assertEquals(4, partitionSnapshot.size());
+        assertEquals(List.of(), findPopulationSnapshot(QueueType.LOTV_2V2));
+
+        //partition snapshot is the same as full snapshot
+        template.update("DELETE FROM population_state");
+        populationStateDAO.takeSnapshot(List.of(SeasonGenerator.DEFAULT_SEASON_ID));
+        assertEquals(partitionSnapshot, findPopulationSnapshot(QueueType.LOTV_1V1));
+    }
+
+    @Test
+    public void testFindCheaterReportRankPartitions()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU),
+            List.of(BaseLeague.LeagueType.BRONZE),
+            List.of(QueueType.LOTV_1V1, QueueType.LOTV_2V2),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            1
+        );
+        OffsetDateTime from = OffsetDateTime.now().minusHours(1);
+        Long characterId = template.queryForObject
+        (
+            "SELECT team_member.player_character_id FROM team_member "
+            + "INNER JOIN team ON team_member.team_id = team.id "
+            + "WHERE team.queue_type = ? LIMIT 1",
+            Long.class,
+            conversionService.convert(QueueType.LOTV_1V1, Integer.class)
+        );
+        template.update
+        (
+            "INSERT INTO player_character_report(player_character_id, type, status, status_change_timestamp) "
+            + "VALUES(?, ?, true, NOW() - INTERVAL '2 hours'), (?, ?, true, NOW())",
+            characterId,
+            conversionService.convert(PlayerCharacterReport.PlayerCharacterReportType.CHEATER, Integer.class),
+            characterId,
+            conversionService.convert(PlayerCharacterReport.PlayerCharacterReportType.LINK, Integer.class)
+        );
+        //old cheater report and recent non-cheater report
+        assertEquals(Set.of(), teamDAO.findCheaterReportRankPartitions(SeasonGenerator.DEFAULT_SEASON_ID, from));
+
+        template.update("UPDATE player_character_report SET status_change_timestamp = NOW()");
+        assertEquals
+        (
+            Set.of(Tuples.of(QueueType.LOTV_1V1, TeamType.ARRANGED)),
+            teamDAO.findCheaterReportRankPartitions(SeasonGenerator.DEFAULT_SEASON_ID, from)
+        );
+        assertEquals(Set.of(), teamDAO.findCheaterReportRankPartitions(SeasonGenerator.DEFAULT_SEASON_ID + 1, from));
+    }
+
+    @Test
+    public void testMergeCalculateLeagueStatsOfPartitions()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU, Region.US),
+            List.of(BaseLeague.LeagueType.BRONZE, BaseLeague.LeagueType.GOLD),
+            List.of(QueueType.LOTV_1V1, QueueType.LOTV_2V2),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            2
+        );
+
+        //empty partitions are ignored
+        leagueStatsDAO.mergeCalculateForSeason(SeasonGenerator.DEFAULT_SEASON_ID, List.of());
+        assertEquals(0, countLeagueStats());
+
+        //only target partitions are calculated, all league types of the partition are included
+        leagueStatsDAO.mergeCalculateForSeason
+        (
+            SeasonGenerator.DEFAULT_SEASON_ID,
+            List.of(Tuples.of(Region.EU, QueueType.LOTV_1V1, TeamType.ARRANGED))
+        );
+        assertEquals(2, countLeagueStats());
+        List<String> partitionStats = findLeagueStats();
+
+        //partition stats are the same as full stats
+        leagueStatsDAO.mergeCalculateForSeason(SeasonGenerator.DEFAULT_SEASON_ID);
+        assertEquals(8, countLeagueStats());
+        assertEquals(partitionStats, findLeagueStats().subList(0, 2));
+    }
+
+    private int countLeagueStats()
+    {
+        return template.queryForObject("SELECT COUNT(*) FROM league_stats", Integer.class);
+    }
+
+    private List<String> findLeagueStats()
+    {
+        return template.queryForList
+        (
+            "SELECT league_stats.league_id || ' ' || team_count || ' ' || terran_games_played "
+                + "|| ' ' || protoss_games_played || ' ' || zerg_games_played || ' ' || random_games_played "
+            + "FROM league_stats "
+            + "INNER JOIN league ON league_stats.league_id = league.id "
+            + "INNER JOIN season ON league.season_id = season.id "
+            + "ORDER BY season.region = " + conversionService.convert(Region.EU, Integer.class) + " DESC, "
+                + "league.queue_type = " + conversionService.convert(QueueType.LOTV_1V1, Integer.class) + " DESC, "
+                + "league_stats.league_id",
+            String.class
+        );
+    }
+
+    @Test
+    public void whenMergingNumericLegacyIdAndNullTier_thenBindColumnArrays()
+    {
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU),
+            List.of(BaseLeague.LeagueType.BRONZE),
+            List.of(QueueType.LOTV_4V4),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            1
+        );
+        Team team = teamDAO.findById(1L).orElseThrow();
+        BigInteger legacyId = new BigInteger("1123456789012345678901234567890");
+        team.setId(null);
+        team.setLegacyId(legacyId);
+        team.setTierType(null);
+
+        Team[] merged = teamDAO.merge(team);
+        assertEquals(1, merged.length);
+        assertNotNull(team.getId());
+        Team found = teamDAO.findById(team.getId()).orElseThrow();
+        assertEquals(legacyId, found.getLegacyId());
+        assertNull(found.getTierType());
+
+        //same games and division, nothing to update
+        assertEquals(0, teamDAO.merge(team).length);
+    }
+
+    private List<String> findPopulationSnapshot(QueueType queueType)
+    {
+        return template.queryForList
+        (
+            "SELECT population_state.league_id || ' ' || global_team_count || ' ' || region_team_count "
+                + "|| ' ' || league_team_count "
+                + "FROM population_state "
+                + "INNER JOIN league ON population_state.league_id = league.id "
+                + "WHERE league.queue_type = ? "
+                + "ORDER BY population_state.league_id",
+            String.class,
+            conversionService.convert(queueType, Integer.class)
+        );
+    }
+
+    private int countRankedTeams(QueueType queueType)
+    {
+        return template.queryForObject
+        (
+            "SELECT COUNT(*) FROM team "
+                + "WHERE queue_type = ? "
+                + "AND global_rank IS NOT NULL "
+                + "AND region_rank IS NOT NULL "
+                + "AND league_rank IS NOT NULL "
+                + "AND population_state_id IS NOT NULL",
+            Integer.class,
+            conversionService.convert(queueType, Integer.class)
+        );
+    }
+
+    private List<Integer> findGlobalRanks(QueueType queueType)
+    {
+        return template.queryForList
+        (
+            "SELECT global_rank FROM team WHERE queue_type = ? ORDER BY id",
+            Integer.class,
+            conversionService.convert(queueType, Integer.class)
+        );
+    }
+
+}
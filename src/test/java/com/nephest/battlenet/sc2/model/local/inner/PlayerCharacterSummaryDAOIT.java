@@ -0,0 +1,196 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.inner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.nephest.battlenet.sc2.config.DatabaseTestConfig;
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.BaseLeagueTier;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Race;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import com.nephest.battlenet.sc2.model.local.SeasonGenerator;
+import com.nephest.battlenet.sc2.model.local.dao.TeamStateDAO;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig(classes = DatabaseTestConfig.class)
+@TestPropertySource("classpath:application.properties")
+@TestPropertySource("classpath:application-private.properties")
+public class PlayerCharacterSummaryDAOIT
+{
+
+    private static final Long[] IDS = new Long[]{1L, 2L};
+
+    @Autowired
+    private SeasonGenerator seasonGenerator;
+
+    @Autowired
+    private PlayerCharacterSummaryDAO playerCharacterSummaryDAO;
+
+    @Autowired
+    private TeamStateDAO teamStateDAO;
+
+    @Autowired
+    private JdbcTemplate template;
+
+    @Autowired @Qualifier("sc2StatsConversionService")
+    private ConversionService conversionService;
+
+    @BeforeEach
+    public void beforeEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-postgres.sql"));
+        }
+        seasonGenerator.generateDefaultSeason
+        (
+            List.of(Region.EU),
+            List.of(BaseLeague.LeagueType.BRONZE),
+            List.of(QueueType.LOTV_1V1),
+            TeamType.ARRANGED,
+            BaseLeagueTier.LeagueTierType.FIRST,
+            2
+        );
+        teamStateDAO.takeSnapshot(List.of(1L, 2L));
+    }
+
+    @AfterEach
+    public void afterEach(@Autowired DataSource dataSource)
+    throws SQLException
+    {
+        try(Connection connection = dataSource.getConnection())
+        {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema-drop-postgres.sql"));
+        }
+    }
+
+    @Test
+    public void whenMaterializedDepth_thenMaterializeAndReturnSameSummaries()
+    {
+        assertEquals(0, countMaterialized());
+        List<PlayerCharacterSummary> materialized = playerCharacterSummaryDAO.find(IDS, 120);
+        List<PlayerCharacterSummary> calculated = playerCharacterSummaryDAO
+            .find(IDS, OffsetDateTime.now().minusDays(120));
+        assertEquals(2, materialized.size());
+        assertEquals(toString(calculated), toString(materialized));
+        assertEquals(2, countMaterialized());
+
+        //other depths are not materialized
+        assertEquals(toString(calculated), toString(playerCharacterSummaryDAO.find(IDS, 50)));
+        assertEquals(2, countMaterialized());
+
+        //race filter
+        Race race = materialized.get(0).getRace();
+        assertEquals
+        (
+            toString(playerCharacterSummaryDAO.find(IDS, OffsetDateTime.now().minusDays(120), race)),
+            toString(playerCharacterSummaryDAO.find(IDS, 120, race))
+        );
+    }
+
+    @Test
+    public void whenTeamsAreRefreshed_thenRefreshMaterializedCharacters()
+    {
+        playerCharacterSummaryDAO.find(new Long[]{1L}, 120);
+        template.update("UPDATE team SET rating = 5000, wins = wins + 1");
+        teamStateDAO.takeSnapshot(List.of(1L, 2L));
+        playerCharacterSummaryDAO.refresh(List.of(1L, 2L));
+
+        //character 1 is refreshed in all materialized depths, character 2 was never requested
+        assertEquals(PlayerCharacterSummaryDAO.MATERIALIZED_DEPTHS.size(), countMaterialized());
+        PlayerCharacterSummary summary = playerCharacterSummaryDAO.find(new Long[]{1L}, 120).get(0);
+        assertEquals(5000, summary.getRatingLast());
+        assertEquals(5000, summary.getRatingMax());
+        assertEquals
+        (
+            toString(playerCharacterSummaryDAO.find(new Long[]{1L}, OffsetDateTime.now().minusDays(120))),
+            toString(List.of(summary))
+        );
+    }
+
+    @Test
+    public void whenRaceIsNotUpdatedByLastMaterialization_thenIgnoreIt()
+    {
+        List<PlayerCharacterSummary> materialized = playerCharacterSummaryDAO.find(IDS, 120);
+        Race race = materialized.get(0).getRace();
+        Race otherRace = Arrays.stream(Race.values()).filter(r->r != race).findAny().orElseThrow();
+        //race that dropped out of the history window
+        template.update
+        (
+            "INSERT INTO player_character_summary_1v1 "
+            + "(player_character_id, depth_days, race, games, rating_avg, rating_max, rating_last, updated) "
+            + "VALUES(?, 120, ?, 1, 1, 1, 1, NOW() - INTERVAL '1 hour')",
+            materialized.get(0).getPlayerCharacterId(), conversionService.convert(otherRace, Integer.class)
+        );
+        assertEquals(3, countMaterialized());
+        assertEquals(toString(materialized), toString(playerCharacterSummaryDAO.find(IDS, 120)));
+    }
+
+    @Test
+    public void testRemoveExpired()
+    {
+        playerCharacterSummaryDAO.find(IDS, 120);
+        template.update("UPDATE player_character_summary_1v1 SET updated = NOW() - INTERVAL '2 days' "
+            + "WHERE player_character_id = 1");
+
+        assertEquals(1, playerCharacterSummaryDAO.removeExpired());
+        assertEquals(1, countMaterialized());
+        assertEquals(0, playerCharacterSummaryDAO.removeExpired());
+    }
+
+    @Test
+    public void whenCharacterWasNotRequestedRecently_thenDontRefreshIt()
+    {
+        playerCharacterSummaryDAO.find(IDS, 120);
+        template.update("UPDATE player_character_summary_1v1 SET requested = NOW() - INTERVAL '8 days', "
+            + "updated = NOW() - INTERVAL '1 hour' "
+            + "WHERE player_character_id = 1");
+        template.update("UPDATE team SET rating = 5000, wins = wins + 1");
+        teamStateDAO.takeSnapshot(List.of(1L, 2L));
+        playerCharacterSummaryDAO.refresh(List.of(1L, 2L));
+
+        //character 2 is refreshed in all materialized depths
+        assertEquals(1 + PlayerCharacterSummaryDAO.MATERIALIZED_DEPTHS.size(), countMaterialized());
+        assertEquals(1, template.queryForObject("SELECT COUNT(*) FROM player_character_summary_1v1 "
+            + "WHERE player_character_id = 1 AND updated < NOW() - INTERVAL '30 minutes'", Integer.class));
+    }
+
+    private int countMaterialized()
+    {
+        return template.queryForObject("SELECT COUNT(*) FROM player_character_summary_1v1", Integer.class);
+    }
+
+    private static List<String> toString(List<PlayerCharacterSummary> summaries)
+    {
+        return summaries.stream()
+            .map(s->s.getPlayerCharacterId() + " " + s.getRace() + " " + s.getGames() + " " + s.getRatingAvg()
+                + " " + s.getRatingMax() + " " + s.getRatingLast() + " " + s.getLeagueTypeLast()
+                + " " + s.getGlobalRankLast())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,93 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.inner;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.nephest.battlenet.sc2.model.Race;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardPlayerCharacter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TeamLegacyIdCodecTest
+{
+
+    //the original string based implementation, the codec must produce identical ids
+    private static BigInteger legacyIdOf(BlizzardPlayerCharacter[] characters, Race... races)
+    {
+        characters = characters.clone();
+        races = races.clone();
+        StringBuilder sb = new StringBuilder();
+        Arrays.sort(characters, TeamLegacyIdCodec.CHARACTER_COMPARATOR);
+        Arrays.sort(races);
+        for(BlizzardPlayerCharacter c : characters) sb.append(c.getRealm()).append(c.getId());
+        for(Race r : races) sb.append(r.getId());
+        return new BigInteger(sb.toString());
+    }
+
+    private static BlizzardPlayerCharacter character(int realm, long id)
+    {
+        return new BlizzardPlayerCharacter(id, realm, "name#" + id);
+    }
+
+    @Test
+    public void test1v1()
+    {
+        BlizzardPlayerCharacter[] characters = new BlizzardPlayerCharacter[]{character(1, 123)};
+        assertEquals(new BigInteger("11231"), TeamLegacyIdCodec.encode(characters, Race.TERRAN));
+        assertEquals(new BigInteger("11234"), TeamLegacyIdCodec.encode(characters, Race.RANDOM));
+    }
+
+    @Test
+    public void whenTeam_thenSortMembersWithoutModifyingInput()
+    {
+        BlizzardPlayerCharacter[] characters = new BlizzardPlayerCharacter[]
+        {
+            character(2, 5),
+            character(1, 10),
+            character(1, 2)
+        };
+        BlizzardPlayerCharacter[] original = characters.clone();
+        assertEquals(new BigInteger("1211025"), TeamLegacyIdCodec.encode(characters));
+        assertArrayEquals(original, characters);
+    }
+
+    @Test
+    public void whenLongOverflow_thenUseBigInteger()
+    {
+        BlizzardPlayerCharacter[] characters = new BlizzardPlayerCharacter[]
+        {
+            character(1, 11111111L),
+            character(2, 2222222222L),
+            character(1, 3333333333333L),
+            character(2, 4444444L),
+            character(1, Long.MAX_VALUE),
+            character(2, 0)
+        };
+        assertEquals(legacyIdOf(characters), TeamLegacyIdCodec.encode(characters));
+        assertEquals
+        (
+            legacyIdOf(characters, Race.ZERG, Race.PROTOSS),
+            TeamLegacyIdCodec.encode(characters, Race.ZERG, Race.PROTOSS)
+        );
+    }
+
+    @Test
+    public void testBoundaries()
+    {
+        long[] ids = new long[]{0, 9, 10, 999999999999999999L, 1000000000000000000L, Long.MAX_VALUE};
+        for(long id : ids)
+        {
+            for(int realm = 1; realm <= 2; realm++)
+            {
+                BlizzardPlayerCharacter[] characters = new BlizzardPlayerCharacter[]{character(realm, id)};
+                assertEquals(legacyIdOf(characters), TeamLegacyIdCodec.encode(characters));
+                assertEquals(legacyIdOf(characters, Race.ZERG), TeamLegacyIdCodec.encode(characters, Race.ZERG));
+            }
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import static com.nephest.battlenet.sc2.model.local.SeasonGenerator.DEFAULT_SEAS
 import static com.nephest.battlenet.sc2.model.local.SeasonGenerator.DEFAULT_SEASON_START;
 import static com.nephest.battlenet.sc2.model.local.SeasonGenerator.DEFAULT_SEASON_YEAR;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.nephest.battlenet.sc2.config.DatabaseTestConfig;
 import com.nephest.battlenet.sc2.model.BaseLeague;
@@ -285,6 +286,23 @@ public class LadderSearchDAOIT
         verifyLadder(resultReversed, QUEUE_TYPE, TEAM_TYPE, TIER_TYPE, 1, 279, true);
     }
 
+    @Test
+    public void whenSeasonIsIndexed_thenFindAnchoredPagesInIndex(@Autowired LadderSearchIndex index)
+    {
+        index.update(List.of(DEFAULT_SEASON_ID));
+        try
+        {
+            assertTrue(index.isIndexed(DEFAULT_SEASON_ID));
+            int[] pageTeamIds = new int[]{279, 199, 159, 119, 79, 39};
+            for(int i = 0; i < pageTeamIds.length; i++) test4v4LadderAnchor(i + 1, pageTeamIds[i]);
+            test4v4LadderAnchorMultiplePages();
+        }
+        finally
+        {
+            index.update(List.of());
+        }
+    }
+
     private void verifyLadder
     (
         PagedSearchResult<List<LadderTeam>> result,
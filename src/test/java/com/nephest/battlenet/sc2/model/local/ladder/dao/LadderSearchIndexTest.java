@@ -0,0 +1,187 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.ladder.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nephest.battlenet.sc2.model.BaseLeague;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.TeamType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class LadderSearchIndexTest
+{
+
+    private static final class IndexedTeam
+    {
+
+        private final long id;
+        private final short rating;
+        private final Region region;
+        private final BaseLeague.LeagueType league;
+
+        private IndexedTeam(long id, short rating, Region region, BaseLeague.LeagueType league)
+        {
+            this.id = id;
+            this.rating = rating;
+            this.region = region;
+            this.league = league;
+        }
+
+    }
+
+    private static final Comparator<IndexedTeam> DESC_ORDER = Comparator
+        .comparing((IndexedTeam t)->t.rating)
+        .thenComparing(t->t.id)
+        .reversed();
+
+    private static List<IndexedTeam> generateTeams(int count)
+    {
+        Random random = new Random(1);
+        List<IndexedTeam> teams = new ArrayList<>(count);
+        for(int i = 1; i <= count; i++) teams.add(new IndexedTeam
+        (
+            i,
+            //small rating range to produce a lot of equal ratings
+            (short) random.nextInt(50),
+            Region.values()[random.nextInt(Region.values().length)],
+            BaseLeague.LeagueType.values()[random.nextInt(BaseLeague.LeagueType.values().length)]
+        ));
+        teams.sort(DESC_ORDER);
+        return teams;
+    }
+
+    private static List<Long> findExpected
+    (
+        List<IndexedTeam> teams,
+        Set<Region> regions,
+        Set<BaseLeague.LeagueType> leagues,
+        long ratingAnchor,
+        long idAnchor,
+        long offset,
+        int limit,
+        boolean forward
+    )
+    {
+        //indexed anchors are located by their indexed rating
+        long indexedRatingAnchor = teams.stream()
+            .filter(t->t.id == idAnchor)
+            .map(t->(long) t.rating)
+            .findAny()
+            .orElse(ratingAnchor);
+        List<IndexedTeam> filtered = teams.stream()
+            .filter(t->regions.contains(t.region) && leagues.contains(t.league))
+            .filter(t->{
+                int cmp = t.rating != indexedRatingAnchor
+                    ? Long.compare(t.rating, indexedRatingAnchor)
+                    : Long.compare(t.id, idAnchor);
+                return forward ? cmp < 0 : cmp > 0;
+            })
+            .collect(Collectors.toList());
+        if(forward)
+            return filtered.stream().skip(offset).limit(limit).map(t->t.id).collect(Collectors.toList());
+
+        List<Long> reversed = new ArrayList<>();
+        for(int i = filtered.size() - 1 - (int) offset; i >= 0 && reversed.size() < limit; i--)
+            reversed.add(0, filtered.get(i).id);
+        return reversed;
+    }
+
+    @CsvSource
+    ({
+        "100, 0, 0, true",
+        "25, 500, 0, true",
+        "25, 500, 30, true",
+        "25, 500, 0, false",
+        "25, 500, 30, false",
+        "0, 0, 0, false",
+        "-1, 0, 0, true",
+    })
+    @ParameterizedTest
+    public void whenFindingAnchored_thenReturnSameTeamsAsFullScan
+    (
+        long ratingAnchor,
+        long idAnchor,
+        long offset,
+        boolean forward
+    )
+    {
+        List<IndexedTeam> teams = generateTeams(3000);
+        LadderSearchIndex.PartitionBuilder builder = new LadderSearchIndex.PartitionBuilder();
+        teams.forEach(t->builder.add(t.region, t.league, t.rating, t.id));
+        LadderSearchIndex.Partition partition = builder.build();
+
+        List<Set<Region>> regionFilters = List.of
+        (
+            EnumSet.allOf(Region.class),
+            EnumSet.of(Region.EU),
+            EnumSet.of(Region.US, Region.KR)
+        );
+        List<Set<BaseLeague.LeagueType>> leagueFilters = List.of
+        (
+            EnumSet.allOf(BaseLeague.LeagueType.class),
+            EnumSet.of(BaseLeague.LeagueType.GRANDMASTER),
+            EnumSet.of(BaseLeague.LeagueType.BRONZE, BaseLeague.LeagueType.DIAMOND)
+        );
+        for(Set<Region> regions : regionFilters)
+            for(Set<BaseLeague.LeagueType> leagues : leagueFilters)
+                assertEquals
+                (
+                    findExpected(teams, regions, leagues, ratingAnchor, idAnchor, offset, 40, forward),
+                    partition.find(regions, leagues, ratingAnchor, idAnchor, offset, 40, forward)
+                );
+    }
+
+    @Test
+    public void whenAnchorRatingIsStale_thenSeekByIndexedRating()
+    {
+        List<IndexedTeam> teams = generateTeams(3000);
+        LadderSearchIndex.PartitionBuilder builder = new LadderSearchIndex.PartitionBuilder();
+        teams.forEach(t->builder.add(t.region, t.league, t.rating, t.id));
+        LadderSearchIndex.Partition partition = builder.build();
+        Set<Region> regions = EnumSet.allOf(Region.class);
+        Set<BaseLeague.LeagueType> leagues = EnumSet.allOf(BaseLeague.LeagueType.class);
+
+        List<Long> page1 = partition.find(regions, leagues, 100, 0, 0, 40, true);
+        long lastId = page1.get(page1.size() - 1);
+        //the rating was changed after the index was built
+        long freshRating = teams.stream().filter(t->t.id == lastId).findAny().orElseThrow().rating + 30;
+        List<Long> page2 = partition.find(regions, leagues, freshRating, lastId, 0, 40, true);
+        List<Long> expected = teams.stream().skip(40).limit(40).map(t->t.id).collect(Collectors.toList());
+        assertEquals(expected, page2);
+
+        //backward page returns to the first page
+        long firstId = page2.get(0);
+        assertEquals(page1, partition.find(regions, leagues, -100, firstId, 0, 40, false));
+    }
+
+    @Test
+    public void whenSeasonIsNotIndexed_thenReturnEmptyOptional()
+    {
+        LadderSearchIndex index = new LadderSearchIndex(null, null);
+        assertTrue(index.findAnchored
+        (
+            1,
+            EnumSet.allOf(Region.class),
+            EnumSet.allOf(BaseLeague.LeagueType.class),
+            QueueType.LOTV_1V1,
+            TeamType.ARRANGED,
+            0, 0,
+            0, 10,
+            true
+        ).isEmpty());
+    }
+
+}
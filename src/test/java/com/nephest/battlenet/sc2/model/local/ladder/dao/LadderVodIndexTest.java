@@ -0,0 +1,96 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.model.local.ladder.dao;
+
+import static com.nephest.battlenet.sc2.model.local.ladder.dao.LadderVodIndex.NULL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.Race;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LadderVodIndexTest
+{
+
+    private static final LadderVodIndex.Snapshot SNAPSHOT;
+    static
+    {
+        LadderVodIndex.Builder builder = new LadderVodIndex.Builder();
+        //id, date, type, map, duration, rating min, rating max, race, race vod, sub only
+        builder.add(1, 100, 1, 2, 600, 4000, 4500, 0b101, 0b001, false);
+        builder.add(2, 100, 1, 1, NULL, 3000, 3100, 0b001, 0b001, false);
+        builder.add(3, 90, 2, 1, 900, NULL, NULL, 0b110, 0b100, true);
+        builder.add(4, 80, 1, 1, 300, 2000, 2500, 0b011, 0b011, false);
+        //more than the initial capacity
+        for(int i = 0; i < 100; i++) builder.add(5 + i, 70 - i, 1, 1, 300, 2000, 2500, 0b010, 0b010, false);
+        SNAPSHOT = builder.build();
+    }
+
+    private static LadderVodIndex.Filter filter
+    (
+        int raceVod, int matchup, int raceAny,
+        int minRating, int maxRating,
+        int minDuration, int maxDuration,
+        boolean includeSubOnly,
+        int mapId
+    )
+    {
+        return new LadderVodIndex.Filter
+        (
+            raceVod, matchup, raceAny,
+            minRating, maxRating,
+            minDuration, maxDuration,
+            includeSubOnly,
+            mapId
+        );
+    }
+
+    @Test
+    public void whenFindingAnchored_thenSkipMatchesBeforeAnchor()
+    {
+        LadderVodIndex.Filter all = filter(0, 0, 0, NULL, NULL, NULL, NULL, true, NULL);
+        assertEquals(List.of(1L, 2L, 3L), SNAPSHOT.find(all, 101, 0, 0, 3));
+        //anchor is excluded, lower map of the same date and type is included
+        assertEquals(List.of(2L, 3L), SNAPSHOT.find(all, 100, 1, 2, 2));
+        assertEquals(List.of(4L), SNAPSHOT.find(all, 90, 2, 1, 1));
+        assertTrue(SNAPSHOT.find(all, -30, 1, 1, 10).isEmpty());
+        assertEquals(104, SNAPSHOT.find(all, 101, 0, 0, 1000).size());
+    }
+
+    @Test
+    public void whenFiltering_thenMatchSqlSemantics()
+    {
+        //race filters
+        assertEquals(List.of(1L, 2L, 4L), SNAPSHOT.find(filter(0b001, 0, 0, NULL, NULL, NULL, NULL, true, NULL), 101, 0, 0, 3));
+        assertEquals(List.of(1L), SNAPSHOT.find(filter(0b001, 0b101, 0, NULL, NULL, NULL, NULL, true, NULL), 101, 0, 0, 3));
+        assertEquals(List.of(1L, 3L), SNAPSHOT.find(filter(0, 0, 0b100, NULL, NULL, NULL, NULL, true, NULL), 101, 0, 0, 3));
+        //sub only vods are excluded
+        assertEquals(List.of(1L), SNAPSHOT.find(filter(0, 0, 0b100, NULL, NULL, NULL, NULL, false, NULL), 101, 0, 0, 3));
+        //null values never match active filters
+        assertEquals(List.of(1L, 2L), SNAPSHOT.find(filter(0, 0, 0, 3000, NULL, NULL, NULL, true, NULL), 101, 0, 0, 3));
+        assertEquals(List.of(2L, 4L, 5L), SNAPSHOT.find(filter(0, 0, 0, NULL, 3100, NULL, NULL, true, NULL), 101, 0, 0, 3));
+        assertEquals(List.of(1L, 3L), SNAPSHOT.find(filter(0, 0, 0, NULL, NULL, 600, 900, true, NULL), 101, 0, 0, 3));
+        assertEquals(List.of(2L, 3L, 4L), SNAPSHOT.find(filter(0, 0, 0, NULL, NULL, NULL, NULL, true, 1), 101, 0, 0, 3));
+    }
+
+    @Test
+    public void whenNotIndexed_thenReturnEmptyOptional()
+    {
+        LadderVodIndex index = new LadderVodIndex(null, null);
+        assertTrue(index.find
+        (
+            Race.TERRAN, null,
+            null, null,
+            null, null,
+            true,
+            null,
+            OffsetDateTime.now(), BaseMatch.MatchType._1V1, 0,
+            10
+        ).isEmpty());
+    }
+
+}
@@ -50,7 +50,7 @@ public class PostgreSQLUtilsIT
     @Test
     public void testReindex()
     {
-        postgreSQLUtils.reindex("ix_match_updated");
+        postgreSQLUtils.reindex("ix_match_updated_id");
     }
 
 }
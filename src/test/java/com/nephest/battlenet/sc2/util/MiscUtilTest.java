@@ -4,9 +4,14 @@
 package com.nephest.battlenet.sc2.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -54,5 +59,16 @@ public class MiscUtilTest
         assertEquals(expectedLength, MiscUtil.stringLength(i));
     }
 
+    @Test
+    public void testDrain()
+    {
+        Set<Integer> set = ConcurrentHashMap.newKeySet();
+        set.add(1);
+        set.add(2);
+        List<Integer> drained = MiscUtil.drain(set);
+        assertEquals(2, drained.size());
+        assertTrue(drained.containsAll(List.of(1, 2)));
+        assertTrue(set.isEmpty());
+    }
 
 }
@@ -0,0 +1,123 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nephest.battlenet.sc2.model.Region;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+
+public class PartitionedExecutorServiceTest
+{
+
+    private SimpleMeterRegistry registry;
+    private PartitionedExecutorService executor;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        registry = new SimpleMeterRegistry();
+        executor = new PartitionedExecutorService("test-db-", Region.values().length, 3, registry);
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testEnumRouting()
+    {
+        for(Region region : Region.values()) assertEquals(region.ordinal(), executor.getPartition(region));
+        //keyless tasks don't share a partition with keyed tasks
+        assertEquals(Region.values().length, executor.getPartition(null));
+        assertEquals(Region.values().length, executor.getPartitionCount());
+        assertEquals(executor.getPartition("key"), executor.getPartition("key"));
+    }
+
+    @Test
+    public void whenSameKey_thenExecuteInSubmissionOrder()
+    throws ExecutionException, InterruptedException
+    {
+        StringBuilder sb = new StringBuilder();
+        Future<?> last = null;
+        for(int i = 0; i < 10; i++)
+        {
+            int val = i;
+            last = executor.submit(Region.EU, ()->{sb.append(val);});
+        }
+        last.get();
+        assertEquals("0123456789", sb.toString());
+    }
+
+    @Test
+    public void whenDifferentKeys_thenUseDifferentThreads()
+    throws ExecutionException, InterruptedException
+    {
+        String us = executor.submit(Region.US, ()->Thread.currentThread().getName()).get();
+        String eu = executor.submit(Region.EU, ()->Thread.currentThread().getName()).get();
+        assertNotEquals(us, eu);
+    }
+
+    @Test
+    public void whenNullKey_thenUseDedicatedThread()
+    throws ExecutionException, InterruptedException
+    {
+        String keyless = executor.submit(null, ()->Thread.currentThread().getName()).get();
+        for(Region region : Region.values())
+            assertNotEquals(keyless, executor.submit(region, ()->Thread.currentThread().getName()).get());
+    }
+
+    @Test
+    public void whenDeadlock_thenRetry()
+    throws ExecutionException, InterruptedException
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        int result = executor.submit(Region.EU, ()->{
+            if(attempts.incrementAndGet() < 3) throw new DeadlockLoserDataAccessException("deadlock", null);
+            return attempts.get();
+        }).get();
+
+        assertEquals(3, result);
+        assertEquals(2, registry.get(PartitionedExecutorService.RETRY_METRIC_NAME)
+            .tag("partition", String.valueOf(Region.EU.ordinal()))
+            .counter()
+            .count());
+        assertEquals(1, registry.get(PartitionedExecutorService.WAIT_METRIC_NAME)
+            .tag("partition", String.valueOf(Region.EU.ordinal()))
+            .timer()
+            .count());
+        assertEquals(1, registry.get(PartitionedExecutorService.EXECUTION_METRIC_NAME)
+            .tag("partition", String.valueOf(Region.EU.ordinal()))
+            .timer()
+            .count());
+    }
+
+    @Test
+    public void whenOtherException_thenDontRetry()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        Future<?> task = executor.submit(Region.EU, ()->{
+            attempts.incrementAndGet();
+            throw new DataIntegrityViolationException("error");
+        });
+
+        ExecutionException ex = assertThrows(ExecutionException.class, task::get);
+        assertTrue(ex.getCause() instanceof DataIntegrityViolationException);
+        assertEquals(1, attempts.get());
+    }
+
+}
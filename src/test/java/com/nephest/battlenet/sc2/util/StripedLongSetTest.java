@@ -0,0 +1,87 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+public class StripedLongSetTest
+{
+
+    @Test
+    public void whenAddingDuplicates_thenDeduplicate()
+    {
+        StripedLongSet set = new StripedLongSet(4);
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.add(-1L));
+        assertTrue(set.add(Long.MAX_VALUE));
+        //grow the tables
+        for(long i = 1; i < 1000; i++) assertTrue(set.add(i));
+        for(long i = 1; i < 1000; i++) assertFalse(set.add(i));
+        assertEquals(1002, set.size());
+
+        long[] values = set.drain();
+        Arrays.sort(values);
+        long[] expected = LongStream.concat
+        (
+            LongStream.of(-1L, Long.MAX_VALUE),
+            LongStream.range(0, 1000)
+        ).sorted().toArray();
+        assertArrayEquals(expected, values);
+
+        //drained set is empty and reusable
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.drain().length);
+        assertTrue(set.add(1L));
+        assertArrayEquals(new long[]{1L}, set.drain());
+    }
+
+    @Test
+    public void whenAddingConcurrently_thenKeepEveryValueOnce()
+    throws Exception
+    {
+        StripedLongSet set = new StripedLongSet();
+        int threads = 4;
+        int count = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<>();
+            //every thread adds the same values
+            for(int i = 0; i < threads; i++)
+                tasks.add(executor.submit(()->{for(long v = 0; v < count; v++) set.add(v);}));
+            for(Future<?> task : tasks) task.get();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        long[] values = set.drain();
+        Arrays.sort(values);
+        assertArrayEquals(LongStream.range(0, count).toArray(), values);
+    }
+
+    @Test
+    public void whenInvalidStripeCount_thenThrowException()
+    {
+        assertThrows(IllegalArgumentException.class, ()->new StripedLongSet(0));
+        assertThrows(IllegalArgumentException.class, ()->new StripedLongSet(3));
+    }
+
+}
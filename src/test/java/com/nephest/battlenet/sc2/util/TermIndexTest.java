@@ -0,0 +1,76 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class TermIndexTest
+{
+
+    private static final TermIndex INDEX = TermIndex.of(Map.of
+    (
+        "Serral", 7000,
+        "serral", 10,
+        "SerralFan", 3000,
+        "Seraph", 4000,
+        "NotSerral", 5000,
+        "Maru", 6500,
+        "Marus", 100,
+        "Clem", 6000,
+        "herO", 5500
+    ));
+
+    @Test
+    public void whenSuggesting_thenRankPrefixInfixAndTypoMatches()
+    {
+        //case-insensitive, case duplicates are merged, prefix matches are ranked by weight and go first
+        assertEquals(List.of("Serral", "SerralFan", "NotSerral"), INDEX.suggest("SERRAL", 5));
+        assertEquals(List.of("Serral", "SerralFan"), INDEX.suggest("serral", 2));
+        assertEquals(8, INDEX.size());
+    }
+
+    @Test
+    public void whenQueryHasTypos_thenSuggestSimilarTerms()
+    {
+        //transposition
+        assertEquals(List.of("Serral"), INDEX.suggest("serarl", 1));
+        //substitution in a prefix
+        assertEquals(List.of("Maru", "Marus"), INDEX.suggest("mayu", 5));
+        //two typos are allowed for long terms only
+        assertEquals(List.of("SerralFan"), INDEX.suggest("serrolfam", 1));
+        assertTrue(INDEX.suggest("sorrel", 5).isEmpty());
+    }
+
+    @Test
+    public void whenEmpty_thenSuggestNothing()
+    {
+        assertTrue(TermIndex.empty().suggest("term", 10).isEmpty());
+        assertTrue(TermIndex.of(Map.of()).suggest("term", 10).isEmpty());
+        assertTrue(INDEX.suggest("", 10).isEmpty());
+        assertTrue(INDEX.suggest("serral", 0).isEmpty());
+    }
+
+    @CsvSource
+    ({
+        "serral, serral, 0",
+        "serr, serral, 0",
+        "sera, serral, 1",
+        "serarl, serral, 1",
+        "sreral, serral, 1",
+        "xyz, serral, 3"
+    })
+    @ParameterizedTest
+    public void testPrefixDistance(String query, String term, int expected)
+    {
+        assertEquals(expected, TermIndex.getPrefixDistance(query, term, 2));
+    }
+
+}
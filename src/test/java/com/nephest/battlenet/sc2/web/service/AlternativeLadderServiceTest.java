@@ -0,0 +1,321 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardPlayerCharacter;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardProfileLadder;
+import com.nephest.battlenet.sc2.model.blizzard.BlizzardSeason;
+import com.nephest.battlenet.sc2.model.blizzard.dao.BlizzardDAO;
+import com.nephest.battlenet.sc2.model.local.LadderDiscoveryFrontier;
+import com.nephest.battlenet.sc2.model.local.LadderDiscoveryFrontierVar;
+import com.nephest.battlenet.sc2.model.local.Season;
+import com.nephest.battlenet.sc2.model.local.dao.AccountDAO;
+import com.nephest.battlenet.sc2.model.local.dao.ClanDAO;
+import com.nephest.battlenet.sc2.model.local.dao.DivisionDAO;
+import com.nephest.battlenet.sc2.model.local.dao.LeagueDAO;
+import com.nephest.battlenet.sc2.model.local.dao.LeagueTierDAO;
+import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
+import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
+import com.nephest.battlenet.sc2.model.local.dao.TeamMemberDAO;
+import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.validation.Validator;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
+
+@ExtendWith(MockitoExtension.class)
+public class AlternativeLadderServiceTest
+{
+
+    private static final Region REGION = Region.EU;
+    private static final int SEASON = 50;
+    private static final String FRONTIER_KEY = REGION.getId() + ".ladder.alternative.discovery.frontier";
+    private static final Season SEASON_OBJ = new Season
+    (
+        1, SEASON, REGION, 2022, 1,
+        LocalDate.now().minusDays(10), LocalDate.now().plusDays(60)
+    );
+
+    @Mock
+    private BlizzardSC2API api;
+
+    @Mock
+    private LeagueDAO leagueDao;
+
+    @Mock
+    private LeagueTierDAO leagueTierDao;
+
+    @Mock
+    private DivisionDAO divisionDao;
+
+    @Mock
+    private TeamDAO teamDao;
+
+    @Mock
+    private AccountDAO accountDAO;
+
+    @Mock
+    private PlayerCharacterDAO playerCharacterDao;
+
+    @Mock
+    private ClanDAO clanDAO;
+
+    @Mock
+    private TeamMemberDAO teamMemberDao;
+
+    @Mock
+    private BlizzardDAO blizzardDAO;
+
+    @Mock
+    private VarDAO varDAO;
+
+    @Mock
+    private CommonCharacterService commonCharacterService;
+
+    @Mock
+    private SC2WebServiceUtil sc2WebServiceUtil;
+
+    @Mock
+    private ConversionService conversionService;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private AlternativeLadderService self;
+
+    private PartitionedExecutorService dbExecutorService;
+    private AlternativeLadderService alternativeLadderService;
+
+    //probed id lists, one list per getProfileLadderIds call
+    private final List<List<Long>> probes = new ArrayList<>();
+    private final Set<Long> saved = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        dbExecutorService = new PartitionedExecutorService("test-db-", 1, 1, new SimpleMeterRegistry());
+        alternativeLadderService = new AlternativeLadderService
+        (
+            api,
+            leagueDao,
+            leagueTierDao,
+            divisionDao,
+            teamDao,
+            accountDAO,
+            playerCharacterDao,
+            clanDAO,
+            teamMemberDao,
+            blizzardDAO,
+            varDAO,
+            commonCharacterService,
+            sc2WebServiceUtil,
+            conversionService,
+            validator,
+            dbExecutorService
+        );
+        ReflectionTestUtils.setField(alternativeLadderService, "alternativeLadderService", self);
+        lenient().when(divisionDao.findLastDivision(SEASON - 1, REGION)).thenReturn(Optional.of(999L));
+        lenient().when(sc2WebServiceUtil.getCurrentOrLastOrExistingSeason(REGION))
+            .thenReturn(new BlizzardSeason(SEASON, 2022, 1, SEASON_OBJ.getStart(), SEASON_OBJ.getEnd()));
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        dbExecutorService.shutdown();
+    }
+
+    private void init(LadderDiscoveryFrontier frontier)
+    {
+        if(frontier != null) lenient().when(varDAO.find(FRONTIER_KEY))
+            .thenReturn(Optional.of(LadderDiscoveryFrontierVar.serialize(frontier)));
+        alternativeLadderService.init();
+    }
+
+    private void stubApi(LongPredicate existing, Set<Long> failedIds, Set<Long> failedLadders)
+    {
+        when(api.getProfileLadderIds(eq(REGION), any(), anyBoolean(), any())).thenAnswer(inv->{
+            Iterable<Long> ids = inv.getArgument(1);
+            Collection<Long> failed = inv.getArgument(3);
+            List<Long> probe = new ArrayList<>();
+            List<Tuple3<Region, BlizzardPlayerCharacter[], Long>> found = new ArrayList<>();
+            for(Long id : ids)
+            {
+                probe.add(id);
+                if(existing.test(id))
+                {
+                    found.add(Tuples.of(REGION, new BlizzardPlayerCharacter[0], id));
+                }
+                else if(failedIds.contains(id))
+                {
+                    failed.add(id);
+                }
+            }
+            probes.add(probe);
+            return Flux.fromIterable(found);
+        });
+        lenient().when(api.getProfileLadders(any(), any(), anyBoolean(), any())).thenAnswer(inv->{
+            Iterable<Tuple3<Region, BlizzardPlayerCharacter[], Long>> ids = inv.getArgument(0);
+            Collection<Long> failed = inv.getArgument(3);
+            List<Tuple2<BlizzardProfileLadder, Tuple3<Region, BlizzardPlayerCharacter[], Long>>> ladders =
+                new ArrayList<>();
+            for(Tuple3<Region, BlizzardPlayerCharacter[], Long> id : ids)
+            {
+                if(failedLadders.contains(id.getT3()))
+                {
+                    failed.add(id.getT3());
+                }
+                else
+                {
+                    ladders.add(Tuples.of(new BlizzardProfileLadder(), id));
+                }
+            }
+            return Flux.fromIterable(ladders);
+        });
+        lenient().doAnswer(inv->{
+            List<Tuple2<BlizzardProfileLadder, Tuple3<Region, BlizzardPlayerCharacter[], Long>>> ladders =
+                inv.getArgument(1);
+            ladders.forEach(l->saved.add(l.getT2().getT3()));
+            return null;
+        }).when(self).saveProfileLadders(eq(SEASON_OBJ), any());
+    }
+
+    private static boolean inRange(long id, long from, long toExcluded)
+    {
+        return id >= from && id < toExcluded;
+    }
+
+    @Test
+    public void whenFrontierIsSaved_thenResumeFromIt()
+    {
+        init(new LadderDiscoveryFrontier(SEASON, 5000, List.of()));
+        stubApi(id->inRange(id, 5000, 7200), Set.of(), Set.of());
+
+        alternativeLadderService.discoverSeason(SEASON_OBJ, false);
+
+        assertEquals(2, probes.size());
+        assertEquals(5000L, probes.get(0).get(0));
+        assertEquals(7000L, probes.get(1).get(0));
+        assertEquals(2200, saved.size());
+        //the last wave is sparse in its first chunk, so it's probed again by the next discovery
+        assertEquals
+        (
+            new LadderDiscoveryFrontier(SEASON, 7000, List.of()),
+            alternativeLadderService.getDiscoveryFrontier(REGION)
+        );
+    }
+
+    @Test
+    public void whenFrontierHasPendingIds_thenRetryThem()
+    {
+        init(new LadderDiscoveryFrontier(SEASON, 5000, List.of(1500L, 1600L)));
+        stubApi(id->id == 1500, Set.of(1600L), Set.of());
+
+        alternativeLadderService.discoverSeason(SEASON_OBJ, false);
+
+        assertEquals(List.of(1500L, 1600L), probes.get(0));
+        assertTrue(saved.contains(1500L));
+        //1600 failed again
+        assertEquals
+        (
+            new LadderDiscoveryFrontier(SEASON, 5000, List.of(1600L)),
+            alternativeLadderService.getDiscoveryFrontier(REGION)
+        );
+    }
+
+    @Test
+    public void whenChunkOfParallelWaveIsSparse_thenStopAtIt()
+    {
+        init(null);
+        //the second chunk of the first wave is empty, next chunks are full
+        int batch = AlternativeLadderService.LEGACY_LADDER_BATCH_SIZE;
+        stubApi(id->inRange(id, 1000, 1000 + batch) || inRange(id, 1000 + batch * 2L, 1000 + batch * 4L),
+            Set.of(), Set.of());
+
+        alternativeLadderService.discoverSeason(SEASON_OBJ, false);
+
+        assertEquals(1, probes.size());
+        assertEquals(batch * AlternativeLadderService.DISCOVERY_PARALLEL_CHUNKS, probes.get(0).size());
+        assertEquals(batch * 3, saved.size());
+        assertEquals
+        (
+            new LadderDiscoveryFrontier(SEASON, 1000 + batch, List.of()),
+            alternativeLadderService.getDiscoveryFrontier(REGION)
+        );
+    }
+
+    @Test
+    public void whenLaddersAreNotSaved_thenDontMoveFrontierPastThem()
+    {
+        init(null);
+        long waveEnd = 1000 + (long) AlternativeLadderService.LEGACY_LADDER_BATCH_SIZE
+            * AlternativeLadderService.DISCOVERY_PARALLEL_CHUNKS;
+        stubApi(id->inRange(id, 1000, waveEnd * 2), Set.of(), Set.of());
+        doAnswer(inv->{
+            List<Tuple2<BlizzardProfileLadder, Tuple3<Region, BlizzardPlayerCharacter[], Long>>> ladders =
+                inv.getArgument(1);
+            if(ladders.stream().anyMatch(l->l.getT2().getT3() >= waveEnd))
+                throw new IllegalStateException("test");
+            return null;
+        }).when(self).saveProfileLadders(eq(SEASON_OBJ), any());
+
+        assertThrows(IllegalStateException.class, ()->alternativeLadderService.discoverSeason(SEASON_OBJ, false));
+        assertEquals
+        (
+            new LadderDiscoveryFrontier(SEASON, waveEnd, List.of()),
+            alternativeLadderService.getDiscoveryFrontier(REGION)
+        );
+    }
+
+    @Test
+    public void whenLadderFailsToLoad_thenKeepItPending()
+    {
+        init(null);
+        long waveEnd = 1000 + (long) AlternativeLadderService.LEGACY_LADDER_BATCH_SIZE
+            * AlternativeLadderService.DISCOVERY_PARALLEL_CHUNKS;
+        stubApi(id->inRange(id, 1000, waveEnd), Set.of(), Set.of(1200L));
+
+        alternativeLadderService.discoverSeason(SEASON_OBJ, false);
+
+        assertFalse(saved.contains(1200L));
+        assertEquals
+        (
+            new LadderDiscoveryFrontier(SEASON, waveEnd, List.of(1200L)),
+            alternativeLadderService.getDiscoveryFrontier(REGION)
+        );
+    }
+
+}
@@ -14,6 +14,7 @@ import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -42,6 +43,7 @@ import com.nephest.battlenet.sc2.model.local.dao.AccountDAO;
 import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
 import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.time.OffsetDateTime;
@@ -108,6 +110,9 @@ public class BlizzardPrivacyServiceTest
     @Mock
     private ExecutorService executor;
 
+    @Mock
+    private PartitionedExecutorService dbExecutor;
+
     public BlizzardPrivacyService privacyService;
 
     private AutoCloseable mocks;
@@ -120,6 +125,11 @@ public class BlizzardPrivacyServiceTest
             r.run();
             return CompletableFuture.completedFuture(null);
         });
+        lenient().when(dbExecutor.submit(any(), any(Runnable.class))).then(i->{
+            Runnable r = i.getArgument(1);
+            r.run();
+            return CompletableFuture.completedFuture(null);
+        });
         privacyService = new BlizzardPrivacyService
         (
             api,
@@ -129,7 +139,7 @@ public class BlizzardPrivacyServiceTest
             varDAO,
             accountDAO,
             playerCharacterDAO,
-            executor,
+            dbExecutor,
             executor,
             validator,
             sc2WebServiceUtil
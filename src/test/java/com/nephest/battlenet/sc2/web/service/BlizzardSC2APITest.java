@@ -18,6 +18,7 @@ import com.nephest.battlenet.sc2.model.blizzard.BlizzardLeague;
 import com.nephest.battlenet.sc2.model.blizzard.BlizzardLeagueTier;
 import com.nephest.battlenet.sc2.model.blizzard.BlizzardTierDivision;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
@@ -54,7 +55,7 @@ public class BlizzardSC2APITest
     public void beforeEach()
     {
         mocks = MockitoAnnotations.openMocks(this);
-        api = new BlizzardSC2API(objectMapper, oAuth2AuthorizedClientManager, varDAO);
+        api = new BlizzardSC2API(objectMapper, oAuth2AuthorizedClientManager, varDAO, new SimpleMeterRegistry());
     }
 
     @AfterEach
@@ -0,0 +1,189 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.discord.dao.DiscordUserDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeam;
+import com.nephest.battlenet.sc2.model.local.ladder.LadderTeamState;
+import com.nephest.battlenet.sc2.model.local.ladder.PagedSearchResult;
+import com.nephest.battlenet.sc2.model.local.ladder.common.CommonCharacter;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderCharacterDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderMatchDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderPlayerCharacterStatsDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderProPlayerDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderSearchDAO;
+import com.nephest.battlenet.sc2.model.local.ladder.dao.LadderTeamStateDAO;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+public class CommonCharacterServiceTest
+{
+
+    @Mock
+    private LadderSearchDAO ladderSearchDAO;
+
+    @Mock
+    private LadderCharacterDAO ladderCharacterDAO;
+
+    @Mock
+    private LadderPlayerCharacterStatsDAO ladderPlayerCharacterStatsDAO;
+
+    @Mock
+    private LadderProPlayerDAO ladderProPlayerDAO;
+
+    @Mock
+    private LadderMatchDAO ladderMatchDAO;
+
+    @Mock
+    private LadderTeamStateDAO ladderTeamStateDAO;
+
+    @Mock
+    private DiscordUserDAO discordUserDAO;
+
+    @Mock
+    private PlayerCharacterReportService reportService;
+
+    private ExecutorService executor;
+    private CommonCharacterService commonCharacterService;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        executor = Executors.newFixedThreadPool(2);
+        commonCharacterService = new CommonCharacterService
+        (
+            ladderSearchDAO,
+            ladderCharacterDAO,
+            ladderPlayerCharacterStatsDAO,
+            ladderProPlayerDAO,
+            ladderMatchDAO,
+            ladderTeamStateDAO,
+            discordUserDAO,
+            reportService,
+            executor
+        );
+        lenient().when(ladderMatchDAO.findMatchesByCharacterId(anyLong(), any(), any(), anyInt(), anyInt(), anyInt(), any()))
+            .thenReturn(new PagedSearchResult<>(null, null, null, List.of()));
+    }
+
+    @AfterEach
+    public void afterEach()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void whenSameProfile_thenUseCachedLadderData()
+    {
+        List<LadderTeam> teams = List.of();
+        when(ladderSearchDAO.findCharacterTeams(1L)).thenReturn(teams);
+
+        CommonCharacter character1 = commonCharacterService.find(1L, 10, BaseMatch.MatchType._1V1);
+        CommonCharacter character2 = commonCharacterService.find(1L, 10, BaseMatch.MatchType._1V1);
+        assertSame(teams, character1.getTeams());
+        assertSame(teams, character2.getTeams());
+        verify(ladderSearchDAO, times(1)).findCharacterTeams(1L);
+        verify(ladderTeamStateDAO, times(1)).find(eq(1L), any());
+        //user data is always loaded
+        verify(ladderProPlayerDAO, times(2)).getProPlayerByCharacterId(1L);
+        verify(reportService, times(2)).findReportsByCharacterId(1L);
+
+        //different profile parameters
+        commonCharacterService.find(1L, null, BaseMatch.MatchType._1V1);
+        verify(ladderTeamStateDAO, times(1)).find(eq(1L), isNull());
+        commonCharacterService.find(1L, 10);
+        verify(ladderSearchDAO, times(3)).findCharacterTeams(1L);
+        assertEquals(1, commonCharacterService.getCacheSize());
+    }
+
+    @Test
+    public void whenInvalidated_thenReload()
+    {
+        commonCharacterService.find(1L, null);
+        commonCharacterService.find(2L, null);
+        commonCharacterService.invalidate(Set.of(1L));
+
+        commonCharacterService.find(1L, null);
+        commonCharacterService.find(2L, null);
+        verify(ladderSearchDAO, times(2)).findCharacterTeams(1L);
+        verify(ladderSearchDAO, times(1)).findCharacterTeams(2L);
+    }
+
+    @Test
+    public void whenInvalidatedInTransaction_thenRemoveAfterCommit()
+    {
+        commonCharacterService.find(1L, null);
+        TransactionSynchronizationManager.initSynchronization();
+        try
+        {
+            commonCharacterService.invalidate(Set.of(1L));
+            //uncommitted state must not be loaded
+            commonCharacterService.find(1L, null);
+            verify(ladderSearchDAO, times(1)).findCharacterTeams(1L);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        commonCharacterService.find(1L, null);
+        verify(ladderSearchDAO, times(2)).findCharacterTeams(1L);
+    }
+
+    @Test
+    public void whenWeightIsExceeded_thenPurge()
+    {
+        List<LadderTeamState> history = Collections.nCopies(CommonCharacterService.CACHE_WEIGHT_MAX / 3, null);
+        when(ladderTeamStateDAO.find(anyLong(), any())).thenReturn(history);
+
+        commonCharacterService.find(1L, null);
+        commonCharacterService.find(2L, null);
+        assertEquals(2, commonCharacterService.getCacheSize());
+        //profiles are not expired, but there are too many rows
+        commonCharacterService.find(3L, null);
+        assertEquals(0, commonCharacterService.getCacheSize());
+        assertEquals(0, commonCharacterService.getCacheWeight());
+    }
+
+    @Test
+    public void whenQueryFails_thenRethrowOriginalException()
+    {
+        when(ladderSearchDAO.findCharacterTeams(1L)).thenThrow(new IllegalStateException("test"));
+
+        IllegalStateException ex = assertThrows
+        (
+            IllegalStateException.class,
+            ()->commonCharacterService.find(1L, null)
+        );
+        assertEquals("test", ex.getMessage());
+    }
+
+}
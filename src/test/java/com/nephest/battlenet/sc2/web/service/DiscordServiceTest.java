@@ -16,9 +16,9 @@ import static org.mockito.Mockito.when;
 import com.nephest.battlenet.sc2.model.discord.DiscordUser;
 import com.nephest.battlenet.sc2.model.discord.dao.DiscordUserDAO;
 import com.nephest.battlenet.sc2.model.local.dao.AccountDiscordUserDAO;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,7 +43,7 @@ public class DiscordServiceTest
     private DiscordAPI api;
 
     @Mock
-    private ExecutorService executor;
+    private PartitionedExecutorService executor;
 
     private DiscordService discordService;
 
@@ -55,8 +55,8 @@ public class DiscordServiceTest
 
     public void stubExecutor()
     {
-        when(executor.submit(any(Runnable.class))).then(i->{
-            Runnable r = i.getArgument(0);
+        when(executor.submit(any(), any(Runnable.class))).then(i->{
+            Runnable r = i.getArgument(1);
             r.run();
             return CompletableFuture.completedFuture(null);
         });
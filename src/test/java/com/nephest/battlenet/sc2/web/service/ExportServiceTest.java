@@ -0,0 +1,106 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.nephest.battlenet.sc2.model.local.dao.ExportDAO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ExportServiceTest
+{
+
+    private static final LocalDate TODAY = LocalDate.of(2022, 1, 10);
+
+    @Mock
+    private ExportDAO exportDAO;
+
+    @TempDir
+    public Path dir;
+
+    @Test
+    public void whenExportDirIsNotSet_thenDoNothing()
+    {
+        ExportService service = new ExportService(exportDAO, "");
+        service.exportDaily(TODAY);
+        assertFalse(service.isEnabled());
+        assertTrue(service.getFileNames().isEmpty());
+        verify(exportDAO, never()).export(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testExportDaily()
+    throws IOException
+    {
+        when(exportDAO.export(any(), any(), any(), any())).thenAnswer(inv->{
+            Writer writer = inv.getArgument(3);
+            writer.write(inv.getArgument(0).toString() + " " + inv.getArgument(1));
+            return 1;
+        });
+        Files.createFile(dir.resolve(ExportService.getFileName(ExportDAO.Table.MATCH, TODAY.minusDays(1))));
+        Path expired = Files.createFile(dir.resolve(ExportService.getFileName(
+            ExportDAO.Table.MATCH, TODAY.minusDays(ExportService.RETENTION_DAYS + 1))));
+        ExportService service = new ExportService(exportDAO, dir.toString());
+
+        service.exportDaily(TODAY);
+        int tables = ExportDAO.Table.values().length;
+        //existing file is skipped
+        verify(exportDAO, times(ExportService.BACKFILL_DAYS * tables - 1)).export(any(), any(), any(), any());
+        OffsetDateTime from = TODAY.minusDays(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+        verify(exportDAO).export(eq(ExportDAO.Table.TEAM), eq(from), eq(from.plusDays(1)), any());
+        assertFalse(Files.exists(expired));
+        assertEquals(ExportService.BACKFILL_DAYS * tables, service.getFileNames().size());
+
+        String fileName = ExportService.getFileName(ExportDAO.Table.TEAM, TODAY.minusDays(1));
+        Path file = service.find(fileName).orElseThrow();
+        try(InputStream in = new GZIPInputStream(Files.newInputStream(file)))
+        {
+            assertEquals("TEAM " + from, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        //only exported files are served
+        assertTrue(service.find("../" + fileName).isEmpty());
+        assertTrue(service.find(ExportService.getFileName(ExportDAO.Table.TEAM, TODAY)).isEmpty());
+    }
+
+    @Test
+    public void whenDayEndedLessThanExportDelayAgo_thenSkipIt()
+    {
+        when(exportDAO.export(any(), any(), any(), any())).thenReturn(0);
+        ExportService service = new ExportService(exportDAO, dir.toString());
+        OffsetDateTime todayStart = TODAY.atStartOfDay().atOffset(ZoneOffset.UTC);
+
+        service.exportDaily(todayStart.plus(ExportService.EXPORT_DELAY).minusSeconds(1));
+        OffsetDateTime yesterday = todayStart.minusDays(1);
+        verify(exportDAO, never()).export(any(), eq(yesterday), any(), any());
+        verify(exportDAO).export(eq(ExportDAO.Table.TEAM), eq(yesterday.minusDays(1)), any(), any());
+
+        service.exportDaily(todayStart.plus(ExportService.EXPORT_DELAY));
+        verify(exportDAO).export(eq(ExportDAO.Table.TEAM), eq(yesterday), eq(todayStart), any());
+    }
+
+}
@@ -0,0 +1,70 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nephest.battlenet.sc2.model.Region;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+public class LadderFingerprintCacheTest
+{
+
+    @Test
+    public void testUpdate()
+    {
+        LadderFingerprintCache cache = new LadderFingerprintCache();
+        HttpHeaders headers = new HttpHeaders();
+        assertTrue(cache.update(Region.EU, 1L, headers, "body1"));
+        assertFalse(cache.update(Region.EU, 1L, headers, "body1"));
+        assertTrue(cache.update(Region.EU, 1L, headers, "body2"));
+        //same length and String.hashCode, but different bodies
+        assertTrue(cache.update(Region.EU, 2L, headers, "Aa"));
+        assertTrue(cache.update(Region.EU, 2L, headers, "BB"));
+        cache.remove(Region.EU, 2L);
+        //regions are isolated
+        assertTrue(cache.update(Region.US, 1L, headers, "body2"));
+        assertEquals(1, cache.size(Region.EU));
+        assertEquals(1, cache.size(Region.US));
+    }
+
+    @Test
+    public void testConditionalHeaders()
+    {
+        LadderFingerprintCache cache = new LadderFingerprintCache();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        cache.addConditionalHeaders(Region.EU, 1L, requestHeaders);
+        assertTrue(requestHeaders.isEmpty());
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setETag("\"tag\"");
+        responseHeaders.set(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        cache.update(Region.EU, 1L, responseHeaders, "body");
+        cache.addConditionalHeaders(Region.EU, 1L, requestHeaders);
+        assertEquals("\"tag\"", requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH));
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", requestHeaders.getFirst(HttpHeaders.IF_MODIFIED_SINCE));
+
+        HttpHeaders otherRequestHeaders = new HttpHeaders();
+        cache.addConditionalHeaders(Region.EU, 2L, otherRequestHeaders);
+        assertNull(otherRequestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    public void testEviction()
+    {
+        LadderFingerprintCache cache = new LadderFingerprintCache();
+        cache.update(Region.EU, 1L, new HttpHeaders(), "body");
+        cache.update(Region.US, 1L, new HttpHeaders(), "body");
+        assertEquals(0, cache.evict(Duration.ofDays(1)));
+        assertEquals(2, cache.evict(Duration.ofMillis(-1)));
+        assertEquals(0, cache.size(Region.EU));
+        assertEquals(0, cache.size(Region.US));
+    }
+
+}
@@ -0,0 +1,48 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.local.PlayerCharacter;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import reactor.util.function.Tuples;
+
+public class MatchServiceTest
+{
+
+    @Test
+    public void whenFindingChangedCharacters_thenSkipUnchangedAndOrderByNewGames()
+    {
+        PlayerCharacter unchanged = new PlayerCharacter(1L, 1L, Region.EU, 1L, 1, "name#1");
+        PlayerCharacter changed = new PlayerCharacter(2L, 2L, Region.EU, 2L, 1, "name#2");
+        PlayerCharacter unknown = new PlayerCharacter(3L, 3L, Region.EU, 3L, 1, "name#3");
+        PlayerCharacter newSeason = new PlayerCharacter(4L, 4L, Region.EU, 4L, 1, "name#4");
+        PlayerCharacter mostChanged = new PlayerCharacter(5L, 5L, Region.EU, 5L, 1, "name#5");
+
+        List<PlayerCharacter> characters = MatchService.findChangedCharacters
+        (
+            List.of
+            (
+                Tuples.of(unchanged, 10),
+                Tuples.of(changed, 12),
+                Tuples.of(unknown, 3),
+                Tuples.of(newSeason, 4),
+                Tuples.of(mostChanged, 30)
+            ),
+            Map.of
+            (
+                unchanged.getId(), 10,
+                changed.getId(), 10,
+                newSeason.getId(), 100,
+                mostChanged.getId(), 20
+            )
+        );
+        assertEquals(List.of(mostChanged, newSeason, unknown, changed), characters);
+    }
+
+}
@@ -4,9 +4,26 @@
 package com.nephest.battlenet.sc2.web.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import com.nephest.battlenet.sc2.model.local.dao.AccountDAO;
+import com.nephest.battlenet.sc2.model.local.dao.ClanDAO;
+import com.nephest.battlenet.sc2.model.local.dao.PlayerCharacterDAO;
+import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 
 public class SearchServiceTest
 {
@@ -37,4 +54,62 @@ public class SearchServiceTest
         assertEquals(expectedResult, SearchService.extractClanTag(term));
     }
 
+    @Test
+    public void whenIndexIsUpdated_thenSuggestFromIndex()
+    {
+        PlayerCharacterDAO playerCharacterDAO = mock(PlayerCharacterDAO.class);
+        AccountDAO accountDAO = mock(AccountDAO.class);
+        ClanDAO clanDAO = mock(ClanDAO.class);
+        SeasonDAO seasonDAO = mock(SeasonDAO.class);
+        when(seasonDAO.getMaxBattlenetId()).thenReturn(1);
+        when(playerCharacterDAO.findNameWeights(1)).thenReturn(Map.of("name1", 1));
+        when(playerCharacterDAO.findNameWeights(eq(1), any())).thenReturn(Map.of("name2", 2));
+        when(accountDAO.findBattleTagWeights(1)).thenReturn(Map.of("tag#1", 1));
+        when(accountDAO.findBattleTagWeights(eq(1), any())).thenReturn(Map.of());
+        when(clanDAO.findTagWeights()).thenReturn(Map.of("clan", 1));
+        when(playerCharacterDAO.findNamesWithoutDiscriminator("name", 10)).thenReturn(List.of("sqlName"));
+        SearchService searchService = new SearchService(playerCharacterDAO, accountDAO, clanDAO, seasonDAO);
+
+        //SQL is used before the index is built
+        assertFalse(searchService.isIndexed());
+        assertEquals(List.of("sqlName"), searchService.suggest("name", 10));
+
+        searchService.updateIndex();
+        verify(playerCharacterDAO).findNameWeights(1);
+        verify(playerCharacterDAO, never()).findNameWeights(eq(1), any());
+        //only characters of changed teams are loaded by the next update
+        searchService.updateIndex();
+        ArgumentCaptor<OffsetDateTime> from = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(playerCharacterDAO).findNameWeights(eq(1), from.capture());
+        assertTrue(from.getValue().isAfter(OffsetDateTime.now().minusHours(1)));
+
+        assertTrue(searchService.isIndexed());
+        assertEquals(List.of("name2", "name1"), searchService.suggest("name", 2));
+        assertEquals(List.of("tag#1"), searchService.suggest("tag#", 1));
+        assertEquals(List.of("[clan]"), searchService.suggest("[cl", 1));
+        verify(playerCharacterDAO, never()).findNamesWithoutDiscriminator("name", 2);
+    }
+
+    @Test
+    public void whenIndexHasLessSuggestionsThanLimit_thenAddSqlSuggestions()
+    {
+        PlayerCharacterDAO playerCharacterDAO = mock(PlayerCharacterDAO.class);
+        AccountDAO accountDAO = mock(AccountDAO.class);
+        ClanDAO clanDAO = mock(ClanDAO.class);
+        SeasonDAO seasonDAO = mock(SeasonDAO.class);
+        when(seasonDAO.getMaxBattlenetId()).thenReturn(1);
+        when(playerCharacterDAO.findNameWeights(1)).thenReturn(Map.of("name1", 1));
+        when(accountDAO.findBattleTagWeights(1)).thenReturn(Map.of());
+        when(clanDAO.findTagWeights()).thenReturn(Map.of());
+        //inactive players are not indexed
+        when(playerCharacterDAO.findNamesWithoutDiscriminator("name", 3))
+            .thenReturn(List.of("name1", "inactiveName1", "inactiveName2"));
+        when(accountDAO.findBattleTags("tag#", 3)).thenReturn(List.of("tag#1"));
+        SearchService searchService = new SearchService(playerCharacterDAO, accountDAO, clanDAO, seasonDAO);
+        searchService.updateIndex();
+
+        assertEquals(List.of("name1", "inactiveName1", "inactiveName2"), searchService.suggest("name", 3));
+        assertEquals(List.of("tag#1"), searchService.suggest("tag#", 3));
+    }
+
 }
@@ -27,8 +27,9 @@ import com.nephest.battlenet.sc2.model.local.LeagueTier;
 import com.nephest.battlenet.sc2.model.local.Season;
 import com.nephest.battlenet.sc2.model.local.dao.SeasonDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Instant;
-import java.util.concurrent.ExecutorService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,15 +54,15 @@ public class StatsServiceIT
     private BlizzardSC2API api;
 
     @Autowired @Qualifier("dbExecutorService")
-    private ExecutorService dbExecutorService;
+    private PartitionedExecutorService dbExecutorService;
 
     @BeforeEach
     public void beforeEach(@Autowired Validator validator)
     {
         teamDAO = mock(TeamDAO.class);
         statsService = new StatsService(null, null, mock(SeasonDAO.class), null, null, null, teamDAO, null,
-            null, null, null, null, null, null, null, null, null, null, null, validator,
-            dbExecutorService);
+            null, null, null, null, null, null, null, null, null, null, null, null, null, validator,
+            dbExecutorService, new SimpleMeterRegistry());
         StatsService nss = mock(StatsService.class);
         statsService.setNestedService(nss);
     }
@@ -81,7 +82,7 @@ public class StatsServiceIT
 
         statsService.updateTeams(new BlizzardTeam[]{noBattletagTeam}, mock(Season.class),
             new League(1, 1, BaseLeague.LeagueType.BRONZE, QueueType.LOTV_1V1, TeamType.ARRANGED),
-            mock(LeagueTier.class), mock(Division.class), Instant.now());
+            mock(LeagueTier.class), mock(Division.class), Instant.now(), new StatsService.SavedLadders());
 
         verify(teamDAO, never()).merge(any());
     }
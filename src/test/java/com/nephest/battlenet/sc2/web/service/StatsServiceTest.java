@@ -38,9 +38,10 @@ import com.nephest.battlenet.sc2.model.local.dao.TeamDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamMemberDAO;
 import com.nephest.battlenet.sc2.model.local.dao.TeamStateDAO;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
+import com.nephest.battlenet.sc2.model.local.inner.PlayerCharacterSummaryDAO;
+import com.nephest.battlenet.sc2.util.PartitionedExecutorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Instant;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -107,16 +108,23 @@ public class StatsServiceTest
     @Mock
     private PopulationStateDAO populationStateDAO;
 
+    @Mock
+    private PlayerCharacterSummaryDAO playerCharacterSummaryDAO;
+
     @Mock
     private VarDAO varDAO;
 
+    @Mock
+    private CommonCharacterService commonCharacterService;
+
     @Mock
     private SC2WebServiceUtil sc2WebServiceUtil;
 
     @Mock
     private ConversionService conversionService;
 
-    private final ExecutorService dbExecutorService = Executors.newSingleThreadExecutor();
+    private final PartitionedExecutorService dbExecutorService =
+        new PartitionedExecutorService("test-db-", 1, 1, new SimpleMeterRegistry());
 
     @Mock
     private Validator validator;
@@ -145,11 +153,14 @@ public class StatsServiceTest
             leagueStatsDao,
             playerCharacterStatsDAO,
             populationStateDAO,
+            playerCharacterSummaryDAO,
             varDAO,
+            commonCharacterService,
             sc2WebServiceUtil,
             conversionService,
             validator,
-            dbExecutorService
+            dbExecutorService,
+            new SimpleMeterRegistry()
         );
         ss.setNestedService(nss);
     }
@@ -164,7 +175,7 @@ public class StatsServiceTest
 
         ss.updateTeams(new BlizzardTeam[]{noMembersTeam, zeroGamesTeam}, mock(Season.class),
             new League(1, 1, BaseLeague.LeagueType.BRONZE, QueueType.LOTV_1V1, TeamType.ARRANGED),
-            mock(LeagueTier.class), mock(Division.class), Instant.now());
+            mock(LeagueTier.class), mock(Division.class), Instant.now(), new StatsService.SavedLadders());
 
         verify(teamDAO, never()).merge(any());
     }
@@ -3,6 +3,7 @@
 
 package com.nephest.battlenet.sc2.web.service;
 
+import com.nephest.battlenet.sc2.model.Region;
 import com.nephest.battlenet.sc2.model.local.dao.VarDAO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +12,8 @@ import java.time.Duration;
 import java.time.Instant;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
 
 public class UpdateServiceTest
@@ -38,4 +41,19 @@ public class UpdateServiceTest
         assertEquals(Duration.ofSeconds(10000), updateService.calculateUpdateDuration(null));
     }
 
+    @Test
+    public void testLastInternalUpdate()
+    {
+        assertNull(updateService.getLastInternalUpdate());
+
+        updateService.updated(Region.EU, Instant.now());
+        Instant regional = updateService.getLastInternalUpdate();
+        assertEquals(updateService.getUpdateContext(Region.EU).getInternalUpdate(), regional);
+
+        updateService.updated(Instant.now());
+        Instant global = updateService.getLastInternalUpdate();
+        assertEquals(updateService.getUpdateContext(null).getInternalUpdate(), global);
+        assertFalse(global.isBefore(regional));
+    }
+
 }
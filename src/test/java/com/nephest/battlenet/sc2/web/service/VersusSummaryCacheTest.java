@@ -0,0 +1,110 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.nephest.battlenet.sc2.model.BaseMatch;
+import com.nephest.battlenet.sc2.model.QueueType;
+import com.nephest.battlenet.sc2.model.Region;
+import com.nephest.battlenet.sc2.model.local.inner.TeamLegacyUid;
+import com.nephest.battlenet.sc2.model.local.inner.VersusSummary;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VersusSummaryCacheTest
+{
+
+    private static final TeamLegacyUid TEAM = new TeamLegacyUid(QueueType.LOTV_1V1, Region.EU, BigInteger.ONE);
+
+    private VersusSummaryCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void beforeEach()
+    {
+        cache = new VersusSummaryCache();
+        loads = new AtomicInteger();
+    }
+
+    private VersusSummary get
+    (
+        Integer[] clans1,
+        Set<TeamLegacyUid> teams1,
+        Integer[] clans2,
+        BaseMatch.MatchType... types
+    )
+    {
+        return cache.get(clans1, teams1, clans2, Set.of(), types, ()->{
+            loads.incrementAndGet();
+            return new VersusSummary(1, 1, 0);
+        });
+    }
+
+    @Test
+    public void whenKeyIsEquivalent_thenReturnCachedSummary()
+    {
+        VersusSummary summary = get
+        (
+            new Integer[]{1, 2}, Set.of(), new Integer[]{3},
+            BaseMatch.MatchType._1V1, BaseMatch.MatchType._2V2
+        );
+        assertSame(summary, get
+        (
+            new Integer[]{2, 1, 2}, Set.of(), new Integer[]{3},
+            BaseMatch.MatchType._2V2, BaseMatch.MatchType._1V1
+        ));
+        assertEquals(1, loads.get());
+
+        //sides are not interchangeable
+        get(new Integer[]{3}, Set.of(), new Integer[]{1, 2}, BaseMatch.MatchType._1V1, BaseMatch.MatchType._2V2);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void whenInvalidatingClans_thenRemoveOnlyAffectedEntries()
+    {
+        get(new Integer[]{1}, Set.of(), new Integer[]{2});
+        get(new Integer[]{3}, Set.of(), new Integer[]{4});
+        get(new Integer[]{5}, Set.of(TEAM), new Integer[]{6});
+        assertEquals(3, cache.size());
+
+        cache.invalidateClans(List.of(2));
+        assertEquals(2, cache.size());
+        get(new Integer[]{3}, Set.of(), new Integer[]{4});
+        assertEquals(3, loads.get());
+
+        cache.invalidateTeams();
+        assertEquals(1, cache.size());
+        get(new Integer[]{1}, Set.of(), new Integer[]{2});
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void whenInvalidatedWhileLoading_thenDontCacheLoadedSummary()
+    {
+        cache.get(new Integer[]{1}, Set.of(), new Integer[]{2}, Set.of(), new BaseMatch.MatchType[0], ()->{
+            cache.invalidateClans(List.of(10));
+            return new VersusSummary(1, 1, 0);
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void whenFull_thenEvictLeastRecentlyUsedEntry()
+    {
+        for(int i = 0; i < VersusSummaryCache.MAX_SIZE + 1; i++)
+            get(new Integer[]{i}, Set.of(), new Integer[]{-1});
+        assertEquals(VersusSummaryCache.MAX_SIZE, cache.size());
+        get(new Integer[]{0}, Set.of(), new Integer[]{-1});
+        assertEquals(VersusSummaryCache.MAX_SIZE + 2, loads.get());
+    }
+
+}
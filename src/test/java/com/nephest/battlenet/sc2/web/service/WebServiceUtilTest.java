@@ -0,0 +1,44 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+public class WebServiceUtilTest
+{
+
+    @Test
+    public void testMetricsFilter()
+    {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ExchangeFilterFunction filter = WebServiceUtil.getMetricsFilter(registry, "test.request", Tags.of("api", "test"));
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost")).build();
+
+        filter.filter(request, r->Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        filter.filter(request, r->Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build())).block();
+        filter.filter(request, r->Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build())).block();
+        assertThrows
+        (
+            IllegalStateException.class,
+            ()->filter.filter(request, r->Mono.error(new IllegalStateException("test"))).block()
+        );
+
+        assertEquals(1, registry.get("test.request").tags("api", "test", "outcome", "SUCCESSFUL").timer().count());
+        assertEquals(2, registry.get("test.request").tags("api", "test", "outcome", "CLIENT_ERROR").timer().count());
+        assertEquals(1, registry.get("test.request").tags("api", "test", "outcome", "ERROR").timer().count());
+    }
+
+}
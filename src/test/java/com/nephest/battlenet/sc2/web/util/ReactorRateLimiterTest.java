@@ -0,0 +1,119 @@
+// Copyright (C) 2020-2022 Oleksandr Masniuk
+// SPDX-License-Identifier: AGPL-3.0-or-later
+
+package com.nephest.battlenet.sc2.web.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+public class ReactorRateLimiterTest
+{
+
+    @Test
+    public void whenNoBurst_thenDontCarryOverSlots()
+    {
+        ReactorRateLimiter limiter = new ReactorRateLimiter();
+        limiter.refreshSlots(10);
+        limiter.refreshSlots(10);
+        assertEquals(10, limiter.getSlots());
+    }
+
+    @Test
+    public void whenBurst_thenCarryOverSlotsUpToBurstLimit()
+    {
+        ReactorRateLimiter limiter = new ReactorRateLimiter(25);
+        limiter.refreshSlots(10);
+        limiter.refreshSlots(10);
+        assertEquals(20, limiter.getSlots());
+        limiter.refreshSlots(10);
+        assertEquals(25, limiter.getSlots());
+    }
+
+    @Test
+    public void whenFractionalSlots_thenAccumulate()
+    {
+        ReactorRateLimiter limiter = new ReactorRateLimiter(1);
+        limiter.refreshSlots(0.5);
+        AtomicBoolean granted = new AtomicBoolean(false);
+        limiter.requestSlot().doOnSuccess(v->granted.set(true)).subscribe();
+        assertFalse(granted.get());
+        assertEquals(1, limiter.getQueueSize());
+
+        limiter.refreshSlots(0.5);
+        assertTrue(granted.get());
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    public void whenTooManyRequests_thenPauseAndSlowDown()
+    {
+        ReactorRateLimiter limiter = new ReactorRateLimiter(10);
+        limiter.refreshSlots(10);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "60");
+        limiter.onError(WebClientResponseException.create
+        (
+            HttpStatus.TOO_MANY_REQUESTS.value(),
+            "Too Many Requests",
+            headers,
+            new byte[0],
+            StandardCharsets.UTF_8
+        ));
+
+        assertTrue(limiter.isPaused());
+        assertEquals(0, limiter.getSlots());
+        assertEquals(ReactorRateLimiter.RATE_DECREASE_FACTOR, limiter.getRateFactor());
+        limiter.refreshSlots(10);
+        assertEquals(0, limiter.getSlots());
+    }
+
+    @Test
+    public void whenSlowedDown_thenRecoverGraduallyAfterPeriodWithoutErrors()
+    {
+        long period = ReactorRateLimiter.RATE_ADJUSTMENT_PERIOD.toMillis();
+        long now = System.currentTimeMillis();
+        ReactorRateLimiter limiter = new ReactorRateLimiter(100);
+        limiter.slowDown(now);
+        //consecutive calls during the adjustment period are ignored
+        limiter.slowDown(now + period - 1);
+        assertEquals(0.5, limiter.getRateFactor());
+
+        //the last error postpones the recovery
+        limiter.refreshSlots(10, now + period);
+        assertEquals(5, limiter.getSlots());
+        assertEquals(0.5, limiter.getRateFactor());
+
+        limiter.refreshSlots(10, now + period * 2 - 1);
+        assertEquals(0.6, limiter.getRateFactor(), 0.0001);
+        //one step per period
+        limiter.refreshSlots(10, now + period * 2);
+        assertEquals(0.6, limiter.getRateFactor(), 0.0001);
+        limiter.refreshSlots(10, now + period * 3 - 1);
+        assertEquals(0.7, limiter.getRateFactor(), 0.0001);
+
+        //the rate is decreased again after the period
+        limiter.slowDown(now + period * 3);
+        assertEquals(0.35, limiter.getRateFactor(), 0.0001);
+    }
+
+    @Test
+    public void testRetryAfter()
+    {
+        HttpHeaders headers = new HttpHeaders();
+        assertEquals(ReactorRateLimiter.DEFAULT_RETRY_AFTER, ReactorRateLimiter.getRetryAfter(headers));
+        headers.set(HttpHeaders.RETRY_AFTER, "1.5");
+        assertEquals(Duration.ofMillis(1500), ReactorRateLimiter.getRetryAfter(headers));
+        headers.set(HttpHeaders.RETRY_AFTER, "Wed, 21 Oct 2015 07:28:00 GMT");
+        assertEquals(ReactorRateLimiter.DEFAULT_RETRY_AFTER, ReactorRateLimiter.getRetryAfter(headers));
+    }
+
+}
@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS "player_character_summary_1v1" CASCADE;
 DROP TYPE IF EXISTS "player_character_summary" CASCADE;
 DROP FUNCTION IF EXISTS "get_player_character_summary" CASCADE;
 DROP FUNCTION IF EXISTS "get_top_percentage_league_lotv" CASCADE;